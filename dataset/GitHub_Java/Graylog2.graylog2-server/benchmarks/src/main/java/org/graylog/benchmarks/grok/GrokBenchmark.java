@@ -0,0 +1,130 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.benchmarks.grok;
+
+import oi.thekraken.grok.api.Grok;
+import oi.thekraken.grok.api.Match;
+import oi.thekraken.grok.api.exception.GrokException;
+import org.graylog2.grok.CompiledGrok;
+import org.graylog2.grok.GrokCaptures;
+import org.graylog2.grok.GrokPattern;
+import org.graylog2.inputs.extractors.GrokExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares matching typical syslog and access log lines with the regular grok matcher and with the shared
+ * {@link CompiledGrok}, which uses the linear matcher for these expressions.
+ */
+public class GrokBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class BState {
+        @Param({"syslog", "accesslog", "combinedapachelog"})
+        public String format;
+
+        Grok grok;
+        CompiledGrok compiledGrok;
+        String value;
+
+        @Setup
+        public void setUp() throws GrokException {
+            final String expression;
+            switch (format) {
+                case "syslog":
+                    expression = "%{WORD:month} %{POSINT:day} %{NOTSPACE:time} %{NOTSPACE:host} %{DATA:program}\\[%{POSINT:pid}\\]: %{GREEDYDATA:message}";
+                    value = "Oct 11 22:14:15 mymachine su[230]: 'su root' failed for lonvick on /dev/pts/8";
+                    break;
+                case "accesslog":
+                    expression = "%{NOTSPACE:clientip} %{USERNAME:ident} %{USERNAME:auth} \\[%{DATA:timestamp}\\] \"%{WORD:verb} %{NOTSPACE:request} HTTP/%{NUMBER:httpversion}\" %{INT:response} %{INT:bytes}";
+                    value = "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326";
+                    break;
+                default:
+                    // not lowered, measures the overhead of the fallback to the regular expression
+                    expression = "%{COMBINEDAPACHELOG}";
+                    value = "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326 \"http://www.example.com/start.html\" \"Mozilla/4.08 [en] (Win98; I ;Nav)\"";
+                    break;
+            }
+
+            final Set<GrokPattern> patterns = new HashSet<>();
+            grok = new Grok();
+            for (String line : GrokExtractor.PATTERNS.split("\n")) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final int space = line.indexOf(' ');
+                final GrokPattern pattern = new GrokPattern();
+                pattern.name = line.substring(0, space);
+                pattern.pattern = line.substring(space + 1);
+                patterns.add(pattern);
+                grok.addPattern(pattern.name, pattern.pattern);
+            }
+            grok.compile(expression);
+            compiledGrok = CompiledGrok.compile(patterns, expression);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final GrokCaptures captures = new GrokCaptures();
+    }
+
+    @Benchmark
+    public void regexMatch(Blackhole bh, BState state) {
+        final Match match = state.grok.match(state.value);
+        match.captures();
+        for (Map.Entry<String, Object> entry : match.toMap().entrySet()) {
+            bh.consume(entry.getKey());
+            bh.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void compiledMatch(Blackhole bh, BState state, ThreadState threadState) {
+        final GrokCaptures captures = threadState.captures;
+        if (state.compiledGrok.match(state.value, captures)) {
+            for (int i = 0; i < captures.size(); i++) {
+                bh.consume(captures.name(i));
+                bh.consume(captures.value(i));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(GrokBenchmark.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .threads(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.benchmarks.journal;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Size;
+import com.google.common.eventbus.EventBus;
+import org.apache.commons.io.FileUtils;
+import org.graylog2.Configuration;
+import org.graylog2.audit.NullAuditEventSender;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.journal.LocalKafkaJournal;
+import org.graylog2.shared.journal.MappedSegmentJournal;
+import org.joda.time.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the write latency of the Kafka based journal with the memory-mapped segment journal.
+ * <p>
+ * Both journals get the same configuration. With a {@code flushInterval} of 1 every write is forced to disk before
+ * it returns, otherwise neither journal forces writes during the trial.
+ * </p>
+ * At the end of each trial the write amplification, i.e. the bytes of written records divided by the written payload
+ * bytes, is printed for the journal under test. Kafka's index files and the unused space of the preallocated segment
+ * files are not records, so neither counts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JournalBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class JournalState {
+        @Param({"kafka", "mapped"})
+        public String journalType;
+
+        @Param({"1", "100"})
+        public int batchSize;
+
+        @Param({"512"})
+        public int payloadSize;
+
+        @Param({"1", "1000000"})
+        public long flushInterval;
+
+        private Path directory;
+        private ScheduledThreadPoolExecutor scheduler;
+        private Journal journal;
+        private List<Journal.Entry> batch;
+        private long payloadBytes;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal-benchmark");
+            scheduler = new ScheduledThreadPoolExecutor(1);
+
+            final Path journalDirectory = Files.createDirectory(directory.resolve("journal"));
+            if ("kafka".equals(journalType)) {
+                journal = new LocalKafkaJournal(journalDirectory,
+                        scheduler,
+                        Size.megabytes(100L),
+                        Duration.standardHours(1),
+                        Size.gigabytes(5L),
+                        Duration.standardHours(12),
+                        flushInterval,
+                        Duration.standardMinutes(1),
+                        100,
+                        new MetricRegistry(),
+                        serverStatus(directory));
+            } else {
+                journal = new MappedSegmentJournal(journalDirectory,
+                        scheduler,
+                        Size.megabytes(100L),
+                        Size.gigabytes(5L),
+                        flushInterval,
+                        Duration.standardMinutes(1),
+                        new MetricRegistry());
+            }
+
+            final Random random = new Random(42L);
+            batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                final byte[] payload = new byte[payloadSize];
+                random.nextBytes(payload);
+                batch.add(journal.createEntry(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8), payload));
+            }
+            payloadBytes = 0L;
+        }
+
+        private static ServerStatus serverStatus(Path directory) throws IOException {
+            final File nodeId = directory.resolve("node-id").toFile();
+            Files.write(nodeId.toPath(), UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+            final Configuration configuration = new Configuration() {
+                @Override
+                public String getNodeIdFile() {
+                    return nodeId.getAbsolutePath();
+                }
+            };
+            return new ServerStatus(configuration, EnumSet.of(ServerStatus.Capability.MASTER),
+                    new EventBus("JournalBenchmark"), NullAuditEventSender::new);
+        }
+
+        private static long sizeOfLogFiles(Path directory) throws IOException {
+            try (Stream<Path> files = Files.walk(directory)) {
+                return files.filter(path -> path.toString().endsWith(".log"))
+                        .mapToLong(path -> path.toFile().length())
+                        .sum();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            final long recordBytes;
+            if (journal instanceof MappedSegmentJournal) {
+                // segment files are preallocated, only count what has actually been written
+                recordBytes = ((MappedSegmentJournal) journal).size();
+            } else {
+                // the .index files are preallocated as well, the records are in the .log files
+                recordBytes = sizeOfLogFiles(directory.resolve("journal"));
+            }
+            System.out.printf("%n%s journal: %d payload bytes, %d record bytes, write amplification %.3f%n",
+                    journalType, payloadBytes, recordBytes, payloadBytes == 0 ? 0d : (double) recordBytes / payloadBytes);
+
+            scheduler.shutdownNow();
+            FileUtils.deleteQuietly(directory.toFile());
+        }
+    }
+
+    @Benchmark
+    public long write(JournalState state) {
+        state.payloadBytes += (long) state.batchSize * state.payloadSize;
+        return state.journal.write(state.batch);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JournalBenchmark.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .threads(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -48,6 +48,7 @@ import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.util.HashMap;
@@ -75,6 +76,17 @@ public class AggregationEventProcessor implements EventProcessor {
     private final DBEventProcessorStateService stateService;
     private final MoreSearch moreSearch;
     private final Messages messages;
+    @Nullable
+    private final AggregationSliceStore sliceStore;
+
+    public AggregationEventProcessor(EventDefinition eventDefinition,
+                                     AggregationSearch.Factory aggregationSearchFactory,
+                                     EventProcessorDependencyCheck dependencyCheck,
+                                     DBEventProcessorStateService stateService,
+                                     MoreSearch moreSearch,
+                                     Messages messages) {
+        this(eventDefinition, aggregationSearchFactory, dependencyCheck, stateService, moreSearch, messages, null);
+    }
 
     @Inject
     public AggregationEventProcessor(@Assisted EventDefinition eventDefinition,
@@ -82,7 +94,8 @@ public class AggregationEventProcessor implements EventProcessor {
                                      EventProcessorDependencyCheck dependencyCheck,
                                      DBEventProcessorStateService stateService,
                                      MoreSearch moreSearch,
-                                     Messages messages) {
+                                     Messages messages,
+                                     @Nullable AggregationSliceStore sliceStore) {
         this.eventDefinition = eventDefinition;
         this.config = (AggregationEventProcessorConfig) eventDefinition.config();
         this.aggregationSearchFactory = aggregationSearchFactory;
@@ -90,6 +103,7 @@ public class AggregationEventProcessor implements EventProcessor {
         this.stateService = stateService;
         this.moreSearch = moreSearch;
         this.messages = messages;
+        this.sliceStore = sliceStore;
     }
 
     @Override
@@ -197,7 +211,14 @@ public class AggregationEventProcessor implements EventProcessor {
     private void aggregatedSearch(EventFactory eventFactory, AggregationEventProcessorParameters parameters,
                                   EventConsumer<List<EventWithContext>> eventsConsumer) throws EventProcessorException {
         final String owner = "event-processor-" + AggregationEventProcessorConfig.TYPE_NAME + "-" + eventDefinition.id();
-        final AggregationSearch search = aggregationSearchFactory.create(config, parameters, owner);
+        // Sliding windows only need to search the newly arrived slice if the partial results of the previous
+        // executions can be reused
+        final AggregationSearch search;
+        if (sliceStore != null && IncrementalAggregationSearch.isApplicable(config, parameters)) {
+            search = new IncrementalAggregationSearch(config, parameters, owner, eventDefinition, aggregationSearchFactory, sliceStore);
+        } else {
+            search = aggregationSearchFactory.create(config, parameters, owner);
+        }
         final AggregationResult result = search.doSearch();
 
         if (result.keyResults().isEmpty()) {
@@ -0,0 +1,100 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.events.processor.aggregation;
+
+/**
+ * Mergeable partial state of the series values for one group-by key and field within a time slice.
+ * <p>
+ * Minimum and maximum are {@link Double#NaN} as long as no value has been seen, which is also what
+ * {@link PivotAggregationSearch} returns for aggregations without any value.
+ */
+class AggregationPartial {
+    private long count = 0L;
+    private double sum = 0.0d;
+    private double sumOfSquares = 0.0d;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    void add(AggregationFunction function, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        switch (function) {
+            case COUNT:
+                count += (long) value;
+                break;
+            case SUM:
+                sum += value;
+                break;
+            case SUMOFSQUARES:
+                sumOfSquares += value;
+                break;
+            case MIN:
+                min = Double.isNaN(min) ? value : Math.min(min, value);
+                break;
+            case MAX:
+                max = Double.isNaN(max) ? value : Math.max(max, value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported partial aggregation function " + function);
+        }
+    }
+
+    void merge(AggregationPartial other) {
+        add(AggregationFunction.COUNT, other.count);
+        add(AggregationFunction.SUM, other.sum);
+        add(AggregationFunction.SUMOFSQUARES, other.sumOfSquares);
+        add(AggregationFunction.MIN, other.min);
+        add(AggregationFunction.MAX, other.max);
+    }
+
+    /**
+     * Computes the final value of the given series function from the partial state.
+     */
+    double value(AggregationFunction function) {
+        switch (function) {
+            case COUNT:
+                return count;
+            case SUM:
+                return sum;
+            case SUMOFSQUARES:
+                return sumOfSquares;
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            case AVG:
+                return count == 0 ? Double.NaN : sum / count;
+            case VARIANCE:
+                return variance();
+            case STDDEV:
+                return Math.sqrt(variance());
+            default:
+                throw new IllegalArgumentException("Unsupported aggregation function " + function);
+        }
+    }
+
+    // Population variance, like the Elasticsearch "extended_stats" aggregation computes it
+    private double variance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        final double mean = sum / count;
+        // Guard against small negative values caused by rounding errors
+        return Math.max(0.0d, sumOfSquares / count - mean * mean);
+    }
+}
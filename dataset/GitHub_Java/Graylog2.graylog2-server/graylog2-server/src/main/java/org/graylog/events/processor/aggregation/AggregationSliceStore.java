@@ -0,0 +1,128 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.events.processor.aggregation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the partial aggregation state of recently processed time slices per event definition. This allows
+ * {@link IncrementalAggregationSearch} to only search the newly arrived slice on each execution of a sliding window.
+ * <p>
+ * The state is kept in memory. After a server restart, or if the event definition has been changed, the slices
+ * will be searched again.
+ */
+@Singleton
+public class AggregationSliceStore {
+    private final Cache<String, Slices> slices = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.DAYS)
+            .build();
+
+    /**
+     * Returns the slices for the given event definition. Previously stored slices are discarded if the fingerprint
+     * of the aggregation doesn't match anymore.
+     */
+    Slices get(String eventDefinitionId, String fingerprint) {
+        try {
+            final Slices existing = slices.get(eventDefinitionId, () -> new Slices(fingerprint));
+            if (existing.fingerprint.equals(fingerprint)) {
+                return existing;
+            }
+            final Slices fresh = new Slices(fingerprint);
+            slices.put(eventDefinitionId, fresh);
+            return fresh;
+        } catch (ExecutionException e) {
+            // Can't happen, creating the value doesn't throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static class Slices {
+        private final String fingerprint;
+        // slice end timestamp (inclusive) -> slice
+        private final NavigableMap<Long, Slice> byEnd = new TreeMap<>();
+        private boolean disabled = false;
+
+        Slices(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        synchronized Slice get(long end) {
+            return byEnd.get(end);
+        }
+
+        synchronized void put(Slice slice) {
+            byEnd.put(slice.end, slice);
+        }
+
+        /**
+         * Removes all slices which end before the given timestamp.
+         */
+        synchronized void removeBefore(long timestamp) {
+            byEnd.headMap(timestamp, false).clear();
+        }
+
+        synchronized boolean isDisabled() {
+            return disabled;
+        }
+
+        /**
+         * Disables incremental processing, e.g. because the slices would contain too many keys to keep them in memory.
+         */
+        synchronized void disable() {
+            disabled = true;
+            byEnd.clear();
+        }
+    }
+
+    static class Slice {
+        private final long end;
+        // group-by key -> field (empty string for series without field) -> partial state
+        private final Map<List<String>, Map<String, AggregationPartial>> partials;
+        private final Set<String> sourceStreams;
+        private final long totalAggregatedMessages;
+
+        Slice(long end, Map<List<String>, Map<String, AggregationPartial>> partials, Set<String> sourceStreams, long totalAggregatedMessages) {
+            this.end = end;
+            this.partials = partials;
+            this.sourceStreams = sourceStreams;
+            this.totalAggregatedMessages = totalAggregatedMessages;
+        }
+
+        Map<List<String>, Map<String, AggregationPartial>> partials() {
+            return partials;
+        }
+
+        Set<String> sourceStreams() {
+            return sourceStreams;
+        }
+
+        long totalAggregatedMessages() {
+            return totalAggregatedMessages;
+        }
+    }
+}
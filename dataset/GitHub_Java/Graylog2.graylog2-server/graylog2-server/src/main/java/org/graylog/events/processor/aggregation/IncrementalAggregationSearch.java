@@ -0,0 +1,294 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.events.processor.aggregation;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog.events.processor.EventProcessorException;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the aggregation of a sliding window by merging the partial aggregates of the time slices it consists of.
+ * <p>
+ * A window of {@link AggregationEventProcessorConfig#searchWithinMs()} which is executed every
+ * {@link AggregationEventProcessorConfig#executeEveryMs()} is split into slices of the hop size. Each slice is
+ * searched once with series which can be merged (count, sum, sum of squares, min and max) and kept in the
+ * {@link AggregationSliceStore}. On each execution only the slices which haven't been searched yet, usually just the
+ * newest one, are searched. The values of the configured series are then computed from the merged partials.
+ * <p>
+ * Cardinality can't be merged from the values Elasticsearch returns, so aggregations using it are always searched
+ * in full. See {@link #isApplicable(AggregationEventProcessorConfig, AggregationEventProcessorParameters)}.
+ */
+public class IncrementalAggregationSearch implements AggregationSearch {
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalAggregationSearch.class);
+
+    private static final Set<AggregationFunction> MERGEABLE_FUNCTIONS = EnumSet.of(
+            AggregationFunction.AVG,
+            AggregationFunction.COUNT,
+            AggregationFunction.MAX,
+            AggregationFunction.MIN,
+            AggregationFunction.STDDEV,
+            AggregationFunction.SUM,
+            AggregationFunction.SUMOFSQUARES,
+            AggregationFunction.VARIANCE
+    );
+
+    // Searching more slices than this at once is more expensive than searching the whole window
+    @VisibleForTesting
+    static final int MAX_SLICE_SEARCHES = 10;
+    // Don't keep slices of high cardinality group-by keys in memory
+    @VisibleForTesting
+    static final int MAX_SLICE_KEYS = 10000;
+
+    private final AggregationEventProcessorConfig config;
+    private final AggregationEventProcessorParameters parameters;
+    private final String searchOwner;
+    private final EventDefinition eventDefinition;
+    private final AggregationSearch.Factory aggregationSearchFactory;
+    private final AggregationSliceStore sliceStore;
+
+    public IncrementalAggregationSearch(AggregationEventProcessorConfig config,
+                                        AggregationEventProcessorParameters parameters,
+                                        String searchOwner,
+                                        EventDefinition eventDefinition,
+                                        AggregationSearch.Factory aggregationSearchFactory,
+                                        AggregationSliceStore sliceStore) {
+        this.config = config;
+        this.parameters = parameters;
+        this.searchOwner = searchOwner;
+        this.eventDefinition = eventDefinition;
+        this.aggregationSearchFactory = aggregationSearchFactory;
+        this.sliceStore = sliceStore;
+    }
+
+    /**
+     * Incremental searches are only possible for regularly executed sliding windows (the window size is a multiple of
+     * the hop size and the parameters cover exactly one window) with series which can be merged.
+     */
+    public static boolean isApplicable(AggregationEventProcessorConfig config, AggregationEventProcessorParameters parameters) {
+        final long windowSize = config.searchWithinMs();
+        final long hopSize = config.executeEveryMs();
+        if (config.series().isEmpty() || hopSize <= 0 || windowSize % hopSize != 0 || windowSize / hopSize < 2) {
+            return false;
+        }
+        if (!config.series().stream().allMatch(series -> MERGEABLE_FUNCTIONS.contains(series.function()))) {
+            return false;
+        }
+        // The job scheduler creates consecutive windows which start one millisecond after the end of the previous hop
+        final TimeRange timerange = parameters.timerange();
+        return timerange.getTo().getMillis() - timerange.getFrom().getMillis() == windowSize - 1;
+    }
+
+    @Override
+    public AggregationResult doSearch() throws EventProcessorException {
+        final AggregationSliceStore.Slices slices = sliceStore.get(eventDefinition.id(), fingerprint());
+        if (slices.isDisabled()) {
+            return fullSearch();
+        }
+
+        final long hopSize = config.executeEveryMs();
+        final long windowEnd = parameters.timerange().getTo().getMillis();
+        final long sliceCount = config.searchWithinMs() / hopSize;
+        slices.removeBefore(windowEnd - (sliceCount - 1) * hopSize);
+
+        final List<Long> missing = new ArrayList<>();
+        for (long i = sliceCount - 1; i >= 0; i--) {
+            final long sliceEnd = windowEnd - i * hopSize;
+            if (slices.get(sliceEnd) == null) {
+                missing.add(sliceEnd);
+            }
+        }
+
+        if (missing.size() > MAX_SLICE_SEARCHES) {
+            // Not worth it to search all slices separately. Search the whole window and start collecting slices
+            // with the newest one, so the following executions can run incrementally.
+            LOG.debug("Missing {} of {} slices for event definition <{}>, running full search", missing.size(), sliceCount, eventDefinition.id());
+            final AggregationResult result = fullSearch();
+            if (result != null && !searchSlice(slices, windowEnd)) {
+                LOG.debug("Couldn't search latest slice for event definition <{}>", eventDefinition.id());
+            }
+            return result;
+        }
+
+        for (final long sliceEnd : missing) {
+            if (!searchSlice(slices, sliceEnd)) {
+                return slices.isDisabled() ? fullSearch() : null;
+            }
+        }
+
+        final List<AggregationSliceStore.Slice> windowSlices = new ArrayList<>();
+        for (long i = sliceCount - 1; i >= 0; i--) {
+            final AggregationSliceStore.Slice slice = slices.get(windowEnd - i * hopSize);
+            if (slice == null) {
+                // Concurrently invalidated, should not happen because executions of an event definition don't overlap
+                return fullSearch();
+            }
+            windowSlices.add(slice);
+        }
+        LOG.debug("Merging {} slices for event definition <{}>, searched {} new slices", windowSlices.size(), eventDefinition.id(), missing.size());
+
+        return merge(windowSlices);
+    }
+
+    private AggregationResult fullSearch() throws EventProcessorException {
+        return aggregationSearchFactory.create(config, parameters, searchOwner, eventDefinition).doSearch();
+    }
+
+    /**
+     * Searches the partial aggregates of the slice ending at the given timestamp and stores them.
+     *
+     * @return true if the slice has been stored, false otherwise
+     */
+    private boolean searchSlice(AggregationSliceStore.Slices slices, long sliceEnd) throws EventProcessorException {
+        final DateTime to = new DateTime(sliceEnd, parameters.timerange().getTo().getZone());
+        final AggregationEventProcessorParameters sliceParameters = parameters.toBuilder()
+                .timerange(AbsoluteRange.create(to.minus(config.executeEveryMs()).plusMillis(1), to))
+                .build();
+        final AggregationEventProcessorConfig sliceConfig = config.toBuilder()
+                .series(partialSeries(config.series()))
+                .build();
+
+        final AggregationResult result = aggregationSearchFactory.create(sliceConfig, sliceParameters, searchOwner, eventDefinition).doSearch();
+        if (result == null) {
+            return false;
+        }
+        if (result.keyResults().size() > MAX_SLICE_KEYS) {
+            LOG.debug("Slice of event definition <{}> has {} keys, disabling incremental search", eventDefinition.id(), result.keyResults().size());
+            slices.disable();
+            return false;
+        }
+
+        final Map<List<String>, Map<String, AggregationPartial>> partials = new HashMap<>();
+        for (final AggregationKeyResult keyResult : result.keyResults()) {
+            final Map<String, AggregationPartial> fieldPartials = partials.computeIfAbsent(keyResult.key(), key -> new HashMap<>());
+            for (final AggregationSeriesValue seriesValue : keyResult.seriesValues()) {
+                final AggregationSeries series = seriesValue.series();
+                fieldPartials.computeIfAbsent(series.field().orElse(""), field -> new AggregationPartial())
+                        .add(series.function(), seriesValue.value());
+            }
+        }
+        slices.put(new AggregationSliceStore.Slice(sliceEnd, partials, result.sourceStreams(), result.totalAggregatedMessages()));
+        return true;
+    }
+
+    private AggregationResult merge(List<AggregationSliceStore.Slice> windowSlices) {
+        final Map<List<String>, Map<String, AggregationPartial>> merged = new LinkedHashMap<>();
+        final Set<String> sourceStreams = new LinkedHashSet<>();
+        long totalAggregatedMessages = 0L;
+
+        // Without group-by there is always exactly one result, even if there were no messages
+        if (config.groupBy().isEmpty()) {
+            merged.put(ImmutableList.of(), new HashMap<>());
+        }
+        for (final AggregationSliceStore.Slice slice : windowSlices) {
+            slice.partials().forEach((key, fieldPartials) -> {
+                final Map<String, AggregationPartial> mergedFieldPartials = merged.computeIfAbsent(key, k -> new HashMap<>());
+                fieldPartials.forEach((field, partial) ->
+                        mergedFieldPartials.computeIfAbsent(field, f -> new AggregationPartial()).merge(partial));
+            });
+            sourceStreams.addAll(slice.sourceStreams());
+            totalAggregatedMessages += slice.totalAggregatedMessages();
+        }
+
+        final ImmutableList.Builder<AggregationKeyResult> keyResults = ImmutableList.builder();
+        merged.forEach((key, fieldPartials) -> {
+            final ImmutableList.Builder<AggregationSeriesValue> values = ImmutableList.builder();
+            for (final AggregationSeries series : config.series()) {
+                final AggregationPartial partial = fieldPartials.getOrDefault(series.field().orElse(""), new AggregationPartial());
+                values.add(AggregationSeriesValue.builder()
+                        .key(key)
+                        .value(partial.value(series.function()))
+                        .series(series)
+                        .build());
+            }
+            keyResults.add(AggregationKeyResult.builder()
+                    .key(key)
+                    .seriesValues(values.build())
+                    .build());
+        });
+
+        return AggregationResult.builder()
+                .keyResults(keyResults.build())
+                .effectiveTimerange(AbsoluteRange.create(parameters.timerange().getFrom(), parameters.timerange().getTo()))
+                .totalAggregatedMessages(totalAggregatedMessages)
+                .sourceStreams(ImmutableSet.copyOf(sourceStreams))
+                .build();
+    }
+
+    /**
+     * Returns the series which have to be searched for each slice to compute the given series.
+     */
+    @VisibleForTesting
+    static List<AggregationSeries> partialSeries(List<AggregationSeries> series) {
+        final Map<String, AggregationSeries> partials = new LinkedHashMap<>();
+        for (final AggregationSeries entry : series) {
+            final String field = entry.field().orElse(null);
+            switch (entry.function()) {
+                case COUNT:
+                case SUM:
+                case SUMOFSQUARES:
+                case MIN:
+                case MAX:
+                    addPartial(partials, entry.function(), field);
+                    break;
+                case AVG:
+                    addPartial(partials, AggregationFunction.COUNT, field);
+                    addPartial(partials, AggregationFunction.SUM, field);
+                    break;
+                case VARIANCE:
+                case STDDEV:
+                    addPartial(partials, AggregationFunction.COUNT, field);
+                    addPartial(partials, AggregationFunction.SUM, field);
+                    addPartial(partials, AggregationFunction.SUMOFSQUARES, field);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Aggregation function " + entry.function() + " can't be computed incrementally");
+            }
+        }
+        return ImmutableList.copyOf(partials.values());
+    }
+
+    private static void addPartial(Map<String, AggregationSeries> partials, AggregationFunction function, String field) {
+        final String id = String.format(Locale.ROOT, "partial-%s-%s", function.toString().toLowerCase(Locale.ROOT), field == null ? "" : field);
+        partials.computeIfAbsent(id, key -> AggregationSeries.builder()
+                .id(key)
+                .function(function)
+                .field(field)
+                .build());
+    }
+
+    // Changes to the event definition or the streams in the parameters invalidate the stored slices
+    private String fingerprint() {
+        return config.toString() + parameters.streams();
+    }
+}
@@ -16,10 +16,14 @@
  */
 package org.graylog.plugins.map.geoip;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
 import com.google.common.net.InetAddresses;
 import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.model.CityResponse;
@@ -36,26 +40,48 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
 public class GeoIpResolverEngine {
     private static final Logger LOG = LoggerFactory.getLogger(GeoIpResolverEngine.class);
 
+    // The longest textual IP address is an IPv6 address with an embedded IPv4 address
+    private static final int MAX_IP_LENGTH = 45;
+    private static final long IP_CACHE_SIZE = 100_000L;
+    private static final long RECORD_CACHE_SIZE = 100_000L;
+
     private final Timer resolveTime;
+    private final Meter cacheHits;
+    private final Cache<String, Optional<GeoLocationInformation>> ipCache = CacheBuilder.newBuilder()
+            .maximumSize(IP_CACHE_SIZE)
+            .build();
+    // All addresses of a network share the same data record, which makes this cache a lot more effective than the
+    // IP cache for addresses which haven't been seen before
+    private final Cache<Long, Optional<GeoLocationInformation>> recordCache = CacheBuilder.newBuilder()
+            .maximumSize(RECORD_CACHE_SIZE)
+            .build();
     private DatabaseReader databaseReader;
+    private MmdbSearchTree searchTree;
     private boolean enabled;
 
 
     public GeoIpResolverEngine(GeoIpResolverConfig config, MetricRegistry metricRegistry) {
         this.resolveTime = metricRegistry.timer(name(GeoIpResolverEngine.class, "resolveTime"));
+        this.cacheHits = metricRegistry.meter(name(GeoIpResolverEngine.class, "cacheHits"));
 
         try {
             final File database = new File(config.dbPath());
             if (Files.exists(database.toPath())) {
                 this.databaseReader = new DatabaseReader.Builder(database).build();
+                this.searchTree = openSearchTree(database);
                 this.enabled = config.enabled();
             } else {
                 LOG.warn("GeoIP database file does not exist: {}", config.dbPath());
@@ -67,57 +93,133 @@ public class GeoIpResolverEngine {
         }
     }
 
+    @Nullable
+    private static MmdbSearchTree openSearchTree(File database) {
+        try {
+            return new MmdbSearchTree(database.toPath());
+        } catch (IOException | RuntimeException e) {
+            // Not fatal, we can still look up every address with the database reader
+            LOG.warn("Could not read search tree of GeoIP database {}, not caching locations by network", database, e);
+            return null;
+        }
+    }
+
     public boolean filter(Message message) {
+        filter(Collections.singletonList(message));
+        return false;
+    }
+
+    /**
+     * Resolves the IP addresses in all fields of the given messages. Every distinct value is only resolved once per
+     * batch.
+     */
+    public void filter(Iterable<Message> messages) {
         if (!enabled) {
-            return false;
+            return;
         }
 
-        for (Map.Entry<String, Object> field : message.getFields().entrySet()) {
-            final String key = field.getKey();
-            if (!key.startsWith(Message.INTERNAL_FIELD_PREFIX)) {
-                final Optional<GeoLocationInformation> geoLocationInformation = extractGeoLocationInformation(field.getValue());
-                geoLocationInformation.ifPresent(locationInformation -> {
-                    // We will store the coordinates as a "lat,long" string
-                    message.addField(key + "_geolocation", locationInformation.latitude() + "," + locationInformation.longitude());
-                    message.addField(key + "_country_code", locationInformation.countryIsoCode());
-                    message.addField(key + "_city_name", locationInformation.cityName());
-                });
+        final Map<Object, Optional<GeoLocationInformation>> resolved = new HashMap<>();
+        final List<Map.Entry<String, GeoLocationInformation>> locations = new ArrayList<>();
+        for (Message message : messages) {
+            for (Map.Entry<String, Object> field : message.getFields().entrySet()) {
+                final String key = field.getKey();
+                if (!key.startsWith(Message.INTERNAL_FIELD_PREFIX)) {
+                    final Object value = field.getValue();
+                    final Optional<GeoLocationInformation> geoLocationInformation = value instanceof String || value instanceof InetAddress
+                            ? resolved.computeIfAbsent(value, this::extractGeoLocationInformation)
+                            : Optional.empty();
+                    geoLocationInformation.ifPresent(locationInformation -> locations.add(Maps.immutableEntry(key, locationInformation)));
+                }
             }
-        }
 
-        return false;
+            // Add the fields after iterating over them
+            for (Map.Entry<String, GeoLocationInformation> location : locations) {
+                final String key = location.getKey();
+                final GeoLocationInformation locationInformation = location.getValue();
+                // We will store the coordinates as a "lat,long" string
+                message.addField(key + "_geolocation", locationInformation.latitude() + "," + locationInformation.longitude());
+                message.addField(key + "_country_code", locationInformation.countryIsoCode());
+                message.addField(key + "_city_name", locationInformation.cityName());
+            }
+            locations.clear();
+        }
     }
 
     @VisibleForTesting
     Optional<GeoLocationInformation> extractGeoLocationInformation(Object fieldValue) {
-        final InetAddress ipAddress;
         if (fieldValue instanceof InetAddress) {
-            ipAddress = (InetAddress) fieldValue;
+            return resolve((InetAddress) fieldValue);
         } else if (fieldValue instanceof String) {
-            ipAddress = getIpFromFieldValue((String) fieldValue);
-        } else {
-            ipAddress = null;
+            final String value = ((String) fieldValue).trim();
+            if (!looksLikeIp(value)) {
+                return Optional.empty();
+            }
+            final Optional<GeoLocationInformation> cached = ipCache.getIfPresent(value);
+            if (cached != null) {
+                cacheHits.mark();
+                return cached;
+            }
+            final InetAddress ipAddress = getIpFromFieldValue(value);
+            final Optional<GeoLocationInformation> geoLocationInformation = ipAddress == null ? Optional.empty() : resolve(ipAddress);
+            ipCache.put(value, geoLocationInformation);
+            return geoLocationInformation;
         }
 
-        GeoLocationInformation geoLocationInformation = null;
-        if (ipAddress != null) {
-            try (Timer.Context ignored = resolveTime.time()) {
-                final CityResponse response = databaseReader.city(ipAddress);
-                final Location location = response.getLocation();
-                final Country country = response.getCountry();
-                final City city = response.getCity();
-
-                geoLocationInformation = GeoLocationInformation.create(
-                        location.getLatitude(), location.getLongitude(),
-                        country.getGeoNameId() != null ? country.getIsoCode() : "N/A",
-                        city.getGeoNameId() != null ? city.getName() : "N/A" // calling to .getName() may throw a NPE
-                );
-            } catch (Exception e) {
-                LOG.debug("Could not get location from IP {}", ipAddress.getHostAddress(), e);
+        return Optional.empty();
+    }
+
+    private Optional<GeoLocationInformation> resolve(InetAddress ipAddress) {
+        try (Timer.Context ignored = resolveTime.time()) {
+            if (searchTree == null) {
+                return lookup(ipAddress);
             }
+            final long record = searchTree.lookup(ipAddress);
+            if (record == MmdbSearchTree.NOT_FOUND) {
+                return Optional.empty();
+            }
+            return recordCache.get(record, () -> lookup(ipAddress));
+        } catch (ExecutionException e) {
+            LOG.debug("Could not get location from IP {}", ipAddress.getHostAddress(), e);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<GeoLocationInformation> lookup(InetAddress ipAddress) {
+        try {
+            final CityResponse response = databaseReader.city(ipAddress);
+            final Location location = response.getLocation();
+            final Country country = response.getCountry();
+            final City city = response.getCity();
+
+            return Optional.of(GeoLocationInformation.create(
+                    location.getLatitude(), location.getLongitude(),
+                    country.getGeoNameId() != null ? country.getIsoCode() : "N/A",
+                    city.getGeoNameId() != null ? city.getName() : "N/A" // calling to .getName() may throw a NPE
+            ));
+        } catch (Exception e) {
+            LOG.debug("Could not get location from IP {}", ipAddress.getHostAddress(), e);
+            return Optional.empty();
         }
+    }
 
-        return Optional.ofNullable(geoLocationInformation);
+    /**
+     * Cheap check to avoid parsing (and the exception thrown for) field values which can't be IP addresses.
+     */
+    private static boolean looksLikeIp(String value) {
+        final int length = value.length();
+        if (length < 2 || length > MAX_IP_LENGTH) {
+            return false;
+        }
+        boolean hasSeparator = false;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == '.' || c == ':') {
+                hasSeparator = true;
+            } else if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return hasSeparator;
     }
 
     @Nullable
@@ -0,0 +1,284 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.map.geoip;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped lookup in the binary search tree of a MaxMind DB file.
+ * <p>
+ * The search tree of a MaxMind DB is a bitwise prefix trie over IPv4 or IPv6 addresses, IPv4 addresses are stored
+ * below {@code ::/96} in IPv6 databases. A lookup only walks the trie and returns the pointer of the data record the
+ * network of an address refers to, without decoding the record itself. All addresses of a network share the same
+ * record, which allows caching decoded records by their pointer.
+ *
+ * @see <a href="https://maxmind.github.io/MaxMind-DB/">MaxMind DB File Format Specification</a>
+ */
+public class MmdbSearchTree {
+    public static final long NOT_FOUND = -1L;
+
+    private static final byte[] METADATA_START_MARKER = {(byte) 0xAB, (byte) 0xCD, (byte) 0xEF,
+            'M', 'a', 'x', 'M', 'i', 'n', 'd', '.', 'c', 'o', 'm'};
+    // The metadata section is at most 128KiB large
+    private static final int MAX_METADATA_SIZE = 128 * 1024;
+
+    private static final int TYPE_EXTENDED = 0;
+    private static final int TYPE_POINTER = 1;
+    private static final int TYPE_UTF8_STRING = 2;
+    private static final int TYPE_UINT16 = 5;
+    private static final int TYPE_UINT32 = 6;
+    private static final int TYPE_MAP = 7;
+    private static final int TYPE_UINT64 = 9;
+    private static final int TYPE_ARRAY = 11;
+    private static final int TYPE_BOOLEAN = 14;
+    private static final int TYPE_FLOAT = 15;
+
+    private final ByteBuffer buffer;
+    private final long nodeCount;
+    private final int recordSize;
+    private final int ipVersion;
+    private final long ipv4Start;
+
+    public MmdbSearchTree(Path database) throws IOException {
+        try (FileChannel channel = FileChannel.open(database, StandardOpenOption.READ)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        final Metadata metadata = readMetadata(buffer);
+        this.nodeCount = metadata.nodeCount;
+        this.recordSize = metadata.recordSize;
+        this.ipVersion = metadata.ipVersion;
+        if (recordSize != 24 && recordSize != 28 && recordSize != 32) {
+            throw new IOException("Unsupported record size " + recordSize + " in MaxMind DB " + database);
+        }
+        if (nodeCount * recordSize / 4 > buffer.capacity()) {
+            throw new IOException("Invalid node count " + nodeCount + " in MaxMind DB " + database);
+        }
+        this.ipv4Start = ipVersion == 6 ? walk(0L, new byte[12], 96) : 0L;
+    }
+
+    /**
+     * Returns the pointer of the data record for the given address, or {@link #NOT_FOUND} if the database doesn't
+     * contain the address. Pointers are only comparable within the same database.
+     */
+    public long lookup(InetAddress address) {
+        final byte[] bytes = address.getAddress();
+        final long node;
+        if (bytes.length == 16 && ipVersion == 4) {
+            // IPv6 addresses can't be found in an IPv4 database
+            return NOT_FOUND;
+        } else if (address instanceof Inet4Address) {
+            node = walk(ipv4Start, bytes, 32);
+        } else {
+            node = walk(0L, bytes, 128);
+        }
+        return node > nodeCount ? node : NOT_FOUND;
+    }
+
+    private long walk(long startNode, byte[] address, int bitCount) {
+        long node = startNode;
+        for (int i = 0; i < bitCount && node < nodeCount; i++) {
+            final int bit = (address[i >> 3] >> (7 - (i & 7))) & 1;
+            node = readRecord(node, bit);
+        }
+        return node;
+    }
+
+    @VisibleForTesting
+    long readRecord(long node, int side) {
+        final int nodeBytes = recordSize / 4;
+        final int offset = Math.toIntExact(node * nodeBytes);
+        switch (recordSize) {
+            case 24:
+                return readUnsigned(offset + side * 3, 3);
+            case 28:
+                final int middle = buffer.get(offset + 3) & 0xFF;
+                if (side == 0) {
+                    return ((long) (middle & 0xF0) << 20) | readUnsigned(offset, 3);
+                }
+                return ((long) (middle & 0x0F) << 24) | readUnsigned(offset + 4, 3);
+            default:
+                return readUnsigned(offset + side * 4, 4);
+        }
+    }
+
+    private long readUnsigned(int offset, int length) {
+        long value = 0L;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buffer.get(offset + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static Metadata readMetadata(ByteBuffer buffer) throws IOException {
+        final int start = findMetadataStart(buffer);
+        if (start < 0) {
+            throw new IOException("Couldn't find metadata section of MaxMind DB");
+        }
+
+        final Metadata metadata = new Metadata();
+        final Decoder decoder = new Decoder(buffer, start);
+        final int size = decoder.expectMap();
+        for (int i = 0; i < size; i++) {
+            final String key = decoder.readString();
+            switch (key) {
+                case "node_count":
+                    metadata.nodeCount = decoder.readUnsigned();
+                    break;
+                case "record_size":
+                    metadata.recordSize = (int) decoder.readUnsigned();
+                    break;
+                case "ip_version":
+                    metadata.ipVersion = (int) decoder.readUnsigned();
+                    break;
+                default:
+                    decoder.skip();
+            }
+        }
+        if (metadata.nodeCount <= 0 || metadata.recordSize <= 0 || (metadata.ipVersion != 4 && metadata.ipVersion != 6)) {
+            throw new IOException("Incomplete metadata in MaxMind DB");
+        }
+        return metadata;
+    }
+
+    private static int findMetadataStart(ByteBuffer buffer) {
+        final int limit = Math.max(0, buffer.capacity() - MAX_METADATA_SIZE);
+        for (int i = buffer.capacity() - METADATA_START_MARKER.length; i >= limit; i--) {
+            int j = 0;
+            while (j < METADATA_START_MARKER.length && buffer.get(i + j) == METADATA_START_MARKER[j]) {
+                j++;
+            }
+            if (j == METADATA_START_MARKER.length) {
+                return i + METADATA_START_MARKER.length;
+            }
+        }
+        return -1;
+    }
+
+    private static class Metadata {
+        private long nodeCount;
+        private int recordSize;
+        private int ipVersion;
+    }
+
+    /**
+     * Minimal decoder for the data section format, only supporting what is needed to read the metadata.
+     */
+    private static class Decoder {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Decoder(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int expectMap() throws IOException {
+            final int[] control = readControl();
+            if (control[0] != TYPE_MAP) {
+                throw new IOException("Expected map in MaxMind DB metadata but got type " + control[0]);
+            }
+            return control[1];
+        }
+
+        String readString() throws IOException {
+            final int[] control = readControl();
+            if (control[0] != TYPE_UTF8_STRING) {
+                throw new IOException("Expected string in MaxMind DB metadata but got type " + control[0]);
+            }
+            final byte[] bytes = new byte[control[1]];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(position++);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long readUnsigned() throws IOException {
+            final int[] control = readControl();
+            if (control[0] != TYPE_UINT16 && control[0] != TYPE_UINT32 && control[0] != TYPE_UINT64) {
+                throw new IOException("Expected unsigned integer in MaxMind DB metadata but got type " + control[0]);
+            }
+            long value = 0L;
+            for (int i = 0; i < control[1]; i++) {
+                value = (value << 8) | (buffer.get(position++) & 0xFF);
+            }
+            return value;
+        }
+
+        void skip() throws IOException {
+            final int[] control = readControl();
+            switch (control[0]) {
+                case TYPE_MAP:
+                    for (int i = 0; i < control[1]; i++) {
+                        skip();
+                        skip();
+                    }
+                    break;
+                case TYPE_ARRAY:
+                    for (int i = 0; i < control[1]; i++) {
+                        skip();
+                    }
+                    break;
+                case TYPE_POINTER:
+                    // the pointer value has already been consumed by readControl()
+                case TYPE_BOOLEAN:
+                    // booleans store their value in the size
+                    break;
+                default:
+                    position += control[1];
+            }
+        }
+
+        /**
+         * Returns the type and the payload size of the next field.
+         */
+        private int[] readControl() throws IOException {
+            final int control = buffer.get(position++) & 0xFF;
+            int type = control >>> 5;
+            if (type == TYPE_POINTER) {
+                final int pointerSize = ((control >>> 3) & 0x3) + 1;
+                position += pointerSize;
+                return new int[]{TYPE_POINTER, 0};
+            }
+            if (type == TYPE_EXTENDED) {
+                type = 7 + (buffer.get(position++) & 0xFF);
+                if (type < 8 || type > TYPE_FLOAT) {
+                    throw new IOException("Invalid extended type " + type + " in MaxMind DB metadata");
+                }
+            }
+            int size = control & 0x1F;
+            if (size >= 29) {
+                final int bytes = size - 28;
+                int extra = 0;
+                for (int i = 0; i < bytes; i++) {
+                    extra = (extra << 8) | (buffer.get(position++) & 0xFF);
+                }
+                size = size == 29 ? 29 + extra : size == 30 ? 285 + extra : 65821 + extra;
+            }
+            return new int[]{type, size};
+        }
+    }
+}
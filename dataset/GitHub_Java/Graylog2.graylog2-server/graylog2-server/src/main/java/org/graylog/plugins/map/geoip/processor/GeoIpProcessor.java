@@ -22,7 +22,6 @@ import com.google.common.eventbus.Subscribe;
 import org.graylog.plugins.map.config.GeoIpResolverConfig;
 import org.graylog.plugins.map.geoip.GeoIpResolverEngine;
 import org.graylog2.cluster.ClusterConfigChangedEvent;
-import org.graylog2.plugin.Message;
 import org.graylog2.plugin.Messages;
 import org.graylog2.plugin.cluster.ClusterConfigService;
 import org.graylog2.plugin.messageprocessors.MessageProcessor;
@@ -76,9 +75,8 @@ public class GeoIpProcessor implements MessageProcessor {
 
     @Override
     public Messages process(Messages messages) {
-        for (Message message : messages) {
-            filterEngine.get().filter(message);
-        }
+        // Resolve the whole batch at once, so every distinct address is only looked up once
+        filterEngine.get().filter(messages);
 
         return messages;
     }
@@ -0,0 +1,145 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.assistedinject.Assisted;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.graylog.plugins.netflow.flows.FlowException;
+import org.graylog.plugins.netflow.flows.cflow.NetFlow;
+import org.graylog.plugins.netflow.flows.cflow.NetFlowPacket;
+import org.graylog.plugins.netflow.flows.cflow.NetFlowV5Packet;
+import org.graylog.plugins.netflow.v9.CompiledFlowDecoder;
+import org.graylog.plugins.netflow.v9.NetFlowV9FieldTypeRegistry;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.configuration.ConfigurationRequest;
+import org.graylog2.plugin.inputs.annotations.Codec;
+import org.graylog2.plugin.inputs.annotations.ConfigClass;
+import org.graylog2.plugin.inputs.annotations.FactoryClass;
+import org.graylog2.plugin.inputs.codecs.AbstractCodec;
+import org.graylog2.plugin.inputs.codecs.MultiMessageCodec;
+import org.graylog2.plugin.inputs.transports.NettyTransport;
+import org.graylog2.plugin.journal.RawMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Codec(name = "netflow", displayName = "NetFlow")
+public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
+    private static final Logger LOG = LoggerFactory.getLogger(NetFlowCodec.class);
+
+    /**
+     * Marks a packet which is decoded as it was received, i.e. NetFlow v5.
+     */
+    static final byte PASSTHROUGH_MARKER = 0x00;
+    /**
+     * Marks the length-prefixed NetFlow v9 and IPFIX packets written by {@link NetflowV9CodecAggregator}.
+     */
+    static final byte ORDERED_V9_MARKER = 0x01;
+
+    private final CompiledFlowDecoder flowDecoder;
+
+    @Inject
+    protected NetFlowCodec(@Assisted Configuration configuration, NetFlowV9FieldTypeRegistry typeRegistry, MetricRegistry metricRegistry) {
+        super(configuration);
+        // keeps the compiled templates of the exporters sending to this input
+        this.flowDecoder = new CompiledFlowDecoder(typeRegistry, metricRegistry);
+    }
+
+    @Nullable
+    @Override
+    public Message decode(@Nonnull RawMessage rawMessage) {
+        throw new UnsupportedOperationException("MultiMessageCodec " + getClass() + " does not support decode()");
+    }
+
+    @Nullable
+    @Override
+    public Collection<Message> decodeMessages(@Nonnull RawMessage rawMessage) {
+        final byte[] payload = rawMessage.getPayload();
+        if (payload.length < 1) {
+            return null;
+        }
+        final InetSocketAddress sender = rawMessage.getRemoteAddress() != null ? rawMessage.getRemoteAddress().getInetSocketAddress() : null;
+        final ByteBuf buf = Unpooled.wrappedBuffer(payload, 1, payload.length - 1);
+
+        try {
+            switch (payload[0]) {
+                case ORDERED_V9_MARKER:
+                    return decodeFlowPackets(buf, sender);
+                case PASSTHROUGH_MARKER:
+                    return decodeV5Packet(buf, sender, rawMessage);
+                default:
+                    LOG.warn("Invalid NetFlow message type {}", payload[0]);
+                    return null;
+            }
+        } catch (FlowException e) {
+            LOG.error("Error parsing NetFlow packet", e);
+            return null;
+        }
+    }
+
+    private List<Message> decodeFlowPackets(ByteBuf buf, @Nullable InetSocketAddress sender) {
+        final List<Message> messages = new ArrayList<>();
+        while (buf.readableBytes() >= 4) {
+            final int length = buf.readInt();
+            if (length > buf.readableBytes()) {
+                LOG.warn("Truncated NetFlow v9/IPFIX message from {}", sender);
+                break;
+            }
+            // the records are read straight from the journal payload
+            messages.addAll(flowDecoder.decode(buf.readSlice(length), sender == null ? null : sender.getAddress()));
+        }
+        return messages;
+    }
+
+    private static List<Message> decodeV5Packet(ByteBuf buf, @Nullable InetSocketAddress sender, RawMessage rawMessage) throws FlowException {
+        final NetFlowPacket packet = NetFlowV5Packet.parse(sender, buf);
+        final List<Message> messages = new ArrayList<>(packet.getFlows().size());
+        for (NetFlow flow : packet.getFlows()) {
+            messages.add(flow.toMessage(rawMessage));
+        }
+        return messages;
+    }
+
+    @FactoryClass
+    public interface Factory extends AbstractCodec.Factory<NetFlowCodec> {
+        @Override
+        NetFlowCodec create(Configuration configuration);
+
+        @Override
+        Config getConfig();
+    }
+
+    @ConfigClass
+    public static class Config extends AbstractCodec.Config {
+        @Override
+        public void overrideDefaultValues(@Nonnull ConfigurationRequest cr) {
+            if (cr.containsField(NettyTransport.CK_PORT)) {
+                cr.getField(NettyTransport.CK_PORT).setDefaultValue(2055);
+            }
+        }
+    }
+}
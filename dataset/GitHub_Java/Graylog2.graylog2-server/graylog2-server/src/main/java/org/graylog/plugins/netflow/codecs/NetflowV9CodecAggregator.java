@@ -20,33 +20,48 @@ import com.github.joschi.jadconfig.util.Size;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
-import com.google.protobuf.ByteString;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
-import org.graylog.plugins.netflow.v9.NetFlowV9Journal;
-import org.graylog.plugins.netflow.v9.NetFlowV9Parser;
-import org.graylog.plugins.netflow.v9.RawNetFlowV9Packet;
 import org.graylog2.shared.utilities.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
-import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.IPFIX;
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.IPFIX_HEADER_LENGTH;
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.IPFIX_OPTIONS_TEMPLATE_SET;
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.IPFIX_TEMPLATE_SET;
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.MIN_DATA_SET_ID;
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.NETFLOW_V9;
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.V9_HEADER_LENGTH;
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.V9_OPTIONS_TEMPLATE_SET;
+import static org.graylog.plugins.netflow.v9.CompiledFlowDecoder.V9_TEMPLATE_SET;
+
 /**
- * For Netflow v9 packets we want to prepend the corresponding flow template.
- * If we don't have that template yet, we consider the flow packet to be incomplete and continue to wait for the template.
+ * For Netflow v9 and IPFIX data sets we want to prepend the corresponding templates.
+ * If we don't have a template yet, we keep the data set and continue to wait for the template.
+ * <p>
+ * The result contains one or more self-contained packets, each prefixed with its length: the original packet header,
+ * the templates used by the packet and its data sets. The codec decodes them with
+ * {@link org.graylog.plugins.netflow.v9.CompiledFlowDecoder}, which only compiles a template again if it changed.
+ * Templates are kept per source IP address and source ID, exporters may use changing source ports.
  * TODO consider sharing seen templates between nodes in the cluster to minimize wait time
  */
 public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
@@ -55,21 +70,23 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
     private static final ByteBuf PASSTHROUGH_MARKER = Unpooled.wrappedBuffer(new byte[]{NetFlowCodec.PASSTHROUGH_MARKER});
 
     private final Cache<TemplateKey, TemplateBytes> templateCache;
-    private final Cache<TemplateKey, Queue<PacketBytes>> packetCache;
+    private final Cache<ExporterKey, Queue<PendingSet>> pendingCache;
 
     @Inject
     public NetflowV9CodecAggregator() {
         // TODO customize
+        // exporters refresh their templates periodically, so templates of exporters which went away can expire
         this.templateCache = CacheBuilder.newBuilder()
                 .maximumSize(5000)
+                .expireAfterAccess(1, TimeUnit.HOURS)
                 .removalListener(notification -> LOG.debug("Removed {} from template cache for reason {}", notification.getKey(), notification.getCause()))
                 .recordStats()
                 .build();
-        this.packetCache = CacheBuilder.newBuilder()
+        this.pendingCache = CacheBuilder.newBuilder()
                 .expireAfterWrite(1, TimeUnit.MINUTES)
                 .maximumWeight(Size.megabytes(1).toBytes())
-                .removalListener((RemovalListener<TemplateKey, Queue<PacketBytes>>) notification -> LOG.debug("Removed {} from packet cache for reason {}", notification.getKey(), notification.getCause()))
-                .weigher((key, value) -> value.stream().map(PacketBytes::readableBytes).reduce(0, Integer::sum))
+                .removalListener((RemovalListener<ExporterKey, Queue<PendingSet>>) notification -> LOG.debug("Removed {} from pending data set cache for reason {}", notification.getKey(), notification.getCause()))
+                .weigher((ExporterKey key, Queue<PendingSet> value) -> value.stream().mapToInt(PendingSet::readableBytes).sum())
                 .recordStats()
                 .build();
     }
@@ -82,207 +99,343 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
             return new Result(null, false);
         }
 
-        // This thing is using *WAY* too many copies. :'(
         try {
-            final int netFlowVersion = buf.getShort(0);
+            final int start = buf.readerIndex();
+            final int version = buf.getUnsignedShort(start);
 
-            // only netflow v9 needs special treatment, everything else we just pass on
-            if (netFlowVersion != 9) {
+            // only netflow v9 and IPFIX need special treatment, everything else we just pass on
+            if (version != NETFLOW_V9 && version != IPFIX) {
                 return new Result(Unpooled.copiedBuffer(PASSTHROUGH_MARKER, buf), true);
             }
 
-            // for NetFlow V9 we check that we have previously received template flows for each data flow.
-            // if we do not have them yet, buffer the data flows until we receive a matching template
-            // since we do not want to do that again in the codec, we will violate the RFC when putting together
-            // the packets again:
-            // the codec can, contrary to https://tools.ietf.org/html/rfc3954#section-9, assume that for each packet/RawMessage
-            // the packet contains all necessary templates. This greatly simplifies parsing at the expense of larger RawMessages.
-
-            // The rest of the code works as follows:
-            // We shallowly parse the incoming packet, extracting all flows into ByteBufs.
-            // We then cache the raw bytes for template flows, keyed by remote ip and source id. These are used to reassemble the packet for the journal later.
-            // For each netflow v9 packet that we do not have a matching template for yet, we put it into a queue.
-            // Once the template flow arrives we go back through the queue and remove now matching packets for further processing.
-            if (LOG.isTraceEnabled()) {
-                LOG.trace("Received V9 packet:\n{}", ByteBufUtil.prettyHexDump(buf));
+            // We check that we have previously received templates for each data set.
+            // If we do not have them yet, we keep the data set until we receive a matching template.
+            // Since we do not want to do that again in the codec, we will violate the RFC when putting together
+            // the packets again: the codec can, contrary to https://tools.ietf.org/html/rfc3954#section-9, assume
+            // that each packet contains all necessary templates.
+            final int headerLength = version == NETFLOW_V9 ? V9_HEADER_LENGTH : IPFIX_HEADER_LENGTH;
+            int end = buf.writerIndex();
+            if (version == IPFIX) {
+                end = Math.min(end, start + buf.getUnsignedShort(start + 2));
             }
-            final RawNetFlowV9Packet rawNetFlowV9Packet = NetFlowV9Parser.parsePacketShallow(buf);
-            final long sourceId = rawNetFlowV9Packet.header().sourceId();
-
-            LOG.trace("Incoming NetFlow V9 packet contains: {}", rawNetFlowV9Packet);
-
-            // register templates and check for buffered flows
-            for (Map.Entry<Integer, byte[]> template : rawNetFlowV9Packet.templates().entrySet()) {
-                final int templateId = template.getKey();
-                final byte[] bytes = template.getValue();
-
-                final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes templateBytes = new TemplateBytes(bytes, false);
-                templateCache.put(templateKey, templateBytes);
+            if (end - start < headerLength) {
+                return new Result(null, false);
             }
-
-            final Map.Entry<Integer, byte[]> optionTemplate = rawNetFlowV9Packet.optionTemplate();
-            if (optionTemplate != null) {
-                final int templateId = optionTemplate.getKey();
-                final byte[] bytes = optionTemplate.getValue();
-
-                final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes templateBytes = new TemplateBytes(bytes, true);
-
-                templateCache.put(templateKey, templateBytes);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Received v{} packet:\n{}", version, ByteBufUtil.prettyHexDump(buf));
             }
 
-            // this list of flows to return in the result
-            // Using ByteBuf here to enable de-duplication with the hash set.
-            final Set<ByteBuf> packetsToSend = new HashSet<>();
-
-            // if we have new templates, figure out which buffered packets template requirements are now satisfied
-            if (!rawNetFlowV9Packet.templates().isEmpty() || rawNetFlowV9Packet.optionTemplate() != null) {
-                final Set<Integer> knownTemplateIds = new HashSet<>();
-                for (TemplateKey templateKey : templateCache.asMap().keySet()) {
-                    if (templateKey.getRemoteAddress() == remoteAddress && templateKey.getSourceId() == sourceId) {
-                        final Integer templateId = templateKey.getTemplateId();
-                        knownTemplateIds.add(templateId);
-                    }
+            final long sourceId = buf.getUnsignedInt(start + headerLength - 4);
+            final ExporterKey exporter = new ExporterKey(addressOf(remoteAddress), sourceId);
+
+            // register templates and collect the data sets, the bytes are only copied into the result
+            boolean newTemplates = false;
+            final List<PendingSet> dataSets = new ArrayList<>();
+            int position = start + headerLength;
+            while (position + 4 <= end) {
+                final int setId = buf.getUnsignedShort(position);
+                final int setLength = buf.getUnsignedShort(position + 2);
+                if (setLength < 4 || position + setLength > end) {
+                    LOG.debug("Invalid set length {} of set {} from {}, discarding rest of packet", setLength, setId, remoteAddress);
+                    break;
                 }
+                if (isTemplateSet(version, setId)) {
+                    newTemplates |= registerTemplates(buf, position, position + setLength, version, setId, exporter);
+                } else if (setId >= MIN_DATA_SET_ID) {
+                    dataSets.add(new PendingSet(buf, start, headerLength, position, setLength));
+                }
+                position += setLength;
+            }
 
-                final Queue<PacketBytes> bufferedPackets = packetCache.getIfPresent(TemplateKey.idForExporter(remoteAddress, sourceId));
-                if (bufferedPackets != null) {
-                    final List<PacketBytes> tempQueue = new ArrayList<>(bufferedPackets.size());
-                    PacketBytes previousPacket;
-                    int addedPackets = 0;
-                    while (null != (previousPacket = bufferedPackets.poll())) {
-                        // are all templates the packet references there?
-                        if (knownTemplateIds.containsAll(previousPacket.getUsedTemplates())) {
-                            packetsToSend.add(Unpooled.wrappedBuffer(previousPacket.getBytes()));
-                            addedPackets++;
+            // this list of packets to return in the result, in the order the data sets arrived
+            final List<List<PendingSet>> packetsToSend = new ArrayList<>();
+
+            // if we have new templates, figure out which buffered data sets are now complete
+            if (newTemplates) {
+                final Queue<PendingSet> bufferedSets = pendingCache.getIfPresent(exporter);
+                if (bufferedSets != null) {
+                    final List<PendingSet> tempQueue = new ArrayList<>(bufferedSets.size());
+                    PendingSet previousSet;
+                    int addedSets = 0;
+                    while (null != (previousSet = bufferedSets.poll())) {
+                        if (templateCache.getIfPresent(new TemplateKey(exporter, previousSet.templateId())) != null) {
+                            // buffered sets keep their own header
+                            packetsToSend.add(Collections.singletonList(previousSet));
+                            addedSets++;
                         } else {
-                            tempQueue.add(previousPacket);
+                            tempQueue.add(previousSet);
                         }
                     }
-                    LOG.debug("Processing {} previously buffered packets, {} packets require more templates.", addedPackets, tempQueue.size());
-                    // if we couldn't process some of the buffered packets, add them back to the queue to wait for more templates to come in
-                    if (!tempQueue.isEmpty()) {
-                        bufferedPackets.addAll(tempQueue);
-                    }
+                    LOG.debug("Processing {} previously buffered data sets, {} data sets require more templates.", addedSets, tempQueue.size());
+                    // if we couldn't process some of the buffered data sets, add them back to the queue to wait for more templates to come in
+                    bufferedSets.addAll(tempQueue);
                 }
             }
 
-            boolean packetBuffered = false;
-
-            // the list of template keys to return in the result
-            final Set<TemplateKey> templates = new HashSet<>();
-
-            // find out which templates we need to include for the current packet
-            for (int templateId : rawNetFlowV9Packet.usedTemplates()) {
-                final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes template = templateCache.getIfPresent(templateKey);
-
-                if (template == null) {
-                    // we don't have the template, this packet needs to be buffered until we receive the templates
+            final List<PendingSet> currentSets = new ArrayList<>(dataSets.size());
+            for (PendingSet dataSet : dataSets) {
+                if (templateCache.getIfPresent(new TemplateKey(exporter, dataSet.templateId())) != null) {
+                    currentSets.add(dataSet);
+                } else {
+                    // we don't have the template, only this data set needs to wait for it
                     try {
-                        final TemplateKey newTemplateKey = TemplateKey.idForExporter(remoteAddress, sourceId);
-                        final Queue<PacketBytes> bufferedPackets = packetCache.get(newTemplateKey, ConcurrentLinkedQueue::new);
-                        final byte[] bytes = ByteBufUtil.getBytes(buf);
-                        bufferedPackets.add(new PacketBytes(bytes, rawNetFlowV9Packet.usedTemplates()));
-                        packetBuffered = true;
+                        pendingCache.get(exporter, ConcurrentLinkedQueue::new).add(dataSet.copy());
                     } catch (ExecutionException ignored) {
                         // the loader cannot fail, it only creates a new queue
                     }
-                } else {
-                    // include the template in our result
-                    templates.add(templateKey);
-
-                    // .slice is enough here, because we convert it into a byte array when creating the result below
-                    // no need to copy or retain anything, the buffer only lives as long as this method's scope
-                    final ByteBuf packet = buf.slice();
-                    packetsToSend.add(packet);
                 }
             }
-
-            // if we have buffered this packet, don't try to process it now. we still need all the templates for it
-            if (packetBuffered) {
-                return new Result(null, true);
+            if (!currentSets.isEmpty()) {
+                packetsToSend.add(currentSets);
             }
 
-            // if we didn't buffer anything but also didn't have anything queued that can be processed, don't proceed.
+            // if we didn't have anything that can be processed, don't proceed.
             if (packetsToSend.isEmpty()) {
                 return new Result(null, true);
             }
 
-            // add the used templates and option template to the journal message builder
-            final NetFlowV9Journal.RawNetflowV9.Builder builder = NetFlowV9Journal.RawNetflowV9.newBuilder();
-            for (TemplateKey templateKey : templates) {
-                final TemplateBytes templateBytes = templateCache.getIfPresent(templateKey);
-                if (templateBytes == null) {
-                    LOG.warn("Template {} expired while processing, discarding netflow packet", templateKey);
-                } else if (templateBytes.isOptionTemplate()) {
-                    LOG.debug("Writing options template flow {}", templateKey);
-                    final byte[] bytes = templateBytes.getBytes();
-                    builder.putOptionTemplate(1, ByteString.copyFrom(bytes));
+            final ByteBuf resultBuffer = Unpooled.buffer(buf.readableBytes() + 1).writeByte(NetFlowCodec.ORDERED_V9_MARKER);
+            for (List<PendingSet> packet : packetsToSend) {
+                if (!writePacket(resultBuffer, packet, exporter)) {
+                    LOG.warn("Template expired while processing, discarding netflow data set from {}", remoteAddress);
+                }
+            }
+            return new Result(resultBuffer, true);
+
+        } catch (Exception e) {
+            LOG.error("Unexpected failure while aggregating NetFlowV9/IPFIX packet, discarding packet.", ExceptionUtils.getRootCause(e));
+            return new Result(null, false);
+        }
+    }
+
+    @Nullable
+    private static InetAddress addressOf(SocketAddress remoteAddress) {
+        return remoteAddress instanceof InetSocketAddress ? ((InetSocketAddress) remoteAddress).getAddress() : null;
+    }
+
+    private static boolean isTemplateSet(int version, int setId) {
+        if (version == NETFLOW_V9) {
+            return setId == V9_TEMPLATE_SET || setId == V9_OPTIONS_TEMPLATE_SET;
+        }
+        return setId == IPFIX_TEMPLATE_SET || setId == IPFIX_OPTIONS_TEMPLATE_SET;
+    }
+
+    /**
+     * Caches the raw bytes of every template record in the set, handles IPFIX template withdrawals.
+     *
+     * @return {@code true} if the set contained at least one template
+     */
+    private boolean registerTemplates(ByteBuf buf, int start, int end, int version, int setId, ExporterKey exporter) {
+        boolean added = false;
+        int position = start + 4;
+        while (position + 4 <= end) {
+            final int templateId = buf.getUnsignedShort(position);
+            final int recordLength = templateRecordLength(buf, position, end, version, setId);
+            if (recordLength == 0) {
+                // template withdrawal, RFC 7011, section 8.1, using the set ID as template ID withdraws all templates
+                if (templateId == setId) {
+                    templateCache.asMap().keySet().removeIf(key -> key.exporter.equals(exporter));
                 } else {
-                    LOG.debug("Writing template {}", templateKey);
-                    final byte[] bytes = templateBytes.getBytes();
-                    builder.putTemplates(templateKey.getTemplateId(), ByteString.copyFrom(bytes));
+                    templateCache.invalidate(new TemplateKey(exporter, templateId));
                 }
+                position += 4;
+                continue;
             }
+            if (recordLength < 0) {
+                // padding or truncated
+                break;
+            }
+            templateCache.put(new TemplateKey(exporter, templateId), new TemplateBytes(setId, ByteBufUtil.getBytes(buf, position, recordLength)));
+            added = true;
+            position += recordLength;
+        }
+        return added;
+    }
 
-            // finally write out all the packets we had buffered as well as the current one
-            for (ByteBuf packetBuffer : packetsToSend) {
-                final byte[] bytes = ByteBufUtil.getBytes(packetBuffer);
-                final ByteString value = ByteString.copyFrom(bytes);
-                builder.addPackets(value);
+    /**
+     * @return the length of the template record, 0 for an IPFIX withdrawal and -1 for padding or truncated records
+     */
+    private static int templateRecordLength(ByteBuf buf, int start, int end, int version, int setId) {
+        final int templateId = buf.getUnsignedShort(start);
+        if (setId == V9_OPTIONS_TEMPLATE_SET) {
+            if (templateId < MIN_DATA_SET_ID || start + 6 > end) {
+                return -1;
             }
+            final int length = 6 + ((buf.getUnsignedShort(start + 2) + buf.getUnsignedShort(start + 4)) / 4) * 4;
+            return start + length <= end ? length : -1;
+        }
 
-            final byte[] bytes = builder.build().toByteArray();
-            final ByteBuf resultBuffer = Unpooled.buffer(bytes.length + 1)
-                    .writeByte(NetFlowCodec.ORDERED_V9_MARKER)
-                    .writeBytes(bytes);
-            return new Result(resultBuffer, true);
+        final int fieldCount = buf.getUnsignedShort(start + 2);
+        if (fieldCount == 0 && version == IPFIX) {
+            return 0;
+        }
+        if (templateId < MIN_DATA_SET_ID || fieldCount == 0) {
+            return -1;
+        }
+        int position = start + (setId == IPFIX_OPTIONS_TEMPLATE_SET ? 6 : 4);
+        for (int i = 0; i < fieldCount; i++) {
+            if (position + 4 > end) {
+                return -1;
+            }
+            final boolean enterprise = version == IPFIX && (buf.getUnsignedShort(position) & 0x8000) != 0;
+            position += enterprise ? 8 : 4;
+        }
+        return position <= end ? position - start : -1;
+    }
 
-        } catch (Exception e) {
-            LOG.error("Unexpected failure while aggregating NetFlowV9 packet, discarding packet.", ExceptionUtils.getRootCause(e));
-            return new Result(null, false);
+    /**
+     * Writes a length-prefixed packet consisting of the header, the templates and the data sets.
+     *
+     * @return {@code false} if a template expired in the meantime, the data sets are skipped then
+     */
+    private boolean writePacket(ByteBuf out, List<PendingSet> dataSets, ExporterKey exporter) {
+        // a template is written only once per packet, even if several data sets use it
+        final Map<Integer, TemplateBytes> templates = new LinkedHashMap<>();
+        for (PendingSet dataSet : dataSets) {
+            final TemplateBytes template = templateCache.getIfPresent(new TemplateKey(exporter, dataSet.templateId()));
+            if (template == null) {
+                return false;
+            }
+            templates.put(dataSet.templateId(), template);
+        }
+
+        final int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        final int packetStart = out.writerIndex();
+        final PendingSet first = dataSets.get(0);
+        out.writeBytes(first.buf, first.headerIndex, first.headerLength);
+        for (TemplateBytes template : templates.values()) {
+            out.writeShort(template.getSetId())
+                    .writeShort(4 + template.getBytes().length)
+                    .writeBytes(template.getBytes());
         }
+        for (PendingSet dataSet : dataSets) {
+            out.writeBytes(dataSet.buf, dataSet.setIndex, dataSet.setLength);
+        }
+
+        final int packetLength = out.writerIndex() - packetStart;
+        if (first.headerLength == IPFIX_HEADER_LENGTH) {
+            // the IPFIX header contains the length of the packet
+            out.setShort(packetStart + 2, packetLength);
+        }
+        out.setInt(lengthIndex, packetLength);
+        return true;
     }
 
     private static class TemplateBytes {
+        private final int setId;
         private final byte[] bytes;
-        private final boolean optionTemplate;
 
-        public TemplateBytes(byte[] bytes, boolean optionTemplate) {
+        public TemplateBytes(int setId, byte[] bytes) {
+            this.setId = setId;
             this.bytes = bytes;
-            this.optionTemplate = optionTemplate;
+        }
+
+        public int getSetId() {
+            return setId;
         }
 
         public byte[] getBytes() {
             return bytes;
         }
+    }
+
+    /**
+     * A data set and the header of the packet it arrived in. Only data sets which have to wait for their template are
+     * copied, all others reference the received packet.
+     */
+    private static class PendingSet {
+        private final ByteBuf buf;
+        private final int headerIndex;
+        private final int headerLength;
+        private final int setIndex;
+        private final int setLength;
+
+        PendingSet(ByteBuf buf, int headerIndex, int headerLength, int setIndex, int setLength) {
+            this.buf = buf;
+            this.headerIndex = headerIndex;
+            this.headerLength = headerLength;
+            this.setIndex = setIndex;
+            this.setLength = setLength;
+        }
+
+        int templateId() {
+            return buf.getUnsignedShort(setIndex);
+        }
 
-        public boolean isOptionTemplate() {
-            return optionTemplate;
+        int readableBytes() {
+            return headerLength + setLength;
+        }
+
+        PendingSet copy() {
+            final ByteBuf copy = Unpooled.buffer(headerLength + setLength)
+                    .writeBytes(buf, headerIndex, headerLength)
+                    .writeBytes(buf, setIndex, setLength);
+            return new PendingSet(copy, 0, headerLength, headerLength, setLength);
         }
     }
 
-    public static class PacketBytes {
-        private final byte[] bytes;
-        private final Set<Integer> usedTemplates;
+    private static final class ExporterKey {
+        private final InetAddress address;
+        private final long sourceId;
 
-        public PacketBytes(byte[] bytes, Set<Integer> usedTemplates) {
-            this.bytes = bytes;
-            this.usedTemplates = usedTemplates;
+        ExporterKey(InetAddress address, long sourceId) {
+            this.address = address;
+            this.sourceId = sourceId;
         }
 
-        public byte[] getBytes() {
-            return bytes;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final ExporterKey that = (ExporterKey) o;
+            return sourceId == that.sourceId && Objects.equals(address, that.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(address, sourceId);
+        }
+
+        @Override
+        public String toString() {
+            return address + "/" + sourceId;
+        }
+    }
+
+    private static final class TemplateKey {
+        private final ExporterKey exporter;
+        private final int templateId;
+
+        TemplateKey(ExporterKey exporter, int templateId) {
+            this.exporter = exporter;
+            this.templateId = templateId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final TemplateKey that = (TemplateKey) o;
+            return templateId == that.templateId && exporter.equals(that.exporter);
         }
 
-        public Set<Integer> getUsedTemplates() {
-            return usedTemplates;
+        @Override
+        public int hashCode() {
+            return 31 * exporter.hashCode() + templateId;
         }
 
-        public int readableBytes() {
-            return bytes.length;
+        @Override
+        public String toString() {
+            return exporter + "/" + templateId;
         }
     }
 }
@@ -0,0 +1,390 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v9;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Decodes NetFlow v9 (RFC 3954) and IPFIX (RFC 7011) packets into messages.
+ * <p>
+ * Templates are compiled into a {@link CompiledFlowTemplate} and kept per exporter, i.e. source IP address and
+ * source ID (observation domain), and template ID. A template is only compiled again if its definition changes, so
+ * packets which repeat their templates, like the ones written by
+ * {@link org.graylog.plugins.netflow.codecs.NetflowV9CodecAggregator}, don't pay for it. Data records are read straight
+ * from the packet buffer.
+ * <p>
+ * The decoder is thread safe, packets of one exporter may be decoded concurrently.
+ */
+public class CompiledFlowDecoder {
+    private static final Logger LOG = LoggerFactory.getLogger(CompiledFlowDecoder.class);
+
+    public static final int NETFLOW_V9 = 9;
+    public static final int IPFIX = 10;
+
+    public static final int V9_HEADER_LENGTH = 20;
+    public static final int IPFIX_HEADER_LENGTH = 16;
+    public static final int V9_TEMPLATE_SET = 0;
+    public static final int V9_OPTIONS_TEMPLATE_SET = 1;
+    public static final int IPFIX_TEMPLATE_SET = 2;
+    public static final int IPFIX_OPTIONS_TEMPLATE_SET = 3;
+    public static final int MIN_DATA_SET_ID = 256;
+
+    private final NetFlowV9FieldTypeRegistry typeRegistry;
+    private final Cache<TemplateKey, DefinedTemplate> templates;
+    private final Meter flows;
+    private final Meter compiledTemplates;
+    private final Meter missingTemplates;
+    private final Meter malformedSets;
+
+    public CompiledFlowDecoder(NetFlowV9FieldTypeRegistry typeRegistry, MetricRegistry metricRegistry) {
+        this.typeRegistry = typeRegistry;
+        // exporters refresh their templates periodically, so templates of exporters which went away can expire
+        this.templates = CacheBuilder.newBuilder()
+                .maximumSize(5000)
+                .expireAfterAccess(1, TimeUnit.HOURS)
+                .build();
+        this.flows = metricRegistry.meter(name(CompiledFlowDecoder.class, "flows"));
+        this.compiledTemplates = metricRegistry.meter(name(CompiledFlowDecoder.class, "compiledTemplates"));
+        this.missingTemplates = metricRegistry.meter(name(CompiledFlowDecoder.class, "missingTemplates"));
+        this.malformedSets = metricRegistry.meter(name(CompiledFlowDecoder.class, "malformedSets"));
+    }
+
+    /**
+     * Decodes all flow records of the given packet. The reader index of the buffer is not modified.
+     *
+     * @param buf    the NetFlow v9 or IPFIX packet
+     * @param sender the IP address of the exporter which sent the packet
+     * @return the messages of all flow records in the packet. Data sets whose template is unknown are skipped. The list
+     * is empty if the packet is not a valid NetFlow v9 or IPFIX packet.
+     */
+    public List<Message> decode(ByteBuf buf, @Nullable InetAddress sender) {
+        final int start = buf.readerIndex();
+        int end = buf.writerIndex();
+        if (end - start < 2) {
+            malformedSets.mark();
+            return Collections.emptyList();
+        }
+
+        final int version = buf.getUnsignedShort(start);
+        final PacketHeader header;
+        final int headerLength;
+        if (version == NETFLOW_V9 && end - start >= V9_HEADER_LENGTH) {
+            header = new PacketHeader(version, buf.getUnsignedInt(start + 8), buf.getUnsignedInt(start + 12), buf.getUnsignedInt(start + 16));
+            headerLength = V9_HEADER_LENGTH;
+        } else if (version == IPFIX && end - start >= IPFIX_HEADER_LENGTH) {
+            end = Math.min(end, start + buf.getUnsignedShort(start + 2));
+            header = new PacketHeader(version, buf.getUnsignedInt(start + 4), buf.getUnsignedInt(start + 8), buf.getUnsignedInt(start + 12));
+            headerLength = IPFIX_HEADER_LENGTH;
+        } else {
+            malformedSets.mark();
+            LOG.debug("Invalid NetFlow v9/IPFIX packet with version {} from {}", version, sender);
+            return Collections.emptyList();
+        }
+
+        final ExporterKey exporter = new ExporterKey(sender, header.domainId);
+        final String source = sender == null ? null : sender.getHostAddress();
+        final List<Message> messages = new ArrayList<>();
+
+        int position = start + headerLength;
+        while (position + 4 <= end) {
+            final int setId = buf.getUnsignedShort(position);
+            final int setLength = buf.getUnsignedShort(position + 2);
+            if (setLength < 4 || position + setLength > end) {
+                malformedSets.mark();
+                LOG.debug("Invalid set length {} of set {} from {}, discarding rest of packet", setLength, setId, sender);
+                break;
+            }
+            final int setEnd = position + setLength;
+
+            if ((version == NETFLOW_V9 && setId == V9_TEMPLATE_SET) || (version == IPFIX && setId == IPFIX_TEMPLATE_SET)) {
+                readTemplates(buf, position + 4, setEnd, version, setId, false, exporter);
+            } else if (version == IPFIX && setId == IPFIX_OPTIONS_TEMPLATE_SET) {
+                readTemplates(buf, position + 4, setEnd, version, setId, true, exporter);
+            } else if (version == NETFLOW_V9 && setId == V9_OPTIONS_TEMPLATE_SET) {
+                readV9OptionTemplates(buf, position + 4, setEnd, exporter);
+            } else if (setId >= MIN_DATA_SET_ID) {
+                final DefinedTemplate template = templates.getIfPresent(new TemplateKey(exporter, setId));
+                if (template == null) {
+                    missingTemplates.mark();
+                    LOG.debug("Missing template {} from {}, skipping data set", setId, exporter);
+                } else {
+                    readDataSet(buf, position + 4, setEnd, template.template, header, source, messages);
+                }
+            }
+            position = setEnd;
+        }
+
+        flows.mark(messages.size());
+        return messages;
+    }
+
+    private void readTemplates(ByteBuf buf, int start, int end, int version, int setId, boolean options, ExporterKey exporter) {
+        int position = start;
+        while (position + 4 <= end) {
+            final int recordStart = position;
+            final int templateId = buf.getUnsignedShort(position);
+            final int fieldCount = buf.getUnsignedShort(position + 2);
+            position += 4;
+            if (fieldCount == 0) {
+                // template withdrawal, RFC 7011, section 8.1, using the set ID as template ID withdraws all templates
+                if (templateId == setId) {
+                    templates.asMap().keySet().removeIf(key -> key.exporter.equals(exporter));
+                } else if (templateId >= MIN_DATA_SET_ID) {
+                    templates.invalidate(new TemplateKey(exporter, templateId));
+                }
+                continue;
+            }
+            if (templateId < MIN_DATA_SET_ID) {
+                // padding
+                break;
+            }
+            if (options) {
+                // IPFIX options templates contain the number of scope fields, which are handled like any other field
+                position += 2;
+            }
+
+            final int[] types = new int[fieldCount];
+            final int[] lengths = new int[fieldCount];
+            final long[] enterpriseNumbers = new long[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                if (position + 4 > end) {
+                    malformedSets.mark();
+                    return;
+                }
+                types[i] = buf.getUnsignedShort(position);
+                lengths[i] = buf.getUnsignedShort(position + 2);
+                position += 4;
+                if (version == IPFIX && (types[i] & 0x8000) != 0) {
+                    if (position + 4 > end) {
+                        malformedSets.mark();
+                        return;
+                    }
+                    enterpriseNumbers[i] = buf.getUnsignedInt(position);
+                    position += 4;
+                } else if (version == NETFLOW_V9 && lengths[i] == CompiledFlowTemplate.VARIABLE_LENGTH) {
+                    // NetFlow v9 has neither enterprise-specific nor variable-length fields
+                    malformedSets.mark();
+                    return;
+                }
+            }
+            final TemplateKey key = new TemplateKey(exporter, templateId);
+            if (!isDefinedBy(key, buf, recordStart, position - recordStart)) {
+                putTemplate(key, buf, recordStart, position - recordStart,
+                        CompiledFlowTemplate.compile(templateId, options, types, lengths, enterpriseNumbers, typeRegistry));
+            }
+        }
+    }
+
+    private void readV9OptionTemplates(ByteBuf buf, int start, int end, ExporterKey exporter) {
+        int position = start;
+        while (position + 6 <= end) {
+            final int recordStart = position;
+            final int templateId = buf.getUnsignedShort(position);
+            final int scopeLength = buf.getUnsignedShort(position + 2);
+            final int optionLength = buf.getUnsignedShort(position + 4);
+            position += 6;
+            if (templateId < MIN_DATA_SET_ID || position + scopeLength + optionLength > end) {
+                // padding
+                break;
+            }
+
+            final int fieldCount = (scopeLength + optionLength) / 4;
+            final TemplateKey key = new TemplateKey(exporter, templateId);
+            final int recordLength = 6 + fieldCount * 4;
+            if (isDefinedBy(key, buf, recordStart, recordLength)) {
+                position = recordStart + recordLength;
+                continue;
+            }
+            final int[] types = new int[fieldCount];
+            final int[] lengths = new int[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                types[i] = buf.getUnsignedShort(position);
+                lengths[i] = buf.getUnsignedShort(position + 2);
+                position += 4;
+            }
+            putTemplate(key, buf, recordStart, recordLength,
+                    CompiledFlowTemplate.compile(templateId, true, types, lengths, new long[fieldCount], typeRegistry));
+        }
+    }
+
+    // templates are repeated in every packet written by the aggregator, the definition tells if they changed
+    private boolean isDefinedBy(TemplateKey key, ByteBuf buf, int index, int length) {
+        final DefinedTemplate existing = templates.getIfPresent(key);
+        return existing != null
+                && existing.definition.readableBytes() == length
+                && ByteBufUtil.equals(existing.definition, 0, buf, index, length);
+    }
+
+    private void putTemplate(TemplateKey key, ByteBuf buf, int index, int length, CompiledFlowTemplate template) {
+        compiledTemplates.mark();
+        templates.put(key, new DefinedTemplate(Unpooled.wrappedBuffer(ByteBufUtil.getBytes(buf, index, length)), template));
+        LOG.debug("Compiled template {} from {}", key.templateId, key.exporter);
+    }
+
+    private void readDataSet(ByteBuf buf, int start, int end, CompiledFlowTemplate template, PacketHeader header,
+                             String source, List<Message> messages) {
+        if (template.isOptions()) {
+            // option records describe the exporter, they don't result in messages
+            return;
+        }
+
+        final String prefix = header.version == IPFIX ? "IPFIX" : "NetFlowV9";
+        final DateTime timestamp = new DateTime(header.exportTime * 1000L, DateTimeZone.UTC);
+        // reused for all records of the set
+        final int[] positions = new int[2 * template.fieldCount()];
+        int position = start;
+        while (position + template.minRecordLength() <= end) {
+            final int length = template.locate(buf, position, end, positions);
+            if (length <= 0) {
+                // the rest of the set is padding or truncated
+                break;
+            }
+
+            final Message message = new Message(template.messageText(buf, positions, prefix), source, timestamp);
+            message.addField(CompiledFlowTemplate.FIELD_PREFIX + "version", header.version);
+            message.addLongField(CompiledFlowTemplate.FIELD_PREFIX + "flow_packet_id", header.sequence);
+            template.readFields(buf, positions, message);
+            messages.add(message);
+            position += length;
+        }
+    }
+
+    @VisibleForTesting
+    Set<Integer> knownTemplates(@Nullable InetAddress sender, long domainId) {
+        final ExporterKey exporter = new ExporterKey(sender, domainId);
+        final Set<Integer> templateIds = new HashSet<>();
+        for (TemplateKey key : templates.asMap().keySet()) {
+            if (key.exporter.equals(exporter)) {
+                templateIds.add(key.templateId);
+            }
+        }
+        return templateIds;
+    }
+
+    @VisibleForTesting
+    long compiledTemplateCount() {
+        return compiledTemplates.getCount();
+    }
+
+    private static class PacketHeader {
+        private final int version;
+        private final long exportTime;
+        private final long sequence;
+        private final long domainId;
+
+        PacketHeader(int version, long exportTime, long sequence, long domainId) {
+            this.version = version;
+            this.exportTime = exportTime;
+            this.sequence = sequence;
+            this.domainId = domainId;
+        }
+    }
+
+    private static class DefinedTemplate {
+        private final ByteBuf definition;
+        private final CompiledFlowTemplate template;
+
+        DefinedTemplate(ByteBuf definition, CompiledFlowTemplate template) {
+            this.definition = definition;
+            this.template = template;
+        }
+    }
+
+    // exporters may send from changing source ports, RFC 3954, section 5.1 only uses the address and the source ID
+    private static final class ExporterKey {
+        private final InetAddress address;
+        private final long domainId;
+
+        ExporterKey(InetAddress address, long domainId) {
+            this.address = address;
+            this.domainId = domainId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final ExporterKey that = (ExporterKey) o;
+            return domainId == that.domainId && Objects.equals(address, that.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(address, domainId);
+        }
+
+        @Override
+        public String toString() {
+            return address + "/" + domainId;
+        }
+    }
+
+    private static final class TemplateKey {
+        private final ExporterKey exporter;
+        private final int templateId;
+
+        TemplateKey(ExporterKey exporter, int templateId) {
+            this.exporter = exporter;
+            this.templateId = templateId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final TemplateKey that = (TemplateKey) o;
+            return templateId == that.templateId && exporter.equals(that.exporter);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * exporter.hashCode() + templateId;
+        }
+    }
+}
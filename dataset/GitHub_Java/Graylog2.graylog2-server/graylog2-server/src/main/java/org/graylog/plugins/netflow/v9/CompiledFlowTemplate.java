@@ -0,0 +1,483 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v9;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import org.graylog.plugins.netflow.utils.Protocol;
+import org.graylog2.plugin.Message;
+
+import java.math.BigInteger;
+import java.util.Locale;
+
+/**
+ * A NetFlow v9 or IPFIX template compiled into a field reader.
+ * <p>
+ * Field names, value kinds and offsets are resolved once when the template is received. Records are then read
+ * straight from the packet buffer with absolute reads and added to the message as primitive values, without creating
+ * intermediate field maps or boxed values. Offsets are fixed up to the first variable-length IPFIX field, the
+ * remaining ones are computed while locating the fields of a record.
+ * <p>
+ * Messages look like the ones of the map based v9 parser: every field is added as {@code nf_<field name>}, and the
+ * message text, {@code nf_src_address}, {@code nf_dst_address}, {@code nf_next_hop} and {@code nf_proto_name} are
+ * derived from the well-known address, port, protocol and counter fields.
+ */
+public final class CompiledFlowTemplate {
+    /**
+     * Field length of IPFIX variable-length fields, see RFC 7011, section 7.
+     */
+    public static final int VARIABLE_LENGTH = 65535;
+
+    static final String FIELD_PREFIX = "nf_";
+
+    @VisibleForTesting
+    static final int KIND_UNSIGNED = 0;
+    @VisibleForTesting
+    static final int KIND_SIGNED = 1;
+    @VisibleForTesting
+    static final int KIND_IPV4 = 2;
+    @VisibleForTesting
+    static final int KIND_IPV6 = 3;
+    @VisibleForTesting
+    static final int KIND_MAC = 4;
+    @VisibleForTesting
+    static final int KIND_STRING = 5;
+    @VisibleForTesting
+    static final int KIND_SKIP = 6;
+
+    // field type IDs, NetFlow v9 and IPFIX share them
+    private static final int IN_BYTES = 1;
+    private static final int IN_PKTS = 2;
+    private static final int PROTOCOL = 4;
+    private static final int L4_SRC_PORT = 7;
+    private static final int IPV4_SRC_ADDR = 8;
+    private static final int L4_DST_PORT = 11;
+    private static final int IPV4_DST_ADDR = 12;
+    private static final int IPV4_NEXT_HOP = 15;
+    private static final int IPV6_SRC_ADDR = 27;
+    private static final int IPV6_DST_ADDR = 28;
+    private static final int IPV6_NEXT_HOP = 62;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String[] PROTOCOL_NAMES = new String[256];
+
+    static {
+        for (Protocol protocol : Protocol.values()) {
+            // the first protocol with a number wins, like Protocol#getByNumber
+            if (PROTOCOL_NAMES[protocol.getNumber()] == null) {
+                PROTOCOL_NAMES[protocol.getNumber()] = protocol.getAlias();
+            }
+        }
+    }
+
+    private final int templateId;
+    private final boolean options;
+    private final String[] names;
+    private final int[] kinds;
+    private final int[] lengths;
+    private final int[] offsets;
+    // number of leading fields with a fixed offset
+    private final int fixedFields;
+    // length of all fields if there are no variable-length fields, -1 otherwise
+    private final int recordLength;
+    // the smallest possible record, used to detect padding at the end of a set
+    private final int minRecordLength;
+
+    // indexes of the well-known fields, -1 if the template doesn't contain them
+    private final int srcAddress;
+    private final int dstAddress;
+    private final int nextHop;
+    private final int srcPort;
+    private final int dstPort;
+    private final int protocol;
+    private final int packets;
+    private final int bytes;
+
+    private CompiledFlowTemplate(int templateId, boolean options, int[] types, String[] names, int[] kinds, int[] lengths) {
+        this.templateId = templateId;
+        this.options = options;
+        this.names = names;
+        this.kinds = kinds;
+        this.lengths = lengths;
+        this.offsets = new int[lengths.length];
+
+        int offset = 0;
+        int fixed = 0;
+        int minLength = 0;
+        boolean variable = false;
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] == VARIABLE_LENGTH) {
+                variable = true;
+                minLength += 1;
+            } else {
+                minLength += lengths[i];
+            }
+            if (!variable) {
+                offsets[i] = offset;
+                offset += lengths[i];
+                fixed++;
+            }
+        }
+        this.fixedFields = fixed;
+        this.recordLength = variable ? -1 : offset;
+        this.minRecordLength = Math.max(1, minLength);
+
+        this.srcAddress = indexOf(types, kinds, IPV4_SRC_ADDR, KIND_IPV4, IPV6_SRC_ADDR, KIND_IPV6);
+        this.dstAddress = indexOf(types, kinds, IPV4_DST_ADDR, KIND_IPV4, IPV6_DST_ADDR, KIND_IPV6);
+        this.nextHop = indexOf(types, kinds, IPV4_NEXT_HOP, KIND_IPV4, IPV6_NEXT_HOP, KIND_IPV6);
+        this.srcPort = indexOf(types, kinds, L4_SRC_PORT, KIND_UNSIGNED, -1, -1);
+        this.dstPort = indexOf(types, kinds, L4_DST_PORT, KIND_UNSIGNED, -1, -1);
+        this.protocol = indexOf(types, kinds, PROTOCOL, KIND_UNSIGNED, -1, -1);
+        this.packets = indexOf(types, kinds, IN_PKTS, KIND_UNSIGNED, -1, -1);
+        this.bytes = indexOf(types, kinds, IN_BYTES, KIND_UNSIGNED, -1, -1);
+    }
+
+    // prefers the first type, e.g. the IPv4 address if a template contains both
+    private static int indexOf(int[] types, int[] kinds, int type, int kind, int alternativeType, int alternativeKind) {
+        int alternative = -1;
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type && kinds[i] == kind) {
+                return i;
+            }
+            if (alternative < 0 && types[i] == alternativeType && kinds[i] == alternativeKind) {
+                alternative = i;
+            }
+        }
+        return alternative;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param templateId        the template ID
+     * @param options           whether the template describes option records, which are skipped
+     * @param fieldTypes        the field types, enterprise-specific IPFIX fields must have the enterprise bit set
+     * @param fieldLengths      the field lengths, {@link #VARIABLE_LENGTH} for variable-length IPFIX fields
+     * @param enterpriseNumbers the enterprise numbers of enterprise-specific IPFIX fields, 0 for all other fields
+     * @param typeRegistry      the registry of known field types
+     */
+    public static CompiledFlowTemplate compile(int templateId,
+                                               boolean options,
+                                               int[] fieldTypes,
+                                               int[] fieldLengths,
+                                               long[] enterpriseNumbers,
+                                               NetFlowV9FieldTypeRegistry typeRegistry) {
+        final int fieldCount = fieldTypes.length;
+        final int[] types = new int[fieldCount];
+        final String[] names = new String[fieldCount];
+        final int[] kinds = new int[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            final int length = fieldLengths[i];
+            final boolean enterprise = (fieldTypes[i] & 0x8000) != 0;
+            final NetFlowV9FieldType type = enterprise ? null : typeRegistry.get(fieldTypes[i]);
+            // enterprise-specific fields never match the well-known fields
+            types[i] = enterprise ? -1 : fieldTypes[i];
+            if (type == null) {
+                final int id = fieldTypes[i] & 0x7FFF;
+                names[i] = enterprise
+                        ? FIELD_PREFIX + "field_" + enterpriseNumbers[i] + "_" + id
+                        : FIELD_PREFIX + "field_" + id;
+                kinds[i] = length > 0 && length <= 8 ? KIND_UNSIGNED : KIND_SKIP;
+            } else {
+                names[i] = FIELD_PREFIX + type.name().toLowerCase(Locale.ROOT);
+                kinds[i] = kindOf(type.valueType(), length);
+            }
+        }
+        return new CompiledFlowTemplate(templateId, options, types, names, kinds, fieldLengths.clone());
+    }
+
+    private static int kindOf(NetFlowV9FieldType.ValueType valueType, int length) {
+        switch (valueType) {
+            case IPV4:
+                return length == 4 ? KIND_IPV4 : KIND_SKIP;
+            case IPV6:
+                return length == 16 ? KIND_IPV6 : KIND_SKIP;
+            case MAC:
+                return length == 6 ? KIND_MAC : KIND_SKIP;
+            case STRING:
+                return KIND_STRING;
+            case SKIP:
+                return KIND_SKIP;
+            default:
+                // Exporters may use reduced-size encoding (RFC 7011, section 6.2), so we go by the actual length
+                if (length == 0 || length > 8) {
+                    return KIND_SKIP;
+                }
+                return valueType.name().startsWith("INT") ? KIND_SIGNED : KIND_UNSIGNED;
+        }
+    }
+
+    public int templateId() {
+        return templateId;
+    }
+
+    public boolean isOptions() {
+        return options;
+    }
+
+    public int fieldCount() {
+        return names.length;
+    }
+
+    public int minRecordLength() {
+        return minRecordLength;
+    }
+
+    @VisibleForTesting
+    String fieldName(int i) {
+        return names[i];
+    }
+
+    @VisibleForTesting
+    int fieldKind(int i) {
+        return kinds[i];
+    }
+
+    /**
+     * Locates the values of the record starting at the given index without reading them.
+     *
+     * @param positions receives the index of every value at {@code 2 * i} and its length at {@code 2 * i + 1}, must
+     *                  hold at least {@code 2 * fieldCount()} elements
+     * @return the record length or -1 if the record exceeds the given end
+     */
+    public int locate(ByteBuf buf, int start, int end, int[] positions) {
+        if (recordLength >= 0) {
+            if (start + recordLength > end) {
+                return -1;
+            }
+            for (int i = 0; i < lengths.length; i++) {
+                positions[2 * i] = start + offsets[i];
+                positions[2 * i + 1] = lengths[i];
+            }
+            return recordLength;
+        }
+
+        int position = start;
+        for (int i = 0; i < lengths.length; i++) {
+            int length = lengths[i];
+            if (i < fixedFields) {
+                position = start + offsets[i];
+            } else if (length == VARIABLE_LENGTH) {
+                if (position >= end) {
+                    return -1;
+                }
+                length = buf.getUnsignedByte(position++);
+                if (length == 255) {
+                    if (position + 2 > end) {
+                        return -1;
+                    }
+                    length = buf.getUnsignedShort(position);
+                    position += 2;
+                }
+            }
+            if (position + length > end) {
+                return -1;
+            }
+            positions[2 * i] = position;
+            positions[2 * i + 1] = length;
+            position += length;
+        }
+        return position - start;
+    }
+
+    /**
+     * Returns the message text of a located record, e.g.
+     * {@code NetFlowV9 [10.0.0.1]:1234 <> [10.0.0.2]:80 proto:6 pkts:10 bytes:1500}.
+     */
+    public String messageText(ByteBuf buf, int[] positions, String prefix) {
+        final StringBuilder sb = new StringBuilder(80).append(prefix).append(" [");
+        appendAddress(sb, buf, positions, srcAddress).append("]:");
+        appendNumber(sb, buf, positions, srcPort).append(" <> [");
+        appendAddress(sb, buf, positions, dstAddress).append("]:");
+        appendNumber(sb, buf, positions, dstPort).append(" proto:");
+        appendNumber(sb, buf, positions, protocol).append(" pkts:");
+        appendNumber(sb, buf, positions, packets).append(" bytes:");
+        appendNumber(sb, buf, positions, bytes);
+        return sb.toString();
+    }
+
+    /**
+     * Adds all fields of a located record to the message, as well as the fields derived from the well-known ones.
+     */
+    public void readFields(ByteBuf buf, int[] positions, Message message) {
+        for (int i = 0; i < names.length; i++) {
+            readField(buf, positions[2 * i], positions[2 * i + 1], kinds[i], names[i], message);
+        }
+
+        if (srcAddress >= 0) {
+            message.addField(FIELD_PREFIX + "src_address", address(buf, positions, srcAddress));
+        }
+        if (dstAddress >= 0) {
+            message.addField(FIELD_PREFIX + "dst_address", address(buf, positions, dstAddress));
+        }
+        if (nextHop >= 0) {
+            message.addField(FIELD_PREFIX + "next_hop", address(buf, positions, nextHop));
+        }
+        if (protocol >= 0) {
+            final long number = readUnsigned(buf, positions[2 * protocol], positions[2 * protocol + 1]);
+            if (number >= 0 && number < PROTOCOL_NAMES.length && PROTOCOL_NAMES[(int) number] != null) {
+                message.addField(FIELD_PREFIX + "proto_name", PROTOCOL_NAMES[(int) number]);
+            }
+        }
+    }
+
+    private String address(ByteBuf buf, int[] positions, int field) {
+        final int index = positions[2 * field];
+        return kinds[field] == KIND_IPV4 ? ipv4String(buf.getInt(index)) : ipv6String(buf, index);
+    }
+
+    private StringBuilder appendAddress(StringBuilder sb, ByteBuf buf, int[] positions, int field) {
+        return field < 0 ? sb.append("null") : sb.append(address(buf, positions, field));
+    }
+
+    private static StringBuilder appendNumber(StringBuilder sb, ByteBuf buf, int[] positions, int field) {
+        return field < 0 ? sb.append("null") : sb.append(readUnsigned(buf, positions[2 * field], positions[2 * field + 1]));
+    }
+
+    private static void readField(ByteBuf buf, int index, int length, int kind, String name, Message message) {
+        switch (kind) {
+            case KIND_UNSIGNED:
+                final long unsigned = readUnsigned(buf, index, length);
+                if (unsigned >= 0) {
+                    message.addLongField(name, unsigned);
+                } else {
+                    // unsigned 64 bit values beyond Long.MAX_VALUE (e.g. huge counters) don't fit into a long
+                    message.addField(name, new BigInteger(Long.toUnsignedString(unsigned)));
+                }
+                break;
+            case KIND_SIGNED:
+                final long value = readUnsigned(buf, index, length);
+                final int shift = 64 - length * 8;
+                message.addLongField(name, (value << shift) >> shift);
+                break;
+            case KIND_IPV4:
+                message.addField(name, ipv4String(buf.getInt(index)));
+                break;
+            case KIND_IPV6:
+                message.addField(name, ipv6String(buf, index));
+                break;
+            case KIND_MAC:
+                message.addField(name, macString(buf, index));
+                break;
+            case KIND_STRING:
+                // strings are NUL padded
+                int stringLength = length;
+                while (stringLength > 0 && buf.getByte(index + stringLength - 1) == 0) {
+                    stringLength--;
+                }
+                if (stringLength > 0) {
+                    if (buf.hasArray()) {
+                        // references the packet instead of copying the string
+                        message.addUtf8Field(name, buf.array(), buf.arrayOffset() + index, stringLength);
+                    } else {
+                        final byte[] bytes = new byte[stringLength];
+                        buf.getBytes(index, bytes);
+                        message.addUtf8Field(name, bytes, 0, stringLength);
+                    }
+                }
+                break;
+            default:
+                // unknown or unsupported field
+        }
+    }
+
+    private static long readUnsigned(ByteBuf buf, int index, int length) {
+        switch (length) {
+            case 1:
+                return buf.getUnsignedByte(index);
+            case 2:
+                return buf.getUnsignedShort(index);
+            case 4:
+                return buf.getUnsignedInt(index);
+            case 8:
+                return buf.getLong(index);
+            default:
+                long value = 0L;
+                for (int i = 0; i < length; i++) {
+                    value = (value << 8) | buf.getUnsignedByte(index + i);
+                }
+                return value;
+        }
+    }
+
+    @VisibleForTesting
+    static String ipv4String(int address) {
+        return new StringBuilder(15)
+                .append((address >>> 24) & 0xFF).append('.')
+                .append((address >>> 16) & 0xFF).append('.')
+                .append((address >>> 8) & 0xFF).append('.')
+                .append(address & 0xFF)
+                .toString();
+    }
+
+    /**
+     * Formats an IPv6 address like {@link com.google.common.net.InetAddresses#toAddrString(java.net.InetAddress)}.
+     */
+    @VisibleForTesting
+    static String ipv6String(ByteBuf buf, int index) {
+        final int[] hextets = new int[8];
+        for (int i = 0; i < 8; i++) {
+            hextets[i] = buf.getUnsignedShort(index + i * 2);
+        }
+
+        // find the longest run of zeros to compress
+        int bestStart = -1;
+        int bestLength = 0;
+        int runStart = -1;
+        for (int i = 0; i <= 8; i++) {
+            if (i < 8 && hextets[i] == 0) {
+                if (runStart < 0) {
+                    runStart = i;
+                }
+            } else if (runStart >= 0) {
+                final int runLength = i - runStart;
+                if (runLength > bestLength && runLength > 1) {
+                    bestStart = runStart;
+                    bestLength = runLength;
+                }
+                runStart = -1;
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                sb.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+                sb.append(':');
+            }
+            sb.append(Integer.toHexString(hextets[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String macString(ByteBuf buf, int index) {
+        final char[] chars = new char[17];
+        for (int i = 0; i < 6; i++) {
+            final int b = buf.getUnsignedByte(index + i);
+            chars[i * 3] = HEX[b >>> 4];
+            chars[i * 3 + 1] = HEX[b & 0xF];
+            if (i < 5) {
+                chars[i * 3 + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+}
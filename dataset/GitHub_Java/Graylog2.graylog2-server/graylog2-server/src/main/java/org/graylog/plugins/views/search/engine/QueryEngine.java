@@ -40,6 +40,7 @@ import org.graylog.plugins.views.search.errors.SearchException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.Map;
@@ -48,6 +49,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.defaultIfEmpty;
@@ -58,15 +60,24 @@ public class QueryEngine {
 
     private final Map<String, QueryBackend<? extends GeneratedQueryContext>> queryBackends;
     private final Set<QueryMetadataDecorator> queryMetadataDecorators;
+    @Nullable
+    private final QueryResultCache queryResultCache;
 
     // TODO proper thread pool with tunable settings
     private final Executor queryPool = Executors.newFixedThreadPool(4, new ThreadFactoryBuilder().setNameFormat("query-engine-%d").build());
 
-    @Inject
     public QueryEngine(Map<String, QueryBackend<? extends GeneratedQueryContext>> queryBackends,
                        Set<QueryMetadataDecorator> queryMetadataDecorators) {
+        this(queryBackends, queryMetadataDecorators, null);
+    }
+
+    @Inject
+    public QueryEngine(Map<String, QueryBackend<? extends GeneratedQueryContext>> queryBackends,
+                       Set<QueryMetadataDecorator> queryMetadataDecorators,
+                       @Nullable QueryResultCache queryResultCache) {
         this.queryBackends = queryBackends;
         this.queryMetadataDecorators = queryMetadataDecorators;
+        this.queryResultCache = queryResultCache;
     }
 
     private static Set<QueryResult> allOfResults(Set<CompletableFuture<QueryResult>> futures) {
@@ -159,6 +170,17 @@ public class QueryEngine {
         // with all the results done, we can execute the current query and eventually complete our own result
         // if any of this throws an exception, the handle in #execute will convert it to an error and return a "failed" result instead
         // if the backend already returns a "failed result" then nothing special happens here
+        final Function<Query, QueryResult> runner = q -> run(backend, searchJob, q, results);
+
+        // results of queries which depend on other queries can't be reused, because their input may have changed
+        final boolean independent = predecessors.stream().map(Query::id).allMatch(String::isEmpty);
+        if (queryResultCache != null && independent) {
+            return queryResultCache.execute(searchJob, query, runner);
+        }
+        return runner.apply(query);
+    }
+
+    private QueryResult run(QueryBackend<? extends GeneratedQueryContext> backend, SearchJob searchJob, Query query, Set<QueryResult> results) {
         final GeneratedQueryContext generatedQueryContext = backend.generate(searchJob, query, results);
         LOG.trace("[{}] Generated query {}, running it on backend {}", query.id(), generatedQueryContext, backend);
         final QueryResult result = backend.run(searchJob, query, generatedQueryContext, results);
@@ -0,0 +1,351 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.QueryResult;
+import org.graylog.plugins.views.search.SearchJob;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.searchtypes.DateHistogram;
+import org.graylog2.indexer.ranges.IndexRangeUpdatedEvent;
+import org.graylog2.indexer.searches.Searches;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.joda.time.DateTimeZone.UTC;
+
+/**
+ * Reuses query results of dashboards which are refreshed periodically.
+ * <p>
+ * Results are keyed by the normalized query (query string, filters including the streams, search types and search
+ * parameters) and by an aligned time bucket:
+ * <ul>
+ * <li>Queries with a relative time range reuse a complete result within the same time bucket. A result can thus be at
+ * most one bucket, 10 seconds by default, older than a fresh one.</li>
+ * <li>Date histograms with a fixed interval of queries with a relative time range additionally keep their closed
+ * buckets. On the next refresh only the partially covered first bucket and the open tail since the last closed
+ * bucket are queried and merged with the cached buckets. Buckets count as closed once they are older than a grace
+ * period, to account for messages which arrive late.</li>
+ * <li>Queries with an absolute time range which ended before the grace period are cached as a whole.</li>
+ * </ul>
+ * All cached results are dropped whenever an index range changes, e.g. after an index has been rotated, recalculated
+ * or deleted.
+ * </p>
+ */
+@Singleton
+public class QueryResultCache {
+    private static final Logger LOG = LoggerFactory.getLogger(QueryResultCache.class);
+
+    static final long DEFAULT_BUCKET_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    static final long DEFAULT_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // a histogram needs at least this many closed buckets to be worth splitting up
+    private static final int MIN_CLOSED_BUCKETS = 2;
+
+    private final ObjectMapper objectMapper;
+    private final long bucketMillis;
+    private final long graceMillis;
+
+    private final Cache<String, QueryResult> results;
+    private final Cache<String, HistogramBuckets> histograms;
+
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter histogramBucketHits;
+
+    @Inject
+    public QueryResultCache(ObjectMapper objectMapper, MetricRegistry metricRegistry, EventBus serverEventBus) {
+        this(objectMapper, metricRegistry, DEFAULT_BUCKET_MILLIS, DEFAULT_GRACE_MILLIS);
+        serverEventBus.register(this);
+    }
+
+    @VisibleForTesting
+    QueryResultCache(ObjectMapper objectMapper, MetricRegistry metricRegistry, long bucketMillis, long graceMillis) {
+        this.objectMapper = objectMapper;
+        this.bucketMillis = bucketMillis;
+        this.graceMillis = graceMillis;
+        this.results = CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Math.max(bucketMillis * 2, graceMillis), TimeUnit.MILLISECONDS)
+                .build();
+        this.histograms = CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .expireAfterAccess(10, TimeUnit.MINUTES) // prevent from hanging on to memory forever
+                .build();
+
+        this.hits = metricRegistry.meter(name(QueryResultCache.class, "hits"));
+        this.misses = metricRegistry.meter(name(QueryResultCache.class, "misses"));
+        this.histogramBucketHits = metricRegistry.meter(name(QueryResultCache.class, "histogramBucketHits"));
+    }
+
+    @Subscribe
+    public void handleIndexRangeUpdated(IndexRangeUpdatedEvent event) {
+        LOG.debug("Index range of {} changed, invalidating cached query results.", event.indexName());
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        results.invalidateAll();
+        histograms.invalidateAll();
+    }
+
+    /**
+     * Returns a cached result for the query or runs it.
+     *
+     * @param job    the currently executing job
+     * @param query  the query to run, its result must only depend on the query itself and not on other queries
+     * @param runner runs a query, possibly with a different time range or a subset of the search types, on the backend
+     */
+    public QueryResult execute(SearchJob job, Query query, Function<Query, QueryResult> runner) {
+        final DateTime now = DateTime.now(UTC);
+        final TimeRange timeRange = query.timerange();
+        final String resultKey;
+        if (timeRange instanceof RelativeRange && ((RelativeRange) timeRange).range() > 0) {
+            resultKey = normalizedKey(job, query, query.searchTypes()) + "@" + Math.floorDiv(now.getMillis(), bucketMillis);
+        } else if (timeRange instanceof AbsoluteRange && timeRange.getTo().getMillis() < now.getMillis() - graceMillis) {
+            resultKey = normalizedKey(job, query, query.searchTypes());
+        } else {
+            return runner.apply(query);
+        }
+        if (resultKey == null) {
+            return runner.apply(query);
+        }
+
+        final QueryResult cached = results.getIfPresent(resultKey);
+        if (cached != null) {
+            hits.mark();
+            return cached;
+        }
+        misses.mark();
+
+        final QueryResult result;
+        if (timeRange instanceof RelativeRange) {
+            result = runWithHistogramBuckets(job, query, (RelativeRange) timeRange, now, runner);
+        } else {
+            result = runner.apply(query);
+        }
+        if (isCacheable(result)) {
+            results.put(resultKey, result);
+        }
+        return result;
+    }
+
+    private QueryResult runWithHistogramBuckets(SearchJob job, Query query, RelativeRange timeRange, DateTime now,
+                                                Function<Query, QueryResult> runner) {
+        final DateTime from = now.minusSeconds(timeRange.range());
+        final List<DateHistogram> splittable = query.searchTypes().stream()
+                .filter(searchType -> searchType instanceof DateHistogram)
+                .map(searchType -> (DateHistogram) searchType)
+                .filter(histogram -> isSplittable(histogram, from, now))
+                .collect(Collectors.toList());
+        if (splittable.isEmpty()) {
+            return runner.apply(query);
+        }
+
+        final ImmutableSet<SearchType> remaining = query.searchTypes().stream()
+                .filter(searchType -> !splittable.contains(searchType))
+                .collect(ImmutableSet.toImmutableSet());
+        final QueryResult remainingResult = remaining.isEmpty() ? null : runner.apply(query.toBuilder().searchTypes(remaining).build());
+        if (remainingResult != null && !isCacheable(remainingResult)) {
+            return runner.apply(query);
+        }
+
+        final Map<String, SearchType.Result> searchTypeResults = new HashMap<>();
+        if (remainingResult != null) {
+            searchTypeResults.putAll(remainingResult.searchTypes());
+        }
+        for (DateHistogram histogram : splittable) {
+            final DateHistogram.Result histogramResult = histogramResult(job, query, histogram, from, now, runner);
+            if (histogramResult == null) {
+                // one of the partial queries failed, give the full query a chance to report a proper error
+                return runner.apply(query);
+            }
+            searchTypeResults.put(histogram.id(), histogramResult);
+        }
+
+        final QueryResult.Builder builder = remainingResult == null
+                ? QueryResult.builder().executionStats(QueryExecutionStats.builderWithCurrentTime()
+                        .effectiveTimeRange(AbsoluteRange.create(from, now))
+                        .build())
+                : remainingResult.toBuilder();
+        return builder.query(query)
+                .searchTypes(ImmutableMap.copyOf(searchTypeResults))
+                .build();
+    }
+
+    @Nullable
+    private DateHistogram.Result histogramResult(SearchJob job, Query query, DateHistogram histogram,
+                                                 DateTime from, DateTime now, Function<Query, QueryResult> runner) {
+        final long interval = intervalSeconds(histogram.interval());
+        final long fromSeconds = from.getMillis() / 1000L;
+        final long firstFullBucket = ceilToBucket(fromSeconds, interval);
+        final long closedUntil = Math.floorDiv((now.getMillis() - graceMillis) / 1000L, interval) * interval;
+        final String key = normalizedKey(job, query, ImmutableSet.of(histogram));
+        if (key == null) {
+            return null;
+        }
+
+        final Map<Long, Long> buckets = new HashMap<>();
+        final HistogramBuckets cached = histograms.getIfPresent(key);
+        if (cached != null && cached.coveredFrom <= firstFullBucket && cached.coveredUntil > firstFullBucket) {
+            final long cachedUntil = Math.min(cached.coveredUntil, closedUntil);
+            // the range filter includes both ends, so only take the buckets we are responsible for from each part
+            if (fromSeconds < firstFullBucket) {
+                final Map<Long, Long> head = runHistogram(query, histogram, from, new DateTime(firstFullBucket * 1000L, UTC), runner);
+                if (head == null) {
+                    return null;
+                }
+                head.entrySet().stream().filter(e -> e.getKey() < firstFullBucket).forEach(e -> buckets.put(e.getKey(), e.getValue()));
+            }
+            final ImmutableSortedMap<Long, Long> reused = cached.buckets.subMap(firstFullBucket, true, cachedUntil, false);
+            buckets.putAll(reused);
+            histogramBucketHits.mark(reused.size());
+
+            final Map<Long, Long> tail = runHistogram(query, histogram, new DateTime(cachedUntil * 1000L, UTC), now, runner);
+            if (tail == null) {
+                return null;
+            }
+            tail.entrySet().stream().filter(e -> e.getKey() >= cachedUntil).forEach(e -> buckets.put(e.getKey(), e.getValue()));
+        } else {
+            final Map<Long, Long> full = runHistogram(query, histogram, from, now, runner);
+            if (full == null) {
+                return null;
+            }
+            buckets.putAll(full);
+        }
+
+        final ImmutableSortedMap<Long, Long> closedBuckets = buckets.entrySet().stream()
+                .filter(e -> e.getKey() >= firstFullBucket && e.getKey() < closedUntil)
+                .collect(ImmutableSortedMap.toImmutableSortedMap(Long::compare, Map.Entry::getKey, Map.Entry::getValue));
+        histograms.put(key, new HistogramBuckets(closedBuckets, firstFullBucket, closedUntil));
+
+        return DateHistogram.Result.result(histogram.id())
+                .results(ImmutableMap.copyOf(buckets))
+                .timerange(AbsoluteRange.create(from, now))
+                .build();
+    }
+
+    @Nullable
+    private Map<Long, Long> runHistogram(Query query, DateHistogram histogram, DateTime from, DateTime to,
+                                         Function<Query, QueryResult> runner) {
+        final Query partialQuery = query.toBuilder()
+                .timerange(AbsoluteRange.create(from, to))
+                .searchTypes(ImmutableSet.of(histogram))
+                .build();
+        final QueryResult result = runner.apply(partialQuery);
+        if (!isCacheable(result)) {
+            return null;
+        }
+        final SearchType.Result searchTypeResult = result.searchTypes().get(histogram.id());
+        if (!(searchTypeResult instanceof DateHistogram.Result)) {
+            return null;
+        }
+        return ((DateHistogram.Result) searchTypeResult).results();
+    }
+
+    private boolean isSplittable(DateHistogram histogram, DateTime from, DateTime now) {
+        final long interval = intervalSeconds(histogram.interval());
+        if (interval <= 0 || histogram.id() == null) {
+            return false;
+        }
+        final long firstFullBucket = ceilToBucket(from.getMillis() / 1000L, interval);
+        final long closedUntil = Math.floorDiv((now.getMillis() - graceMillis) / 1000L, interval) * interval;
+        return closedUntil - firstFullBucket >= MIN_CLOSED_BUCKETS * interval;
+    }
+
+    /**
+     * Only intervals with a fixed length and buckets aligned to the epoch can be split.
+     */
+    private static long intervalSeconds(Searches.DateHistogramInterval interval) {
+        switch (interval) {
+            case MINUTE:
+                return TimeUnit.MINUTES.toSeconds(1);
+            case HOUR:
+                return TimeUnit.HOURS.toSeconds(1);
+            case DAY:
+                return TimeUnit.DAYS.toSeconds(1);
+            default:
+                return 0L;
+        }
+    }
+
+    private static long ceilToBucket(long seconds, long interval) {
+        return -Math.floorDiv(-seconds, interval) * interval;
+    }
+
+    private static boolean isCacheable(QueryResult result) {
+        return result.state() == QueryResult.State.COMPLETED && (result.errors() == null || result.errors().isEmpty());
+    }
+
+    /**
+     * Serializes everything the result depends on, except for the time range of relative queries.
+     */
+    @Nullable
+    private String normalizedKey(SearchJob job, Query query, ImmutableSet<SearchType> searchTypes) {
+        final Map<String, Object> key = new HashMap<>();
+        key.put("query", query.query());
+        key.put("filter", query.filter());
+        key.put("timerange", query.timerange());
+        key.put("search_types", searchTypes);
+        key.put("parameters", job.getSearch().parameters());
+        try {
+            return objectMapper.writeValueAsString(key);
+        } catch (JsonProcessingException e) {
+            LOG.debug("Unable to serialize query {}, not caching its result", query.id(), e);
+            return null;
+        }
+    }
+
+    private static class HistogramBuckets {
+        private final ImmutableSortedMap<Long, Long> buckets;
+        private final long coveredFrom;
+        private final long coveredUntil;
+
+        HistogramBuckets(ImmutableSortedMap<Long, Long> buckets, long coveredFrom, long coveredUntil) {
+            this.buckets = buckets;
+            this.coveredFrom = coveredFrom;
+            this.coveredUntil = coveredUntil;
+        }
+    }
+}
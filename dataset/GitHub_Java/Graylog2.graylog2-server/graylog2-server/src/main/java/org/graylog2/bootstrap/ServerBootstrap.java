@@ -34,6 +34,7 @@ import org.graylog2.shared.bindings.ServerStatusBindings;
 import org.graylog2.shared.bindings.SharedPeriodicalBindings;
 import org.graylog2.shared.bindings.ValidatorModule;
 import org.graylog2.shared.initializers.ServiceManagerListener;
+import org.graylog2.shared.journal.MappedSegmentJournalModule;
 import org.graylog2.shared.security.SecurityBindings;
 import org.graylog2.shared.system.activities.Activity;
 import org.graylog2.shared.system.activities.ActivityWriter;
@@ -173,6 +174,10 @@ public abstract class ServerBootstrap extends CmdLineTool {
         result.add(new PluginRestResourceBindings());
         result.add(new MessageInputBindings());
         result.add(new SystemStatsModule(configuration.isDisableSigar()));
+        if (configuration.isMessageJournalEnabled()
+                && BaseConfiguration.MESSAGE_JOURNAL_TYPE_MAPPED.equals(configuration.getMessageJournalType())) {
+            result.add(new MappedSegmentJournalModule());
+        }
 
         return result;
     }
@@ -0,0 +1,154 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.grok;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import oi.thekraken.grok.api.Grok;
+import oi.thekraken.grok.api.Match;
+import oi.thekraken.grok.api.exception.GrokException;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * A grok expression compiled against a set of grok patterns.
+ * <p>
+ * Compiled expressions are immutable and shared: extractors are rebuilt frequently, but as long as the pattern set
+ * and the expression stay the same, {@link #compile(Set, String)} returns the same instance.
+ * </p>
+ * <p>
+ * Expressions which only use literal text and common primitives are matched by {@link LinearGrokMatcher} first, the
+ * regular expression is only used if the linear matcher cannot decide.
+ * </p>
+ */
+public class CompiledGrok {
+    private static final Cache<Key, CompiledGrok> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.MINUTES) // prevent from hanging on to memory forever
+            .build();
+
+    private final Grok grok;
+    @Nullable
+    private final LinearGrokMatcher linearMatcher;
+
+    private CompiledGrok(Grok grok, @Nullable LinearGrokMatcher linearMatcher) {
+        this.grok = grok;
+        this.linearMatcher = linearMatcher;
+    }
+
+    /**
+     * Returns the compiled expression, reusing a previously compiled instance for the same patterns and expression.
+     *
+     * @throws GrokException if the patterns or the expression are invalid
+     */
+    public static CompiledGrok compile(Set<GrokPattern> grokPatterns, String expression) throws GrokException {
+        final Map<String, String> patterns = new HashMap<>(grokPatterns.size());
+        for (final GrokPattern grokPattern : grokPatterns) {
+            if (!isNullOrEmpty(grokPattern.name) && !isNullOrEmpty(grokPattern.pattern)) {
+                patterns.put(grokPattern.name, grokPattern.pattern);
+            }
+        }
+        final Key key = new Key(ImmutableMap.copyOf(patterns), expression);
+        try {
+            return CACHE.get(key, () -> doCompile(key.patterns, key.expression));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof GrokException) {
+                throw (GrokException) e.getCause();
+            }
+            throw new GrokException(e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+        }
+    }
+
+    private static CompiledGrok doCompile(Map<String, String> patterns, String expression) throws GrokException {
+        final Grok grok = new Grok();
+        for (Map.Entry<String, String> pattern : patterns.entrySet()) {
+            grok.addPattern(pattern.getKey(), pattern.getValue());
+        }
+        grok.compile(expression);
+        return new CompiledGrok(grok, LinearGrokMatcher.compile(expression, patterns));
+    }
+
+    /**
+     * Matches the value and stores all non-null captures in the given, reusable, captures object.
+     *
+     * @return {@code true} if the expression matched
+     */
+    public boolean match(String value, GrokCaptures captures) {
+        if (linearMatcher != null) {
+            final int result = linearMatcher.match(value, captures);
+            if (result != LinearGrokMatcher.NO_DECISION) {
+                if (result == LinearGrokMatcher.NO_MATCH) {
+                    captures.clear();
+                }
+                return result == LinearGrokMatcher.MATCH;
+            }
+        }
+
+        captures.clear();
+        final Match match = grok.match(value);
+        match.captures();
+        final Map<String, Object> matches = match.toMap();
+        for (final Map.Entry<String, Object> entry : matches.entrySet()) {
+            if (entry.getValue() != null) {
+                captures.add(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        return !matches.isEmpty();
+    }
+
+    /**
+     * Whether the expression is matched by the linear matcher before falling back to the regular expression.
+     */
+    public boolean isLinear() {
+        return linearMatcher != null;
+    }
+
+    private static final class Key {
+        private final Map<String, String> patterns;
+        private final String expression;
+        private final int hashCode;
+
+        Key(Map<String, String> patterns, String expression) {
+            this.patterns = patterns;
+            this.expression = expression;
+            this.hashCode = Objects.hash(patterns, expression);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return hashCode == key.hashCode && expression.equals(key.expression) && patterns.equals(key.patterns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
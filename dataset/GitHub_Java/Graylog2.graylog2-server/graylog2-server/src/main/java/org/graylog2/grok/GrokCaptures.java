@@ -0,0 +1,111 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.grok;
+
+import java.util.Arrays;
+
+/**
+ * Reusable holder for the named captures of a single grok match.
+ * <p>
+ * Captures found by the linear matcher are stored as offsets into the subject and only turned into strings when they
+ * are requested, which lets callers reuse one instance per thread instead of building maps for every message.
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class GrokCaptures {
+    private String subject;
+    private String[] names = new String[8];
+    private String[] values = new String[8];
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the captured value, or {@code null} if the group did not take part in the match.
+     */
+    public String value(int index) {
+        final String value = values[index];
+        if (value != null || starts[index] < 0) {
+            return value;
+        }
+        return values[index] = cleanString(subject, starts[index], ends[index]);
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        subject = null;
+        size = 0;
+    }
+
+    void prepare(String subject, String[] captureNames) {
+        clear();
+        ensureCapacity(captureNames.length);
+        this.subject = subject;
+        System.arraycopy(captureNames, 0, names, 0, captureNames.length);
+        Arrays.fill(starts, 0, captureNames.length, -1);
+        size = captureNames.length;
+    }
+
+    void start(int index, int start) {
+        starts[index] = start;
+    }
+
+    void end(int index, int end) {
+        ends[index] = end;
+    }
+
+    void add(String name, String value) {
+        ensureCapacity(size + 1);
+        names[size] = name;
+        values[size] = value;
+        starts[size] = -1;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > names.length) {
+            final int newLength = Math.max(capacity, names.length * 2);
+            names = Arrays.copyOf(names, newLength);
+            values = Arrays.copyOf(values, newLength);
+            starts = Arrays.copyOf(starts, newLength);
+            ends = Arrays.copyOf(ends, newLength);
+        }
+    }
+
+    // strips one pair of surrounding quotes, like the regular grok matcher does
+    private static String cleanString(String subject, int start, int end) {
+        if (end - start == 1 && (subject.charAt(start) == '"' || subject.charAt(start) == '\'')) {
+            return "";
+        }
+        if (end - start >= 2) {
+            final char first = subject.charAt(start);
+            final char last = subject.charAt(end - 1);
+            if ((first == '"' && last == '"') || (first == '\'' && last == '\'')) {
+                return subject.substring(start + 1, end - 1);
+            }
+        }
+        return subject.substring(start, end);
+    }
+}
@@ -0,0 +1,447 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.grok;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matches grok expressions which only consist of literal text and common grok primitives without backtracking.
+ * <p>
+ * Every primitive is lowered to a small deterministic scanner over character classes. At each step the matcher takes
+ * the choice {@code java.util.regex} would try first (the longest run for greedy primitives, the first occurrence of
+ * the following literal for {@code DATA}, the last one for {@code GREEDYDATA}). If that path matches, the regular
+ * expression would have produced exactly the same captures. If it does not, the result is {@link #NO_DECISION} and
+ * the caller has to fall back to the regular expression, which may still find a match by backtracking.
+ * </p>
+ * <p>
+ * Primitives are recognized by their definition, not by their name, so user-modified patterns are never lowered.
+ * </p>
+ */
+class LinearGrokMatcher {
+    static final int MATCH = 1;
+    static final int NO_MATCH = 0;
+    static final int NO_DECISION = -1;
+
+    private static final int MAX_DEPTH = 16;
+
+    private enum Primitive {
+        NOTSPACE, WORD, USERNAME, INT, POSINT, NONNEGINT, BASE10NUM, SPACE, DATA, GREEDYDATA
+    }
+
+    private static final Map<String, Primitive> PRIMITIVES = ImmutableMap.<String, Primitive>builder()
+            .put("\\S+", Primitive.NOTSPACE)
+            .put("\\b\\w+\\b", Primitive.WORD)
+            .put("[a-zA-Z0-9._-]+", Primitive.USERNAME)
+            .put("(?:[+-]?(?:[0-9]+))", Primitive.INT)
+            .put("\\b(?:[1-9][0-9]*)\\b", Primitive.POSINT)
+            .put("\\b(?:[0-9]+)\\b", Primitive.NONNEGINT)
+            .put("(?<![0-9.+-])(?>[+-]?(?:(?:[0-9]+(?:\\.[0-9]+)?)|(?:\\.[0-9]+)))", Primitive.BASE10NUM)
+            .put("\\s*", Primitive.SPACE)
+            .put(".*?", Primitive.DATA)
+            .put(".*", Primitive.GREEDYDATA)
+            .build();
+
+    private static final int OP_LITERAL = 0;
+    private static final int OP_PRIMITIVE = 1;
+    private static final int OP_OPEN = 2;
+    private static final int OP_CLOSE = 3;
+
+    private final int[] ops;
+    private final Object[] args;
+    private final String[] captureNames;
+
+    private LinearGrokMatcher(int[] ops, Object[] args, String[] captureNames) {
+        this.ops = ops;
+        this.args = args;
+        this.captureNames = captureNames;
+    }
+
+    /**
+     * Lowers the given expression, returns {@code null} if it uses anything the linear matcher does not support.
+     *
+     * @param expression the grok expression, e.g. {@code %{WORD:verb} %{NOTSPACE:request}}
+     * @param patterns   all known grok patterns by name
+     */
+    @Nullable
+    static LinearGrokMatcher compile(String expression, Map<String, String> patterns) {
+        final Builder builder = new Builder(patterns);
+        if (!builder.append(expression, 0)) {
+            return null;
+        }
+        return builder.build();
+    }
+
+    String[] captureNames() {
+        return captureNames;
+    }
+
+    /**
+     * Matches the subject from its start.
+     *
+     * @return {@link #MATCH} with the spans set in {@code captures}, {@link #NO_MATCH} for blank subjects which are
+     * never matched, or {@link #NO_DECISION} if the regular expression has to decide
+     */
+    int match(String subject, GrokCaptures captures) {
+        if (isBlank(subject)) {
+            return NO_MATCH;
+        }
+        captures.prepare(subject, captureNames);
+        int pos = 0;
+        for (int i = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+                case OP_LITERAL:
+                    final String literal = (String) args[i];
+                    if (!subject.startsWith(literal, pos)) {
+                        return NO_DECISION;
+                    }
+                    pos += literal.length();
+                    break;
+                case OP_PRIMITIVE:
+                    pos = scan((Primitive) args[i], subject, pos, followingLiteral(i));
+                    if (pos < 0) {
+                        return NO_DECISION;
+                    }
+                    break;
+                case OP_OPEN:
+                    captures.start((Integer) args[i], pos);
+                    break;
+                case OP_CLOSE:
+                    captures.end((Integer) args[i], pos);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown op " + ops[i]);
+            }
+        }
+        return MATCH;
+    }
+
+    @Nullable
+    private String followingLiteral(int index) {
+        for (int i = index + 1; i < ops.length; i++) {
+            if (ops[i] == OP_LITERAL) {
+                return (String) args[i];
+            }
+            if (ops[i] == OP_PRIMITIVE) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static int scan(Primitive primitive, String s, int pos, @Nullable String nextLiteral) {
+        final int length = s.length();
+        int i = pos;
+        switch (primitive) {
+            case NOTSPACE:
+                while (i < length && !isSpace(s.charAt(i))) {
+                    i++;
+                }
+                return i > pos ? i : -1;
+            case USERNAME:
+                while (i < length && isUsernameChar(s.charAt(i))) {
+                    i++;
+                }
+                return i > pos ? i : -1;
+            case WORD:
+                if (!isBoundary(s, pos)) {
+                    return -1;
+                }
+                while (i < length && isWordChar(s.charAt(i))) {
+                    i++;
+                }
+                return i > pos && isBoundary(s, i) ? i : -1;
+            case INT:
+                if (i < length && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                    i++;
+                }
+                final int digitsStart = i;
+                i = skipDigits(s, i);
+                return i > digitsStart ? i : -1;
+            case POSINT:
+                if (!isBoundary(s, pos) || i >= length || s.charAt(i) < '1' || s.charAt(i) > '9') {
+                    return -1;
+                }
+                i = skipDigits(s, i + 1);
+                return isBoundary(s, i) ? i : -1;
+            case NONNEGINT:
+                if (!isBoundary(s, pos)) {
+                    return -1;
+                }
+                i = skipDigits(s, i);
+                return i > pos && isBoundary(s, i) ? i : -1;
+            case BASE10NUM:
+                return scanBase10Num(s, pos);
+            case SPACE:
+                while (i < length && isSpace(s.charAt(i))) {
+                    i++;
+                }
+                return i;
+            case DATA:
+                if (nextLiteral == null) {
+                    // a trailing lazy match is always empty
+                    return pos;
+                }
+                final int found = s.indexOf(nextLiteral, pos);
+                return found >= 0 && lineEnd(s, pos) >= found ? found : -1;
+            case GREEDYDATA:
+                final int end = lineEnd(s, pos);
+                if (nextLiteral == null) {
+                    return end;
+                }
+                final int last = s.lastIndexOf(nextLiteral, end);
+                return last >= pos ? last : -1;
+            default:
+                throw new IllegalStateException("Unknown primitive " + primitive);
+        }
+    }
+
+    private static int scanBase10Num(String s, int pos) {
+        final int length = s.length();
+        if (pos > 0) {
+            final char previous = s.charAt(pos - 1);
+            if (isDigit(previous) || previous == '.' || previous == '+' || previous == '-') {
+                return -1;
+            }
+        }
+        int i = pos;
+        if (i < length && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+            i++;
+        }
+        if (i < length && isDigit(s.charAt(i))) {
+            i = skipDigits(s, i);
+            if (i + 1 < length && s.charAt(i) == '.' && isDigit(s.charAt(i + 1))) {
+                i = skipDigits(s, i + 1);
+            }
+            return i;
+        }
+        if (i + 1 < length && s.charAt(i) == '.' && isDigit(s.charAt(i + 1))) {
+            return skipDigits(s, i + 1);
+        }
+        return -1;
+    }
+
+    private static int skipDigits(String s, int i) {
+        while (i < s.length() && isDigit(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // first line terminator at or after pos, "." does not match any of them
+    private static int lineEnd(String s, int pos) {
+        for (int i = pos; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return i;
+            }
+        }
+        return s.length();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // \s without UNICODE_CHARACTER_CLASS
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // \w without UNICODE_CHARACTER_CLASS
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isUsernameChar(char c) {
+        return isWordChar(c) || c == '.' || c == '-';
+    }
+
+    /**
+     * Evaluates {@code \b} like {@code java.util.regex} does. Characters for which the regex engine applies special
+     * rules (surrogates, non-spacing marks) are reported as no boundary, which makes the caller fall back to the regex.
+     */
+    private static boolean isBoundary(String s, int pos) {
+        final int left = pos > 0 ? boundaryClass(s.charAt(pos - 1)) : 0;
+        final int right = pos < s.length() ? boundaryClass(s.charAt(pos)) : 0;
+        if (left < 0 || right < 0) {
+            return false;
+        }
+        return left != right;
+    }
+
+    private static int boundaryClass(char c) {
+        if (Character.isSurrogate(c) || Character.getType(c) == Character.NON_SPACING_MARK) {
+            return -1;
+        }
+        return Character.isLetterOrDigit(c) || c == '_' ? 1 : 0;
+    }
+
+    // same as StringUtils.isBlank, the regular grok matcher doesn't match blank subjects at all
+    private static boolean isBlank(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Builder {
+        private final Map<String, String> patterns;
+        private final List<Integer> ops = new ArrayList<>();
+        private final List<Object> args = new ArrayList<>();
+        private final List<String> captureNames = new ArrayList<>();
+        private final Set<String> uniqueNames = new HashSet<>();
+
+        Builder(Map<String, String> patterns) {
+            this.patterns = patterns;
+        }
+
+        /**
+         * Appends a sequence of literals and pattern references.
+         */
+        boolean append(String expression, int depth) {
+            if (depth > MAX_DEPTH) {
+                return false;
+            }
+            final StringBuilder literal = new StringBuilder();
+            int i = 0;
+            while (i < expression.length()) {
+                final char c = expression.charAt(i);
+                if (c == '%' && i + 1 < expression.length() && expression.charAt(i + 1) == '{') {
+                    final int close = expression.indexOf('}', i + 2);
+                    if (close < 0) {
+                        return false;
+                    }
+                    flushLiteral(literal);
+                    if (!appendReference(expression.substring(i + 2, close), depth)) {
+                        return false;
+                    }
+                    i = close + 1;
+                } else if (c == '\\') {
+                    if (i + 1 >= expression.length() || Character.isLetterOrDigit(expression.charAt(i + 1))) {
+                        return false;
+                    }
+                    literal.append(expression.charAt(i + 1));
+                    i += 2;
+                } else if (".[]{}()*+?^$|".indexOf(c) >= 0) {
+                    return false;
+                } else {
+                    literal.append(c);
+                    i++;
+                }
+            }
+            flushLiteral(literal);
+            return true;
+        }
+
+        private boolean appendReference(String reference, int depth) {
+            final int colon = reference.indexOf(':');
+            final String name = colon < 0 ? reference : reference.substring(0, colon);
+            final String captureName = colon < 0 ? name : reference.substring(colon + 1);
+            if (!isIdentifier(name) || !isIdentifier(captureName) || "UNWANTED".equals(captureName)) {
+                return false;
+            }
+            // the regular grok matcher would turn duplicate names into lists
+            if (!uniqueNames.add(captureName)) {
+                return false;
+            }
+            final String definition = patterns.get(name);
+            if (definition == null) {
+                return false;
+            }
+
+            final int capture = captureNames.size();
+            captureNames.add(captureName);
+            add(OP_OPEN, capture);
+            final Primitive primitive = PRIMITIVES.get(definition);
+            if (primitive != null) {
+                add(OP_PRIMITIVE, primitive);
+            } else if (!append(unwrapNonCapturingGroup(definition), depth + 1)) {
+                return false;
+            }
+            add(OP_CLOSE, capture);
+            return true;
+        }
+
+        private static String unwrapNonCapturingGroup(String definition) {
+            if (definition.startsWith("(?:") && definition.endsWith(")")
+                    && definition.indexOf('(', 1) < 0 && definition.indexOf(')') == definition.length() - 1) {
+                return definition.substring(3, definition.length() - 1);
+            }
+            return definition;
+        }
+
+        private static boolean isIdentifier(String s) {
+            if (s.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                if (!isWordChar(c)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void flushLiteral(StringBuilder literal) {
+            if (literal.length() > 0) {
+                add(OP_LITERAL, literal.toString());
+                literal.setLength(0);
+            }
+        }
+
+        private void add(int op, Object arg) {
+            ops.add(op);
+            args.add(arg);
+        }
+
+        @Nullable
+        LinearGrokMatcher build() {
+            final int[] opArray = new int[ops.size()];
+            for (int i = 0; i < opArray.length; i++) {
+                opArray[i] = ops.get(i);
+                // lazy and greedy data need a literal to stop at, unless nothing consuming follows them
+                if (opArray[i] == OP_PRIMITIVE && (args.get(i) == Primitive.DATA || args.get(i) == Primitive.GREEDYDATA)
+                        && !followedByLiteralOrEnd(i)) {
+                    return null;
+                }
+            }
+            return new LinearGrokMatcher(opArray, args.toArray(), captureNames.toArray(new String[0]));
+        }
+
+        private boolean followedByLiteralOrEnd(int index) {
+            for (int i = index + 1; i < ops.size(); i++) {
+                if (ops.get(i) == OP_LITERAL) {
+                    return true;
+                }
+                if (ops.get(i) == OP_PRIMITIVE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package org.graylog2.indexer;
 
 import com.beust.jcommander.internal.Maps;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
 import org.apache.commons.io.FileUtils;
@@ -44,6 +44,7 @@ import org.graylog2.plugin.indexer.MessageGateway;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
@@ -224,15 +225,19 @@ public class Indexer {
         }
 
         final BulkRequestBuilder request = client.prepareBulk();
+        // Reused for the whole batch, every document is streamed into it without building a map first.
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
         for (Message msg : messages) {
-            try {
-                String source = objectMapper.writeValueAsString(msg.toElasticSearchObject());
-
-                // we manually set the document ID to the same value to be able to match up documents later.
-                request.add(buildIndexRequest(Deflector.DEFLECTOR_NAME, source, msg.getId(), 0)); // Main index.
-            } catch (JsonProcessingException e) {
+            buffer.reset();
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+                msg.writeElasticSearchJson(generator);
+            } catch (IOException e) {
                 LOG.warn("Error while converting message to ElasticSearch JSON", e);
+                continue;
             }
+
+            // we manually set the document ID to the same value to be able to match up documents later.
+            request.add(buildIndexRequest(Deflector.DEFLECTOR_NAME, buffer.toByteArray(), msg.getId(), 0)); // Main index.
         }
 
         request.setConsistencyLevel(WriteConsistencyLevel.ONE);
@@ -309,7 +314,7 @@ public class Indexer {
     	return messages;
     }
     
-    private IndexRequestBuilder buildIndexRequest(String index, String source, String id, int ttlMinutes) {
+    private IndexRequestBuilder buildIndexRequest(String index, byte[] source, String id, int ttlMinutes) {
         final IndexRequestBuilder b = new IndexRequestBuilder(client);
         
         /*
@@ -0,0 +1,64 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Sizes bulk requests by bytes, using additive increase and multiplicative decrease.
+ * <p>
+ * Every response which has been faster than the target latency grows the batch size by a constant step of 1/64 of
+ * the range between the minimum and the maximum size, slow responses shrink it by a quarter and rejections halve it.
+ * </p>
+ */
+class AdaptiveBatchSize {
+    private final long minBytes;
+    private final long maxBytes;
+    private final long targetLatencyNanos;
+    private final long incrementBytes;
+
+    private volatile long currentBytes;
+
+    AdaptiveBatchSize(long minBytes, long maxBytes, long initialBytes, long targetLatencyNanos) {
+        checkArgument(minBytes > 0 && minBytes <= maxBytes, "Invalid batch size bounds");
+        this.minBytes = minBytes;
+        this.maxBytes = maxBytes;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.incrementBytes = Math.max((maxBytes - minBytes) / 64, 1L);
+        this.currentBytes = clamp(initialBytes);
+    }
+
+    long currentBytes() {
+        return currentBytes;
+    }
+
+    synchronized void onSuccess(long latencyNanos) {
+        if (latencyNanos <= targetLatencyNanos) {
+            currentBytes = clamp(currentBytes + incrementBytes);
+        } else {
+            currentBytes = clamp(currentBytes - currentBytes / 4);
+        }
+    }
+
+    synchronized void onRejected() {
+        currentBytes = clamp(currentBytes / 2);
+    }
+
+    private long clamp(long bytes) {
+        return Math.max(minBytes, Math.min(maxBytes, bytes));
+    }
+}
@@ -0,0 +1,397 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.annotations.VisibleForTesting;
+import org.graylog2.plugin.Message;
+import org.graylog2.shared.journal.Journal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Indexes messages with several concurrent bulk requests.
+ * <p>
+ * Messages are serialized when they are added and collected into batches which are sized by bytes. The batch size
+ * adapts to the latency of the cluster and shrinks when it rejects requests. Up to {@code maxInFlight} bulk requests
+ * are sent concurrently, callers of {@link #add(String, Message)} only block once all of them are busy.
+ * </p>
+ * <p>
+ * Documents rejected with {@code 429 Too Many Requests} or a server error are retried with an exponential backoff
+ * which is capped at 30 seconds, and only those documents are sent again. They are retried until the cluster accepts
+ * them, so an unavailable cluster stalls the pipeline instead of dropping messages. A request rejected with
+ * {@code 413 Payload Too Large} is split in halves until it is accepted or only a single document is left. Other
+ * client errors are permanent, so those documents are logged and counted as failed but not retried, like the
+ * regular bulk indexing does.
+ * </p>
+ * <p>
+ * Batches can complete out of order, so the journal offset is only committed up to the last batch for which all
+ * earlier batches have completed as well. A batch which gives up, e.g. because the pipeline is shut down, has not
+ * been indexed, so no offset is committed past it anymore and the journal replays it after a restart.
+ * </p>
+ */
+public class BulkIndexPipeline {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkIndexPipeline.class);
+
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final BulkTransport transport;
+    private final Journal journal;
+    private final ExecutorService executor;
+    private final JsonFactory jsonFactory;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final AdaptiveBatchSize batchSize;
+    private final long initialBackoffMillis;
+
+    private final Timer requestTime;
+    private final Histogram batchBytes;
+    private final Histogram batchDocuments;
+    private final Counter inFlightRequests;
+    private final Meter indexedDocuments;
+    private final Meter rejectedDocuments;
+    private final Meter failedDocuments;
+    private final Meter transportErrors;
+    private final Meter failedBatches;
+
+    private final ByteArrayOutputStream serializationBuffer = new ByteArrayOutputStream(1024);
+    // guarded by "this"
+    private List<IndexDocument> currentBatch = new ArrayList<>();
+    private long currentBatchBytes = 0L;
+
+    // guarded by pendingBatches
+    private final Deque<Batch> pendingBatches = new ArrayDeque<>();
+    private boolean committing = true;
+
+    public BulkIndexPipeline(BulkTransport transport,
+                             Journal journal,
+                             ExecutorService executor,
+                             JsonFactory jsonFactory,
+                             MetricRegistry metricRegistry,
+                             int maxInFlight,
+                             long minBatchBytes,
+                             long maxBatchBytes,
+                             long targetLatencyMillis,
+                             long initialBackoffMillis) {
+        this.transport = transport;
+        this.journal = journal;
+        this.executor = executor;
+        this.jsonFactory = jsonFactory;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.batchSize = new AdaptiveBatchSize(minBatchBytes, maxBatchBytes, minBatchBytes,
+                TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis));
+        this.initialBackoffMillis = initialBackoffMillis;
+
+        this.requestTime = metricRegistry.timer(name(BulkIndexPipeline.class, "requestTime"));
+        this.batchBytes = metricRegistry.histogram(name(BulkIndexPipeline.class, "batchBytes"));
+        this.batchDocuments = metricRegistry.histogram(name(BulkIndexPipeline.class, "batchDocuments"));
+        this.inFlightRequests = metricRegistry.counter(name(BulkIndexPipeline.class, "inFlightRequests"));
+        this.indexedDocuments = metricRegistry.meter(name(BulkIndexPipeline.class, "indexedDocuments"));
+        this.rejectedDocuments = metricRegistry.meter(name(BulkIndexPipeline.class, "rejectedDocuments"));
+        this.failedDocuments = metricRegistry.meter(name(BulkIndexPipeline.class, "failedDocuments"));
+        this.transportErrors = metricRegistry.meter(name(BulkIndexPipeline.class, "transportErrors"));
+        this.failedBatches = metricRegistry.meter(name(BulkIndexPipeline.class, "failedBatches"));
+    }
+
+    /**
+     * Serializes the message and adds it to the current batch, which is sent once it is large enough.
+     */
+    public void add(String index, Message message) throws IOException, InterruptedException {
+        final Batch batch;
+        synchronized (this) {
+            serializationBuffer.reset();
+            try (JsonGenerator generator = jsonFactory.createGenerator(serializationBuffer)) {
+                message.writeElasticSearchJson(generator);
+            }
+            final byte[] source = serializationBuffer.toByteArray();
+            currentBatch.add(new IndexDocument(index, message.getId(), source, message.getJournalOffset()));
+            currentBatchBytes += source.length;
+
+            if (currentBatchBytes < batchSize.currentBytes()) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        dispatch(batch);
+    }
+
+    public void add(String index, List<Message> messages) throws IOException, InterruptedException {
+        for (Message message : messages) {
+            add(index, message);
+        }
+    }
+
+    /**
+     * Sends the current batch, even if it has not reached the batch size yet.
+     */
+    public void flush() throws InterruptedException {
+        final Batch batch;
+        synchronized (this) {
+            if (currentBatch.isEmpty()) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        dispatch(batch);
+    }
+
+    /**
+     * Flushes the current batch and waits until all bulk requests have completed.
+     *
+     * @return {@code false} if the requests did not complete within the timeout
+     */
+    public boolean flushAndWait(long timeout, TimeUnit unit) throws InterruptedException {
+        flush();
+        if (!inFlight.tryAcquire(maxInFlight, timeout, unit)) {
+            return false;
+        }
+        inFlight.release(maxInFlight);
+        return true;
+    }
+
+    // must be called while holding the lock on "this"
+    private Batch takeBatch() {
+        final Batch batch = new Batch(currentBatch, currentBatchBytes);
+        currentBatch = new ArrayList<>();
+        currentBatchBytes = 0L;
+        // batches are registered in the order they have been taken, not in the order they are sent
+        synchronized (pendingBatches) {
+            pendingBatches.addLast(batch);
+        }
+        return batch;
+    }
+
+    private void dispatch(Batch batch) throws InterruptedException {
+        // this is where callers block once all requests are in flight
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            // the batch has already been registered, so it must give up like any other batch which is not indexed
+            gaveUp(batch, "interrupted before sending them");
+            throw e;
+        }
+        inFlightRequests.inc();
+        batchBytes.update(batch.bytes);
+        batchDocuments.update(batch.documents.size());
+        try {
+            executor.execute(() -> {
+                boolean indexed = false;
+                try {
+                    index(batch.documents);
+                    indexed = true;
+                } catch (InterruptedException e) {
+                    failedBatches.mark();
+                    LOG.warn("Interrupted while indexing {} documents, giving up.", batch.documents.size());
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    failedBatches.mark();
+                    LOG.error("Indexing {} documents failed, giving up.", batch.documents.size(), e);
+                } finally {
+                    completed(batch, indexed);
+                    inFlightRequests.dec();
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightRequests.dec();
+            inFlight.release();
+            gaveUp(batch, "the executor rejected them");
+            throw e;
+        }
+    }
+
+    private void gaveUp(Batch batch, String reason) {
+        failedBatches.mark();
+        LOG.error("Failed to index [{}] messages, {}.", batch.documents.size(), reason);
+        completed(batch, false);
+    }
+
+    private void index(List<IndexDocument> documents) throws InterruptedException {
+        List<IndexDocument> pending = documents;
+        int attempt = 0;
+        while (!pending.isEmpty()) {
+            if (attempt > 0) {
+                Thread.sleep(backoffMillis(attempt));
+            }
+            attempt++;
+
+            final int[] statuses;
+            final long start = System.nanoTime();
+            try {
+                statuses = transport.send(pending);
+            } catch (IOException e) {
+                transportErrors.mark();
+                LOG.warn("Bulk request with {} documents failed, retrying (attempt #{}): {}",
+                        pending.size(), attempt, e.getMessage());
+                continue;
+            }
+            final long latency = System.nanoTime() - start;
+            requestTime.update(latency, TimeUnit.NANOSECONDS);
+
+            if (statuses.length != pending.size()) {
+                transportErrors.mark();
+                LOG.warn("Bulk response contains {} items for {} documents, retrying the whole request.",
+                        statuses.length, pending.size());
+                continue;
+            }
+
+            List<IndexDocument> rejected = Collections.emptyList();
+            List<IndexDocument> tooLarge = Collections.emptyList();
+            int indexed = 0;
+            int failed = 0;
+            for (int i = 0; i < statuses.length; i++) {
+                final int status = statuses[i];
+                if (status >= 200 && status < 300) {
+                    indexed++;
+                } else if (isRetryable(status)) {
+                    if (rejected.isEmpty()) {
+                        rejected = new ArrayList<>();
+                    }
+                    rejected.add(pending.get(i));
+                } else if (status == BulkTransport.STATUS_PAYLOAD_TOO_LARGE) {
+                    if (tooLarge.isEmpty()) {
+                        tooLarge = new ArrayList<>();
+                    }
+                    tooLarge.add(pending.get(i));
+                } else {
+                    failed++;
+                    LOG.debug("Failed to index document {} in index {}, status {}",
+                            pending.get(i).getId(), pending.get(i).getIndex(), status);
+                }
+            }
+            indexedDocuments.mark(indexed);
+            if (failed > 0) {
+                failedDocuments.mark(failed);
+                LOG.error("Failed to index [{}] messages. Please check the index error log in your web interface for the reason.", failed);
+            }
+
+            if (rejected.isEmpty() && tooLarge.isEmpty()) {
+                batchSize.onSuccess(latency);
+            } else {
+                batchSize.onRejected();
+            }
+            if (!rejected.isEmpty()) {
+                rejectedDocuments.mark(rejected.size());
+                LOG.debug("{} of {} documents have been rejected, retrying them.", rejected.size(), pending.size());
+            }
+            if (!tooLarge.isEmpty()) {
+                split(tooLarge);
+            }
+            pending = rejected;
+        }
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == BulkTransport.STATUS_TOO_MANY_REQUESTS || status >= 500;
+    }
+
+    // sends both halves on their own until single documents are left, which can't be split any further
+    private void split(List<IndexDocument> documents) throws InterruptedException {
+        if (documents.size() == 1) {
+            failed(documents, "the document is too large");
+            return;
+        }
+        LOG.debug("Bulk request with {} documents is too large, splitting it.", documents.size());
+        final int half = documents.size() / 2;
+        index(new ArrayList<>(documents.subList(0, half)));
+        index(new ArrayList<>(documents.subList(half, documents.size())));
+    }
+
+    private void failed(List<IndexDocument> documents, String reason) {
+        failedDocuments.mark(documents.size());
+        LOG.error("Failed to index [{}] messages, {}.", documents.size(), reason);
+    }
+
+    private long backoffMillis(int attempt) {
+        final long backoff = initialBackoffMillis << Math.min(attempt - 1, 20);
+        return Math.min(backoff, MAX_BACKOFF_MILLIS);
+    }
+
+    private void completed(Batch batch, boolean indexed) {
+        long committableOffset = Long.MIN_VALUE;
+        synchronized (pendingBatches) {
+            batch.done = true;
+            batch.indexed = indexed;
+            while (committing && !pendingBatches.isEmpty() && pendingBatches.peekFirst().done) {
+                final Batch completed = pendingBatches.pollFirst();
+                if (!completed.indexed) {
+                    // committing past this batch would acknowledge messages which have never been indexed
+                    committing = false;
+                    LOG.warn("Not committing journal offsets from {} on, the journal replays them after a restart.",
+                            completed.minJournalOffset);
+                    break;
+                }
+                committableOffset = Math.max(committableOffset, completed.maxJournalOffset);
+            }
+            if (!committing) {
+                pendingBatches.clear();
+            }
+            // committing inside the lock keeps the offsets in order
+            if (committableOffset != Long.MIN_VALUE) {
+                journal.markJournalOffsetCommitted(committableOffset);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    long currentBatchSizeBytes() {
+        return batchSize.currentBytes();
+    }
+
+    private static class Batch {
+        private final List<IndexDocument> documents;
+        private final long bytes;
+        private final long minJournalOffset;
+        private final long maxJournalOffset;
+        private boolean done = false;
+        private boolean indexed = false;
+
+        Batch(List<IndexDocument> documents, long bytes) {
+            this.documents = documents;
+            this.bytes = bytes;
+            long minOffset = Long.MAX_VALUE;
+            long maxOffset = Long.MIN_VALUE;
+            for (IndexDocument document : documents) {
+                minOffset = Math.min(minOffset, document.getJournalOffset());
+                maxOffset = Math.max(maxOffset, document.getJournalOffset());
+            }
+            this.minJournalOffset = minOffset;
+            this.maxJournalOffset = maxOffset;
+        }
+    }
+}
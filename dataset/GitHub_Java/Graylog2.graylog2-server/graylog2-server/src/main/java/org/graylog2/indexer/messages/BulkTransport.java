@@ -0,0 +1,38 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sends a single bulk request.
+ */
+public interface BulkTransport {
+    int STATUS_PAYLOAD_TOO_LARGE = 413;
+    int STATUS_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Indexes the given documents.
+     *
+     * @return the status of every document, in the order of the given documents. If the whole request has been
+     * rejected, every document is reported with the status of the request, e.g. {@link #STATUS_TOO_MANY_REQUESTS}
+     * or {@link #STATUS_PAYLOAD_TOO_LARGE}.
+     * @throws IOException if the request could not be sent or the response could not be read
+     */
+    int[] send(List<IndexDocument> documents) throws IOException;
+}
@@ -0,0 +1,147 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sends bulk requests to the {@code _bulk} endpoint of an Elasticsearch node.
+ * <p>
+ * The request body is written straight from the serialized documents, and only the per-item status codes are read
+ * from the response.
+ * </p>
+ */
+public class HttpBulkTransport implements BulkTransport {
+    private static final MediaType NDJSON = MediaType.parse("application/x-ndjson");
+
+    private final OkHttpClient httpClient;
+    private final HttpUrl bulkUrl;
+    private final JsonFactory jsonFactory;
+
+    public HttpBulkTransport(OkHttpClient httpClient, HttpUrl elasticsearchUrl, JsonFactory jsonFactory) {
+        this.httpClient = requireNonNull(httpClient, "httpClient");
+        this.bulkUrl = requireNonNull(elasticsearchUrl, "elasticsearchUrl").newBuilder().addPathSegment("_bulk").build();
+        this.jsonFactory = requireNonNull(jsonFactory, "jsonFactory");
+    }
+
+    @Override
+    public int[] send(List<IndexDocument> documents) throws IOException {
+        final Request request = new Request.Builder()
+                .url(bulkUrl)
+                .post(RequestBody.create(NDJSON, buildBody(documents).readByteString()))
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                // the whole request has been rejected, the pipeline decides whether that can be retried
+                final int[] statuses = new int[documents.size()];
+                Arrays.fill(statuses, response.code());
+                return statuses;
+            }
+            final ResponseBody body = response.body();
+            if (body == null) {
+                throw new IOException("Bulk response with status " + response.code() + " has no body");
+            }
+            return parseStatuses(body, documents.size());
+        }
+    }
+
+    private Buffer buildBody(List<IndexDocument> documents) throws IOException {
+        final Buffer body = new Buffer();
+        for (IndexDocument document : documents) {
+            try (JsonGenerator generator = jsonFactory.createGenerator(body.outputStream())) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("index");
+                generator.writeStringField("_index", document.getIndex());
+                generator.writeStringField("_id", document.getId());
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            body.writeByte('\n');
+            body.write(document.getSource());
+            body.writeByte('\n');
+        }
+        return body;
+    }
+
+    private int[] parseStatuses(ResponseBody body, int expectedItems) throws IOException {
+        final int[] statuses = new int[expectedItems];
+        int items = 0;
+        try (JsonParser parser = jsonFactory.createParser(body.byteStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected bulk response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if (!"items".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // every item looks like {"index":{"_id":"...","status":201,...}}
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    final int status = parseItemStatus(parser);
+                    if (items < expectedItems) {
+                        statuses[items] = status;
+                    }
+                    items++;
+                }
+            }
+        }
+        if (items != expectedItems) {
+            throw new IOException("Bulk response contains " + items + " items for " + expectedItems + " documents");
+        }
+        return statuses;
+    }
+
+    private static int parseItemStatus(JsonParser parser) throws IOException {
+        int status = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("status".equals(field)) {
+                    status = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A serialized document which is ready to be sent in a bulk request.
+ */
+public class IndexDocument {
+    private final String index;
+    private final String id;
+    private final byte[] source;
+    private final long journalOffset;
+
+    public IndexDocument(String index, String id, byte[] source, long journalOffset) {
+        this.index = requireNonNull(index, "index");
+        this.id = requireNonNull(id, "id");
+        this.source = requireNonNull(source, "source");
+        this.journalOffset = journalOffset;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public byte[] getSource() {
+        return source;
+    }
+
+    public long getJournalOffset() {
+        return journalOffset;
+    }
+}
@@ -41,6 +41,7 @@ import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static com.codahale.metrics.MetricRegistry.name;
@@ -54,24 +55,48 @@ public class GelfChunkAggregator implements CodecAggregator {
     public static final int VALIDITY_PERIOD = 5000; // millis
     private static final long CHECK_PERIOD = 1000;
 
+    /**
+     * The GELF specification allows at most 128 chunks per message.
+     */
+    public static final int MAX_CHUNKS = 128;
+
+    /**
+     * Upper limit of bytes kept alive by the chunks of incomplete messages, across all messages of this aggregator.
+     * A chunk counts with the size of the whole datagram buffer its slice keeps reachable, not just its payload.
+     */
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
     public static final String CHUNK_COUNTER = name(GelfChunkAggregator.class, "total-chunks");
     public static final String WAITING_MESSAGES = name(GelfChunkAggregator.class, "waiting-messages");
     public static final String COMPLETE_MESSAGES = name(GelfChunkAggregator.class, "complete-messages");
     public static final String EXPIRED_MESSAGES = name(GelfChunkAggregator.class, "expired-messages");
     public static final String EXPIRED_CHUNKS = name(GelfChunkAggregator.class, "expired-chunks");
     public static final String DUPLICATE_CHUNKS = name(GelfChunkAggregator.class, "duplicate-chunks");
+    public static final String EVICTED_MESSAGES = name(GelfChunkAggregator.class, "evicted-messages");
+    public static final String EVICTED_CHUNKS = name(GelfChunkAggregator.class, "evicted-chunks");
+    public static final String BUFFERED_BYTES = name(GelfChunkAggregator.class, "buffered-bytes");
 
     private final ConcurrentMap<String, ChunkEntry> chunks = Maps.newConcurrentMap();
     private final ConcurrentSkipListSet<ChunkEntry> sortedEvictionSet = new ConcurrentSkipListSet<>();
+    private final AtomicLong bufferedBytes = new AtomicLong(0L);
+    private final long maxBufferedBytes;
     private final Counter chunkCounter;
     private final Counter waitingMessages;
     private final Counter expiredMessages;
     private final Counter expiredChunks;
     private final Counter duplicateChunks;
     private final Counter completeMessages;
+    private final Counter evictedMessages;
+    private final Counter evictedChunks;
+    private final Counter bufferedBytesCounter;
 
     @Inject
     public GelfChunkAggregator(@Named("daemonScheduler") ScheduledExecutorService scheduler, MetricRegistry metricRegistry) {
+        this(scheduler, metricRegistry, DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    public GelfChunkAggregator(ScheduledExecutorService scheduler, MetricRegistry metricRegistry, long maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
         scheduler.scheduleAtFixedRate(new ChunkEvictionTask(), VALIDITY_PERIOD, CHECK_PERIOD, TimeUnit.MILLISECONDS);
         chunkCounter = metricRegistry.counter(CHUNK_COUNTER);
         // this is a counter instead of a Gauge, because calling sortedEvictionSet.size() is expensive
@@ -80,22 +105,28 @@ public class GelfChunkAggregator implements CodecAggregator {
         expiredMessages = metricRegistry.counter(EXPIRED_MESSAGES);
         expiredChunks = metricRegistry.counter(EXPIRED_CHUNKS);
         duplicateChunks = metricRegistry.counter(DUPLICATE_CHUNKS);
+        evictedMessages = metricRegistry.counter(EVICTED_MESSAGES);
+        evictedChunks = metricRegistry.counter(EVICTED_CHUNKS);
+        bufferedBytesCounter = metricRegistry.counter(BUFFERED_BYTES);
     }
 
     @Nonnull
     @Override
     public Result addChunk(ChannelBuffer buffer) {
-        final byte[] readable = new byte[buffer.readableBytes()];
-        buffer.toByteBuffer().get(readable, buffer.readerIndex(), buffer.readableBytes());
+        if (buffer.readableBytes() < 2) {
+            return INVALID_RESULT;
+        }
 
-        final GELFMessage msg = new GELFMessage(readable);
+        // Only look at the magic bytes, the datagram is never copied.
+        final int readerIndex = buffer.readerIndex();
+        final GELFMessage.Type type = GELFMessage.Type.determineType(buffer.getByte(readerIndex), buffer.getByte(readerIndex + 1));
 
         final ChannelBuffer aggregatedBuffer;
-        switch (msg.getGELFType()) {
+        switch (type) {
             case CHUNKED:
                 try {
                     chunkCounter.inc();
-                    aggregatedBuffer = checkForCompletion(msg);
+                    aggregatedBuffer = checkForCompletion(buffer);
                     if (aggregatedBuffer == null) {
                         return VALID_EMPTY_RESULT;
                     }
@@ -121,21 +152,54 @@ public class GelfChunkAggregator implements CodecAggregator {
      * Checks whether the presented gelf message chunk completes the incoming raw message and returns it if it does.
      * If the message isn't complete, it adds the chunk to the internal buffer and waits for more incoming messages.
      * Outdated chunks are being purged regularly.
+     * <p>
+     * Chunks are kept as slices of the datagram buffers they arrived in, and a complete message is returned as a
+     * composite buffer over these slices, so the payload is never copied during reassembly.
+     * </p>
      *
-     * @param gelfMessage the gelf message chunk
-     * @return null or a {@link org.graylog2.plugin.journal.RawMessage raw message} object
+     * @param buffer the buffer containing the gelf message chunk, including the chunk header
+     * @return null or the buffer containing the reassembled message
      */
     @Nullable
-    private ChannelBuffer checkForCompletion(GELFMessage gelfMessage) {
+    private ChannelBuffer checkForCompletion(ChannelBuffer buffer) {
         if (!chunks.isEmpty() && log.isDebugEnabled()) {
             log.debug("Dumping GELF chunk map [chunks for {} messages]:\n{}", chunks.size(), humanReadableChunkMap());
         }
-        final GELFMessageChunk chunk = new GELFMessageChunk(gelfMessage, null); // TODO second parameter
-        final int sequenceCount = chunk.getSequenceCount();
 
-        final String messageId = chunk.getId();
+        final int readerIndex = buffer.readerIndex();
+        final int readableBytes = buffer.readableBytes();
+        if (readableBytes < GELFMessageChunk.HEADER_TOTAL_LENGTH) {
+            throw new IllegalArgumentException("This GELF message chunk is too short. Cannot even contain the required header.");
+        }
 
-        ChunkEntry entry = new ChunkEntry(sequenceCount, chunk.getArrival(), messageId);
+        final String messageId = Long.toHexString(buffer.getLong(readerIndex + GELFMessageChunk.HEADER_PART_HASH_START));
+        final int sequenceNumber = buffer.getUnsignedByte(readerIndex + GELFMessageChunk.HEADER_PART_SEQNUM_START);
+        final int sequenceCount = buffer.getUnsignedByte(readerIndex + GELFMessageChunk.HEADER_PART_SEQCNT_START);
+        // A message with more chunks than allowed could never be completed, don't buffer anything for it.
+        if (sequenceCount > MAX_CHUNKS) {
+            throw new IllegalArgumentException("Invalid sequence count " + sequenceCount + " for message " + messageId + ", at most " + MAX_CHUNKS + " chunks are allowed");
+        }
+        if (sequenceNumber >= sequenceCount) {
+            throw new IllegalArgumentException("Invalid sequence number " + sequenceNumber + " of " + sequenceCount + " for message " + messageId);
+        }
+
+        final int dataOffset = readerIndex + GELFMessageChunk.HEADER_TOTAL_LENGTH;
+        final int dataLength = readableBytes - GELFMessageChunk.HEADER_TOTAL_LENGTH;
+        final int retainedLength = retainedLength(buffer);
+        // A slice keeps the whole datagram buffer alive. If that is mostly unused, a copy of the payload is cheaper.
+        final boolean copy = retainedLength > 2 * dataLength;
+        final int chargedLength = copy ? dataLength : retainedLength;
+        if (!reserve(chargedLength)) {
+            log.debug("Chunk {} of message {} does not fit into the chunk buffer of {} bytes, dropping it.",
+                    sequenceNumber, messageId, maxBufferedBytes);
+            evictedChunks.inc();
+            return null;
+        }
+        final ChannelBuffer data = copy
+                ? ChannelBuffers.copiedBuffer(buffer.slice(dataOffset, dataLength))
+                : buffer.slice(dataOffset, dataLength);
+
+        ChunkEntry entry = new ChunkEntry(sequenceCount, Tools.nowUTC().getMillis(), messageId);
 
         final ChunkEntry existing = chunks.putIfAbsent(messageId, entry);
         if (existing == null) {
@@ -147,28 +211,39 @@ public class GelfChunkAggregator implements CodecAggregator {
             entry = existing;
         }
 
-        final int sequenceNumber = chunk.getSequenceNumber();
-        if (!entry.payloadArray.compareAndSet(sequenceNumber, null, chunk)) {
-            log.error("Received duplicate chunk {} for message {} from {}", sequenceNumber, messageId, gelfMessage.getSourceAddress());
+        if (sequenceNumber >= entry.payloadArray.length() || !entry.payloadArray.compareAndSet(sequenceNumber, null, data)) {
+            log.error("Received duplicate chunk {} for message {}", sequenceNumber, messageId);
             duplicateChunks.inc();
+            release(chargedLength);
+            return null;
+        }
+        entry.bytes.addAndGet(chargedLength);
+        if (chunks.get(messageId) != entry) {
+            // the entry has been evicted or expired while we were adding the chunk
+            release(entry.bytes.getAndSet(0L));
             return null;
         }
 
         final int chunkWatermark = entry.chunkSlotsWritten.incrementAndGet();
 
-        if (chunkWatermark == sequenceCount) {
+        if (chunkWatermark == entry.payloadArray.length()) {
             // message is complete by chunk count, assemble and return it.
             // it might still be corrupt etc, but we've seen enough chunks
             // remove before operating on it, to avoid racing too much with the clean up job, some race is inevitable, though.
             entry = getAndCleanupEntry(messageId);
+            if (entry == null) {
+                // the clean up job or the memory limit got there first
+                return null;
+            }
 
-            final byte[] allChunks[] = new byte[sequenceCount][];
+            final ChannelBuffer[] allChunks = new ChannelBuffer[entry.payloadArray.length()];
             for (int i = 0; i < entry.payloadArray.length(); i++) {
-                final GELFMessageChunk messageChunk = entry.payloadArray.get(i);
+                final ChannelBuffer messageChunk = entry.payloadArray.get(i);
                 if (messageChunk == null) {
                     log.debug("Couldn't read chunk {} of message {}, skipping this chunk.", i, messageId);
+                    allChunks[i] = ChannelBuffers.EMPTY_BUFFER;
                 } else {
-                    allChunks[i] = messageChunk.getData();
+                    allChunks[i] = messageChunk;
                 }
             }
             completeMessages.inc();
@@ -185,20 +260,74 @@ public class GelfChunkAggregator implements CodecAggregator {
         return null;
     }
 
+    /**
+     * Reserves space for a chunk in the global buffer, evicting the oldest incomplete messages if necessary.
+     *
+     * @return {@code true} if the space could be reserved
+     */
+    private boolean reserve(int length) {
+        if (length > maxBufferedBytes) {
+            return false;
+        }
+        while (true) {
+            final long current = bufferedBytes.get();
+            if (current + length <= maxBufferedBytes) {
+                if (bufferedBytes.compareAndSet(current, current + length)) {
+                    bufferedBytesCounter.inc(length);
+                    return true;
+                }
+                continue;
+            }
+
+            final ChunkEntry oldest = sortedEvictionSet.pollFirst();
+            if (oldest == null) {
+                // Nothing left to evict, the remaining bytes are being reassembled right now.
+                return false;
+            }
+            if (chunks.remove(oldest.id, oldest)) {
+                waitingMessages.dec();
+                evictedMessages.inc();
+                evictedChunks.inc(oldest.chunkSlotsWritten.get());
+                release(oldest.bytes.getAndSet(0L));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes the given buffer keeps reachable, which is the size of its backing array for heap
+     * buffers, even if the buffer itself only covers a part of it.
+     */
+    private static int retainedLength(ChannelBuffer buffer) {
+        return buffer.hasArray() ? buffer.array().length : buffer.capacity();
+    }
+
+    private void release(long length) {
+        bufferedBytes.addAndGet(-length);
+        bufferedBytesCounter.dec(length);
+    }
+
     private void expireEntry(String messageId) {
         final ChunkEntry cleanupEntry = getAndCleanupEntry(messageId);
-        expiredMessages.inc();
-        expiredChunks.inc(cleanupEntry.chunkSlotsWritten.get());
+        if (cleanupEntry != null) {
+            expiredMessages.inc();
+            expiredChunks.inc(cleanupEntry.chunkSlotsWritten.get());
+        }
     }
 
     private boolean isOutdated(ChunkEntry entry) {
         return (Tools.nowUTC().getMillis() - entry.firstTimestamp) > VALIDITY_PERIOD;
     }
 
+    @Nullable
     private ChunkEntry getAndCleanupEntry(String id) {
         final ChunkEntry entry = chunks.remove(id);
+        if (entry == null) {
+            return null;
+        }
         sortedEvictionSet.remove(entry);
         waitingMessages.dec();
+        // The slices are handed out (or dropped) now, they no longer count against the buffer limit.
+        release(entry.bytes.getAndSet(0L));
         return entry;
     }
 
@@ -209,8 +338,9 @@ public class GelfChunkAggregator implements CodecAggregator {
             sb.append("Message <").append(entry.getKey()).append("> ");
             sb.append("\tChunks:\n");
             for (int i = 0; i < entry.getValue().payloadArray.length(); i++) {
-                final GELFMessageChunk chunk = entry.getValue().payloadArray.get(i);
-                sb.append("\t\t").append(chunk == null ? "<not arrived yet>" : chunk).append(("\n"));
+                final ChannelBuffer chunk = entry.getValue().payloadArray.get(i);
+                sb.append("\t\t").append(i + 1).append('/').append(entry.getValue().payloadArray.length())
+                        .append(chunk == null ? " <not arrived yet>" : " data size: " + chunk.readableBytes()).append(("\n"));
             }
         }
 
@@ -220,8 +350,9 @@ public class GelfChunkAggregator implements CodecAggregator {
     @VisibleForTesting
     static class ChunkEntry implements Comparable<ChunkEntry> {
         protected final AtomicInteger chunkSlotsWritten = new AtomicInteger(0);
+        protected final AtomicLong bytes = new AtomicLong(0L);
         protected final long firstTimestamp;
-        protected final AtomicReferenceArray<GELFMessageChunk> payloadArray;
+        protected final AtomicReferenceArray<ChannelBuffer> payloadArray;
         protected final String id;
 
         public ChunkEntry(int chunkCount, long firstTimestamp, String id) {
@@ -17,14 +17,18 @@
 package org.graylog2.inputs.codecs;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
 import com.google.inject.assistedinject.Assisted;
 import org.apache.commons.lang3.StringUtils;
 import org.graylog2.inputs.codecs.gelf.GELFMessage;
 import org.graylog2.inputs.transports.TcpTransport;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.Utf8Slice;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.configuration.ConfigurationRequest;
 import org.graylog2.plugin.inputs.annotations.Codec;
@@ -41,7 +45,9 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Codec(name = "gelf", displayName = "GELF")
@@ -59,65 +65,111 @@ public class GelfCodec extends AbstractCodec {
         objectMapper.configure(JsonParser.Feature.ALLOW_UNQUOTED_CONTROL_CHARS, true);
     }
 
-    private static String stringValue(final JsonNode json, final String fieldName) {
-        if (json != null) {
-            final JsonNode value = json.get(fieldName);
-
-            if (value != null) {
-                return value.asText();
-            }
+    @Nullable
+    private static String stringValue(final Map<String, Object> fields, final String fieldName) {
+        final Object value = fields.get(fieldName);
+        if (value instanceof CharSequence) {
+            return value.toString();
         }
-        return null;
+        return value == null ? null : ((JsonNode) value).asText();
     }
 
-    private static long longValue(final JsonNode json, final String fieldName) {
-        if (json != null) {
-            final JsonNode value = json.get(fieldName);
+    private static long longValue(final Map<String, Object> fields, final String fieldName) {
+        final JsonNode value = nodeValue(fields, fieldName);
+        return value == null ? -1L : value.asLong(-1L);
+    }
 
-            if (value != null) {
-                return value.asLong(-1L);
-            }
+    private static int intValue(final Map<String, Object> fields, final String fieldName) {
+        final JsonNode value = nodeValue(fields, fieldName);
+        return value == null ? -1 : value.asInt(-1);
+    }
+
+    private static double doubleValue(final Map<String, Object> fields, final String fieldName) {
+        final JsonNode value = nodeValue(fields, fieldName);
+        return value == null ? -1.0 : value.asDouble(-1.0);
+    }
+
+    @Nullable
+    private static JsonNode nodeValue(final Map<String, Object> fields, final String fieldName) {
+        final Object value = fields.get(fieldName);
+        if (value instanceof CharSequence) {
+            return TextNode.valueOf(value.toString());
         }
-        return -1L;
+        return (JsonNode) value;
     }
 
-    private static int intValue(final JsonNode json, final String fieldName) {
-        if (json != null) {
-            final JsonNode value = json.get(fieldName);
+    /**
+     * Reads the top-level members of the GELF JSON object. String values of uncompressed payloads are returned as
+     * {@link Utf8Slice} of the payload if they don't contain escape sequences, so they are only decoded if a
+     * processor looks at them. Other strings are returned as {@link String} and all other values as {@link JsonNode}.
+     * Like {@link ObjectMapper#readTree(InputStream)}, a repeated member replaces the earlier value.
+     */
+    @Nullable
+    private Map<String, Object> readFields(final GELFMessage gelfMessage) throws IOException {
+        final byte[] json = gelfMessage.getGELFType() == GELFMessage.Type.UNCOMPRESSED ? gelfMessage.getPayload() : null;
+
+        // Parse straight from the (inflating) payload stream instead of decompressing into a String first.
+        try (final InputStream jsonStream = gelfMessage.getJSONStream();
+             final JsonParser parser = objectMapper.getFactory().createParser(jsonStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
 
-            if (value != null) {
-                return value.asInt(-1);
+            final Map<String, Object> fields = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_STRING) {
+                    fields.put(name, textValue(parser, json));
+                } else if (token == JsonToken.VALUE_NULL) {
+                    fields.put(name, NullNode.getInstance());
+                } else {
+                    fields.put(name, objectMapper.readTree(parser));
+                }
             }
+            return fields;
         }
-        return -1;
     }
 
-    private static double doubleValue(final JsonNode json, final String fieldName) {
+    /**
+     * Returns the current string value, as slice of the payload if it doesn't have to be unescaped. The parser skips
+     * the value without decoding it when it moves on to the next token.
+     */
+    private static CharSequence textValue(final JsonParser parser, @Nullable final byte[] json) throws IOException {
         if (json != null) {
-            final JsonNode value = json.get(fieldName);
-
-            if (value != null) {
-                return value.asDouble(-1.0);
+            final long quote = parser.getTokenLocation().getByteOffset();
+            if (quote >= 0 && quote < json.length && json[(int) quote] == '"') {
+                final int start = (int) quote + 1;
+                // Neither quotes nor backslashes can be part of a multi-byte UTF-8 sequence.
+                for (int i = start; i < json.length; i++) {
+                    if (json[i] == '"') {
+                        return Utf8Slice.of(json, start, i - start);
+                    } else if (json[i] == '\\') {
+                        break;
+                    }
+                }
             }
         }
-        return -1.0;
+        return parser.getText();
     }
 
     @Nullable
     @Override
     public Message decode(@Nonnull final RawMessage rawMessage) {
         final GELFMessage gelfMessage = new GELFMessage(rawMessage.getPayload(), rawMessage.getRemoteAddress());
-        final String json = gelfMessage.getJSON();
 
-        final JsonNode node;
+        final Map<String, Object> node;
 
         try {
-            node = objectMapper.readTree(json);
+            node = readFields(gelfMessage);
         } catch (final Exception e) {
             log.error("Could not parse JSON, first 400 characters: " +
-                              StringUtils.abbreviate(json, 403), e);
+                              StringUtils.abbreviate(gelfMessageJson(gelfMessage), 403), e);
             throw new IllegalStateException("JSON is null/could not be parsed (invalid JSON)", e);
         }
+        if (node == null) {
+            throw new IllegalStateException("JSON is null/could not be parsed (invalid JSON)");
+        }
 
         // Timestamp.
         final double messageTimestamp = doubleValue(node, "timestamp");
@@ -135,7 +187,9 @@ public class GelfCodec extends AbstractCodec {
                 timestamp
         );
 
-        message.addField("full_message", stringValue(node, "full_message"));
+        // Usually the largest field and rarely looked at, so it stays undecoded if possible.
+        final Object fullMessage = node.get("full_message");
+        message.addField("full_message", fullMessage instanceof JsonNode ? ((JsonNode) fullMessage).asText() : fullMessage);
 
         final String file = stringValue(node, "file");
 
@@ -161,11 +215,7 @@ public class GelfCodec extends AbstractCodec {
         }
 
         // Add additional data if there is some.
-        final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
-
-        while (fields.hasNext()) {
-            final Map.Entry<String, JsonNode> entry = fields.next();
-
+        for (Map.Entry<String, Object> entry : node.entrySet()) {
             String key = entry.getKey();
             // Do not index useless GELF "version" field.
             if ("version".equals(key)) {
@@ -187,24 +237,25 @@ public class GelfCodec extends AbstractCodec {
                 continue;
             }
 
-            // Convert JSON containers to Strings, and pick a suitable number representation.
-            final JsonNode value = entry.getValue();
-
+            // Strings are added as they are, convert JSON containers to Strings, and pick a suitable number representation.
             final Object fieldValue;
-            if (value.isContainerNode()) {
-                fieldValue = value.toString();
-            } else if (value.isFloatingPointNumber()) {
-                fieldValue = value.asDouble();
-            } else if (value.isIntegralNumber()) {
-                fieldValue = value.asLong();
-            } else if (value.isNull()) {
-                log.debug("Field [{}] is NULL. Skipping.", key);
-                continue;
-            } else if (value.isTextual()) {
-                fieldValue = value.asText();
+            if (entry.getValue() instanceof CharSequence) {
+                fieldValue = entry.getValue();
             } else {
-                log.debug("Field [{}] has unknown value type. Skipping.", key);
-                continue;
+                final JsonNode value = (JsonNode) entry.getValue();
+                if (value.isContainerNode()) {
+                    fieldValue = value.toString();
+                } else if (value.isFloatingPointNumber()) {
+                    fieldValue = value.asDouble();
+                } else if (value.isIntegralNumber()) {
+                    fieldValue = value.asLong();
+                } else if (value.isNull()) {
+                    log.debug("Field [{}] is NULL. Skipping.", key);
+                    continue;
+                } else {
+                    log.debug("Field [{}] has unknown value type. Skipping.", key);
+                    continue;
+                }
             }
 
             message.addField(key, fieldValue);
@@ -213,6 +264,15 @@ public class GelfCodec extends AbstractCodec {
         return message;
     }
 
+    @Nullable
+    private static String gelfMessageJson(GELFMessage gelfMessage) {
+        try {
+            return gelfMessage.getJSON();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     @Nullable
     @Override
     public CodecAggregator getAggregator() {
@@ -20,8 +20,12 @@ import org.graylog2.plugin.ResolvableInetSocketAddress;
 import org.graylog2.plugin.Tools;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 public class GELFMessage {
 
@@ -88,6 +92,26 @@ public class GELFMessage {
         return null;
     }
 
+    /**
+     * Return a stream of the JSON payload of the GELF message. Compressed payloads are inflated while the stream is
+     * read, so the JSON can be parsed without materializing the decompressed message first.
+     *
+     * @return A stream of the (decompressed) JSON payload of the GELF message.
+     * @throws IOException if the compressed stream header is invalid
+     */
+    public InputStream getJSONStream() throws IOException {
+        switch (getGELFType()) {
+            case ZLIB:
+                return new InflaterInputStream(new ByteArrayInputStream(payload));
+            case GZIP:
+                return new GZIPInputStream(new ByteArrayInputStream(payload));
+            case UNCOMPRESSED:
+                return new ByteArrayInputStream(payload);
+            default:
+                throw new IllegalStateException("Unknown GELF type. Not supported.");
+        }
+    }
+
     public byte[] getPayload() {
         return payload;
     }
@@ -129,7 +153,7 @@ public class GELFMessage {
             bytes = new byte[]{first, second};
         }
 
-        static Type determineType(final byte first, final byte second) {
+        public static Type determineType(final byte first, final byte second) {
 
             if (first == ZLIB.first()) {
                 // zlib's second byte is for flags and a checksum -
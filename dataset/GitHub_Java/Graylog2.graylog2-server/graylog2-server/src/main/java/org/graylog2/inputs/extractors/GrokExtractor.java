@@ -18,17 +18,17 @@ package org.graylog2.inputs.extractors;
 
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
-import oi.thekraken.grok.api.Grok;
-import oi.thekraken.grok.api.Match;
 import oi.thekraken.grok.api.exception.GrokException;
 import org.graylog2.ConfigurationException;
+import org.graylog2.grok.CompiledGrok;
+import org.graylog2.grok.GrokCaptures;
 import org.graylog2.grok.GrokPattern;
 import org.graylog2.plugin.inputs.Converter;
 import org.graylog2.plugin.inputs.Extractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -130,7 +130,9 @@ public class GrokExtractor extends Extractor {
             "# Log Levels\n" +
             "LOGLEVEL ([Aa]lert|ALERT|[Tt]race|TRACE|[Dd]ebug|DEBUG|[Nn]otice|NOTICE|[Ii]nfo|INFO|[Ww]arn?(?:ing)?|WARN?(?:ING)?|[Ee]rr?(?:or)?|ERR?(?:OR)?|[Cc]rit?(?:ical)?|CRIT?(?:ICAL)?|[Ff]atal|FATAL|[Ss]evere|SEVERE|EMERG(?:ENCY)?|[Ee]merg(?:ency)?)";
 
-    private final Grok grok = new Grok();
+    private static final ThreadLocal<GrokCaptures> CAPTURES = ThreadLocal.withInitial(GrokCaptures::new);
+
+    private final CompiledGrok grok;
 
     public GrokExtractor(MetricRegistry metricRegistry,
                          Set<GrokPattern> grokPatterns,
@@ -163,12 +165,8 @@ public class GrokExtractor extends Extractor {
         }
 
         try {
-            // TODO we should really share this somehow, but unfortunately the extractors are reloaded every second.
-            for (final GrokPattern grokPattern : grokPatterns) {
-                grok.addPattern(grokPattern.name, grokPattern.pattern);
-            }
-
-            grok.compile((String) extractorConfig.get("grok_pattern"));
+            // the extractors are reloaded every second, the compiled expression is shared between those instances
+            grok = CompiledGrok.compile(grokPatterns, (String) extractorConfig.get("grok_pattern"));
         } catch (GrokException e) {
             log.error("Unable to parse grok patterns", e);
             throw new ConfigurationException("Unable to parse grok patterns");
@@ -178,19 +176,25 @@ public class GrokExtractor extends Extractor {
     @Override
     protected Result[] run(String value) {
 
-        // the extractor instance is rebuilt every second anyway
-        final Match match = grok.match(value);
-        match.captures();
-        final Map<String, Object> matches = match.toMap();
-        final List<Result> results = Lists.newArrayListWithCapacity(matches.size());
+        final GrokCaptures captures = CAPTURES.get();
+        try {
+            if (!grok.match(value, captures)) {
+                return new Result[0];
+            }
 
-        for (final Map.Entry<String, Object> entry : matches.entrySet()) {
-            // never add null values to the results, those don't make sense for us
-            if (entry.getValue() != null) {
-                results.add(new Result(entry.getValue().toString(), entry.getKey(), -1, -1));
+            final List<Result> results = new ArrayList<>(captures.size());
+            for (int i = 0; i < captures.size(); i++) {
+                final String capturedValue = captures.value(i);
+                // never add null values to the results, those don't make sense for us
+                if (capturedValue != null) {
+                    results.add(new Result(capturedValue, captures.name(i), -1, -1));
+                }
             }
-        }
 
-        return results.toArray(new Result[results.size()]);
+            return results.toArray(new Result[results.size()]);
+        } finally {
+            // don't hold on to the message
+            captures.clear();
+        }
     }
 }
@@ -47,6 +47,9 @@ public abstract class BaseConfiguration {
     protected static final int GRAYLOG_DEFAULT_PORT = 12900;
     protected static final int GRAYLOG_DEFAULT_WEB_PORT = 9000;
 
+    public static final String MESSAGE_JOURNAL_TYPE_KAFKA = "kafka";
+    public static final String MESSAGE_JOURNAL_TYPE_MAPPED = "mapped";
+
     @Parameter(value = "shutdown_timeout", validator = PositiveIntegerValidator.class)
     protected int shutdownTimeout = 30000;
 
@@ -107,6 +110,12 @@ public abstract class BaseConfiguration {
     @Parameter("message_journal_enabled")
     private boolean messageJournalEnabled = true;
 
+    /**
+     * The journal implementation, either {@value #MESSAGE_JOURNAL_TYPE_KAFKA} or {@value #MESSAGE_JOURNAL_TYPE_MAPPED}.
+     */
+    @Parameter(value = "message_journal_type", validator = StringNotBlankValidator.class)
+    private String messageJournalType = MESSAGE_JOURNAL_TYPE_KAFKA;
+
     @Parameter("inputbuffer_processors")
     private int inputbufferProcessors = 2;
 
@@ -314,6 +323,10 @@ public abstract class BaseConfiguration {
         this.messageJournalEnabled = messageJournalEnabled;
     }
 
+    public String getMessageJournalType() {
+        return messageJournalType;
+    }
+
     public int getInputbufferProcessors() {
         return inputbufferProcessors;
     }
@@ -418,6 +431,15 @@ public abstract class BaseConfiguration {
         return webPrefix;
     }
 
+    @ValidatorMethod
+    @SuppressWarnings("unused")
+    public void validateMessageJournalType() throws ValidationException {
+        if (!MESSAGE_JOURNAL_TYPE_KAFKA.equals(messageJournalType) && !MESSAGE_JOURNAL_TYPE_MAPPED.equals(messageJournalType)) {
+            throw new ValidationException("Unknown message_journal_type \"" + messageJournalType + "\", must be \""
+                    + MESSAGE_JOURNAL_TYPE_KAFKA + "\" or \"" + MESSAGE_JOURNAL_TYPE_MAPPED + "\"");
+        }
+    }
+
     @ValidatorMethod
     @SuppressWarnings("unused")
     public void validateRestTlsConfig() throws ValidationException {
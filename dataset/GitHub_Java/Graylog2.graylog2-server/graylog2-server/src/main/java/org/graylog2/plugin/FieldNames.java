@@ -0,0 +1,70 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Process-wide table of canonical message field names.
+ * <p>
+ * Codecs usually create a new {@link String} for every field name of every message. Interning them here makes the
+ * (usually few hundred) field names of an installation exist once on the heap instead of once per message.
+ * </p>
+ * Field names are controlled by whoever sends the messages, so the table is bounded: once it holds
+ * {@link #MAX_SIZE} names, new names are no longer interned and are simply stored per message again.
+ */
+public final class FieldNames {
+    /**
+     * The maximum number of field names which are interned.
+     */
+    public static final int MAX_SIZE = 8192;
+
+    private static final ConcurrentMap<String, String> NAMES = new ConcurrentHashMap<>();
+
+    private FieldNames() {
+    }
+
+    /**
+     * Returns the canonical instance of the given field name. If the table is full and the name has not been
+     * interned before, the name itself is returned.
+     *
+     * @param name the field name
+     * @return the canonical field name
+     */
+    public static String intern(String name) {
+        checkNotNull(name, "Field name must not be null");
+        final String canonical = NAMES.get(name);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (NAMES.size() >= MAX_SIZE) {
+            return name;
+        }
+        final String existing = NAMES.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+
+    /**
+     * Returns the number of interned field names.
+     */
+    public static int size() {
+        return NAMES.size();
+    }
+}
@@ -17,6 +17,7 @@
 package org.graylog2.plugin;
 
 import com.eaio.uuid.UUID;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
@@ -33,6 +34,7 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -109,7 +111,7 @@ public class Message implements Messages {
 
     public static final Function<Message, String> ID_FUNCTION = new MessageIdFunction();
 
-    private final Map<String, Object> fields = Maps.newHashMap();
+    private final MessageFields fields = new MessageFields();
     private Set<Stream> streams = Sets.newHashSet();
     private String sourceInputId;
 
@@ -206,6 +208,49 @@ public class Message implements Messages {
         return obj;
     }
 
+    /**
+     * Writes the message as an Elasticsearch document to the given generator. This produces the same document as
+     * {@link #toElasticSearchObject()} but streams the fields directly, without building intermediate maps and
+     * without decoding string values which have been added as {@link Utf8Slice}.
+     *
+     * @param generator the generator to write the JSON object to
+     */
+    public void writeElasticSearchJson(final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+
+        // Like toElasticSearchObject(), message and source are always present, even if they are null.
+        if (!fields.containsKey(FIELD_MESSAGE)) {
+            generator.writeNullField(FIELD_MESSAGE);
+        }
+        if (!fields.containsKey(FIELD_SOURCE)) {
+            generator.writeNullField(FIELD_SOURCE);
+        }
+
+        // The timestamp needs to be converted and the streams are written below, everything else is written as stored.
+        fields.writeFields(generator, FIELD_TIMESTAMP, FIELD_STREAMS);
+
+        final Object timestampValue = getField(FIELD_TIMESTAMP);
+        DateTime dateTime = null;
+        if (timestampValue instanceof Date) {
+            dateTime = new DateTime(timestampValue);
+        } else if (timestampValue instanceof DateTime) {
+            dateTime = (DateTime) timestampValue;
+        }
+        if (dateTime != null) {
+            generator.writeStringField(FIELD_TIMESTAMP, buildElasticSearchTimeFormat(dateTime.withZone(UTC)));
+        } else if (fields.containsKey(FIELD_TIMESTAMP)) {
+            generator.writeObjectField(FIELD_TIMESTAMP, timestampValue);
+        }
+
+        generator.writeArrayFieldStart(FIELD_STREAMS);
+        for (Stream stream : streams) {
+            generator.writeString(stream.getId());
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
@@ -259,6 +304,12 @@ public class Message implements Messages {
 
         if (FIELD_TIMESTAMP.equals(key.trim()) && value != null && value instanceof Date) {
             fields.put(FIELD_TIMESTAMP, new DateTime(value));
+        } else if (value instanceof Utf8Slice) {
+            final Utf8Slice slice = ((Utf8Slice) value).trim();
+
+            if (!slice.isEmpty()) {
+                fields.putUtf8(key.trim(), slice);
+            }
         } else if(value instanceof String) {
             final String str = ((String) value).trim();
 
@@ -270,6 +321,31 @@ public class Message implements Messages {
         }
     }
 
+    /**
+     * Adds a string field which references the given UTF-8 bytes instead of a decoded {@link String}. Codecs can use
+     * this to add fields straight from the {@link org.graylog2.plugin.journal.RawMessage} payload, the value is only
+     * decoded if a processor reads it.
+     * <p>
+     * The array must not be modified afterwards.
+     */
+    public void addUtf8Field(final String key, final byte[] bytes, final int offset, final int length) {
+        addField(key, Utf8Slice.of(bytes, offset, length));
+    }
+
+    /**
+     * Adds a numeric field without boxing the value.
+     */
+    public void addLongField(final String key, final long value) {
+        if (RESERVED_FIELDS.contains(key) && !RESERVED_SETTABLE_FIELDS.contains(key) || !validKey(key)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Ignoring invalid or reserved key {} for message {}", key, getId());
+            }
+            return;
+        }
+
+        fields.putLong(key.trim(), value);
+    }
+
     public static boolean validKey(final String key) {
         return VALID_KEY_CHARS.matcher(key).matches();
     }
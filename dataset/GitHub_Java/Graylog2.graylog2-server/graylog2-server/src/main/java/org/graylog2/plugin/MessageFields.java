@@ -0,0 +1,389 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact storage for the fields of a single {@link Message}.
+ * <p>
+ * Field names are interned in {@link FieldNames}, {@code long}, {@code int}, {@code double} and
+ * {@code boolean} values are kept unboxed, and string values can reference the UTF-8 bytes they were parsed from
+ * (see {@link Utf8Slice}). Messages with only a few fields are looked up with a linear scan over the names. Once
+ * a message has more than {@link #LINEAR_SCAN_LIMIT} fields, an open addressing hash table of the slot indexes is
+ * kept next to the arrays, so adding the fields of large messages doesn't become quadratic.
+ * </p>
+ * <p>
+ * The class implements {@link Map} so existing code working with message fields keeps working, but the values it
+ * returns are always the boxed/decoded representation: slices are returned as {@link String}, which makes
+ * {@code getFieldAs(String.class, ...)} behave exactly like before.
+ * </p>
+ * Like {@link Message} itself, this class is not thread safe.
+ */
+public class MessageFields extends AbstractMap<String, Object> {
+    private static final byte KIND_OBJECT = 0;
+    private static final byte KIND_LONG = 1;
+    private static final byte KIND_INT = 2;
+    private static final byte KIND_DOUBLE = 3;
+    private static final byte KIND_BOOLEAN = 4;
+    private static final byte KIND_UTF8 = 5;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    private String[] names;
+    private byte[] kinds;
+    private long[] primitives;
+    private Object[] references;
+    private int size = 0;
+    private int modCount = 0;
+
+    // Slot index + 1 per bucket, 0 marks an empty bucket. Only maintained above LINEAR_SCAN_LIMIT fields.
+    private int[] buckets;
+
+    private EntrySet entrySet;
+
+    public MessageFields() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MessageFields(int expectedSize) {
+        final int capacity = Math.max(expectedSize, 4);
+        names = new String[capacity];
+        kinds = new byte[capacity];
+        primitives = new long[capacity];
+        references = new Object[capacity];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (value instanceof Utf8Slice) {
+            return putUtf8(key, (Utf8Slice) value);
+        }
+
+        final int index = slotFor(key);
+        final Object previous = kinds[index] == -1 ? null : valueAt(index);
+        if (value instanceof Long) {
+            setPrimitive(index, KIND_LONG, (Long) value);
+        } else if (value instanceof Integer) {
+            setPrimitive(index, KIND_INT, (Integer) value);
+        } else if (value instanceof Double) {
+            setPrimitive(index, KIND_DOUBLE, Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Boolean) {
+            setPrimitive(index, KIND_BOOLEAN, ((Boolean) value) ? 1L : 0L);
+        } else {
+            kinds[index] = KIND_OBJECT;
+            references[index] = value;
+        }
+        return previous;
+    }
+
+    /**
+     * Stores a string value without decoding it.
+     *
+     * @return the previous value of the field, or {@code null}
+     */
+    public Object putUtf8(String key, Utf8Slice value) {
+        final int index = slotFor(key);
+        final Object previous = kinds[index] == -1 ? null : valueAt(index);
+        kinds[index] = KIND_UTF8;
+        references[index] = value;
+        return previous;
+    }
+
+    public void putLong(String key, long value) {
+        setPrimitive(slotFor(key), KIND_LONG, value);
+    }
+
+    public void putDouble(String key, double value) {
+        setPrimitive(slotFor(key), KIND_DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public Object remove(Object key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final Object previous = valueAt(index);
+        removeAt(index);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(references, 0, size, null);
+        size = 0;
+        buckets = null;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * Writes all fields as members of the current JSON object. Primitive values and undecoded strings are written
+     * without creating intermediate objects.
+     *
+     * @param generator the generator, positioned inside a JSON object
+     * @param skip      field names which should not be written
+     */
+    public void writeFields(JsonGenerator generator, String... skip) throws IOException {
+        for (int i = 0; i < size; i++) {
+            if (isSkipped(names[i], skip)) {
+                continue;
+            }
+            generator.writeFieldName(names[i]);
+            writeValue(generator, i);
+        }
+    }
+
+    private static boolean isSkipped(String name, String[] skip) {
+        for (String skipped : skip) {
+            if (name.equals(skipped)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeValue(JsonGenerator generator, int index) throws IOException {
+        switch (kinds[index]) {
+            case KIND_LONG:
+                generator.writeNumber(primitives[index]);
+                break;
+            case KIND_INT:
+                generator.writeNumber((int) primitives[index]);
+                break;
+            case KIND_DOUBLE:
+                generator.writeNumber(Double.longBitsToDouble(primitives[index]));
+                break;
+            case KIND_BOOLEAN:
+                generator.writeBoolean(primitives[index] != 0);
+                break;
+            case KIND_UTF8:
+                ((Utf8Slice) references[index]).writeTo(generator);
+                break;
+            default:
+                generator.writeObject(references[index]);
+        }
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        if (buckets == null) {
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        final int mask = buckets.length - 1;
+        for (int bucket = hash(key) & mask; buckets[bucket] != 0; bucket = (bucket + 1) & mask) {
+            final int slot = buckets[bucket] - 1;
+            if (names[slot].equals(key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void addToIndex(int slot) {
+        final int mask = buckets.length - 1;
+        int bucket = hash(names[slot]) & mask;
+        while (buckets[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        buckets[bucket] = slot + 1;
+    }
+
+    /**
+     * (Re)builds the hash index after the slots have been moved or the arrays have grown, or drops it if the
+     * message is small enough for a linear scan. The table is kept at most half full.
+     */
+    private void rebuildIndex() {
+        if (size <= LINEAR_SCAN_LIMIT) {
+            buckets = null;
+            return;
+        }
+        buckets = new int[Integer.highestOneBit(names.length * 2 - 1) << 1];
+        for (int i = 0; i < size; i++) {
+            addToIndex(i);
+        }
+    }
+
+    /**
+     * Returns the index for the given key, appending a new slot marked with kind {@code -1} if it does not exist yet.
+     */
+    private int slotFor(String key) {
+        final int existing = indexOf(key);
+        if (existing >= 0) {
+            return existing;
+        }
+
+        boolean grown = false;
+        if (size == names.length) {
+            final int capacity = size * 2;
+            names = Arrays.copyOf(names, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            references = Arrays.copyOf(references, capacity);
+            grown = true;
+        }
+        final int slot = size++;
+        names[slot] = FieldNames.intern(key);
+        kinds[slot] = -1;
+        modCount++;
+
+        if (grown || (buckets == null && size > LINEAR_SCAN_LIMIT)) {
+            rebuildIndex();
+        } else if (buckets != null) {
+            addToIndex(slot);
+        }
+        return slot;
+    }
+
+    private void setPrimitive(int index, byte kind, long value) {
+        kinds[index] = kind;
+        primitives[index] = value;
+        references[index] = null;
+    }
+
+    private Object valueAt(int index) {
+        switch (kinds[index]) {
+            case KIND_LONG:
+                return primitives[index];
+            case KIND_INT:
+                return (int) primitives[index];
+            case KIND_DOUBLE:
+                return Double.longBitsToDouble(primitives[index]);
+            case KIND_BOOLEAN:
+                return primitives[index] != 0;
+            case KIND_UTF8:
+                return references[index].toString();
+            default:
+                return references[index];
+        }
+    }
+
+    private void removeAt(int index) {
+        final int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(names, index + 1, names, index, moved);
+            System.arraycopy(kinds, index + 1, kinds, index, moved);
+            System.arraycopy(primitives, index + 1, primitives, index, moved);
+            System.arraycopy(references, index + 1, references, index, moved);
+        }
+        names[--size] = null;
+        references[size] = null;
+        modCount++;
+        if (buckets != null) {
+            // The following slots have moved, removing fields is rare enough to simply start over.
+            rebuildIndex();
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, Object>> {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new SimpleImmutableEntry<>(names[last], valueAt(last));
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * A string value that references a range of UTF-8 encoded bytes, usually inside the payload of a
+ * {@link org.graylog2.plugin.journal.RawMessage}.
+ * <p>
+ * The bytes are only decoded into a {@link String} when somebody asks for it. Values that are never looked at by a
+ * processor (which is the common case for most fields) are written to Elasticsearch straight from the original
+ * bytes, see {@link #writeTo(JsonGenerator)}.
+ * </p>
+ * <p>
+ * The bytes are validated when the slice is created. Malformed UTF-8 is decoded right away, replacing the invalid
+ * sequences like {@link String#String(byte[], int, int, java.nio.charset.Charset)} does, and only the decoded form is
+ * ever written.
+ * </p>
+ * The referenced array must not be modified after the slice has been created.
+ */
+public final class Utf8Slice implements CharSequence {
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final boolean valid;
+
+    private String decoded;
+
+    private Utf8Slice(byte[] bytes, int offset, int length, boolean valid) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.valid = valid;
+        if (!valid) {
+            this.decoded = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static Utf8Slice of(byte[] bytes, int offset, int length) {
+        checkNotNull(bytes, "bytes must not be null");
+        checkPositionIndexes(offset, offset + length, bytes.length);
+        return new Utf8Slice(bytes, offset, length, isValidUtf8(bytes, offset, length));
+    }
+
+    public static Utf8Slice of(byte[] bytes) {
+        return of(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Checks that the bytes are well-formed UTF-8 (RFC 3629): no stray continuation bytes, truncated or overlong
+     * sequences, surrogates or code points beyond U+10FFFF.
+     */
+    static boolean isValidUtf8(byte[] bytes, int offset, int length) {
+        final int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            final int b = bytes[i];
+            if (b >= 0) {
+                i++;
+                continue;
+            }
+            final int lead = b & 0xff;
+            if (lead < 0xc2 || lead > 0xf4) {
+                // continuation byte, overlong two byte sequence or beyond U+10FFFF
+                return false;
+            }
+            final int sequenceLength = lead < 0xe0 ? 2 : lead < 0xf0 ? 3 : 4;
+            if (i + sequenceLength > end) {
+                return false;
+            }
+            for (int j = 1; j < sequenceLength; j++) {
+                if ((bytes[i + j] & 0xc0) != 0x80) {
+                    return false;
+                }
+            }
+            final int second = bytes[i + 1] & 0xff;
+            if ((lead == 0xe0 && second < 0xa0)         // overlong three byte sequence
+                    || (lead == 0xed && second > 0x9f)  // surrogate
+                    || (lead == 0xf0 && second < 0x90)  // overlong four byte sequence
+                    || (lead == 0xf4 && second > 0x8f)) { // beyond U+10FFFF
+                return false;
+            }
+            i += sequenceLength;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a slice without leading and trailing whitespace, using the same definition of whitespace as
+     * {@link String#trim()}. All of those characters are single bytes in UTF-8, so no decoding is necessary and
+     * trimming doesn't change whether the bytes are valid UTF-8.
+     */
+    public Utf8Slice trim() {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && (bytes[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        if (start == offset && end == offset + length) {
+            return this;
+        }
+        return new Utf8Slice(bytes, start, end - start, valid);
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Returns the length of the slice in bytes.
+     */
+    public int byteLength() {
+        return length;
+    }
+
+    /**
+     * Writes the slice as a JSON string value without decoding it into a {@link String} first. If the value has
+     * already been decoded, isn't valid UTF-8, or the generator writes characters instead of bytes, the decoded form
+     * is written instead.
+     */
+    public void writeTo(JsonGenerator generator) throws IOException {
+        // Only the byte based generator can copy UTF-8 input, the others throw UnsupportedOperationException.
+        if (valid && decoded == null && generator instanceof UTF8JsonGenerator) {
+            generator.writeUTF8String(bytes, offset, length);
+        } else {
+            generator.writeString(toString());
+        }
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String result = decoded;
+        if (result == null) {
+            result = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            decoded = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Utf8Slice)) {
+            return false;
+        }
+        final Utf8Slice that = (Utf8Slice) o;
+        if (length != that.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != that.bytes[that.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = offset; i < offset + length; i++) {
+            result = 31 * result + bytes[i];
+        }
+        return result;
+    }
+}
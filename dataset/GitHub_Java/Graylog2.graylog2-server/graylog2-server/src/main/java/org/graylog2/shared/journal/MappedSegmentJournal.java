@@ -0,0 +1,723 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.journal;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.joschi.jadconfig.util.Size;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.AbstractIdleService;
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A journal which appends raw messages to memory-mapped segment files.
+ * <p>
+ * This is a lightweight alternative to {@link LocalKafkaJournal}: there is no embedded log manager, no scheduler of
+ * its own and no index files. Each segment is a pre-sized file which is mapped into memory once, writes are plain
+ * memory copies and the record positions of a segment are kept in memory.
+ * </p>
+ * <p>
+ * Every record is laid out as
+ * <pre>
+ * int   body length
+ * int   CRC32 of the body
+ * long  offset            \
+ * int   id length          | body
+ * byte[] id                |
+ * byte[] payload          /
+ * </pre>
+ * Records are checked against their CRC when they are read and when a segment is recovered after a restart. On
+ * recovery, a segment is only considered up to the first record which is incomplete or corrupt. A record which
+ * becomes corrupt after it has been written is skipped when it is read.
+ * </p>
+ * <p>
+ * Writes are group committed: the mapped segment is forced to disk after {@code message_journal_flush_interval}
+ * messages or, if fewer messages have been written, after {@code message_journal_flush_age}. All entries of one
+ * {@link #write(List)} call are covered by the same flush.
+ * </p>
+ */
+@Singleton
+public class MappedSegmentJournal extends AbstractIdleService implements Journal {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedSegmentJournal.class);
+
+    public static final long DEFAULT_COMMITTED_OFFSET = Long.MIN_VALUE;
+
+    static final String SEGMENT_SUFFIX = ".segment";
+    static final String COMMITTED_OFFSET_FILE = "graylog2-committed-read-offset";
+
+    // body length and CRC32 of the body
+    static final int RECORD_HEADER_SIZE = 8;
+    // offset and id length
+    static final int RECORD_BODY_PREFIX_SIZE = 12;
+
+    private static final int MAX_READ_BYTES = Ints.saturatedCast(Size.megabytes(5L).toBytes());
+
+    private final Path journalDirectory;
+    private final ScheduledExecutorService scheduler;
+    private final int segmentSize;
+    private final long retentionSize;
+    private final long flushInterval;
+    private final Duration flushAge;
+
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final AtomicLong committedOffset = new AtomicLong(DEFAULT_COMMITTED_OFFSET);
+    private final CRC32 writeChecksum = new CRC32();
+
+    private final Meter writtenMessages;
+    private final Meter readMessages;
+    private final Meter corruptMessages;
+    private final Meter flushes;
+    private final Timer writeTime;
+    private final Timer readTime;
+
+    // guarded by "this"
+    private Segment activeSegment;
+    private long nextOffset = 0L;
+    private long unflushedMessages = 0L;
+
+    private volatile long nextReadOffset = 0L;
+    private volatile boolean shuttingDown;
+    private ScheduledFuture<?> flusherFuture;
+
+    @Inject
+    public MappedSegmentJournal(@Named("message_journal_dir") Path journalDirectory,
+                                @Named("scheduler") ScheduledExecutorService scheduler,
+                                @Named("message_journal_segment_size") Size segmentSize,
+                                @Named("message_journal_max_size") Size retentionSize,
+                                @Named("message_journal_flush_interval") long flushInterval,
+                                @Named("message_journal_flush_age") Duration flushAge,
+                                MetricRegistry metricRegistry) {
+        this.journalDirectory = journalDirectory;
+        this.scheduler = scheduler;
+        this.segmentSize = Ints.saturatedCast(segmentSize.toBytes());
+        this.retentionSize = retentionSize.toBytes();
+        this.flushInterval = Math.max(1L, flushInterval);
+        this.flushAge = flushAge;
+
+        this.writtenMessages = metricRegistry.meter(name(this.getClass(), "writtenMessages"));
+        this.readMessages = metricRegistry.meter(name(this.getClass(), "readMessages"));
+        this.corruptMessages = metricRegistry.meter(name(this.getClass(), "corruptMessages"));
+        this.flushes = metricRegistry.meter(name(this.getClass(), "flushes"));
+        this.writeTime = metricRegistry.timer(name(this.getClass(), "writeTime"));
+        this.readTime = metricRegistry.timer(name(this.getClass(), "readTime"));
+        registerGauge(metricRegistry, name(this.getClass(), "size"), this::size);
+        registerGauge(metricRegistry, name(this.getClass(), "numberOfSegments"), () -> (long) segments.size());
+        registerGauge(metricRegistry, name(this.getClass(), "uncommittedMessages"),
+                () -> Math.max(0L, getLogEndOffset() - 1 - committedOffset.get()));
+
+        try {
+            Files.createDirectories(journalDirectory);
+            readCommittedOffset();
+            recoverSegments();
+        } catch (IOException e) {
+            LOG.error("Unable to open journal at {}", journalDirectory, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void registerGauge(MetricRegistry metricRegistry, String name, Gauge<Long> gauge) {
+        try {
+            metricRegistry.register(name, gauge);
+        } catch (IllegalArgumentException ignored) {
+            // already registered, we'll ignore that.
+        }
+    }
+
+    private void readCommittedOffset() throws IOException {
+        final Path offsetFile = journalDirectory.resolve(COMMITTED_OFFSET_FILE);
+        if (!Files.exists(offsetFile)) {
+            return;
+        }
+        final List<String> lines = Files.readAllLines(offsetFile, StandardCharsets.UTF_8);
+        if (!lines.isEmpty() && !lines.get(0).trim().isEmpty()) {
+            // the file contains the last offset graylog2 has successfully processed.
+            // thus the nextReadOffset is one beyond that number
+            committedOffset.set(Long.parseLong(lines.get(0).trim()));
+            nextReadOffset = committedOffset.get() + 1;
+        }
+    }
+
+    private synchronized void recoverSegments() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(journalDirectory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                final String fileName = file.getFileName().toString();
+                final long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+                final Segment segment = Segment.open(file, baseOffset, Ints.saturatedCast(Files.size(file)));
+                segments.put(baseOffset, segment);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            activeSegment = createSegment(0L, segmentSize);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+            nextOffset = activeSegment.nextOffset();
+        }
+        LOG.info("Initialized memory-mapped journal at {} with {} segments, next offset {}",
+                journalDirectory, segments.size(), nextOffset);
+    }
+
+    private Segment createSegment(long baseOffset, int size) throws IOException {
+        final Path file = journalDirectory.resolve(String.format(Locale.ROOT, "%020d%s", baseOffset, SEGMENT_SUFFIX));
+        final Segment segment = Segment.open(file, baseOffset, size);
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    /**
+     * Creates an opaque object which can be passed to {@link #write(java.util.List)} for a bulk journal write.
+     *
+     * @param idBytes      a byte array which represents the key for the entry
+     * @param messageBytes the journal entry's payload, i.e. the message itself
+     * @return a journal entry to be passed to {@link #write(java.util.List)}
+     */
+    @Override
+    public Entry createEntry(byte[] idBytes, byte[] messageBytes) {
+        return new Entry(idBytes, messageBytes);
+    }
+
+    /**
+     * Appends the list of entries to the journal.
+     *
+     * @param entries journal entries to be written
+     * @return the last position written to in the journal
+     */
+    @Override
+    public long write(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return getLogEndOffset() - 1;
+        }
+        try (Timer.Context ignored = writeTime.time()) {
+            final long lastOffset;
+            synchronized (this) {
+                if (shuttingDown) {
+                    // the segments have been unmapped
+                    throw new IllegalStateException("Unable to write to the journal, it has been shut down.");
+                }
+                for (final Entry entry : entries) {
+                    final int recordSize = recordSize(entry.getIdBytes(), entry.getMessageBytes());
+                    if (!activeSegment.hasRoomFor(recordSize)) {
+                        rollSegment(recordSize);
+                    }
+                    activeSegment.append(nextOffset++, entry.getIdBytes(), entry.getMessageBytes(), writeChecksum);
+                }
+                lastOffset = nextOffset - 1;
+
+                unflushedMessages += entries.size();
+                if (unflushedMessages >= flushInterval) {
+                    flush();
+                }
+            }
+            writtenMessages.mark(entries.size());
+            return lastOffset;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a single message to the journal and returns the new write position
+     *
+     * @param idBytes      byte array containing the message id
+     * @param messageBytes encoded message payload
+     * @return the last position written to in the journal
+     */
+    @Override
+    public long write(byte[] idBytes, byte[] messageBytes) {
+        return write(Collections.singletonList(createEntry(idBytes, messageBytes)));
+    }
+
+    private static int recordSize(byte[] idBytes, byte[] messageBytes) {
+        return RECORD_HEADER_SIZE + RECORD_BODY_PREFIX_SIZE + idBytes.length + messageBytes.length;
+    }
+
+    // must be called while holding the lock on "this"
+    private void rollSegment(int recordSize) throws IOException {
+        // everything written to the old segment must be durable before we move on
+        activeSegment.flush();
+        activeSegment = createSegment(nextOffset, Math.max(segmentSize, recordSize));
+        LOG.debug("Rolled journal segment, new segment starts at offset {}", nextOffset);
+    }
+
+    @Override
+    public List<JournalReadEntry> read(long requestedMaximumCount) {
+        return read(nextReadOffset, requestedMaximumCount);
+    }
+
+    /**
+     * Read from the journal, starting at the given offset. If the underlying journal implementation returns an empty
+     * list of entries, it will be returned even if we know there are more entries in the journal.
+     *
+     * @param readOffset            Offset to start reading at
+     * @param requestedMaximumCount Maximum number of entries to return.
+     * @return A list of entries
+     */
+    public List<JournalReadEntry> read(long readOffset, long requestedMaximumCount) {
+        // Always read at least one!
+        final long maximumCount = Math.max(1, requestedMaximumCount);
+        if (shuttingDown) {
+            return Collections.emptyList();
+        }
+
+        final List<JournalReadEntry> messages = new ArrayList<>(Ints.saturatedCast(Math.min(maximumCount, 1024L)));
+        try (Timer.Context ignored = readTime.time()) {
+            final long logStartOffset = getLogStartOffset();
+            if (readOffset < logStartOffset) {
+                LOG.info("Read offset {} before start of log at {}, starting to read from the beginning of the journal.",
+                        readOffset, logStartOffset);
+                readOffset = logStartOffset;
+            }
+
+            final CRC32 checksum = new CRC32();
+            long offset = readOffset;
+            long totalBytes = 0L;
+            Map.Entry<Long, Segment> segmentEntry = segments.floorEntry(offset);
+            while (segmentEntry != null && messages.size() < maximumCount && totalBytes < MAX_READ_BYTES) {
+                final Segment segment = segmentEntry.getValue();
+                // a segment which is being deleted by the flusher can't be retained anymore, its records are gone
+                if (offset < segment.nextOffset() && segment.retain()) {
+                    try {
+                        while (offset < segment.nextOffset() && messages.size() < maximumCount && totalBytes < MAX_READ_BYTES) {
+                            final byte[] payload = segment.read(offset, checksum);
+                            if (payload == null) {
+                                LOG.error("Corrupt record at offset {} in journal segment {}, skipping it.", offset, segment.path);
+                                corruptMessages.mark();
+                            } else {
+                                messages.add(new JournalReadEntry(payload, offset));
+                                totalBytes += payload.length;
+                            }
+                            offset++;
+                        }
+                    } finally {
+                        segment.release();
+                    }
+                }
+                if (offset < segment.nextOffset()) {
+                    // read limit reached
+                    break;
+                }
+                segmentEntry = segments.higherEntry(segmentEntry.getKey());
+                if (segmentEntry != null) {
+                    offset = Math.max(offset, segmentEntry.getKey());
+                }
+            }
+            // remember where to read from
+            nextReadOffset = offset;
+
+            if (messages.isEmpty()) {
+                LOG.debug("No messages available to read at offset {}.", readOffset);
+            } else {
+                LOG.debug("Read {} messages, total payload size {}, from journal, offset interval [{}, {})",
+                        messages.size(), totalBytes, readOffset, offset);
+            }
+        }
+        readMessages.mark(messages.size());
+        return messages;
+    }
+
+    /**
+     * Upon fully processing, and persistently storing, a batch of messages, the system should mark the message with the
+     * highest offset as committed. The flusher writes the last position to disk periodically.
+     *
+     * @param offset the offset of the latest committed message
+     */
+    @Override
+    public void markJournalOffsetCommitted(long offset) {
+        // the caller will not care about offsets going backwards, so we need to make sure we don't backtrack
+        committedOffset.accumulateAndGet(offset, Math::max);
+    }
+
+    public long getCommittedOffset() {
+        return committedOffset.get();
+    }
+
+    public long getLogStartOffset() {
+        final Map.Entry<Long, Segment> first = segments.firstEntry();
+        return first == null ? 0L : first.getKey();
+    }
+
+    public synchronized long getLogEndOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Returns the number of bytes written to the journal segments, excluding unused preallocated space.
+     */
+    public long size() {
+        long size = 0L;
+        for (Segment segment : segments.values()) {
+            size += segment.writePosition;
+        }
+        return size;
+    }
+
+    /**
+     * Forces all unflushed records to disk.
+     */
+    public synchronized void flush() {
+        if (unflushedMessages == 0L) {
+            return;
+        }
+        activeSegment.flush();
+        unflushedMessages = 0L;
+        flushes.mark();
+    }
+
+    @VisibleForTesting
+    Segment segmentAt(long baseOffset) {
+        return segments.get(baseOffset);
+    }
+
+    @VisibleForTesting
+    void flushCommittedOffset() throws IOException {
+        final long offset = committedOffset.get();
+        if (offset == DEFAULT_COMMITTED_OFFSET) {
+            return;
+        }
+        final Path offsetFile = journalDirectory.resolve(COMMITTED_OFFSET_FILE);
+        final Path tmpFile = journalDirectory.resolve(COMMITTED_OFFSET_FILE + ".tmp");
+        Files.write(tmpFile, Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmpFile, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes segments which have been fully committed, and the oldest segments beyond the maximum journal size.
+     *
+     * @return the number of deleted segments
+     */
+    @VisibleForTesting
+    int cleanupSegments() {
+        int deleted = 0;
+        long size = size();
+        for (Map.Entry<Long, Segment> entry : segments.entrySet()) {
+            final Segment segment = entry.getValue();
+            synchronized (this) {
+                if (segment == activeSegment) {
+                    break;
+                }
+            }
+            final boolean committed = segment.nextOffset() - 1 <= committedOffset.get();
+            final boolean overSize = size > retentionSize;
+            if (!committed && !overSize) {
+                break;
+            }
+            if (!committed) {
+                LOG.warn("Journal is larger than {} bytes, deleting segment {} with uncommitted messages.",
+                        retentionSize, segment.path);
+            }
+            segments.remove(entry.getKey(), segment);
+            size -= segment.writePosition;
+            segment.delete();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    protected void startUp() throws Exception {
+        final long period = Math.max(1L, flushAge.getMillis());
+        flusherFuture = scheduler.scheduleAtFixedRate(new Flusher(), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        LOG.debug("Shutting down journal!");
+        shuttingDown = true;
+        if (flusherFuture != null) {
+            flusherFuture.cancel(false);
+        }
+        synchronized (this) {
+            flush();
+            flushCommittedOffset();
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        }
+    }
+
+    private class Flusher implements Runnable {
+        @Override
+        public void run() {
+            try {
+                flush();
+                flushCommittedOffset();
+                final int deleted = cleanupSegments();
+                if (deleted > 0) {
+                    LOG.debug("Deleted {} journal segments.", deleted);
+                }
+            } catch (Exception e) {
+                // Make sure to never throw an exception out of this runnable, it's being run in an executor.
+                LOG.error("Error while flushing the journal", e);
+            }
+        }
+    }
+
+    /**
+     * A single segment file. Only the journal's write lock holder appends to a segment, readers can access it
+     * concurrently: the record positions are published before the record count.
+     * <p>
+     * Readers {@link #retain()} the segment while they access the mapping. The mapping is only released, and the
+     * file only deleted, once the journal and all readers have released the segment, because accessing an unmapped
+     * buffer crashes the JVM.
+     * </p>
+     */
+    @VisibleForTesting
+    static final class Segment {
+        final long baseOffset;
+        final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // the journal itself holds one reference until the segment is closed or deleted
+        private final AtomicInteger references = new AtomicInteger(1);
+        private volatile boolean deleteOnRelease = false;
+
+        private volatile int[] positions = new int[1024];
+        private volatile int count = 0;
+        volatile int writePosition = 0;
+
+        private Segment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, long baseOffset, int size) throws IOException {
+            final FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            final Segment segment = new Segment(baseOffset, path, channel, buffer);
+            segment.recover();
+            return segment;
+        }
+
+        /**
+         * Scans the segment for valid records, stops at the first incomplete or corrupt one and clears everything
+         * after it, so stale data can never be mistaken for a record later.
+         */
+        private void recover() {
+            final CRC32 checksum = new CRC32();
+            int position = 0;
+            while (position + RECORD_HEADER_SIZE + RECORD_BODY_PREFIX_SIZE <= buffer.capacity()) {
+                final int bodyLength = buffer.getInt(position);
+                if (bodyLength < RECORD_BODY_PREFIX_SIZE || position + RECORD_HEADER_SIZE + bodyLength > buffer.capacity()) {
+                    break;
+                }
+                if (buffer.getInt(position + 4) != checksum(checksum, position, bodyLength)
+                        || buffer.getLong(position + RECORD_HEADER_SIZE) != baseOffset + count) {
+                    LOG.warn("Found corrupt record at position {} in journal segment {}, truncating segment.", position, path);
+                    break;
+                }
+                addPosition(position);
+                position += RECORD_HEADER_SIZE + bodyLength;
+            }
+            writePosition = position;
+
+            if (position + 4 <= buffer.capacity() && buffer.getInt(position) != 0) {
+                for (int i = position; i < buffer.capacity(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+            }
+        }
+
+        long nextOffset() {
+            return baseOffset + count;
+        }
+
+        boolean hasRoomFor(int recordSize) {
+            return writePosition + recordSize <= buffer.capacity();
+        }
+
+        void append(long offset, byte[] idBytes, byte[] messageBytes, CRC32 checksum) {
+            final int position = writePosition;
+            final int bodyLength = RECORD_BODY_PREFIX_SIZE + idBytes.length + messageBytes.length;
+
+            final ByteBuffer body = buffer.duplicate();
+            body.position(position + RECORD_HEADER_SIZE);
+            body.putLong(offset);
+            body.putInt(idBytes.length);
+            body.put(idBytes);
+            body.put(messageBytes);
+
+            buffer.putInt(position + 4, checksum(checksum, position, bodyLength));
+            // the length is written last, a record without it will be treated as the end of the segment
+            buffer.putInt(position, bodyLength);
+
+            addPosition(position);
+            writePosition = position + RECORD_HEADER_SIZE + bodyLength;
+        }
+
+        private void addPosition(int position) {
+            int[] current = positions;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                positions = current;
+            }
+            current[count] = position;
+            count = count + 1;
+        }
+
+        /**
+         * Copies the payload of the record with the given offset directly from the mapped segment.
+         *
+         * @return the payload or {@code null} if the record is corrupt
+         */
+        byte[] read(long offset, CRC32 checksum) {
+            final int index = Ints.checkedCast(offset - baseOffset);
+            final int position = positions[index];
+            final int bodyLength = buffer.getInt(position);
+            if (bodyLength < RECORD_BODY_PREFIX_SIZE || position + RECORD_HEADER_SIZE + bodyLength > buffer.capacity()
+                    || buffer.getInt(position + 4) != checksum(checksum, position, bodyLength)) {
+                return null;
+            }
+
+            final ByteBuffer record = buffer.duplicate();
+            record.position(position + RECORD_HEADER_SIZE + 8);
+            final int idLength = record.getInt();
+            if (idLength < 0 || idLength > bodyLength - RECORD_BODY_PREFIX_SIZE) {
+                return null;
+            }
+            record.position(record.position() + idLength);
+            final byte[] payload = new byte[bodyLength - RECORD_BODY_PREFIX_SIZE - idLength];
+            record.get(payload);
+            return payload;
+        }
+
+        private int checksum(CRC32 checksum, int position, int bodyLength) {
+            final ByteBuffer body = buffer.duplicate();
+            body.position(position + RECORD_HEADER_SIZE);
+            body.limit(position + RECORD_HEADER_SIZE + bodyLength);
+            checksum.reset();
+            checksum.update(body);
+            return (int) checksum.getValue();
+        }
+
+        void flush() {
+            buffer.force();
+        }
+
+        /**
+         * Prevents the segment from being unmapped until {@link #release()} is called.
+         *
+         * @return {@code false} if the segment has already been closed or deleted
+         */
+        boolean retain() {
+            while (true) {
+                final int current = references.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() != 0) {
+                return;
+            }
+            unmap(buffer);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Unable to close journal segment {}", path, e);
+            }
+            if (deleteOnRelease) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    LOG.warn("Unable to delete journal segment {}", path, e);
+                }
+            }
+        }
+
+        void close() {
+            release();
+        }
+
+        void delete() {
+            deleteOnRelease = true;
+            release();
+        }
+
+        /**
+         * Releases the mapping right away instead of waiting for the garbage collector, which would keep the address
+         * space and the file handle of deleted segments.
+         */
+        private static void unmap(MappedByteBuffer buffer) {
+            try {
+                try {
+                    // Java 9 and later
+                    final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                    final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                    final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                    theUnsafe.setAccessible(true);
+                    invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                } catch (NoSuchMethodException e) {
+                    // Java 8
+                    final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    final Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOG.warn("Unable to unmap journal segment, it will be unmapped by the garbage collector.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.events.processor.aggregation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class IncrementalAggregationSearchTest {
+    private static final long HOP = 60_000L;
+    private static final long WINDOW = 5 * HOP;
+    private static final DateTime START = new DateTime(2019, 10, 1, 12, 0, DateTimeZone.UTC);
+
+    @Rule
+    public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private AggregationSearch.Factory searchFactory;
+    @Mock
+    private EventDefinition eventDefinition;
+
+    private final List<TestMessage> messages = new ArrayList<>();
+    private final List<TimeRange> searchedRanges = new ArrayList<>();
+    private AggregationSliceStore sliceStore;
+
+    @Before
+    public void setUp() {
+        sliceStore = new AggregationSliceStore();
+        when(eventDefinition.id()).thenReturn("event-definition-1");
+        when(searchFactory.create(any(AggregationEventProcessorConfig.class), any(AggregationEventProcessorParameters.class), anyString(), any(EventDefinition.class)))
+                .thenAnswer(invocation -> new FakeSearch(invocation.getArgument(0), invocation.getArgument(1)));
+
+        // One message every 10 seconds, alternating between two hosts
+        for (int i = 0; i < 60; i++) {
+            messages.add(new TestMessage(START.plusSeconds(i * 10), i % 2 == 0 ? "box1" : "box2", i));
+        }
+    }
+
+    @Test
+    public void isApplicableForRegularSlidingWindows() {
+        final AggregationEventProcessorConfig config = config(ImmutableList.of("host"), AggregationFunction.COUNT);
+
+        assertThat(IncrementalAggregationSearch.isApplicable(config, window(START.plus(WINDOW)))).isTrue();
+        // The first execution covers one more millisecond
+        assertThat(IncrementalAggregationSearch.isApplicable(config, parameters(START, START.plus(WINDOW)))).isFalse();
+        assertThat(IncrementalAggregationSearch.isApplicable(config(ImmutableList.of("host"), AggregationFunction.CARD), window(START.plus(WINDOW)))).isFalse();
+        assertThat(IncrementalAggregationSearch.isApplicable(config.toBuilder().executeEveryMs(WINDOW).build(), window(START.plus(WINDOW)))).isFalse();
+        assertThat(IncrementalAggregationSearch.isApplicable(config.toBuilder().executeEveryMs(2 * HOP).build(), window(START.plus(WINDOW)))).isFalse();
+    }
+
+    @Test
+    public void searchesOnlyNewSlices() throws Exception {
+        final AggregationEventProcessorConfig config = config(ImmutableList.of("host"),
+                AggregationFunction.COUNT, AggregationFunction.AVG, AggregationFunction.MAX, AggregationFunction.STDDEV);
+
+        final AggregationEventProcessorParameters first = window(START.plus(WINDOW));
+        final AggregationResult firstResult = incrementalSearch(config, first).doSearch();
+        assertThat(searchedRanges).hasSize(5);
+        assertSameValues(firstResult, new FakeSearch(config, first).doSearch());
+
+        searchedRanges.clear();
+        final AggregationEventProcessorParameters second = window(START.plus(WINDOW).plus(HOP));
+        final AggregationResult secondResult = incrementalSearch(config, second).doSearch();
+
+        assertThat(searchedRanges).containsExactly(AbsoluteRange.create(START.plus(WINDOW).plusMillis(1), START.plus(WINDOW).plus(HOP)));
+        assertSameValues(secondResult, new FakeSearch(config, second).doSearch());
+        assertThat(secondResult.totalAggregatedMessages()).isEqualTo(30L);
+    }
+
+    @Test
+    public void changedConfigurationDiscardsSlices() throws Exception {
+        final AggregationEventProcessorConfig config = config(ImmutableList.of("host"), AggregationFunction.SUM);
+        incrementalSearch(config, window(START.plus(WINDOW))).doSearch();
+
+        searchedRanges.clear();
+        final AggregationEventProcessorConfig changed = config.toBuilder().query("host:box1").build();
+        incrementalSearch(changed, window(START.plus(WINDOW).plus(HOP))).doSearch();
+
+        assertThat(searchedRanges).hasSize(5);
+    }
+
+    @Test
+    public void alwaysReturnsResultWithoutGroupBy() throws Exception {
+        messages.clear();
+        final AggregationEventProcessorConfig config = config(ImmutableList.of(), AggregationFunction.COUNT);
+
+        final AggregationResult result = incrementalSearch(config, window(START.plus(WINDOW))).doSearch();
+
+        assertThat(result.keyResults()).hasSize(1);
+        assertThat(result.keyResults().get(0).key()).isEmpty();
+        assertThat(result.keyResults().get(0).seriesValues().get(0).value()).isEqualTo(0.0d);
+    }
+
+    @Test
+    public void partialSeriesAreDeduplicated() {
+        final List<AggregationSeries> series = IncrementalAggregationSearch.partialSeries(ImmutableList.of(
+                AggregationSeries.create("a", AggregationFunction.AVG, "took_ms"),
+                AggregationSeries.create("b", AggregationFunction.SUM, "took_ms"),
+                AggregationSeries.create("c", AggregationFunction.COUNT, null)));
+
+        assertThat(series)
+                .extracting(s -> s.function() + "(" + s.field().orElse("") + ")")
+                .containsExactly("COUNT(took_ms)", "SUM(took_ms)", "COUNT()");
+    }
+
+    private IncrementalAggregationSearch incrementalSearch(AggregationEventProcessorConfig config, AggregationEventProcessorParameters parameters) {
+        return new IncrementalAggregationSearch(config, parameters, "test", eventDefinition, searchFactory, sliceStore);
+    }
+
+    private static void assertSameValues(AggregationResult actual, AggregationResult expected) {
+        final Map<String, Double> actualValues = values(actual);
+        final Map<String, Double> expectedValues = values(expected);
+        assertThat(actualValues.keySet()).isEqualTo(expectedValues.keySet());
+        expectedValues.forEach((key, value) -> assertThat(actualValues.get(key)).as(key).isCloseTo(value, within(1e-9)));
+    }
+
+    private static Map<String, Double> values(AggregationResult result) {
+        final Map<String, Double> values = new LinkedHashMap<>();
+        for (AggregationKeyResult keyResult : result.keyResults()) {
+            for (AggregationSeriesValue seriesValue : keyResult.seriesValues()) {
+                values.put(keyResult.key() + "/" + seriesValue.series().id(), seriesValue.value());
+            }
+        }
+        return values;
+    }
+
+    private static AggregationEventProcessorConfig config(List<String> groupBy, AggregationFunction... functions) {
+        final List<AggregationSeries> series = new ArrayList<>();
+        for (AggregationFunction function : functions) {
+            series.add(AggregationSeries.create(function.toString(), function, function == AggregationFunction.COUNT ? null : "took_ms"));
+        }
+        return AggregationEventProcessorConfig.builder()
+                .query("")
+                .streams(Collections.emptySet())
+                .groupBy(groupBy)
+                .series(series)
+                .conditions(null)
+                .searchWithinMs(WINDOW)
+                .executeEveryMs(HOP)
+                .build();
+    }
+
+    // Parameters as created by the job scheduler for consecutive executions
+    private static AggregationEventProcessorParameters window(DateTime to) {
+        return parameters(to.minus(WINDOW).plusMillis(1), to);
+    }
+
+    private static AggregationEventProcessorParameters parameters(DateTime from, DateTime to) {
+        return AggregationEventProcessorParameters.builder()
+                .timerange(AbsoluteRange.create(from, to))
+                .build();
+    }
+
+    private static class TestMessage {
+        private final DateTime timestamp;
+        private final String host;
+        private final double tookMs;
+
+        TestMessage(DateTime timestamp, String host, double tookMs) {
+            this.timestamp = timestamp;
+            this.host = host;
+            this.tookMs = tookMs;
+        }
+    }
+
+    /**
+     * Aggregates the test messages in memory, like the pivot search would do in Elasticsearch.
+     */
+    private class FakeSearch implements AggregationSearch {
+        private final AggregationEventProcessorConfig config;
+        private final AggregationEventProcessorParameters parameters;
+
+        FakeSearch(AggregationEventProcessorConfig config, AggregationEventProcessorParameters parameters) {
+            this.config = config;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public AggregationResult doSearch() {
+            final TimeRange timerange = parameters.timerange();
+            searchedRanges.add(timerange);
+            final List<TestMessage> matching = messages.stream()
+                    .filter(message -> !message.timestamp.isBefore(timerange.getFrom()) && !message.timestamp.isAfter(timerange.getTo()))
+                    .collect(Collectors.toList());
+            final Map<List<String>, List<TestMessage>> groups = matching.stream()
+                    .collect(Collectors.groupingBy(message -> config.groupBy().isEmpty() ? ImmutableList.<String>of() : ImmutableList.of(message.host),
+                            LinkedHashMap::new, Collectors.toList()));
+            if (config.groupBy().isEmpty() && groups.isEmpty()) {
+                groups.put(ImmutableList.of(), Collections.emptyList());
+            }
+
+            final ImmutableList.Builder<AggregationKeyResult> keyResults = ImmutableList.builder();
+            groups.forEach((key, group) -> keyResults.add(AggregationKeyResult.builder()
+                    .key(key)
+                    .seriesValues(config.series().stream()
+                            .map(series -> AggregationSeriesValue.builder()
+                                    .key(key)
+                                    .value(value(series, group))
+                                    .series(series)
+                                    .build())
+                            .collect(ImmutableList.toImmutableList()))
+                    .build()));
+
+            return AggregationResult.builder()
+                    .keyResults(keyResults.build())
+                    .effectiveTimerange(AbsoluteRange.create(timerange.getFrom(), timerange.getTo()))
+                    .totalAggregatedMessages(matching.size())
+                    .sourceStreams(ImmutableSet.of("stream-1"))
+                    .build();
+        }
+
+        private double value(AggregationSeries series, List<TestMessage> group) {
+            final double count = group.size();
+            final double sum = group.stream().mapToDouble(message -> message.tookMs).sum();
+            final double sumOfSquares = group.stream().mapToDouble(message -> message.tookMs * message.tookMs).sum();
+            final Optional<Double> max = group.stream().map(message -> message.tookMs).max(Double::compare);
+            final Optional<Double> min = group.stream().map(message -> message.tookMs).min(Double::compare);
+            switch (series.function()) {
+                case COUNT:
+                    return count;
+                case SUM:
+                    return sum;
+                case SUMOFSQUARES:
+                    return sumOfSquares;
+                case MIN:
+                    return min.orElse(Double.NaN);
+                case MAX:
+                    return max.orElse(Double.NaN);
+                case AVG:
+                    return count == 0 ? Double.NaN : sum / count;
+                case STDDEV:
+                    return count == 0 ? Double.NaN : Math.sqrt(sumOfSquares / count - (sum / count) * (sum / count));
+                default:
+                    throw new IllegalArgumentException("Unsupported function " + series.function());
+            }
+        }
+    }
+}
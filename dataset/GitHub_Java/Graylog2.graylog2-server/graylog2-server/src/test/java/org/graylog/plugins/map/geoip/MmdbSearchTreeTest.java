@@ -0,0 +1,186 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.map.geoip;
+
+import com.google.common.net.InetAddresses;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MmdbSearchTreeTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void lookupInIpv4Database() throws Exception {
+        final TreeBuilder tree = new TreeBuilder();
+        tree.insert(new byte[]{1}, 8, 0);
+        tree.insert(new byte[]{2}, 8, 1);
+        final MmdbSearchTree searchTree = new MmdbSearchTree(tree.write(4, 24));
+
+        final long first = searchTree.lookup(InetAddresses.forString("1.2.3.4"));
+        assertThat(first).isNotEqualTo(MmdbSearchTree.NOT_FOUND);
+        assertThat(searchTree.lookup(InetAddresses.forString("1.255.0.1"))).isEqualTo(first);
+        assertThat(searchTree.lookup(InetAddresses.forString("2.0.0.1")))
+                .isNotEqualTo(MmdbSearchTree.NOT_FOUND)
+                .isNotEqualTo(first);
+        assertThat(searchTree.lookup(InetAddresses.forString("3.0.0.1"))).isEqualTo(MmdbSearchTree.NOT_FOUND);
+        assertThat(searchTree.lookup(InetAddresses.forString("2001:4860::1"))).isEqualTo(MmdbSearchTree.NOT_FOUND);
+    }
+
+    @Test
+    public void lookupInIpv6Database() throws Exception {
+        final TreeBuilder tree = new TreeBuilder();
+        // IPv4 addresses live below ::/96
+        tree.insert(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}, 104, 0);
+        tree.insert(new byte[]{0x20, 0x01, 0x48, 0x60}, 32, 1);
+
+        for (int recordSize : new int[]{24, 28, 32}) {
+            final MmdbSearchTree searchTree = new MmdbSearchTree(tree.write(6, recordSize));
+
+            final long ipv4 = searchTree.lookup(InetAddresses.forString("1.2.3.4"));
+            final long ipv6 = searchTree.lookup(InetAddresses.forString("2001:4860:4860::8888"));
+            assertThat(ipv4).as("record size %d", recordSize).isNotEqualTo(MmdbSearchTree.NOT_FOUND);
+            assertThat(ipv6).as("record size %d", recordSize).isNotEqualTo(MmdbSearchTree.NOT_FOUND).isNotEqualTo(ipv4);
+            assertThat(searchTree.lookup(InetAddresses.forString("2001:4861::1"))).isEqualTo(MmdbSearchTree.NOT_FOUND);
+            assertThat(searchTree.lookup(InetAddresses.forString("8.8.8.8"))).isEqualTo(MmdbSearchTree.NOT_FOUND);
+        }
+    }
+
+    @Test
+    public void rejectsFilesWithoutMetadata() throws Exception {
+        final Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, new byte[1024]);
+
+        assertThatThrownBy(() -> new MmdbSearchTree(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("metadata");
+    }
+
+    /**
+     * Writes a minimal MaxMind DB with the given networks. The data section is empty, the records only point into it.
+     */
+    private class TreeBuilder {
+        private static final long EMPTY = -1L;
+
+        private final List<long[]> nodes = new ArrayList<>();
+
+        TreeBuilder() {
+            nodes.add(new long[]{EMPTY, EMPTY});
+        }
+
+        void insert(byte[] prefix, int prefixLength, int dataId) {
+            int node = 0;
+            for (int i = 0; i < prefixLength; i++) {
+                final int bit = i >> 3 < prefix.length ? (prefix[i >> 3] >> (7 - (i & 7))) & 1 : 0;
+                if (i == prefixLength - 1) {
+                    // data records are encoded as negative values until the node count is known
+                    nodes.get(node)[bit] = -2L - dataId;
+                } else {
+                    if (nodes.get(node)[bit] == EMPTY) {
+                        nodes.add(new long[]{EMPTY, EMPTY});
+                        nodes.get(node)[bit] = nodes.size() - 1;
+                    }
+                    node = (int) nodes.get(node)[bit];
+                }
+            }
+        }
+
+        Path write(int ipVersion, int recordSize) throws IOException {
+            final long nodeCount = nodes.size();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (long[] node : nodes) {
+                final long left = resolve(node[0], nodeCount);
+                final long right = resolve(node[1], nodeCount);
+                switch (recordSize) {
+                    case 24:
+                        writeUnsigned(out, left, 3);
+                        writeUnsigned(out, right, 3);
+                        break;
+                    case 28:
+                        writeUnsigned(out, left & 0xFFFFFF, 3);
+                        out.write((int) (((left >> 20) & 0xF0) | ((right >> 24) & 0x0F)));
+                        writeUnsigned(out, right & 0xFFFFFF, 3);
+                        break;
+                    default:
+                        writeUnsigned(out, left, 4);
+                        writeUnsigned(out, right, 4);
+                }
+            }
+            // data section separator
+            out.write(new byte[16]);
+
+            out.write(new byte[]{(byte) 0xAB, (byte) 0xCD, (byte) 0xEF});
+            out.write("MaxMind.com".getBytes(StandardCharsets.US_ASCII));
+            out.write(0xE0 | 5); // map with five entries
+            writeString(out, "languages");
+            out.write(0x01); // extended type with one element
+            out.write(11 - 7); // array
+            writeString(out, "en");
+            writeString(out, "node_count");
+            out.write(0xC0 | 4);
+            writeUnsigned(out, nodeCount, 4);
+            writeString(out, "description");
+            out.write(0xE0 | 1);
+            writeString(out, "en");
+            writeString(out, "Test database");
+            writeString(out, "record_size");
+            out.write(0xA0 | 2);
+            writeUnsigned(out, recordSize, 2);
+            writeString(out, "ip_version");
+            out.write(0xA0 | 2);
+            writeUnsigned(out, ipVersion, 2);
+
+            final Path file = temporaryFolder.newFile().toPath();
+            Files.write(file, out.toByteArray());
+            return file;
+        }
+
+        private long resolve(long value, long nodeCount) {
+            if (value == EMPTY) {
+                return nodeCount;
+            }
+            if (value < 0) {
+                return nodeCount + 16 + (-2L - value) * 8;
+            }
+            return value;
+        }
+
+        private void writeString(ByteArrayOutputStream out, String value) throws IOException {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.write(0x40 | bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeUnsigned(ByteArrayOutputStream out, long value, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                out.write((int) (value >> (i * 8)) & 0xFF);
+            }
+        }
+    }
+}
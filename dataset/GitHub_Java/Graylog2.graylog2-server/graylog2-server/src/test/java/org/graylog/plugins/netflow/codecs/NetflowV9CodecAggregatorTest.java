@@ -0,0 +1,148 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import com.codahale.metrics.MetricRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.graylog.plugins.netflow.v9.CompiledFlowDecoder;
+import org.graylog.plugins.netflow.v9.NetFlowV9FieldType;
+import org.graylog.plugins.netflow.v9.NetFlowV9FieldTypeRegistry;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.inputs.codecs.CodecAggregator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class NetflowV9CodecAggregatorTest {
+    private static final int IN_PKTS = 2;
+    private static final InetSocketAddress SENDER = new InetSocketAddress("127.0.0.1", 2055);
+
+    @Rule
+    public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private NetFlowV9FieldTypeRegistry typeRegistry;
+
+    private NetflowV9CodecAggregator aggregator;
+    private CompiledFlowDecoder decoder;
+
+    @Before
+    public void setUp() {
+        when(typeRegistry.get(IN_PKTS)).thenReturn(NetFlowV9FieldType.create(IN_PKTS, NetFlowV9FieldType.ValueType.UINT32, "IN_PKTS"));
+        aggregator = new NetflowV9CodecAggregator();
+        decoder = new CompiledFlowDecoder(typeRegistry, new MetricRegistry());
+    }
+
+    private static ByteBuf v9Header(long sourceId) {
+        return Unpooled.buffer().writeShort(9).writeShort(1).writeInt(1000).writeInt(1500000000).writeInt(1).writeInt((int) sourceId);
+    }
+
+    private static ByteBuf templatePacket(long sourceId) {
+        return v9Header(sourceId).writeShort(0).writeShort(12).writeShort(256).writeShort(1).writeShort(IN_PKTS).writeShort(4);
+    }
+
+    private static ByteBuf dataPacket(long sourceId, int packets) {
+        return v9Header(sourceId).writeShort(256).writeShort(8).writeInt(packets);
+    }
+
+    // decodes the result like the codec does
+    private List<Message> decode(CodecAggregator.Result result, InetSocketAddress sender) {
+        final List<Message> messages = new ArrayList<>();
+        final ByteBuf buf = result.getMessage();
+        if (buf == null) {
+            return messages;
+        }
+        assertThat(buf.readByte()).isEqualTo(NetFlowCodec.ORDERED_V9_MARKER);
+        while (buf.isReadable()) {
+            messages.addAll(decoder.decode(buf.readSlice(buf.readInt()), sender.getAddress()));
+        }
+        return messages;
+    }
+
+    @Test
+    public void prependsTheTemplatesToTheDataSets() {
+        assertThat(decode(aggregator.addChunk(templatePacket(42), SENDER), SENDER)).isEmpty();
+
+        final List<Message> messages = decode(aggregator.addChunk(dataPacket(42, 5), SENDER), SENDER);
+
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0).getField("nf_in_pkts")).isEqualTo(5L);
+    }
+
+    @Test
+    public void keepsDataSetsUntilTheirTemplateArrives() {
+        final CodecAggregator.Result pending = aggregator.addChunk(dataPacket(42, 5), SENDER);
+        assertThat(pending.isValid()).isTrue();
+        assertThat(pending.getMessage()).isNull();
+
+        final List<Message> messages = decode(aggregator.addChunk(templatePacket(42), SENDER), SENDER);
+
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0).getField("nf_in_pkts")).isEqualTo(5L);
+        // the data set is released only once
+        assertThat(aggregator.addChunk(templatePacket(42), SENDER).getMessage()).isNull();
+    }
+
+    @Test
+    public void keysTemplatesBySourceAddressAndSourceId() {
+        aggregator.addChunk(templatePacket(42), SENDER);
+
+        // exporters may send from another source port
+        final InetSocketAddress otherPort = new InetSocketAddress("127.0.0.1", 40000);
+        assertThat(decode(aggregator.addChunk(dataPacket(42, 5), otherPort), otherPort)).hasSize(1);
+
+        assertThat(aggregator.addChunk(dataPacket(43, 5), SENDER).getMessage()).isNull();
+        assertThat(aggregator.addChunk(dataPacket(42, 5), new InetSocketAddress("127.0.0.2", 2055)).getMessage()).isNull();
+    }
+
+    @Test
+    public void rewritesTheLengthOfIpfixPackets() {
+        final ByteBuf template = Unpooled.buffer().writeShort(10).writeShort(28).writeInt(1500000000).writeInt(1).writeInt(5)
+                .writeShort(2).writeShort(12).writeShort(300).writeShort(1).writeShort(IN_PKTS).writeShort(4);
+        aggregator.addChunk(template, SENDER);
+        final ByteBuf data = Unpooled.buffer().writeShort(10).writeShort(24).writeInt(1500000000).writeInt(2).writeInt(5)
+                .writeShort(300).writeShort(8).writeInt(7);
+
+        final List<Message> messages = decode(aggregator.addChunk(data, SENDER), SENDER);
+
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0).getField("nf_version")).isEqualTo(10);
+        assertThat(messages.get(0).getField("nf_in_pkts")).isEqualTo(7L);
+    }
+
+    @Test
+    public void passesOtherVersionsThrough() {
+        final ByteBuf packet = Unpooled.buffer().writeShort(5).writeShort(0);
+
+        final ByteBuf result = aggregator.addChunk(packet, SENDER).getMessage();
+
+        assertThat(result).isNotNull();
+        assertThat(result.getByte(0)).isEqualTo(NetFlowCodec.PASSTHROUGH_MARKER);
+        assertThat(result.readableBytes()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v9;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.net.InetAddresses;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class CompiledFlowDecoderTest {
+    private static final int IN_BYTES = 1;
+    private static final int IN_PKTS = 2;
+    private static final int PROTOCOL = 4;
+    private static final int L4_SRC_PORT = 7;
+    private static final int IPV4_SRC_ADDR = 8;
+    private static final int L4_DST_PORT = 11;
+    private static final int IPV4_DST_ADDR = 12;
+    private static final int IF_NAME = 82;
+
+    private static final InetAddress SENDER = InetAddresses.forString("127.0.0.1");
+
+    @Rule
+    public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private NetFlowV9FieldTypeRegistry typeRegistry;
+
+    private CompiledFlowDecoder decoder;
+
+    @Before
+    public void setUp() {
+        register(IN_BYTES, NetFlowV9FieldType.ValueType.UINT32, "IN_BYTES");
+        register(IN_PKTS, NetFlowV9FieldType.ValueType.UINT32, "IN_PKTS");
+        register(PROTOCOL, NetFlowV9FieldType.ValueType.UINT8, "PROTOCOL");
+        register(L4_SRC_PORT, NetFlowV9FieldType.ValueType.UINT16, "L4_SRC_PORT");
+        register(IPV4_SRC_ADDR, NetFlowV9FieldType.ValueType.IPV4, "IPV4_SRC_ADDR");
+        register(L4_DST_PORT, NetFlowV9FieldType.ValueType.UINT16, "L4_DST_PORT");
+        register(IPV4_DST_ADDR, NetFlowV9FieldType.ValueType.IPV4, "IPV4_DST_ADDR");
+        register(IF_NAME, NetFlowV9FieldType.ValueType.STRING, "IF_NAME");
+
+        decoder = new CompiledFlowDecoder(typeRegistry, new MetricRegistry());
+    }
+
+    private void register(int id, NetFlowV9FieldType.ValueType valueType, String name) {
+        when(typeRegistry.get(id)).thenReturn(NetFlowV9FieldType.create(id, valueType, name));
+    }
+
+    private static ByteBuf v9Header(int count) {
+        return Unpooled.buffer().writeShort(9).writeShort(count).writeInt(1000).writeInt(1500000000).writeInt(7).writeInt(42);
+    }
+
+    // template 256: IPV4_SRC_ADDR, IPV4_DST_ADDR, L4_SRC_PORT, L4_DST_PORT, PROTOCOL, IN_PKTS, IN_BYTES
+    private static void writeV9Template(ByteBuf packet) {
+        packet.writeShort(0).writeShort(36).writeShort(256).writeShort(7)
+                .writeShort(IPV4_SRC_ADDR).writeShort(4)
+                .writeShort(IPV4_DST_ADDR).writeShort(4)
+                .writeShort(L4_SRC_PORT).writeShort(2)
+                .writeShort(L4_DST_PORT).writeShort(2)
+                .writeShort(PROTOCOL).writeShort(1)
+                .writeShort(IN_PKTS).writeShort(4)
+                .writeShort(IN_BYTES).writeShort(4);
+    }
+
+    // two records of 21 bytes each and two bytes of padding
+    private static void writeV9DataSet(ByteBuf packet) {
+        packet.writeShort(256).writeShort(48)
+                .writeInt(0x0A000001).writeInt(0x0A000002).writeShort(54435).writeShort(22).writeByte(6).writeInt(5).writeInt(230)
+                .writeInt(0x0A000003).writeInt(0x0A000004).writeShort(53).writeShort(1053).writeByte(17).writeInt(1).writeInt(80)
+                .writeShort(0);
+    }
+
+    @Test
+    public void decodesNetFlowV9Records() {
+        final ByteBuf packet = v9Header(2);
+        writeV9Template(packet);
+        writeV9DataSet(packet);
+
+        final List<Message> messages = decoder.decode(packet, SENDER);
+
+        assertThat(messages).hasSize(2);
+        final Message first = messages.get(0);
+        assertThat(first.getMessage()).isEqualTo("NetFlowV9 [10.0.0.1]:54435 <> [10.0.0.2]:22 proto:6 pkts:5 bytes:230");
+        assertThat(first.getSource()).isEqualTo("127.0.0.1");
+        assertThat(first.getTimestamp()).isEqualTo(new DateTime(1500000000000L, DateTimeZone.UTC));
+        assertThat(first.getFields())
+                .containsEntry("nf_version", 9)
+                .containsEntry("nf_flow_packet_id", 7L)
+                .containsEntry("nf_ipv4_src_addr", "10.0.0.1")
+                .containsEntry("nf_ipv4_dst_addr", "10.0.0.2")
+                .containsEntry("nf_src_address", "10.0.0.1")
+                .containsEntry("nf_dst_address", "10.0.0.2")
+                .containsEntry("nf_l4_src_port", 54435L)
+                .containsEntry("nf_l4_dst_port", 22L)
+                .containsEntry("nf_protocol", 6L)
+                .containsEntry("nf_proto_name", "TCP")
+                .containsEntry("nf_in_pkts", 5L)
+                .containsEntry("nf_in_bytes", 230L);
+        assertThat(messages.get(1).getMessage()).isEqualTo("NetFlowV9 [10.0.0.3]:53 <> [10.0.0.4]:1053 proto:17 pkts:1 bytes:80");
+        assertThat(messages.get(1).getField("nf_proto_name")).isEqualTo("UDP");
+        assertThat(packet.readerIndex()).isEqualTo(0);
+    }
+
+    @Test
+    public void skipsDataSetsWithoutTemplate() {
+        final ByteBuf dataPacket = v9Header(1);
+        writeV9DataSet(dataPacket);
+
+        assertThat(decoder.decode(dataPacket, SENDER)).isEmpty();
+    }
+
+    @Test
+    public void compilesRepeatedTemplatesOnce() {
+        final ByteBuf packet = v9Header(3);
+        writeV9Template(packet);
+        writeV9DataSet(packet);
+
+        assertThat(decoder.decode(packet, SENDER)).hasSize(2);
+        assertThat(decoder.decode(packet, SENDER)).hasSize(2);
+        assertThat(decoder.compiledTemplateCount()).isEqualTo(1L);
+
+        // a changed definition replaces the template
+        final ByteBuf changed = v9Header(1);
+        changed.writeShort(0).writeShort(12).writeShort(256).writeShort(1).writeShort(IN_PKTS).writeShort(4);
+        changed.writeShort(256).writeShort(8).writeInt(3);
+        final List<Message> messages = decoder.decode(changed, SENDER);
+        assertThat(decoder.compiledTemplateCount()).isEqualTo(2L);
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0).getField("nf_in_pkts")).isEqualTo(3L);
+    }
+
+    @Test
+    public void keepsTemplatesPerExporter() {
+        final ByteBuf templatePacket = v9Header(1);
+        writeV9Template(templatePacket);
+        decoder.decode(templatePacket, SENDER);
+
+        final ByteBuf dataPacket = v9Header(1);
+        writeV9DataSet(dataPacket);
+        assertThat(decoder.decode(dataPacket, InetAddresses.forString("127.0.0.2"))).isEmpty();
+        assertThat(decoder.knownTemplates(SENDER, 42L)).containsExactly(256);
+    }
+
+    @Test
+    public void skipsV9OptionRecords() {
+        final ByteBuf packet = v9Header(2);
+        // options template 257 with one scope field (system, 4 bytes) and one option field (IN_PKTS)
+        packet.writeShort(1).writeShort(20).writeShort(257).writeShort(4).writeShort(4)
+                .writeShort(1).writeShort(4)
+                .writeShort(IN_PKTS).writeShort(4)
+                .writeShort(0);
+        packet.writeShort(257).writeShort(12).writeInt(1).writeInt(100);
+
+        assertThat(decoder.decode(packet, SENDER)).isEmpty();
+        assertThat(decoder.knownTemplates(SENDER, 42L)).containsExactly(257);
+    }
+
+    @Test
+    public void decodesIpfixVariableLengthAndEnterpriseFields() {
+        final ByteBuf packet = Unpooled.buffer();
+        // header, the length is written at the end
+        packet.writeShort(10).writeShort(0).writeInt(1500000000).writeInt(3).writeInt(5);
+        // template 300: IN_PKTS (4 bytes), IF_NAME (variable length), enterprise field 1 of PEN 9 (2 bytes)
+        packet.writeShort(2).writeShort(24).writeShort(300).writeShort(3)
+                .writeShort(IN_PKTS).writeShort(4)
+                .writeShort(IF_NAME).writeShort(65535)
+                .writeShort(0x8001).writeShort(2).writeInt(9);
+        final byte[] interfaceName = "eth0".getBytes(StandardCharsets.UTF_8);
+        final byte[] longName = new byte[300];
+        Arrays.fill(longName, (byte) 'x');
+        // one record with a short length prefix, one with the three byte prefix
+        packet.writeShort(300).writeShort(4 + 4 + 1 + interfaceName.length + 2 + 4 + 3 + longName.length + 2)
+                .writeInt(10).writeByte(interfaceName.length).writeBytes(interfaceName).writeShort(7)
+                .writeInt(20).writeByte(255).writeShort(longName.length).writeBytes(longName).writeShort(8);
+        packet.setShort(2, packet.writerIndex());
+
+        final List<Message> messages = decoder.decode(packet, SENDER);
+
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(0).getMessage()).isEqualTo("IPFIX [null]:null <> [null]:null proto:null pkts:10 bytes:null");
+        assertThat(messages.get(0).getFields())
+                .containsEntry("nf_version", 10)
+                .containsEntry("nf_flow_packet_id", 3L)
+                .containsEntry("nf_in_pkts", 10L)
+                .containsEntry("nf_if_name", "eth0")
+                .containsEntry("nf_field_9_1", 7L);
+        assertThat(messages.get(1).getFields())
+                .containsEntry("nf_in_pkts", 20L)
+                .containsEntry("nf_if_name", new String(longName, StandardCharsets.UTF_8))
+                .containsEntry("nf_field_9_1", 8L);
+    }
+
+    @Test
+    public void withdrawsIpfixTemplates() {
+        final ByteBuf templatePacket = Unpooled.buffer();
+        templatePacket.writeShort(10).writeShort(28).writeInt(1500000000).writeInt(1).writeInt(5)
+                .writeShort(2).writeShort(12).writeShort(300).writeShort(1).writeShort(IN_PKTS).writeShort(4);
+        decoder.decode(templatePacket, SENDER);
+        assertThat(decoder.knownTemplates(SENDER, 5L)).containsExactly(300);
+
+        final ByteBuf withdrawalPacket = Unpooled.buffer();
+        withdrawalPacket.writeShort(10).writeShort(24).writeInt(1500000000).writeInt(2).writeInt(5)
+                .writeShort(2).writeShort(8).writeShort(300).writeShort(0);
+        decoder.decode(withdrawalPacket, SENDER);
+        assertThat(decoder.knownTemplates(SENDER, 5L)).isEmpty();
+    }
+
+    @Test
+    public void ignoresInvalidPackets() {
+        assertThat(decoder.decode(Unpooled.wrappedBuffer(new byte[]{0, 9, 0}), SENDER)).isEmpty();
+        assertThat(decoder.decode(Unpooled.wrappedBuffer("Foobar".getBytes(StandardCharsets.UTF_8)), SENDER)).isEmpty();
+
+        // a set which is longer than the packet
+        final ByteBuf packet = v9Header(1);
+        packet.writeShort(256).writeShort(100).writeInt(0);
+        assertThat(decoder.decode(packet, SENDER)).isEmpty();
+    }
+
+    @Test
+    public void formatsIpv6Addresses() {
+        final ByteBuf buf = Unpooled.buffer()
+                .writeShort(0x2001).writeShort(0x0db8).writeShort(0).writeShort(0)
+                .writeShort(0).writeShort(0).writeShort(0xff00).writeShort(0x0042);
+        assertThat(CompiledFlowTemplate.ipv6String(buf, 0)).isEqualTo("2001:db8::ff00:42");
+        assertThat(CompiledFlowTemplate.ipv6String(Unpooled.wrappedBuffer(new byte[16]), 0)).isEqualTo("::");
+    }
+}
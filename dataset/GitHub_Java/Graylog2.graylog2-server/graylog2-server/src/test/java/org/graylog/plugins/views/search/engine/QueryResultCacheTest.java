@@ -0,0 +1,176 @@
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.QueryResult;
+import org.graylog.plugins.views.search.Search;
+import org.graylog.plugins.views.search.SearchJob;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
+import org.graylog.plugins.views.search.searchtypes.DateHistogram;
+import org.graylog2.indexer.ranges.IndexRangeUpdatedEvent;
+import org.graylog2.indexer.searches.Searches;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.joda.time.DateTimeZone.UTC;
+
+public class QueryResultCacheTest {
+    private static final DateTime NOW = new DateTime(2019, 3, 1, 12, 30, 15, UTC);
+
+    private final List<Query> executed = new ArrayList<>();
+    private QueryResultCache cache;
+    private SearchJob searchJob;
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(NOW.getMillis());
+        cache = new QueryResultCache(new ObjectMapperProvider().get(), new MetricRegistry(),
+                QueryResultCache.DEFAULT_BUCKET_MILLIS, QueryResultCache.DEFAULT_GRACE_MILLIS);
+        searchJob = new SearchJob("job", Search.builder().queries(ImmutableSet.of(query(RelativeRange.create(3600)))).build(), "admin");
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void reusesResultWithinSameBucket() {
+        final Query query = query(RelativeRange.create(3600));
+
+        final QueryResult first = cache.execute(searchJob, query, backend());
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusSeconds(4).getMillis());
+        final QueryResult second = cache.execute(searchJob, query, backend());
+
+        assertThat(second).isSameAs(first);
+        // one full query for the histogram, nothing for the second execution
+        assertThat(executed).hasSize(1);
+    }
+
+    @Test
+    public void mergesClosedBucketsWithFreshTail() {
+        final Query query = query(RelativeRange.create(3600));
+        cache.execute(searchJob, query, backend());
+        executed.clear();
+
+        final DateTime later = NOW.plusMinutes(5);
+        DateTimeUtils.setCurrentMillisFixed(later.getMillis());
+        final QueryResult result = cache.execute(searchJob, query, backend());
+
+        // head and tail queries only
+        assertThat(executed).hasSize(2);
+        assertThat(executed).allMatch(q -> q.timerange() instanceof AbsoluteRange);
+        assertThat(histogram(result)).isEqualTo(expectedBuckets(later.minusHours(1), later));
+    }
+
+    @Test
+    public void runsFullQueryAfterIndexRangeChanged() {
+        final Query query = query(RelativeRange.create(3600));
+        cache.execute(searchJob, query, backend());
+        executed.clear();
+
+        cache.handleIndexRangeUpdated(IndexRangeUpdatedEvent.create("graylog_0"));
+        DateTimeUtils.setCurrentMillisFixed(NOW.plusMinutes(5).getMillis());
+        cache.execute(searchJob, query, backend());
+
+        assertThat(executed).hasSize(1);
+        assertThat(executed.get(0).timerange()).isInstanceOf(AbsoluteRange.class);
+        assertThat(executed.get(0).timerange().getFrom()).isEqualTo(NOW.plusMinutes(5).minusHours(1));
+    }
+
+    @Test
+    public void doesNotCacheFailedResults() {
+        final Query query = query(RelativeRange.create(3600));
+        final Function<Query, QueryResult> failing = q -> {
+            executed.add(q);
+            return QueryResult.builder().query(q).searchTypes(Collections.emptyMap()).state(QueryResult.State.FAILED).build();
+        };
+
+        cache.execute(searchJob, query, failing);
+        final int firstRun = executed.size();
+        cache.execute(searchJob, query, failing);
+
+        assertThat(executed.size()).isGreaterThan(firstRun);
+    }
+
+    @Test
+    public void doesNotCacheAbsoluteRangesReachingIntoThePresent() {
+        final Query query = query(AbsoluteRange.create(NOW.minusHours(1), NOW));
+
+        cache.execute(searchJob, query, backend());
+        cache.execute(searchJob, query, backend());
+
+        assertThat(executed).hasSize(2);
+    }
+
+    private Query query(TimeRange timeRange) {
+        return Query.builder()
+                .id("query")
+                .timerange(timeRange)
+                .query(ElasticsearchQueryString.builder().queryString("*").build())
+                .searchTypes(ImmutableSet.of(DateHistogram.builder()
+                        .type(DateHistogram.NAME)
+                        .id("histogram")
+                        .interval(Searches.DateHistogramInterval.MINUTE)
+                        .build()))
+                .build();
+    }
+
+    /**
+     * Fakes a backend which receives exactly one message per second.
+     */
+    private Function<Query, QueryResult> backend() {
+        return query -> {
+            executed.add(query);
+            final DateTime now = DateTime.now(UTC);
+            final TimeRange timeRange = query.timerange();
+            final DateTime from = timeRange instanceof RelativeRange
+                    ? now.minusSeconds(((RelativeRange) timeRange).range())
+                    : timeRange.getFrom();
+            final DateTime to = timeRange instanceof RelativeRange ? now : timeRange.getTo();
+
+            final Map<String, SearchType.Result> results = new HashMap<>();
+            for (SearchType searchType : query.searchTypes()) {
+                results.put(searchType.id(), DateHistogram.Result.result(searchType.id())
+                        .results(expectedBuckets(from, to))
+                        .timerange(AbsoluteRange.create(from, to))
+                        .build());
+            }
+            return QueryResult.builder()
+                    .query(query)
+                    .searchTypes(results)
+                    .executionStats(QueryExecutionStats.builderWithCurrentTime().effectiveTimeRange(AbsoluteRange.create(from, to)).build())
+                    .build();
+        };
+    }
+
+    private static Map<Long, Long> expectedBuckets(DateTime from, DateTime to) {
+        final Map<Long, Long> buckets = new HashMap<>();
+        for (long second = from.getMillis() / 1000L; second <= to.getMillis() / 1000L; second++) {
+            buckets.merge(second - Math.floorMod(second, 60L), 1L, Long::sum);
+        }
+        return ImmutableMap.copyOf(buckets);
+    }
+
+    private static Map<Long, Long> histogram(QueryResult result) {
+        return ((DateHistogram.Result) result.searchTypes().get("histogram")).results();
+    }
+}
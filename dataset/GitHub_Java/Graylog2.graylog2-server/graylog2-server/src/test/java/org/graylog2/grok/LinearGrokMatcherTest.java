@@ -0,0 +1,165 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.grok;
+
+import oi.thekraken.grok.api.Grok;
+import oi.thekraken.grok.api.Match;
+import org.graylog2.inputs.extractors.GrokExtractor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LinearGrokMatcherTest {
+    private static final String SYSLOG = "%{WORD:month} %{POSINT:day} %{NOTSPACE:time} %{NOTSPACE:host} %{DATA:program}\\[%{POSINT:pid}\\]: %{GREEDYDATA:message}";
+    private static final String ACCESS_LOG = "%{NOTSPACE:clientip} %{USERNAME:ident} %{USERNAME:auth} \\[%{DATA:timestamp}\\] \"%{WORD:verb} %{NOTSPACE:request} HTTP/%{NUMBER:httpversion}\" %{INT:response} %{INT:bytes}";
+
+    private Map<String, String> patterns;
+
+    @Before
+    public void setUp() {
+        patterns = new HashMap<>();
+        for (String line : GrokExtractor.PATTERNS.split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final int space = line.indexOf(' ');
+            patterns.put(line.substring(0, space), line.substring(space + 1));
+        }
+    }
+
+    @Test
+    public void lowersCommonPrimitives() {
+        assertThat(LinearGrokMatcher.compile(SYSLOG, patterns)).isNotNull();
+        assertThat(LinearGrokMatcher.compile(ACCESS_LOG, patterns)).isNotNull();
+    }
+
+    @Test
+    public void doesNotLowerUnsupportedExpressions() {
+        // alternations, regex syntax, unsupported primitives, and duplicate or typed names
+        assertThat(LinearGrokMatcher.compile("%{WORD:a}|%{INT:b}", patterns)).isNull();
+        assertThat(LinearGrokMatcher.compile("%{WORD:a} +%{INT:b}", patterns)).isNull();
+        assertThat(LinearGrokMatcher.compile("%{IPV4:ip}", patterns)).isNull();
+        assertThat(LinearGrokMatcher.compile("%{WORD:a} %{WORD:a}", patterns)).isNull();
+        // USER contains an unnamed USERNAME, using it twice would produce duplicate names
+        assertThat(LinearGrokMatcher.compile("%{USER:a} %{USER:b}", patterns)).isNull();
+        assertThat(LinearGrokMatcher.compile("%{INT:a;int}", patterns)).isNull();
+        // greedy data has to be followed by a literal
+        assertThat(LinearGrokMatcher.compile("%{GREEDYDATA:a}%{INT:b}", patterns)).isNull();
+    }
+
+    @Test
+    public void doesNotLowerModifiedPrimitives() {
+        patterns.put("WORD", "[a-z]+");
+        assertThat(LinearGrokMatcher.compile("%{WORD:a}", patterns)).isNull();
+    }
+
+    @Test
+    public void matchesLikeRegex() throws Exception {
+        assertSameCaptures(SYSLOG, "Oct 11 22:14:15 mymachine su[230]: 'su root' failed for lonvick on /dev/pts/8");
+        assertSameCaptures(SYSLOG, "Oct 11 22:14:15 mymachine kernel[0]: [1234.5] a[b] c");
+        assertSameCaptures(ACCESS_LOG, "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326");
+        assertSameCaptures(ACCESS_LOG, "10.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"POST /a?b=c HTTP/1.1\" 404 0");
+        assertSameCaptures("%{WORD:a} %{DATA:b}", "foo bar");
+        assertSameCaptures("%{WORD:a}%{SPACE}%{GREEDYDATA:rest}", "foo    \"quoted\"");
+        assertSameCaptures("x=%{NUMBER:x} y=%{INT:y}", "x=-1.25 y=+3");
+        assertSameCaptures("x=%{NUMBER:x}", "x=.5");
+        assertSameCaptures("%{USER:user}", "some.user-name");
+        assertSameCaptures("%{NONNEGINT:n}", "0123");
+    }
+
+    @Test
+    public void fallsBackToRegex() throws Exception {
+        // the first WORD would be "foo", only backtracking finds a match at a later start
+        assertSameCaptures("%{WORD:a} end", "foo bar end");
+        // the first occurrence of the literal after DATA does not lead to a match
+        assertSameCaptures("%{DATA:a}: %{INT:b}", "a: b: 42");
+        // POSINT needs a word boundary after it
+        assertSameCaptures("%{POSINT:a}", "123abc 45");
+        // no match at all
+        assertSameCaptures(ACCESS_LOG, "this is not an access log");
+        assertSameCaptures(SYSLOG, "   ");
+    }
+
+    @Test
+    public void reusesCapturesObject() throws Exception {
+        final CompiledGrok grok = CompiledGrok.compile(grokPatterns(), "%{WORD:verb} %{NOTSPACE:request}");
+        assertThat(grok.isLinear()).isTrue();
+
+        final GrokCaptures captures = new GrokCaptures();
+        assertThat(grok.match("GET /index.html", captures)).isTrue();
+        assertThat(captures.size()).isEqualTo(2);
+        assertThat(captures.value(1)).isEqualTo("/index.html");
+
+        assertThat(grok.match("POST /", captures)).isTrue();
+        assertThat(captures.value(0)).isEqualTo("POST");
+        assertThat(captures.value(1)).isEqualTo("/");
+
+        assertThat(grok.match("", captures)).isFalse();
+        assertThat(captures.size()).isZero();
+    }
+
+    @Test
+    public void sharesCompiledExpressions() throws Exception {
+        final CompiledGrok first = CompiledGrok.compile(grokPatterns(), ACCESS_LOG);
+        final CompiledGrok second = CompiledGrok.compile(grokPatterns(), ACCESS_LOG);
+        assertThat(second).isSameAs(first);
+    }
+
+    private Set<GrokPattern> grokPatterns() {
+        final Set<GrokPattern> grokPatterns = new HashSet<>();
+        for (Map.Entry<String, String> entry : patterns.entrySet()) {
+            final GrokPattern grokPattern = new GrokPattern();
+            grokPattern.name = entry.getKey();
+            grokPattern.pattern = entry.getValue();
+            grokPatterns.add(grokPattern);
+        }
+        return grokPatterns;
+    }
+
+    private void assertSameCaptures(String expression, String value) throws Exception {
+        final Grok grok = new Grok();
+        for (Map.Entry<String, String> entry : patterns.entrySet()) {
+            grok.addPattern(entry.getKey(), entry.getValue());
+        }
+        grok.compile(expression);
+        final Match match = grok.match(value);
+        match.captures();
+        final Map<String, String> expected = new HashMap<>();
+        for (Map.Entry<String, Object> entry : match.toMap().entrySet()) {
+            if (entry.getValue() != null) {
+                expected.put(entry.getKey(), entry.getValue().toString());
+            }
+        }
+
+        final GrokCaptures captures = new GrokCaptures();
+        CompiledGrok.compile(grokPatterns(), expression).match(value, captures);
+        final Map<String, String> actual = new HashMap<>();
+        for (int i = 0; i < captures.size(); i++) {
+            if (captures.value(i) != null) {
+                actual.put(captures.name(i), captures.value(i));
+            }
+        }
+
+        assertThat(actual).as("captures of %s for \"%s\"", expression, value).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,429 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonFactory;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Tools;
+import org.graylog2.shared.journal.Journal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class BulkIndexPipelineTest {
+    @Rule
+    public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private Journal journal;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private MockWebServer server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    private BulkIndexPipeline pipeline(BulkTransport transport, int maxInFlight, long minBatchBytes) {
+        return new BulkIndexPipeline(transport, journal, executor, jsonFactory, new MetricRegistry(),
+                maxInFlight, minBatchBytes, 1024 * 1024, 1000, 1);
+    }
+
+    private HttpBulkTransport httpTransport() {
+        return new HttpBulkTransport(new OkHttpClient(), server.url("/"), jsonFactory);
+    }
+
+    private static List<Message> messages(int count) {
+        final List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Message message = new Message("message" + i, "test", Tools.nowUTC());
+            message.setJournalOffset(i);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    @Test
+    public void indexesAllDocumentsAndCommitsJournalOffset() throws Exception {
+        final StubBulkEndpoint endpoint = new StubBulkEndpoint(0);
+        server.setDispatcher(endpoint);
+        server.start();
+
+        final List<Message> messages = messages(100);
+        final BulkIndexPipeline pipeline = pipeline(httpTransport(), 4, 1024);
+        pipeline.add("graylog_deflector", messages);
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(endpoint.indexedIds).hasSize(100);
+        assertThat(server.getRequestCount()).isGreaterThan(1);
+        verify(journal).markJournalOffsetCommitted(99L);
+    }
+
+    @Test
+    public void resendsOnlyRejectedDocuments() throws Exception {
+        // the first request rejects every second document
+        final StubBulkEndpoint endpoint = new StubBulkEndpoint(1);
+        server.setDispatcher(endpoint);
+        server.start();
+
+        final BulkIndexPipeline pipeline = pipeline(httpTransport(), 1, 1024 * 1024);
+        pipeline.add("graylog_deflector", messages(10));
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(endpoint.documentsPerRequest).containsExactly(10, 5);
+        assertThat(endpoint.indexedIds).hasSize(10);
+        verify(journal).markJournalOffsetCommitted(9L);
+    }
+
+    @Test
+    public void retriesRejectedRequests() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(
+                "{\"took\":1,\"errors\":false,\"items\":[{\"index\":{\"_id\":\"a\",\"status\":201}},{\"index\":{\"_id\":\"b\",\"status\":201}}]}"));
+        server.start();
+
+        final BulkIndexPipeline pipeline = pipeline(httpTransport(), 1, 1024 * 1024);
+        final long initialBatchSize = pipeline.currentBatchSizeBytes();
+        pipeline.add("graylog_deflector", messages(2));
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(server.getRequestCount()).isEqualTo(3);
+        verify(journal).markJournalOffsetCommitted(1L);
+        // the minimum batch size can't shrink any further
+        assertThat(pipeline.currentBatchSizeBytes()).isGreaterThanOrEqualTo(initialBatchSize);
+    }
+
+    @Test
+    public void doesNotRetryFailedDocuments() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(
+                "{\"took\":1,\"errors\":true,\"items\":[{\"index\":{\"_id\":\"a\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\",\"reason\":\"failed\"}}},{\"index\":{\"_id\":\"b\",\"status\":201}}]}"));
+        server.start();
+
+        final BulkIndexPipeline pipeline = pipeline(httpTransport(), 1, 1024 * 1024);
+        pipeline.add("graylog_deflector", messages(2));
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        verify(journal).markJournalOffsetCommitted(1L);
+    }
+
+    @Test
+    public void doesNotRetryPermanentRequestErrors() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(400));
+        server.start();
+
+        final BulkIndexPipeline pipeline = pipeline(httpTransport(), 1, 1024 * 1024);
+        pipeline.add("graylog_deflector", messages(2));
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        verify(journal).markJournalOffsetCommitted(1L);
+    }
+
+    @Test
+    public void keepsRetryingUntilClusterIsAvailable() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(
+                "{\"took\":1,\"errors\":false,\"items\":[{\"index\":{\"_id\":\"a\",\"status\":201}},{\"index\":{\"_id\":\"b\",\"status\":201}}]}"));
+        server.start();
+
+        final BulkIndexPipeline pipeline = pipeline(httpTransport(), 1, 1024 * 1024);
+        pipeline.add("graylog_deflector", messages(2));
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(server.getRequestCount()).isEqualTo(7);
+        verify(journal).markJournalOffsetCommitted(1L);
+    }
+
+    @Test
+    public void splitsRequestsWhichAreTooLarge() throws Exception {
+        final Set<String> indexedMessages = ConcurrentHashMap.newKeySet();
+        final List<Integer> documentsPerRequest = new CopyOnWriteArrayList<>();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                final String body = request.getBody().readString(StandardCharsets.UTF_8);
+                final String[] lines = body.split("\n");
+                documentsPerRequest.add(lines.length / 2);
+                // more than two documents are too large, and so is "message3" on its own
+                if (lines.length / 2 > 2 || body.contains("\"message3\"")) {
+                    return new MockResponse().setResponseCode(413);
+                }
+                final StringBuilder items = new StringBuilder();
+                for (int i = 1; i < lines.length; i += 2) {
+                    indexedMessages.add(lines[i].replaceAll(".*\"message\":\"([^\"]+)\".*", "$1"));
+                    if (items.length() > 0) {
+                        items.append(',');
+                    }
+                    items.append("{\"index\":{\"status\":201}}");
+                }
+                return new MockResponse().setResponseCode(200)
+                        .setBody("{\"took\":1,\"errors\":false,\"items\":[" + items + "]}");
+            }
+        });
+        server.start();
+
+        final BulkIndexPipeline pipeline = pipeline(httpTransport(), 1, 1024 * 1024);
+        pipeline.add("graylog_deflector", messages(8));
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(documentsPerRequest).containsExactly(8, 4, 2, 2, 1, 1, 4, 2, 2);
+        assertThat(indexedMessages).containsOnly("message0", "message1", "message2", "message4", "message5",
+                "message6", "message7");
+        verify(journal).markJournalOffsetCommitted(7L);
+    }
+
+    @Test
+    public void interruptedBatchStopsCommittingJournalOffsets() throws Exception {
+        final CountDownLatch firstRequestStarted = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+        final BulkTransport transport = documents -> {
+            if (requests.getAndIncrement() == 0) {
+                firstRequestStarted.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            final int[] statuses = new int[documents.size()];
+            Arrays.fill(statuses, 201);
+            return statuses;
+        };
+
+        final BulkIndexPipeline pipeline = pipeline(transport, 2, 1);
+        final List<Message> messages = messages(2);
+        pipeline.add("graylog_deflector", messages.get(0));
+        assertThat(firstRequestStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        pipeline.add("graylog_deflector", messages.get(1));
+        verify(journal, after(500).never()).markJournalOffsetCommitted(anyLong());
+
+        // interrupts the first request, which gives up, so the second batch must not commit past it
+        executor.shutdownNow();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(requests.get()).isEqualTo(2);
+        verify(journal, never()).markJournalOffsetCommitted(anyLong());
+    }
+
+    @Test
+    public void rejectedBatchIsNotCommitted() throws Exception {
+        final BulkTransport transport = documents -> {
+            final int[] statuses = new int[documents.size()];
+            Arrays.fill(statuses, 201);
+            return statuses;
+        };
+
+        final BulkIndexPipeline pipeline = pipeline(transport, 1, 1);
+        executor.shutdown();
+        try {
+            pipeline.add("graylog_deflector", messages(1));
+            fail("Expected a RejectedExecutionException");
+        } catch (RejectedExecutionException expected) {
+            // the batch gives up and must be replayed from the journal
+        }
+
+        verify(journal, never()).markJournalOffsetCommitted(anyLong());
+        assertThat(pipeline.flushAndWait(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void batchInterruptedBeforeSendingStopsCommittingJournalOffsets() throws Exception {
+        final CountDownLatch firstRequestStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+        final BulkTransport transport = documents -> {
+            if (requests.getAndIncrement() == 0) {
+                firstRequestStarted.countDown();
+                try {
+                    releaseFirstBatch.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            final int[] statuses = new int[documents.size()];
+            Arrays.fill(statuses, 201);
+            return statuses;
+        };
+
+        final BulkIndexPipeline pipeline = pipeline(transport, 1, 1);
+        final List<Message> messages = messages(3);
+        pipeline.add("graylog_deflector", messages.get(0));
+        assertThat(firstRequestStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // the only request is in flight, so the second batch is interrupted while waiting for it
+        Thread.currentThread().interrupt();
+        try {
+            pipeline.add("graylog_deflector", messages.get(1));
+            fail("Expected an InterruptedException");
+        } catch (InterruptedException expected) {
+            // the batch gives up and must be replayed from the journal
+        }
+
+        releaseFirstBatch.countDown();
+        verify(journal, timeout(10000)).markJournalOffsetCommitted(0L);
+
+        pipeline.add("graylog_deflector", messages.get(2));
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(requests.get()).isEqualTo(2);
+        verify(journal, never()).markJournalOffsetCommitted(1L);
+        verify(journal, never()).markJournalOffsetCommitted(2L);
+    }
+
+    @Test
+    public void commitsJournalOffsetsInOrder() throws Exception {
+        final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+        final BulkTransport transport = documents -> {
+            if (requests.getAndIncrement() == 0) {
+                try {
+                    releaseFirstBatch.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            final int[] statuses = new int[documents.size()];
+            Arrays.fill(statuses, 201);
+            return statuses;
+        };
+
+        final BulkIndexPipeline pipeline = pipeline(transport, 2, 1);
+        final List<Message> messages = messages(2);
+        // every message is a batch on its own
+        pipeline.add("graylog_deflector", messages.get(0));
+        pipeline.add("graylog_deflector", messages.get(1));
+
+        // the second batch completes first, but must not commit the offset of the first one
+        verify(journal, after(500).never()).markJournalOffsetCommitted(anyLong());
+
+        releaseFirstBatch.countDown();
+        assertThat(pipeline.flushAndWait(10, TimeUnit.SECONDS)).isTrue();
+        verify(journal).markJournalOffsetCommitted(1L);
+        verify(journal, never()).markJournalOffsetCommitted(0L);
+    }
+
+    @Test
+    public void adaptsBatchSize() {
+        final AdaptiveBatchSize batchSize = new AdaptiveBatchSize(1000, 8000, 1000, TimeUnit.MILLISECONDS.toNanos(100));
+
+        // grows by a constant step of (8000 - 1000) / 64 bytes
+        batchSize.onSuccess(TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(batchSize.currentBytes()).isEqualTo(1109);
+        batchSize.onSuccess(TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(batchSize.currentBytes()).isEqualTo(1218);
+
+        for (int i = 0; i < 100; i++) {
+            batchSize.onSuccess(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(batchSize.currentBytes()).isEqualTo(8000);
+
+        batchSize.onSuccess(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(batchSize.currentBytes()).isEqualTo(6000);
+
+        batchSize.onRejected();
+        assertThat(batchSize.currentBytes()).isEqualTo(3000);
+
+        batchSize.onRejected();
+        batchSize.onRejected();
+        assertThat(batchSize.currentBytes()).isEqualTo(1000);
+    }
+
+    /**
+     * Answers bulk requests with a status for every document, optionally rejecting every second document of the
+     * first {@code rejectingRequests} requests.
+     */
+    private static class StubBulkEndpoint extends Dispatcher {
+        private final AtomicInteger rejectingRequests;
+        final Set<String> indexedIds = ConcurrentHashMap.newKeySet();
+        final List<Integer> documentsPerRequest = new CopyOnWriteArrayList<>();
+
+        StubBulkEndpoint(int rejectingRequests) {
+            this.rejectingRequests = new AtomicInteger(rejectingRequests);
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if (!request.getPath().equals("/_bulk")) {
+                return new MockResponse().setResponseCode(404);
+            }
+            final String[] lines = request.getBody().readString(StandardCharsets.UTF_8).split("\n");
+            final boolean reject = rejectingRequests.getAndDecrement() > 0;
+            documentsPerRequest.add(lines.length / 2);
+
+            final StringBuilder items = new StringBuilder();
+            for (int i = 0; i < lines.length; i += 2) {
+                final String id = lines[i].replaceAll(".*\"_id\":\"([^\"]+)\".*", "$1");
+                final int status = reject && (i / 2) % 2 == 1 ? 429 : 201;
+                if (status == 201) {
+                    indexedIds.add(id);
+                }
+                if (items.length() > 0) {
+                    items.append(',');
+                }
+                items.append("{\"index\":{\"_id\":\"").append(id).append("\",\"status\":").append(status).append("}}");
+            }
+            return new MockResponse().setResponseCode(200)
+                    .setBody("{\"took\":1,\"errors\":" + reject + ",\"items\":[" + items + "]}");
+        }
+    }
+}
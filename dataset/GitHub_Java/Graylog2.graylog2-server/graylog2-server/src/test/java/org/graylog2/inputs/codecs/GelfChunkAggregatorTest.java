@@ -37,10 +37,13 @@ import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.graylog2.inputs.codecs.GelfChunkAggregator.BUFFERED_BYTES;
 import static org.graylog2.inputs.codecs.GelfChunkAggregator.CHUNK_COUNTER;
 import static org.graylog2.inputs.codecs.GelfChunkAggregator.COMPLETE_MESSAGES;
 import static org.graylog2.inputs.codecs.GelfChunkAggregator.ChunkEntry;
 import static org.graylog2.inputs.codecs.GelfChunkAggregator.DUPLICATE_CHUNKS;
+import static org.graylog2.inputs.codecs.GelfChunkAggregator.EVICTED_CHUNKS;
+import static org.graylog2.inputs.codecs.GelfChunkAggregator.EVICTED_MESSAGES;
 import static org.graylog2.inputs.codecs.GelfChunkAggregator.EXPIRED_CHUNKS;
 import static org.graylog2.inputs.codecs.GelfChunkAggregator.EXPIRED_MESSAGES;
 import static org.graylog2.inputs.codecs.GelfChunkAggregator.WAITING_MESSAGES;
@@ -125,17 +128,15 @@ public class GelfChunkAggregatorTest {
         final ChannelBuffer[] chunks = createChunkedMessage(129 * 1024, 1024);
         int i = 1;
         for (final ChannelBuffer chunk : chunks) {
+            // a message with more than 128 chunks can never be completed, so no chunk of it is buffered
             final CodecAggregator.Result result = aggregator.addChunk(chunk);
-            if (i == 129) {
-                assertFalse("Message invalidated (chunk #" + i + ")", result.isValid());
-                assertNull("Message discarded (chunk #" + i + ")", result.getMessage());
-
-            } else {
-                assertTrue("Incomplete message valid (chunk #" + i + ")", result.isValid());
-                assertNull("Message not complete (chunk #" + i + ")", result.getMessage());
-            }
+            assertFalse("Message invalidated (chunk #" + i + ")", result.isValid());
+            assertNull("Message discarded (chunk #" + i + ")", result.getMessage());
             i++;
         }
+
+        assertEquals(0, counterValueNamed(metricRegistry, WAITING_MESSAGES));
+        assertEquals(0, counterValueNamed(metricRegistry, BUFFERED_BYTES));
     }
 
     @Test
@@ -255,6 +256,73 @@ public class GelfChunkAggregatorTest {
         assertEquals(1, counterValueNamed(metricRegistry, DUPLICATE_CHUNKS));
     }
 
+    @Test
+    public void evictsOldestMessagesWhenBufferIsFull() {
+        aggregator = new GelfChunkAggregator(poolExecutor, metricRegistry, 3 * 1024);
+        final ChannelBuffer[] msg1 = createChunkedMessage(4096 + 1, 1024, generateMessageId(1));// 5 chunks;
+        final ChannelBuffer[] msg2 = createChunkedMessage(4096 + 1, 1024, generateMessageId(2));// 5 chunks;
+
+        // two chunks of message 1 and two chunks of message 2 do not fit into 3 KiB
+        assertNull(aggregator.addChunk(msg1[0]).getMessage());
+        assertNull(aggregator.addChunk(msg1[1]).getMessage());
+        assertNull(aggregator.addChunk(msg2[0]).getMessage());
+        assertNull(aggregator.addChunk(msg2[1]).getMessage());
+
+        assertEquals(1, counterValueNamed(metricRegistry, EVICTED_MESSAGES));
+        assertEquals(2, counterValueNamed(metricRegistry, EVICTED_CHUNKS));
+        assertEquals(1, counterValueNamed(metricRegistry, WAITING_MESSAGES));
+        // every chunk keeps its whole datagram buffer, including the 12 header bytes, alive
+        assertEquals(2 * (1024 + 12), counterValueNamed(metricRegistry, BUFFERED_BYTES));
+    }
+
+    @Test
+    public void chargesTheWholeDatagramBuffer() {
+        final byte[] messageId = generateMessageId();
+        final ChannelBuffer datagram = ChannelBuffers.buffer(1500);
+        datagram.writeBytes(createChunk(messageId, (byte) 0, (byte) 2, new byte[1024]));
+
+        assertNull(aggregator.addChunk(datagram).getMessage());
+
+        assertEquals(1500, counterValueNamed(metricRegistry, BUFFERED_BYTES));
+    }
+
+    @Test
+    public void copiesSmallChunksOfLargeDatagramBuffers() {
+        final byte[] messageId = generateMessageId();
+        final ChannelBuffer datagram = ChannelBuffers.buffer(8192);
+        datagram.writeBytes(createChunk(messageId, (byte) 0, (byte) 2, new byte[16]));
+
+        assertNull(aggregator.addChunk(datagram).getMessage());
+
+        // only the copied payload is kept, not the 8 KiB datagram buffer
+        assertEquals(16, counterValueNamed(metricRegistry, BUFFERED_BYTES));
+
+        final ChannelBuffer message = aggregator.addChunk(createChunk(messageId, (byte) 1, (byte) 2, new byte[16])).getMessage();
+        assertNotNull(message);
+        assertEquals(32, message.readableBytes());
+        assertEquals(0, counterValueNamed(metricRegistry, BUFFERED_BYTES));
+    }
+
+    @Test
+    public void reassembledMessageReferencesChunkBuffers() {
+        final ChannelBuffer[] chunks = createChunkedMessage(2048, 1024);
+        chunks[0].setByte(12, 'a');
+        chunks[1].setByte(12, 'b');
+
+        assertNull(aggregator.addChunk(chunks[0]).getMessage());
+        final ChannelBuffer message = aggregator.addChunk(chunks[1]).getMessage();
+
+        assertNotNull(message);
+        assertEquals(2048, message.readableBytes());
+        assertEquals('a', message.getByte(0));
+        assertEquals('b', message.getByte(1024));
+        assertEquals(0, counterValueNamed(metricRegistry, BUFFERED_BYTES));
+
+        // the reassembled message is a view of the original datagrams, not a copy
+        chunks[1].setByte(13, 'c');
+        assertEquals('c', message.getByte(1025));
+    }
+
     @Test
     public void testChunkEntryCompareTo() throws Exception {
         // Test if the ChunkEntry#compareTo() method can handle ChunkEntry objects which have the same timestamp.
@@ -16,6 +16,8 @@
  */
 package org.graylog2.inputs.codecs;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.journal.RawMessage;
@@ -26,8 +28,12 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -110,6 +116,55 @@ public class GelfCodecTest {
                 "user_id", "some_info", "some_env_var");
     }
 
+    @Test
+    public void decodedStringFieldsAreWrittenToTheBulkIndexUnchanged() throws Exception {
+        final String json = "{"
+                + "\"version\": \"1.1\","
+                + "\"host\": \"example.org\","
+                + "\"short_message\": \"A short message\","
+                + "\"full_message\": \"  Backtrace with \u00fcml\u00e4uts  \","
+                + "\"timestamp\": 1385053862.3072,"
+                + "\"_escaped\": \"line\\nbreak \\\"quoted\\\" \\u00e4\","
+                + "\"_plain\": \"gr\u00fc\u00dfe \u2603\","
+                + "\"_blank\": \"   \","
+                + "\"_nested\": {\"foo\": \"bar\"},"
+                + "\"_plain\": \"last one wins\""
+                + "}";
+        final byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+
+        final Message message = codec.decode(new RawMessage(payload));
+        final Message inflated = codec.decode(new RawMessage(zlib(payload)));
+
+        for (Message decoded : Arrays.asList(message, inflated)) {
+            assertThat(decoded).isNotNull();
+            assertThat(decoded.getField("full_message")).isEqualTo("Backtrace with \u00fcml\u00e4uts");
+            assertThat(decoded.getField("escaped")).isEqualTo("line\nbreak \"quoted\" \u00e4");
+            assertThat(decoded.getField("plain")).isEqualTo("last one wins");
+            assertThat(decoded.getField("nested")).isEqualTo("{\"foo\":\"bar\"}");
+            assertThat(decoded.hasField("blank")).isFalse();
+
+            final ObjectMapper objectMapper = new ObjectMapper();
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+                decoded.writeElasticSearchJson(generator);
+            }
+
+            final Map<?, ?> streamed = objectMapper.readValue(buffer.toByteArray(), Map.class);
+            final Map<?, ?> mapped = objectMapper.readValue(objectMapper.writeValueAsString(decoded.toElasticSearchObject()), Map.class);
+            assertThat(streamed).isEqualTo(mapped)
+                    .containsEntry("full_message", "Backtrace with \u00fcml\u00e4uts")
+                    .containsEntry("escaped", "line\nbreak \"quoted\" \u00e4");
+        }
+    }
+
+    private static byte[] zlib(byte[] bytes) throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DeflaterOutputStream output = new DeflaterOutputStream(buffer)) {
+            output.write(bytes);
+        }
+        return buffer.toByteArray();
+    }
+
     @Test
     public void getAggregatorReturnsGelfChunkAggregator() throws Exception {
         assertThat(codec.getAggregator()).isSameAs(aggregator);
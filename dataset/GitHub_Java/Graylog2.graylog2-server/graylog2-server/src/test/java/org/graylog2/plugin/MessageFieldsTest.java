@@ -0,0 +1,186 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageFieldsTest {
+    @Test
+    public void storesPrimitivesAndReturnsBoxedValues() {
+        final MessageFields fields = new MessageFields();
+        fields.put("long", 42L);
+        fields.put("int", 23);
+        fields.put("double", 1.5d);
+        fields.put("bool", true);
+        fields.put("string", "foo");
+
+        assertThat(fields).hasSize(5);
+        assertThat(fields.get("long")).isEqualTo(42L);
+        assertThat(fields.get("int")).isEqualTo(23);
+        assertThat(fields.get("double")).isEqualTo(1.5d);
+        assertThat(fields.get("bool")).isEqualTo(true);
+        assertThat(fields.get("string")).isEqualTo("foo");
+        assertThat(fields.get("missing")).isNull();
+    }
+
+    @Test
+    public void putReplacesExistingValue() {
+        final MessageFields fields = new MessageFields();
+        fields.put("foo", 1L);
+
+        assertThat(fields.put("foo", "bar")).isEqualTo(1L);
+        assertThat(fields).hasSize(1);
+        assertThat(fields.get("foo")).isEqualTo("bar");
+    }
+
+    @Test
+    public void utf8SlicesAreDecodedOnAccess() {
+        final byte[] payload = "hello wörld".getBytes(StandardCharsets.UTF_8);
+        final MessageFields fields = new MessageFields();
+        fields.putUtf8("greeting", Utf8Slice.of(payload, 6, payload.length - 6));
+
+        assertThat(fields.get("greeting")).isEqualTo("wörld");
+    }
+
+    @Test
+    public void removeAndIteratorRemoveKeepRemainingFields() {
+        final MessageFields fields = new MessageFields(1);
+        for (int i = 0; i < 10; i++) {
+            fields.put("field_" + i, (long) i);
+        }
+
+        assertThat(fields.remove("field_3")).isEqualTo(3L);
+
+        final Iterator<Map.Entry<String, Object>> iterator = fields.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getKey().equals("field_5")) {
+                iterator.remove();
+            }
+        }
+
+        assertThat(fields).hasSize(8)
+                .doesNotContainKeys("field_3", "field_5")
+                .containsEntry("field_9", 9L);
+    }
+
+    @Test
+    public void lookupsWorkForLargeMessagesAfterRemovals() {
+        final MessageFields fields = new MessageFields();
+        for (int i = 0; i < 200; i++) {
+            fields.put("field_" + i, (long) i);
+        }
+        for (int i = 0; i < 200; i += 3) {
+            fields.remove("field_" + i);
+        }
+        fields.put("field_0", "again");
+
+        assertThat(fields).hasSize(134);
+        for (int i = 1; i < 200; i++) {
+            assertThat(fields.get("field_" + i)).isEqualTo(i % 3 == 0 ? null : (long) i);
+        }
+        assertThat(fields.get("field_0")).isEqualTo("again");
+
+        fields.clear();
+        fields.put("field_1", 1L);
+        assertThat(fields).containsOnlyKeys("field_1");
+    }
+
+    @Test
+    public void writeElasticSearchJsonMatchesElasticSearchObject() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final byte[] payload = "  a value from the payload ".getBytes(StandardCharsets.UTF_8);
+        final Message message = new Message("foo", "bar", Tools.nowUTC());
+        message.addField("count", 12L);
+        message.addField("ratio", 0.25d);
+        message.addUtf8Field("raw", payload, 0, payload.length);
+        message.addUtf8Field("blank", payload, 0, 2);
+
+        final StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            message.writeElasticSearchJson(generator);
+        }
+
+        final Map<?, ?> streamed = objectMapper.readValue(writer.toString(), Map.class);
+        final Map<?, ?> mapped = objectMapper.readValue(objectMapper.writeValueAsString(message.toElasticSearchObject()), Map.class);
+
+        assertThat(streamed).isEqualTo(mapped);
+        assertThat(streamed.get("raw")).isEqualTo("a value from the payload");
+        assertThat(streamed).doesNotContainKey("blank");
+    }
+
+    @Test
+    public void writeElasticSearchJsonWritesSlicesToByteGenerator() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final byte[] payload = "wörld \"quoted\"".getBytes(StandardCharsets.UTF_8);
+        final Message message = new Message("foo", "bar", Tools.nowUTC());
+        message.addUtf8Field("raw", payload, 0, payload.length);
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            message.writeElasticSearchJson(generator);
+        }
+
+        final Map<?, ?> streamed = objectMapper.readValue(buffer.toByteArray(), Map.class);
+        final Map<?, ?> mapped = objectMapper.readValue(objectMapper.writeValueAsString(message.toElasticSearchObject()), Map.class);
+
+        assertThat(streamed).isEqualTo(mapped);
+        assertThat(streamed.get("raw")).isEqualTo("wörld \"quoted\"");
+    }
+
+    @Test
+    public void writeElasticSearchJsonMatchesElasticSearchObjectWithoutMessageAndSource() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final Message message = new Message(ImmutableMap.<String, Object>of("_id", "some-id", "count", 1L));
+        // Not a reserved field, but always replaced by the stream ids.
+        message.addField("streams", "not a stream");
+
+        final StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            message.writeElasticSearchJson(generator);
+        }
+
+        final Map<?, ?> streamed = objectMapper.readValue(writer.toString(), Map.class);
+        final Map<?, ?> mapped = objectMapper.readValue(objectMapper.writeValueAsString(message.toElasticSearchObject()), Map.class);
+
+        assertThat(streamed).isEqualTo(mapped)
+                .containsEntry("message", null)
+                .containsEntry("source", null);
+        assertThat(writer.toString()).containsOnlyOnce("\"streams\"");
+    }
+
+    @Test
+    public void fieldNamesAreInterned() {
+        final String name = new String("interned_field_name");
+        final MessageFields first = new MessageFields();
+        final MessageFields second = new MessageFields();
+        first.put(name, 1L);
+        second.put(new String(name), 2L);
+
+        assertThat(first.keySet().iterator().next()).isSameAs(second.keySet().iterator().next());
+    }
+}
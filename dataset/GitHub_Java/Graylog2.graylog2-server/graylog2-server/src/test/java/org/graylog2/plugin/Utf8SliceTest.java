@@ -0,0 +1,82 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Utf8SliceTest {
+    private static boolean isValid(int... bytes) {
+        final byte[] array = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            array[i] = (byte) bytes[i];
+        }
+        return Utf8Slice.isValidUtf8(array, 0, array.length);
+    }
+
+    @Test
+    public void acceptsWellFormedUtf8() {
+        final byte[] bytes = "ascii ü ☃ 😀".getBytes(StandardCharsets.UTF_8);
+        assertThat(Utf8Slice.isValidUtf8(bytes, 0, bytes.length)).isTrue();
+        assertThat(isValid(0xf4, 0x8f, 0xbf, 0xbf)).isTrue();
+    }
+
+    @Test
+    public void rejectsMalformedUtf8() {
+        // stray continuation byte
+        assertThat(isValid('a', 0x80)).isFalse();
+        // truncated sequences
+        assertThat(isValid(0xc3)).isFalse();
+        assertThat(isValid(0xe2, 0x98)).isFalse();
+        assertThat(isValid(0xe2, 'a', 0x83)).isFalse();
+        // overlong encodings of '/'
+        assertThat(isValid(0xc0, 0xaf)).isFalse();
+        assertThat(isValid(0xe0, 0x80, 0xaf)).isFalse();
+        assertThat(isValid(0xf0, 0x80, 0x80, 0xaf)).isFalse();
+        // surrogate
+        assertThat(isValid(0xed, 0xa0, 0x80)).isFalse();
+        // beyond U+10FFFF
+        assertThat(isValid(0xf4, 0x90, 0x80, 0x80)).isFalse();
+        assertThat(isValid(0xff)).isFalse();
+    }
+
+    @Test
+    public void writesReplacementCharactersForMalformedUtf8() throws Exception {
+        final byte[] payload = {' ', 'a', (byte) 0xed, (byte) 0xa0, (byte) 0x80, '"', (byte) 0xc3, ' '};
+        final Message message = new Message("foo", "bar", Tools.nowUTC());
+        message.addUtf8Field("raw", payload, 0, payload.length);
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            message.writeElasticSearchJson(generator);
+        }
+
+        final String expected = new String(payload, 1, payload.length - 2, StandardCharsets.UTF_8);
+        assertThat(expected).contains("�");
+        final Map<?, ?> streamed = objectMapper.readValue(buffer.toByteArray(), Map.class);
+        assertThat(streamed.get("raw")).isEqualTo(expected);
+        assertThat(message.getField("raw")).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.journal;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Size;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedSegmentJournalTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ScheduledThreadPoolExecutor scheduler;
+    private Path journalDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        journalDirectory = temporaryFolder.newFolder().toPath();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private MappedSegmentJournal createJournal(Size segmentSize, Size maxSize) {
+        return new MappedSegmentJournal(journalDirectory,
+                scheduler,
+                segmentSize,
+                maxSize,
+                100,
+                Duration.standardMinutes(1),
+                new MetricRegistry());
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            return files.filter(path -> path.toString().endsWith(MappedSegmentJournal.SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void writeAndRead() {
+        final MappedSegmentJournal journal = createJournal(Size.kilobytes(64L), Size.megabytes(5L));
+
+        final long position = journal.write("id".getBytes(UTF_8), "message".getBytes(UTF_8));
+        final List<Journal.JournalReadEntry> messages = journal.read(1);
+
+        assertThat(position).isEqualTo(0L);
+        assertThat(messages).hasSize(1);
+        assertThat(new String(messages.get(0).getPayload(), UTF_8)).isEqualTo("message");
+        assertThat(messages.get(0).getOffset()).isEqualTo(0L);
+        assertThat(journal.read(1)).isEmpty();
+    }
+
+    @Test
+    public void readAcrossSegments() throws IOException {
+        final MappedSegmentJournal journal = createJournal(Size.kilobytes(1L), Size.megabytes(5L));
+
+        final List<Journal.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(journal.createEntry(("id" + i).getBytes(UTF_8), ("message " + i).getBytes(UTF_8)));
+        }
+        assertThat(journal.write(entries)).isEqualTo(99L);
+        assertThat(segmentFiles().size()).isGreaterThan(1);
+
+        final List<Journal.JournalReadEntry> messages = journal.read(1000);
+        assertThat(messages).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(messages.get(i).getOffset()).isEqualTo(i);
+            assertThat(new String(messages.get(i).getPayload(), UTF_8)).isEqualTo("message " + i);
+        }
+    }
+
+    @Test
+    public void recoversAfterRestart() throws Exception {
+        final MappedSegmentJournal journal = createJournal(Size.kilobytes(64L), Size.megabytes(5L));
+        for (int i = 0; i < 10; i++) {
+            journal.write(("id" + i).getBytes(UTF_8), ("message " + i).getBytes(UTF_8));
+        }
+        journal.read(5);
+        journal.markJournalOffsetCommitted(4L);
+        journal.startAsync().awaitRunning();
+        journal.stopAsync().awaitTerminated();
+
+        final MappedSegmentJournal reopened = createJournal(Size.kilobytes(64L), Size.megabytes(5L));
+        assertThat(reopened.getLogEndOffset()).isEqualTo(10L);
+        assertThat(reopened.getCommittedOffset()).isEqualTo(4L);
+
+        final List<Journal.JournalReadEntry> messages = reopened.read(100);
+        assertThat(messages).hasSize(5);
+        assertThat(messages.get(0).getOffset()).isEqualTo(5L);
+        assertThat(reopened.write("id".getBytes(UTF_8), "message".getBytes(UTF_8))).isEqualTo(10L);
+    }
+
+    @Test
+    public void truncatesCorruptTailOnRecovery() throws Exception {
+        final MappedSegmentJournal journal = createJournal(Size.kilobytes(64L), Size.megabytes(5L));
+        for (int i = 0; i < 3; i++) {
+            journal.write(("id" + i).getBytes(UTF_8), ("message " + i).getBytes(UTF_8));
+        }
+        journal.flush();
+        journal.stopAsync().awaitTerminated();
+
+        // flip a payload byte of the last record
+        final Path segment = segmentFiles().get(0);
+        final long lastRecordEnd = journal.size();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), lastRecordEnd - 1);
+        }
+
+        final MappedSegmentJournal reopened = createJournal(Size.kilobytes(64L), Size.megabytes(5L));
+        assertThat(reopened.getLogEndOffset()).isEqualTo(2L);
+        assertThat(reopened.read(100)).hasSize(2);
+        assertThat(reopened.write("id".getBytes(UTF_8), "message".getBytes(UTF_8))).isEqualTo(2L);
+    }
+
+    @Test
+    public void skipsCorruptRecordInLastSegment() throws Exception {
+        final MappedSegmentJournal journal = createJournal(Size.kilobytes(64L), Size.megabytes(5L));
+        for (int i = 0; i < 3; i++) {
+            journal.write(("id" + i).getBytes(UTF_8), ("message " + i).getBytes(UTF_8));
+        }
+        journal.flush();
+
+        // flip the last payload byte of the second record, the segment is still mapped
+        final long recordSize = journal.size() / 3;
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), 2 * recordSize - 1);
+        }
+
+        final List<Journal.JournalReadEntry> messages = journal.read(100);
+        assertThat(messages).extracting(Journal.JournalReadEntry::getOffset).containsExactly(0L, 2L);
+
+        // the reader doesn't get stuck at the corrupt record
+        journal.write("id3".getBytes(UTF_8), "message 3".getBytes(UTF_8));
+        assertThat(journal.read(100)).extracting(Journal.JournalReadEntry::getOffset).containsExactly(3L);
+    }
+
+    @Test
+    public void deletesCommittedSegments() throws IOException {
+        final MappedSegmentJournal journal = createJournal(Size.kilobytes(1L), Size.megabytes(5L));
+        for (int i = 0; i < 100; i++) {
+            journal.write(("id" + i).getBytes(UTF_8), ("message " + i).getBytes(UTF_8));
+        }
+        final int segments = segmentFiles().size();
+        assertThat(journal.cleanupSegments()).isEqualTo(0);
+
+        journal.markJournalOffsetCommitted(99L);
+        // the active segment is never deleted
+        assertThat(journal.cleanupSegments()).isEqualTo(segments - 1);
+        assertThat(segmentFiles()).hasSize(1);
+    }
+
+    @Test
+    public void keepsSegmentMappedWhileItIsRead() throws IOException {
+        final MappedSegmentJournal journal = createJournal(Size.kilobytes(1L), Size.megabytes(5L));
+        for (int i = 0; i < 100; i++) {
+            journal.write(("id" + i).getBytes(UTF_8), ("message " + i).getBytes(UTF_8));
+        }
+        final MappedSegmentJournal.Segment first = journal.segmentAt(0L);
+        assertThat(first.retain()).isTrue();
+
+        journal.markJournalOffsetCommitted(99L);
+        journal.cleanupSegments();
+
+        // still mapped and on disk until the reader releases it
+        assertThat(first.read(0L, new CRC32())).isEqualTo("message 0".getBytes(UTF_8));
+        assertThat(Files.exists(first.path)).isTrue();
+
+        first.release();
+        assertThat(Files.exists(first.path)).isFalse();
+        assertThat(first.retain()).isFalse();
+    }
+
+    @Test
+    public void deletesUncommittedSegmentsBeyondMaxSize() throws IOException {
+        final MappedSegmentJournal journal = createJournal(Size.kilobytes(1L), Size.kilobytes(2L));
+        for (int i = 0; i < 200; i++) {
+            journal.write(("id" + i).getBytes(UTF_8), ("message " + i).getBytes(UTF_8));
+        }
+
+        assertThat(journal.cleanupSegments()).isGreaterThan(0);
+        assertThat(journal.size()).isLessThanOrEqualTo(Size.kilobytes(2L).toBytes());
+        assertThat(journal.getLogStartOffset()).isGreaterThan(0L);
+
+        final List<Journal.JournalReadEntry> messages = journal.read(1);
+        assertThat(messages.get(0).getOffset()).isEqualTo(journal.getLogStartOffset());
+    }
+}
@@ -11,11 +11,13 @@ import org.nlpcn.es4sql.SearchDao;
 import org.nlpcn.es4sql.exception.SqlParseException;
 import org.nlpcn.es4sql.jdbc.ObjectResult;
 import org.nlpcn.es4sql.jdbc.ObjectResultsExtractor;
+import org.nlpcn.es4sql.query.ESActionFactory;
 import org.nlpcn.es4sql.query.QueryAction;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -70,7 +72,11 @@ public class ElasticSearchDruidPooledPreparedStatement extends DruidPooledPrepar
 
         //String rewriteSQL = searchDao.explain(getSql()).explain().explain();
 
-        QueryAction queryAction = searchDao.explain(query);
+        List<Object> parameters = Collections.emptyList();
+        if (getRawPreparedStatement() instanceof ElasticSearchPreparedStatement) {
+            parameters = ((ElasticSearchPreparedStatement) getRawPreparedStatement()).getParameters();
+        }
+        QueryAction queryAction = ESActionFactory.create(searchDao.getClient(), query, parameters);
         Object execution = QueryActionElasticExecutor.executeAnyAction(searchDao.getClient(), queryAction);
         return new ObjectResultsExtractor(includeScore, includeType, includeId).extractResults(execution, flat);
     }
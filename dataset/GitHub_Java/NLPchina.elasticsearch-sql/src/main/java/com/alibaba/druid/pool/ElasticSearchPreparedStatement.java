@@ -5,11 +5,16 @@ import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class ElasticSearchPreparedStatement implements PreparedStatement {
 
     private ResultSet results = null;
+    private final Map<Integer, Object> parameters = new TreeMap<>();
 
     @Override
     public ResultSet executeQuery() throws SQLException {
@@ -23,52 +28,52 @@ public class ElasticSearchPreparedStatement implements PreparedStatement {
 
     @Override
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
-
+        parameters.put(parameterIndex, null);
     }
 
     @Override
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
     public void setByte(int parameterIndex, byte x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
     public void setShort(int parameterIndex, short x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
     public void setInt(int parameterIndex, int x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
     public void setLong(int parameterIndex, long x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
     public void setFloat(int parameterIndex, float x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
     public void setDouble(int parameterIndex, double x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
     public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
     public void setString(int parameterIndex, String x) throws SQLException {
-
+        parameters.put(parameterIndex, x);
     }
 
     @Override
@@ -78,17 +83,17 @@ public class ElasticSearchPreparedStatement implements PreparedStatement {
 
     @Override
     public void setDate(int parameterIndex, Date x) throws SQLException {
-
+        parameters.put(parameterIndex, x == null ? null : x.toString());
     }
 
     @Override
     public void setTime(int parameterIndex, Time x) throws SQLException {
-
+        parameters.put(parameterIndex, x == null ? null : x.toString());
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
-
+        parameters.put(parameterIndex, x == null ? null : x.toString());
     }
 
     @Override
@@ -108,17 +113,17 @@ public class ElasticSearchPreparedStatement implements PreparedStatement {
 
     @Override
     public void clearParameters() throws SQLException {
-
+        parameters.clear();
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
-
+        setObject(parameterIndex, x);
     }
 
     @Override
     public void setObject(int parameterIndex, Object x) throws SQLException {
-
+        parameters.put(parameterIndex, x instanceof Number || x instanceof Boolean || x == null ? x : x.toString());
     }
 
     @Override
@@ -178,7 +183,7 @@ public class ElasticSearchPreparedStatement implements PreparedStatement {
 
     @Override
     public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
-
+        parameters.put(parameterIndex, null);
     }
 
     @Override
@@ -198,7 +203,7 @@ public class ElasticSearchPreparedStatement implements PreparedStatement {
 
     @Override
     public void setNString(int parameterIndex, String value) throws SQLException {
-
+        parameters.put(parameterIndex, value);
     }
 
     @Override
@@ -233,7 +238,7 @@ public class ElasticSearchPreparedStatement implements PreparedStatement {
 
     @Override
     public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
-
+        setObject(parameterIndex, x);
     }
 
     @Override
@@ -513,4 +518,11 @@ public class ElasticSearchPreparedStatement implements PreparedStatement {
     public void setResults(ResultSet results) {
         this.results = results;
     }
+
+    /**
+     * @return the values of the '?' placeholders, ordered by their index
+     */
+    public List<Object> getParameters() {
+        return new ArrayList<>(parameters.values());
+    }
 }
@@ -47,6 +47,20 @@ public abstract class ElasticJoinExecutor {
         }
     }
 
+    /**
+     * Runs the join and writes every joined row into the channel's output as soon as it is found.
+     */
+    public void runAndSendResponse(RestChannel channel) throws IOException, SqlParseException {
+        long timeBefore = System.currentTimeMillis();
+        XContentBuilder builder = XContentFactory.jsonBuilder(channel.bytesOutput());
+        JoinedHitsWriter writer = new JoinedHitsWriter(builder);
+        writer.start();
+        innerRun(writer);
+        this.metaResults.setTookImMilli(System.currentTimeMillis() - timeBefore);
+        writer.finish(metaResults);
+        channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+    }
+
     public void run() throws IOException, SqlParseException {
         long timeBefore = System.currentTimeMillis();
         List<InternalSearchHit> combinedSearchHits =  innerRun();
@@ -91,6 +105,16 @@ public abstract class ElasticJoinExecutor {
 
     protected abstract List<InternalSearchHit> innerRun() throws IOException, SqlParseException ;
 
+    /**
+     * Passes the joined rows to the collector instead of returning them. Executors which can produce
+     * their rows one by one override this, the default collects them with {@link #innerRun()} first.
+     */
+    protected void innerRun(JoinedHitsCollector collector) throws IOException, SqlParseException {
+        for (InternalSearchHit hit : innerRun()) {
+            collector.collect(hit.getId(), hit.getType(), hit.sourceAsMap());
+        }
+    }
+
     public SearchHits getHits(){
         return results;
     }
@@ -98,7 +122,7 @@ public abstract class ElasticJoinExecutor {
     public static ElasticJoinExecutor createJoinExecutor(Client client, SqlElasticRequestBuilder requestBuilder){
         if(requestBuilder instanceof HashJoinElasticRequestBuilder) {
             HashJoinElasticRequestBuilder hashJoin = (HashJoinElasticRequestBuilder) requestBuilder;
-            return new HashJoinElasticExecutor(client, hashJoin);
+            return new GraceHashJoinElasticExecutor(client, hashJoin);
         }
         else if (requestBuilder instanceof NestedLoopsElasticRequestBuilder){
             NestedLoopsElasticRequestBuilder nestedLoops = (NestedLoopsElasticRequestBuilder) requestBuilder;
@@ -181,6 +205,10 @@ public abstract class ElasticJoinExecutor {
     }
 
     protected void addUnmachedResult(List<InternalSearchHit> combinedResults, List<Field> secondTableReturnedFields, int currentNumOfIds, String t1Alias, String t2Alias, SearchHit hit) {
+        combinedResults.add(createUnmachedResult(secondTableReturnedFields, currentNumOfIds, t1Alias, t2Alias, hit));
+    }
+
+    protected InternalSearchHit createUnmachedResult(List<Field> secondTableReturnedFields, int currentNumOfIds, String t1Alias, String t2Alias, SearchHit hit) {
         InternalSearchHit searchHit = new InternalSearchHit(currentNumOfIds, hit.id() + "|0", new StringText(hit.getType() + "|null"), hit.getFields());
         searchHit.sourceRef(hit.getSourceRef());
         searchHit.sourceAsMap().clear();
@@ -189,7 +217,7 @@ public abstract class ElasticJoinExecutor {
 
         mergeSourceAndAddAliases(emptySecondTableHitSource, searchHit,t1Alias,t2Alias);
 
-        combinedResults.add(searchHit);
+        return searchHit;
     }
 
     protected Map<String, Object> createNullsSource(List<Field> secondTableReturnedFields) {
@@ -207,5 +235,10 @@ public abstract class ElasticJoinExecutor {
         this.metaResults.updateTimeOut(searchResponse.isTimedOut());
     }
 
-
+    /**
+     * Receives the joined rows of {@link #innerRun(JoinedHitsCollector)} one at a time.
+     */
+    public interface JoinedHitsCollector {
+        void collect(String id, String type, Map<String, Object> source) throws IOException;
+    }
 }
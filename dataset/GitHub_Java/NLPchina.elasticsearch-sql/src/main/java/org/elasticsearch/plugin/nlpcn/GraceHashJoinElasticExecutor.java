@@ -0,0 +1,597 @@
+package org.elasticsearch.plugin.nlpcn;
+
+import com.alibaba.druid.sql.ast.statement.SQLJoinTableSource;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.text.StringText;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.nlpcn.es4sql.domain.Field;
+import org.nlpcn.es4sql.domain.Where;
+import org.nlpcn.es4sql.exception.SqlParseException;
+import org.nlpcn.es4sql.query.join.HashJoinElasticRequestBuilder;
+import org.nlpcn.es4sql.query.join.TableInJoinRequestBuilder;
+import org.nlpcn.es4sql.query.maker.QueryMaker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash join which scrolls over both tables and hands every joined row to the collector as soon as it is found.
+ * <p>
+ * The first table is the build side. Its rows are kept in a hash table as long as they fit into the memory budget.
+ * Once the budget is exceeded, the rows are spilled into partition files by the hash of their join key and the
+ * second table is partitioned the same way (grace hash join). The partitions are joined one by one afterwards, so
+ * only a single partition of the first table has to be in memory at a time.
+ * <p>
+ * Every hit gets a row for each OR-ed join comparison. A pair of hits which matches several comparisons is only
+ * joined by the first of them, and a LEFT JOIN adds a single row for every hit of the first table which matched none
+ * of them. With the {@code HASH_WITH_TERMS_FILTER} hint, the join values of the first table are added as terms
+ * filters to the query of the second table, as long as the first table fits into memory. The {@code JOIN_LIMIT}
+ * hint limits the hits read from each table.
+ */
+public class GraceHashJoinElasticExecutor extends ElasticJoinExecutor {
+    public static final long DEFAULT_MEMORY_BUDGET = 64 * 1024 * 1024;
+    private static final int PARTITIONS = 32;
+    private static final TimeValue SCROLL_KEEP_ALIVE = new TimeValue(60000);
+
+    private final Client client;
+    private final HashJoinElasticRequestBuilder requestBuilder;
+    private final long memoryBudget;
+    private final List<List<Map.Entry<Field, Field>>> comparisons;
+    private final String t1Alias;
+    private final String t2Alias;
+    private final boolean leftJoin;
+
+    private int totalLimit;
+    private int emitted;
+    // ordinals of the first table hits which matched at least one row of the second table
+    private BitSet matchedHits;
+    // join values of the first table by comparison and field of the second table, null if not used
+    private List<Map<String, Set<Object>>> termsFilterValues;
+    private Path spillDirectory;
+    private Partitions buildPartitions;
+    private Partitions probePartitions;
+
+    public GraceHashJoinElasticExecutor(Client client, HashJoinElasticRequestBuilder requestBuilder) {
+        this(client, requestBuilder, DEFAULT_MEMORY_BUDGET);
+    }
+
+    public GraceHashJoinElasticExecutor(Client client, HashJoinElasticRequestBuilder requestBuilder, long memoryBudget) {
+        this.client = client;
+        this.requestBuilder = requestBuilder;
+        this.memoryBudget = memoryBudget;
+        List<List<Map.Entry<Field, Field>>> t1ToT2FieldsComparison = requestBuilder.getT1ToT2FieldsComparison();
+        if (t1ToT2FieldsComparison == null || t1ToT2FieldsComparison.isEmpty()) {
+            // no join conditions, every row of the first table matches every row of the second one
+            this.comparisons = Collections.singletonList(Collections.<Map.Entry<Field, Field>>emptyList());
+        } else {
+            this.comparisons = t1ToT2FieldsComparison;
+        }
+        this.t1Alias = requestBuilder.getFirstTable().getAlias();
+        this.t2Alias = requestBuilder.getSecondTable().getAlias();
+        this.leftJoin = requestBuilder.getJoinType() == SQLJoinTableSource.JoinType.LEFT_OUTER_JOIN;
+    }
+
+    @Override
+    protected List<InternalSearchHit> innerRun() throws IOException, SqlParseException {
+        final List<InternalSearchHit> combinedResults = new ArrayList<>();
+        innerRun(new JoinedHitsCollector() {
+            @Override
+            public void collect(String id, String type, Map<String, Object> source) throws IOException {
+                InternalSearchHit searchHit = new InternalSearchHit(combinedResults.size(), id, new StringText(type), Collections.<String, SearchHitField>emptyMap());
+                searchHit.sourceRef(XContentFactory.jsonBuilder().map(source).bytes());
+                combinedResults.add(searchHit);
+            }
+        });
+        return combinedResults;
+    }
+
+    @Override
+    protected void innerRun(JoinedHitsCollector collector) throws IOException, SqlParseException {
+        this.totalLimit = requestBuilder.getTotalLimit() > 0 ? requestBuilder.getTotalLimit() : Integer.MAX_VALUE;
+        this.emitted = 0;
+        this.matchedHits = new BitSet();
+        this.termsFilterValues = requestBuilder.isUseTermFiltersOptimization() ? newTermsFilterValues() : null;
+
+        try {
+            final BuildTable table = new BuildTable();
+            final int[] ordinal = new int[1];
+
+            scroll(requestBuilder.getFirstTable(), new HitHandler() {
+                @Override
+                public boolean handle(SearchHit hit) throws IOException {
+                    for (Row row : rows(hit, ordinal[0], true)) {
+                        if (buildPartitions != null) {
+                            buildPartitions.write(row);
+                            continue;
+                        }
+                        table.add(row);
+                        if (table.bytes > memoryBudget) {
+                            spillDirectory = Files.createTempDirectory("es-sql-join");
+                            buildPartitions = new Partitions(spillDirectory, "build");
+                            for (List<Row> rows : table.rows.values()) {
+                                for (Row spilled : rows) {
+                                    buildPartitions.write(spilled);
+                                }
+                            }
+                            table.clear();
+                            // the terms of a table which doesn't fit into memory are too many for a filter
+                            termsFilterValues = null;
+                        }
+                    }
+                    ordinal[0]++;
+                    return true;
+                }
+            });
+
+            if (buildPartitions == null) {
+                if (termsFilterValues != null) {
+                    updateRequestWithTermsFilter(requestBuilder.getSecondTable());
+                }
+                joinInMemory(table, collector);
+            } else {
+                buildPartitions.finish();
+                probePartitions = new Partitions(spillDirectory, "probe");
+                joinPartitioned(collector);
+            }
+        } finally {
+            closeQuietly(buildPartitions);
+            closeQuietly(probePartitions);
+            buildPartitions = null;
+            probePartitions = null;
+            deleteSpillDirectory(spillDirectory);
+            spillDirectory = null;
+        }
+    }
+
+    private List<Map<String, Set<Object>>> newTermsFilterValues() {
+        List<Map<String, Set<Object>>> values = new ArrayList<>(comparisons.size());
+        for (List<Map.Entry<Field, Field>> comparison : comparisons) {
+            Map<String, Set<Object>> valuesByField = new HashMap<>();
+            for (Map.Entry<Field, Field> t1ToT2 : comparison) {
+                valuesByField.put(t1ToT2.getValue().getName(), new HashSet<>());
+            }
+            values.add(valuesByField);
+        }
+        return values;
+    }
+
+    /**
+     * Restricts the second table to rows which can match one of the comparisons, i.e. the OR of the comparisons,
+     * each of them being the AND of terms filters on its fields.
+     */
+    private void updateRequestWithTermsFilter(TableInJoinRequestBuilder secondTable) throws SqlParseException {
+        BoolQueryBuilder orQuery = QueryBuilders.boolQuery();
+        for (Map<String, Set<Object>> valuesByField : termsFilterValues) {
+            BoolQueryBuilder andQuery = QueryBuilders.boolQuery();
+            for (Map.Entry<String, Set<Object>> fieldToValues : valuesByField.entrySet()) {
+                andQuery.must(QueryBuilders.termsQuery(fieldToValues.getKey(), fieldToValues.getValue()));
+            }
+            orQuery.should(andQuery);
+        }
+        Where where = secondTable.getOriginalSelect().getWhere();
+        BoolQueryBuilder query;
+        if (where != null) {
+            query = QueryMaker.explan(where);
+            query.must(orQuery);
+        } else {
+            query = orQuery;
+        }
+        secondTable.getRequestBuilder().setQuery(query);
+    }
+
+    private void joinInMemory(final BuildTable table, final JoinedHitsCollector collector) throws IOException {
+        final int[] ordinal = new int[1];
+        scroll(requestBuilder.getSecondTable(), new HitHandler() {
+            @Override
+            public boolean handle(SearchHit hit) throws IOException {
+                for (Row row : rows(hit, ordinal[0], false)) {
+                    if (!probe(table, row, collector)) {
+                        return false;
+                    }
+                }
+                ordinal[0]++;
+                return true;
+            }
+        });
+        if (leftJoin) {
+            for (List<Row> rows : table.rows.values()) {
+                if (!emitUnmatched(rows, collector)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void joinPartitioned(JoinedHitsCollector collector) throws IOException {
+        final int[] ordinal = new int[1];
+        scroll(requestBuilder.getSecondTable(), new HitHandler() {
+            @Override
+            public boolean handle(SearchHit hit) throws IOException {
+                for (Row row : rows(hit, ordinal[0], false)) {
+                    probePartitions.write(row);
+                }
+                ordinal[0]++;
+                return true;
+            }
+        });
+        probePartitions.finish();
+
+        BuildTable table = new BuildTable();
+        for (int partition = 0; partition < PARTITIONS && !limitReached(); partition++) {
+            try (StreamInput buildInput = buildPartitions.open(partition)) {
+                // a partition which doesn't fit into memory is joined in chunks, each chunk sees the whole probe partition
+                boolean moreRows = true;
+                while (moreRows && !limitReached()) {
+                    table.clear();
+                    Row row;
+                    while (table.bytes <= memoryBudget && (row = readRow(buildInput)) != null) {
+                        table.add(row);
+                    }
+                    moreRows = table.bytes > memoryBudget;
+                    if (table.rows.isEmpty()) {
+                        break;
+                    }
+
+                    try (StreamInput probeInput = probePartitions.open(partition)) {
+                        Row probeRow;
+                        while ((probeRow = readRow(probeInput)) != null) {
+                            if (!probe(table, probeRow, collector)) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        table.clear();
+
+        // the rows of a hit are spread over several partitions, so it is only known after all of them whether it matched
+        if (leftJoin) {
+            for (int partition = 0; partition < PARTITIONS && !limitReached(); partition++) {
+                try (StreamInput buildInput = buildPartitions.open(partition)) {
+                    List<Row> rows = new ArrayList<>();
+                    Row row;
+                    while ((row = readRow(buildInput)) != null) {
+                        rows.add(row);
+                        if (rows.size() == MAX_RESULTS_ON_ONE_FETCH) {
+                            if (!emitUnmatched(rows, collector)) {
+                                return;
+                            }
+                            rows.clear();
+                        }
+                    }
+                    emitUnmatched(rows, collector);
+                }
+            }
+        }
+    }
+
+    private boolean probe(BuildTable table, Row probeRow, JoinedHitsCollector collector) throws IOException {
+        List<Row> matches = table.rows.get(probeRow.key());
+        if (matches == null) {
+            return true;
+        }
+        for (Row buildRow : matches) {
+            if (matchedByEarlierComparison(buildRow, probeRow)) {
+                // the pair has already been joined by that comparison
+                continue;
+            }
+            matchedHits.set(buildRow.ordinal);
+            Map<String, Object> source = mapWithAliases(buildRow.source, t1Alias);
+            source.putAll(mapWithAliases(probeRow.source, t2Alias));
+            collector.collect(buildRow.id + "|" + probeRow.id, buildRow.type + "|" + probeRow.type, source);
+            emitted++;
+            if (limitReached()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchedByEarlierComparison(Row buildRow, Row probeRow) {
+        for (int i = 0; i < buildRow.comparison; i++) {
+            if (buildRow.keys[i].equals(probeRow.keys[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a row padded with nulls for every hit of the first table which didn't match at all. Only the row of the
+     * first comparison is used, every hit has exactly one of those.
+     *
+     * @return false if the limit has been reached
+     */
+    private boolean emitUnmatched(List<Row> rows, JoinedHitsCollector collector) throws IOException {
+        Map<String, Object> nullsSource = null;
+        for (Row buildRow : rows) {
+            if (limitReached()) {
+                return false;
+            }
+            if (buildRow.comparison != 0 || matchedHits.get(buildRow.ordinal)) {
+                continue;
+            }
+            if (nullsSource == null) {
+                nullsSource = mapWithAliases(createNullsSource(requestBuilder.getSecondTable().getReturnedFields()), t2Alias);
+            }
+            Map<String, Object> source = mapWithAliases(buildRow.source, t1Alias);
+            source.putAll(nullsSource);
+            collector.collect(buildRow.id + "|0", buildRow.type + "|null", source);
+            emitted++;
+        }
+        return !limitReached();
+    }
+
+    private boolean limitReached() {
+        return emitted >= totalLimit;
+    }
+
+    /**
+     * Creates one row per join comparison for the hit. Every row carries the keys of all comparisons, so a pair of
+     * rows can tell whether an earlier comparison matched them already.
+     */
+    private List<Row> rows(SearchHit hit, int ordinal, boolean firstTable) {
+        Map<String, Object> sourceAsMap = hit.sourceAsMap();
+        String[] keys = new String[comparisons.size()];
+        long keysBytes = 0;
+        for (int i = 0; i < comparisons.size(); i++) {
+            StringBuilder key = new StringBuilder().append(i);
+            for (Map.Entry<Field, Field> t1ToT2 : comparisons.get(i)) {
+                Field field = firstTable ? t1ToT2.getKey() : t1ToT2.getValue();
+                Object data = deepSearchInMap(sourceAsMap, field.getName());
+                key.append('|').append(data == null ? "null" : data.toString()).append('|');
+                if (firstTable && termsFilterValues != null && data != null) {
+                    termsFilterValues.get(i).get(t1ToT2.getValue().getName()).add(data);
+                }
+            }
+            keys[i] = key.toString();
+            keysBytes += 2L * keys[i].length();
+        }
+
+        TableInJoinRequestBuilder table = firstTable ? requestBuilder.getFirstTable() : requestBuilder.getSecondTable();
+        onlyReturnedFields(sourceAsMap, table.getReturnedFields());
+
+        BytesReference sourceRef = hit.getSourceRef();
+        long estimatedBytes = 64 + (sourceRef == null ? 256 : 2L * sourceRef.length()) + keysBytes;
+        List<Row> rows = new ArrayList<>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            rows.add(new Row(i, keys, ordinal, hit.getId(), hit.getType(), sourceAsMap, estimatedBytes));
+        }
+        return rows;
+    }
+
+    /**
+     * Scrolls over the hits of the table up to its limit, in pages of up to MAX_RESULTS_ON_ONE_FETCH hits.
+     */
+    private void scroll(TableInJoinRequestBuilder table, HitHandler handler) throws IOException {
+        int remaining = tableLimit(table);
+        if (remaining <= 0) {
+            return;
+        }
+        SearchResponse response = table.getRequestBuilder()
+                .setScroll(SCROLL_KEEP_ALIVE)
+                .setSize(Math.min(remaining, MAX_RESULTS_ON_ONE_FETCH))
+                .addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC)
+                .get();
+        updateMetaSearchResults(response);
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits().getHits()) {
+                    if (!handler.handle(hit) || --remaining == 0) {
+                        return;
+                    }
+                }
+                response = client.prepareSearchScroll(response.getScrollId()).setScroll(SCROLL_KEEP_ALIVE).get();
+            }
+        } finally {
+            if (response.getScrollId() != null) {
+                client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+            }
+        }
+    }
+
+    /**
+     * The rows a table contributes to the join: the JOIN_LIMIT hint of the table and the LIMIT of its select,
+     * whichever is smaller.
+     */
+    private static int tableLimit(TableInJoinRequestBuilder table) {
+        int limit = Integer.MAX_VALUE;
+        Integer hintLimit = table.getHintLimit();
+        if (hintLimit != null) {
+            limit = hintLimit;
+        }
+        int rowCount = table.getOriginalSelect().getRowCount();
+        if (rowCount > -1) {
+            limit = Math.min(limit, rowCount);
+        }
+        return limit;
+    }
+
+    private static Row readRow(StreamInput input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        int comparison = input.readVInt();
+        String[] keys = input.readStringArray();
+        int ordinal = input.readVInt();
+        String id = input.readString();
+        String type = input.readString();
+        long estimatedBytes = input.readVLong();
+        Map<String, Object> source = input.readMap();
+        return new Row(comparison, keys, ordinal, id, type, source, estimatedBytes);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // the spill files are deleted anyway
+        }
+    }
+
+    private static void deleteSpillDirectory(Path directory) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private interface HitHandler {
+        /**
+         * @return false to stop scrolling
+         */
+        boolean handle(SearchHit hit) throws IOException;
+    }
+
+    private static class Row {
+        private final int comparison;
+        private final String[] keys;
+        // position of the hit in its table, shared by all rows of the hit
+        private final int ordinal;
+        private final String id;
+        private final String type;
+        private final Map<String, Object> source;
+        private final long estimatedBytes;
+
+        private Row(int comparison, String[] keys, int ordinal, String id, String type, Map<String, Object> source, long estimatedBytes) {
+            this.comparison = comparison;
+            this.keys = keys;
+            this.ordinal = ordinal;
+            this.id = id;
+            this.type = type;
+            this.source = source;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        private String key() {
+            return keys[comparison];
+        }
+    }
+
+    private static class BuildTable {
+        private final Map<String, List<Row>> rows = new HashMap<>();
+        private long bytes;
+
+        private void add(Row row) {
+            List<Row> rowsWithKey = rows.get(row.key());
+            if (rowsWithKey == null) {
+                rowsWithKey = new ArrayList<>(1);
+                rows.put(row.key(), rowsWithKey);
+            }
+            rowsWithKey.add(row);
+            bytes += row.estimatedBytes;
+        }
+
+        private void clear() {
+            rows.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Spill files of one side of the join, rows with the same key always end up in the same partition.
+     */
+    private static class Partitions implements Closeable {
+        private final Path[] files = new Path[PARTITIONS];
+        private final StreamOutput[] outputs = new StreamOutput[PARTITIONS];
+        private boolean closed;
+
+        private Partitions(Path directory, String name) throws IOException {
+            try {
+                for (int i = 0; i < PARTITIONS; i++) {
+                    files[i] = directory.resolve(name + "-" + i);
+                    outputs[i] = new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(files[i])));
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void write(Row row) throws IOException {
+            StreamOutput output = outputs[(row.key().hashCode() & Integer.MAX_VALUE) % PARTITIONS];
+            output.writeBoolean(true);
+            output.writeVInt(row.comparison);
+            output.writeStringArray(row.keys);
+            output.writeVInt(row.ordinal);
+            output.writeString(row.id);
+            output.writeString(row.type);
+            output.writeVLong(row.estimatedBytes);
+            output.writeMap(row.source);
+        }
+
+        /**
+         * Marks the end of every partition and closes the files for writing.
+         */
+        private void finish() throws IOException {
+            for (StreamOutput output : outputs) {
+                output.writeBoolean(false);
+            }
+            close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            IOException failure = null;
+            for (StreamOutput output : outputs) {
+                if (output == null) {
+                    continue;
+                }
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private StreamInput open(int partition) throws IOException {
+            return new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(files[partition])));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.elasticsearch.plugin.nlpcn;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes joined rows straight into the response builder while the join is running,
+ * so the joined result never has to be kept as a list of hits.
+ * The produced document has the same fields as {@link ElasticJoinExecutor#resultAsString()}.
+ */
+public class JoinedHitsWriter implements ElasticJoinExecutor.JoinedHitsCollector {
+    private final XContentBuilder builder;
+    private long written;
+
+    public JoinedHitsWriter(XContentBuilder builder) {
+        this.builder = builder;
+    }
+
+    public void start() throws IOException {
+        builder.startObject();
+        builder.startObject("hits");
+        builder.startArray("hits");
+    }
+
+    @Override
+    public void collect(String id, String type, Map<String, Object> source) throws IOException {
+        builder.startObject();
+        builder.field("_id", id);
+        builder.field("_type", type);
+        builder.field("_score", 1.0f);
+        builder.field("_source", source);
+        builder.endObject();
+        written++;
+    }
+
+    public void finish(MetaSearchResult metaResults) throws IOException {
+        builder.endArray();
+        builder.field("total", written);
+        builder.field("max_score", 1.0f);
+        builder.endObject();
+        builder.field("took", metaResults.getTookImMilli());
+        builder.field("timed_out", metaResults.isTimedOut());
+        builder.startObject("_shards");
+        builder.field("total", metaResults.getTotalNumOfShards());
+        builder.field("successful", metaResults.getSuccessfulShards());
+        builder.field("failed", metaResults.getFailedShards());
+        builder.endObject();
+        builder.endObject();
+    }
+
+    public long getWritten() {
+        return written;
+    }
+}
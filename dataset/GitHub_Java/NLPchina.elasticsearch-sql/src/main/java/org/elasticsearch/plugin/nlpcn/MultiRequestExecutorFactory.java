@@ -9,6 +9,9 @@ import org.nlpcn.es4sql.query.multi.MultiQueryRequestBuilder;
  */
 public class MultiRequestExecutorFactory {
      public static ElasticHitsExecutor createExecutor(Client client,MultiQueryRequestBuilder builder) throws SqlParseException {
+         if(SortedMergeSetExecutor.isRequested(builder)){
+             return new SortedMergeSetExecutor(client,builder);
+         }
          switch (builder.getRelation()){
              case UNION_ALL:
              case UNION:
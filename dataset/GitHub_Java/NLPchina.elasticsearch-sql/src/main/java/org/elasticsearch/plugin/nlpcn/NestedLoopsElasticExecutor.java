@@ -16,6 +16,7 @@ import org.nlpcn.es4sql.query.DefaultQueryAction;
 import org.nlpcn.es4sql.query.join.NestedLoopsElasticRequestBuilder;
 import org.nlpcn.es4sql.query.join.TableInJoinRequestBuilder;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -38,8 +39,28 @@ public class NestedLoopsElasticExecutor extends ElasticJoinExecutor {
     }
 
     @Override
-    protected List<InternalSearchHit> innerRun() throws SqlParseException {
-        List<InternalSearchHit> combinedResults = new ArrayList<>();
+    protected List<InternalSearchHit> innerRun() throws IOException, SqlParseException {
+        final List<InternalSearchHit> combinedResults = new ArrayList<>();
+        runNestedLoops(new HitsSink() {
+            @Override
+            public void add(InternalSearchHit hit) {
+                combinedResults.add(hit);
+            }
+        });
+        return combinedResults;
+    }
+
+    @Override
+    protected void innerRun(final JoinedHitsCollector collector) throws IOException, SqlParseException {
+        runNestedLoops(new HitsSink() {
+            @Override
+            public void add(InternalSearchHit hit) throws IOException {
+                collector.collect(hit.getId(), hit.getType(), hit.sourceAsMap());
+            }
+        });
+    }
+
+    private void runNestedLoops(HitsSink combinedResults) throws IOException, SqlParseException {
         int totalLimit = nestedLoopsRequest.getTotalLimit();
         int multiSearchMaxSize = nestedLoopsRequest.getMultiSearchMaxSize();
         Select secondTableSelect = nestedLoopsRequest.getSecondTable().getOriginalSelect();
@@ -79,10 +100,9 @@ public class NestedLoopsElasticExecutor extends ElasticJoinExecutor {
             }
 
         }
-        return combinedResults;
     }
 
-    private int combineResultsFromMultiResponses(List<InternalSearchHit> combinedResults, int totalLimit, int currentCombinedResults, SearchHit[] hits, int currentIndex, MultiSearchRequest multiSearchRequest) {
+    private int combineResultsFromMultiResponses(HitsSink combinedResults, int totalLimit, int currentCombinedResults, SearchHit[] hits, int currentIndex, MultiSearchRequest multiSearchRequest) throws IOException {
         MultiSearchResponse.Item[] responses = client.multiSearch(multiSearchRequest).actionGet().getResponses();
         String t1Alias = nestedLoopsRequest.getFirstTable().getAlias();
         String t2Alias = nestedLoopsRequest.getSecondTable().getAlias();
@@ -98,7 +118,7 @@ public class NestedLoopsElasticExecutor extends ElasticJoinExecutor {
             SearchHits responseForHit = multiItemResponse.getHits();
 
             if(responseForHit.getHits().length == 0 && nestedLoopsRequest.getJoinType() == SQLJoinTableSource.JoinType.LEFT_OUTER_JOIN){
-                addUnmachedResult(combinedResults, nestedLoopsRequest.getSecondTable().getReturnedFields(), currentCombinedResults, t1Alias, t2Alias, hitFromFirstTable);
+                combinedResults.add(createUnmachedResult(nestedLoopsRequest.getSecondTable().getReturnedFields(), currentCombinedResults, t1Alias, t2Alias, hitFromFirstTable));
                 currentCombinedResults++;
                 continue;
             }
@@ -187,6 +207,13 @@ public class NestedLoopsElasticExecutor extends ElasticJoinExecutor {
     }
 
 
+    /**
+     * Receives the joined hits, either to collect them or to write them to the response right away.
+     */
+    private interface HitsSink {
+        void add(InternalSearchHit hit) throws IOException;
+    }
+
     private class FetchWithScrollResponse {
         private SearchResponse response;
         private boolean needScrollForFirstTable;
@@ -11,6 +11,7 @@ import org.nlpcn.es4sql.exception.SqlParseException;
 import org.nlpcn.es4sql.query.AggregationQueryAction;
 import org.nlpcn.es4sql.query.DefaultQueryAction;
 import org.nlpcn.es4sql.query.DeleteQueryAction;
+import org.nlpcn.es4sql.query.PreparedQueryAction;
 import org.nlpcn.es4sql.query.QueryAction;
 import org.nlpcn.es4sql.query.ShowQueryAction;
 import org.nlpcn.es4sql.query.SqlElasticRequestBuilder;
@@ -68,6 +69,24 @@ public class QueryActionElasticExecutor {
         return resp.getAggregations();
     }
 
+    /**
+     * Returns the same kind of result as the query action the request was compiled from.
+     */
+    public static Object executePreparedAction(PreparedQueryAction preparedQueryAction) {
+        SqlElasticSearchRequestBuilder builder = preparedQueryAction.explain();
+        SearchResponse resp = (SearchResponse) builder.get();
+
+        if (resp.getFailedShards() > 0) {
+            if (resp.getSuccessfulShards() < 1) {
+                throw new IllegalStateException("fail to search[" + builder + "], " + Arrays.toString(resp.getShardFailures()));
+            }
+
+            LOGGER.warn("The failures that occurred during the search[{}]: {}", builder, Arrays.toString(resp.getShardFailures()));
+        }
+
+        return preparedQueryAction.isAggregation() ? resp.getAggregations() : resp;
+    }
+
     public static ActionResponse executeDeleteAction(DeleteQueryAction deleteQueryAction) throws SqlParseException {
         return deleteQueryAction.explain().get();
     }
@@ -80,6 +99,8 @@ public class QueryActionElasticExecutor {
     }
 
     public static Object executeAnyAction(Client client , QueryAction queryAction) throws SqlParseException, IOException {
+        if(queryAction instanceof PreparedQueryAction)
+            return executePreparedAction((PreparedQueryAction) queryAction);
         if(queryAction instanceof DefaultQueryAction)
             return executeSearchAction((DefaultQueryAction) queryAction);
         if(queryAction instanceof AggregationQueryAction)
@@ -0,0 +1,401 @@
+package org.elasticsearch.plugin.nlpcn;
+
+import org.apache.lucene.search.TotalHits;
+import org.durid.sql.ast.statement.SQLUnionOperator;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.nlpcn.es4sql.Util;
+import org.nlpcn.es4sql.domain.Field;
+import org.nlpcn.es4sql.domain.hints.Hint;
+import org.nlpcn.es4sql.domain.hints.HintType;
+import org.nlpcn.es4sql.exception.SqlParseException;
+import org.nlpcn.es4sql.query.multi.MultiQueryRequestBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs MINUS and INTERSECT by scrolling both selects sorted on the compared fields
+ * and merging the two sorted streams, so only one scroll page of each side is held in memory.
+ * Enabled with the SORTED_MERGE hint. The compared fields must be sortable (keyword, numeric, date, boolean).
+ */
+public class SortedMergeSetExecutor implements ElasticHitsExecutor {
+    public static final int DEFAULT_PAGE_SIZE = 5000;
+    private static final TimeValue SCROLL_KEEP_ALIVE = new TimeValue(600000);
+
+    private Client client;
+    private MultiQueryRequestBuilder builder;
+    private SearchHits mergedHits;
+    private MetaSearchResult metaResults;
+    private int pageSize;
+    private String[] fieldsOrderFirstTable;
+    private String[] fieldsOrderSecondTable;
+    private String[] outputNames;
+
+    public SortedMergeSetExecutor(Client client, MultiQueryRequestBuilder builder) {
+        this.client = client;
+        this.builder = builder;
+        this.metaResults = new MetaSearchResult();
+        this.pageSize = DEFAULT_PAGE_SIZE;
+        parseHintsIfAny(builder.getOriginalSelect(true).getHints());
+        fillFieldsOrder();
+    }
+
+    /**
+     * UNION and UNION ALL keep duplicates and need no sorting, so they stay with {@link UnionExecutor}
+     * and give the same rows with or without the hint.
+     */
+    public static boolean isRequested(MultiQueryRequestBuilder builder) {
+        SQLUnionOperator relation = builder.getRelation();
+        if (relation != SQLUnionOperator.MINUS && relation != SQLUnionOperator.INTERSECT) return false;
+        List<Hint> hints = builder.getOriginalSelect(true).getHints();
+        if (hints == null) return false;
+        for (Hint hint : hints) {
+            if (hint.getType() == HintType.SORTED_MERGE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void run() throws IOException, SqlParseException {
+        final List<SearchHit> hitsList = new ArrayList<>();
+        innerRun(new ElasticJoinExecutor.JoinedHitsCollector() {
+            @Override
+            public void collect(String id, String type, Map<String, Object> source) throws IOException {
+                SearchHit searchHit = new SearchHit(hitsList.size() + 1, id, new Text(type), new HashMap<String, DocumentField>(), null);
+                searchHit.sourceRef(BytesReference.bytes(XContentFactory.jsonBuilder().map(source)));
+                hitsList.add(searchHit);
+            }
+        });
+        int totalSize = hitsList.size();
+        SearchHit[] hitsArr = hitsList.toArray(new SearchHit[totalSize]);
+        this.mergedHits = new SearchHits(hitsArr, new TotalHits(totalSize, TotalHits.Relation.EQUAL_TO), 1.0f);
+    }
+
+    /**
+     * Runs the merge and writes every result row into the channel's output as soon as it is found.
+     */
+    public void runAndSendResponse(RestChannel channel) throws IOException, SqlParseException {
+        long timeBefore = System.currentTimeMillis();
+        XContentBuilder xContentBuilder = XContentFactory.jsonBuilder(channel.bytesOutput());
+        JoinedHitsWriter writer = new JoinedHitsWriter(xContentBuilder);
+        writer.start();
+        innerRun(writer);
+        this.metaResults.setTookImMilli(System.currentTimeMillis() - timeBefore);
+        writer.finish(this.metaResults);
+        channel.sendResponse(new BytesRestResponse(RestStatus.OK, xContentBuilder));
+    }
+
+    @Override
+    public SearchHits getHits() {
+        return this.mergedHits;
+    }
+
+    private void innerRun(ElasticJoinExecutor.JoinedHitsCollector collector) throws IOException, SqlParseException {
+        if (this.builder.getOriginalSelect(true).isOrderdSelect() || this.builder.getOriginalSelect(false).isOrderdSelect()) {
+            throw new SqlParseException("sorted merge sorts both selects on the compared fields, remove the order by");
+        }
+        SortedHitsCursor first = new SortedScrollCursor(this.client, this.builder.getFirstSearchRequest(), this.fieldsOrderFirstTable, this.pageSize);
+        SortedHitsCursor second = new SortedScrollCursor(this.client, this.builder.getSecondSearchRequest(), this.fieldsOrderSecondTable, this.pageSize);
+        merge(this.builder.getRelation(), first, second, this.outputNames, collector);
+    }
+
+    /**
+     * Walks both sorted cursors key group by key group and collects one row of the first side for every key
+     * it keeps: the keys missing from the second side for MINUS, the keys found on both sides for INTERSECT.
+     */
+    static void merge(SQLUnionOperator relation, SortedHitsCursor first, SortedHitsCursor second, String[] outputNames,
+                      ElasticJoinExecutor.JoinedHitsCollector collector) throws IOException {
+        try {
+            first.open();
+            second.open();
+            while (first.current() != null) {
+                if (relation == SQLUnionOperator.INTERSECT && second.current() == null) break;
+
+                int compare = second.current() == null ? -1 : compareKeys(first.currentKey(), second.currentKey());
+                if (compare < 0) {
+                    if (relation == SQLUnionOperator.MINUS) {
+                        collect(collector, first.current(), first.sortFields, outputNames);
+                    }
+                    first.skipKey();
+                } else if (compare > 0) {
+                    second.skipKey();
+                } else {
+                    if (relation == SQLUnionOperator.INTERSECT) {
+                        collect(collector, first.current(), first.sortFields, outputNames);
+                    }
+                    first.skipKey();
+                    second.skipKey();
+                }
+            }
+        } finally {
+            try {
+                first.close();
+            } finally {
+                second.close();
+            }
+        }
+    }
+
+    private static void collect(ElasticJoinExecutor.JoinedHitsCollector collector, SearchHit hit, String[] fieldsOrder, String[] outputNames) throws IOException {
+        Map<String, Object> sourceAsMap = hit.getSourceAsMap();
+        // written under the first table's names, like the other set executors do
+        Map<String, Object> source = new LinkedHashMap<>();
+        for (int i = 0; i < fieldsOrder.length; i++) {
+            Object value = getFieldValue(sourceAsMap, fieldsOrder[i]);
+            if (value != null) {
+                source.put(outputNames[i], value);
+            }
+        }
+        collector.collect(hit.getId(), hit.getType(), source);
+    }
+
+    /**
+     * Orders sort values the way elasticsearch sorted them: missing values first, numbers numerically
+     * and strings by code point, which is the utf-8 byte order of keyword doc values.
+     */
+    static int compareKeys(Object[] first, Object[] second) {
+        for (int i = 0; i < first.length; i++) {
+            int compare = compareValues(first[i], second[i]);
+            if (compare != 0) return compare;
+        }
+        return 0;
+    }
+
+    static int compareValues(Object first, Object second) {
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        if (first instanceof Number && second instanceof Number) {
+            if (isIntegral(first) && isIntegral(second)) {
+                return Long.compare(((Number) first).longValue(), ((Number) second).longValue());
+            }
+            return Double.compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+        }
+        if (first instanceof String && second instanceof String) {
+            return compareCodePoints((String) first, (String) second);
+        }
+        if (first instanceof Boolean && second instanceof Boolean) {
+            return Boolean.compare((Boolean) first, (Boolean) second);
+        }
+        throw new IllegalArgumentException("sorted merge can not compare " + first.getClass().getSimpleName()
+                + " with " + second.getClass().getSimpleName() + ", the compared fields must have the same type on both tables");
+    }
+
+    private static boolean isIntegral(Object number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    private static int compareCodePoints(String first, String second) {
+        int i = 0;
+        int j = 0;
+        while (i < first.length() && j < second.length()) {
+            int firstCodePoint = first.codePointAt(i);
+            int secondCodePoint = second.codePointAt(j);
+            if (firstCodePoint != secondCodePoint) {
+                return firstCodePoint < secondCodePoint ? -1 : 1;
+            }
+            i += Character.charCount(firstCodePoint);
+            j += Character.charCount(secondCodePoint);
+        }
+        return Integer.compare(first.length() - i, second.length() - j);
+    }
+
+    private static Object getFieldValue(Map<String, Object> sourceAsMap, String fieldName) {
+        if (fieldName.contains(".")) {
+            String[] split = fieldName.split("\\.");
+            return Util.searchPathInMap(sourceAsMap, split);
+        }
+        return sourceAsMap.get(fieldName);
+    }
+
+    private void fillFieldsOrder() {
+        List<String> fieldsOrAliases = new ArrayList<>();
+        Map<String, String> firstTableFieldToAlias = this.builder.getFirstTableFieldToAlias();
+        List<Field> firstTableFields = this.builder.getOriginalSelect(true).getFields();
+
+        for (Field field : firstTableFields) {
+            if (firstTableFieldToAlias.containsKey(field.getName())) {
+                fieldsOrAliases.add(field.getAlias());
+            } else {
+                fieldsOrAliases.add(field.getName());
+            }
+        }
+        Collections.sort(fieldsOrAliases);
+
+        int fieldsSize = fieldsOrAliases.size();
+        this.outputNames = fieldsOrAliases.toArray(new String[fieldsSize]);
+        this.fieldsOrderFirstTable = new String[fieldsSize];
+        fillFieldsArray(fieldsOrAliases, firstTableFieldToAlias, this.fieldsOrderFirstTable);
+        this.fieldsOrderSecondTable = new String[fieldsSize];
+        fillFieldsArray(fieldsOrAliases, this.builder.getSecondTableFieldToAlias(), this.fieldsOrderSecondTable);
+    }
+
+    private void fillFieldsArray(List<String> fieldsOrAliases, Map<String, String> fieldsToAlias, String[] fields) {
+        Map<String, String> aliasToField = new HashMap<>();
+        for (Map.Entry<String, String> entry : fieldsToAlias.entrySet()) {
+            aliasToField.put(entry.getValue(), entry.getKey());
+        }
+        for (int i = 0; i < fields.length; i++) {
+            String field = fieldsOrAliases.get(i);
+            if (aliasToField.containsKey(field)) {
+                field = aliasToField.get(field);
+            }
+            fields[i] = field;
+        }
+    }
+
+    private void parseHintsIfAny(List<Hint> hints) {
+        if (hints == null) return;
+        for (Hint hint : hints) {
+            if (hint.getType() == HintType.SORTED_MERGE) {
+                Object[] params = hint.getParams();
+                if (params != null && params.length == 1 && params[0] != null) {
+                    this.pageSize = (int) params[0];
+                }
+            }
+        }
+    }
+
+    /**
+     * One side of the merge: hits sorted on the compared fields, read one page at a time.
+     * Hits whose compared fields are all missing are skipped, like the in-memory executors do.
+     */
+    abstract static class SortedHitsCursor {
+        final String[] sortFields;
+        private SearchHit[] hits;
+        private int index;
+        private Object[] key;
+
+        SortedHitsCursor(String[] sortFields) {
+            this.sortFields = sortFields;
+        }
+
+        /**
+         * @return the next page of sorted hits, an empty page once there are no more
+         */
+        protected abstract SearchHit[] nextPage();
+
+        void close() {
+        }
+
+        void open() {
+            this.hits = nextPage();
+            this.index = 0;
+            skipAllMissing();
+        }
+
+        SearchHit current() {
+            return this.hits == null || this.index >= this.hits.length ? null : this.hits[this.index];
+        }
+
+        /**
+         * The sort values of the current hit, with null for every compared field missing from its source.
+         * Elasticsearch fills in numeric sort values of missing fields by field type (Long.MIN_VALUE for long,
+         * -Infinity for double), which would not compare equal across two tables.
+         */
+        Object[] currentKey() {
+            if (this.key == null) {
+                SearchHit hit = current();
+                Object[] sortValues = hit.getSortValues();
+                Map<String, Object> sourceAsMap = hit.getSourceAsMap();
+                Object[] key = new Object[sortValues.length];
+                for (int i = 0; i < sortValues.length; i++) {
+                    key[i] = getFieldValue(sourceAsMap, this.sortFields[i]) == null ? null : sortValues[i];
+                }
+                this.key = key;
+            }
+            return this.key;
+        }
+
+        /**
+         * Moves past every hit with the same key as the current one; those rows are duplicates for a set operation.
+         */
+        void skipKey() {
+            Object[] key = currentKey();
+            do {
+                next();
+            } while (current() != null && compareKeys(key, currentKey()) == 0);
+            skipAllMissing();
+        }
+
+        private void next() {
+            this.key = null;
+            this.index++;
+            if (this.index < this.hits.length) return;
+            this.hits = nextPage();
+            this.index = 0;
+        }
+
+        private void skipAllMissing() {
+            while (current() != null && isAllNull(current())) {
+                next();
+            }
+        }
+
+        private boolean isAllNull(SearchHit hit) {
+            Map<String, Object> sourceAsMap = hit.getSourceAsMap();
+            for (String field : this.sortFields) {
+                if (getFieldValue(sourceAsMap, field) != null) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A select scrolled sorted ascending on the compared fields, missing values first.
+     */
+    private static class SortedScrollCursor extends SortedHitsCursor {
+        private final Client client;
+        private final SearchRequestBuilder requestBuilder;
+        private SearchResponse response;
+
+        SortedScrollCursor(Client client, SearchRequestBuilder requestBuilder, String[] sortFields, int pageSize) {
+            super(sortFields);
+            this.client = client;
+            for (String field : sortFields) {
+                requestBuilder.addSort(SortBuilders.fieldSort(field).order(SortOrder.ASC).missing("_first"));
+            }
+            this.requestBuilder = requestBuilder.setScroll(SCROLL_KEEP_ALIVE).setSize(pageSize);
+        }
+
+        @Override
+        protected SearchHit[] nextPage() {
+            if (this.response == null) {
+                this.response = this.requestBuilder.get();
+            } else {
+                this.response = this.client.prepareSearchScroll(this.response.getScrollId()).setScroll(SCROLL_KEEP_ALIVE).get();
+            }
+            return this.response.getHits().getHits();
+        }
+
+        @Override
+        void close() {
+            if (this.response != null && this.response.getScrollId() != null) {
+                this.client.prepareClearScroll().addScrollId(this.response.getScrollId()).get();
+                this.response = null;
+            }
+        }
+    }
+}
@@ -1,13 +1,32 @@
 package org.elasticsearch.plugin.nlpcn.executors;
 
 import org.elasticsearch.client.Client;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.base.Joiner;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.plugin.nlpcn.QueryActionElasticExecutor;
 import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.nlpcn.es4sql.domain.Field;
+import org.nlpcn.es4sql.domain.MethodField;
+import org.nlpcn.es4sql.domain.Select;
+import org.nlpcn.es4sql.query.AggregationQueryAction;
+import org.nlpcn.es4sql.query.DefaultQueryAction;
+import org.nlpcn.es4sql.query.ESActionFactory;
+import org.nlpcn.es4sql.query.PreparedQueryAction;
 import org.nlpcn.es4sql.query.QueryAction;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -15,8 +34,18 @@ import java.util.*;
  */
 public class CSVResultRestExecutor implements RestExecutor {
 
+    private static final int STREAM_CHUNK_SIZE = 5000;
+    private static final TimeValue SCROLL_KEEP_ALIVE = new TimeValue(60000);
+    // the whole response is still sent as one byte array, which can't hold more than 2gb
+    private static final long DEFAULT_MAX_STREAM_BYTES = 256L * 1024 * 1024;
+    private static final long MAX_STREAM_BYTES = Integer.MAX_VALUE - 8;
+
     @Override
     public void execute(Client client, Map<String, String> params, QueryAction queryAction, RestChannel channel) throws Exception {
+        if(params.containsKey("stream") && Boolean.parseBoolean(params.get("stream"))){
+            stream(client, params, queryAction, channel);
+            return;
+        }
         Object queryResult = QueryActionElasticExecutor.executeAnyAction(client, queryAction);
         boolean flat = false;
         if(params.containsKey("flat")){
@@ -27,6 +56,9 @@ public class CSVResultRestExecutor implements RestExecutor {
          separator = params.get("separator");
         }
         CSVResult result  = CSVResultsExtractor.extractResults(queryResult,flat,separator);
+        if(result == null){
+            throw new CsvExtractorException("csv export is not supported for " + queryAction.getClass().getSimpleName());
+        }
         String newLine = "\n";
         if(params.containsKey("newLine")){
          newLine = params.get("newLine");
@@ -36,6 +68,138 @@ public class CSVResultRestExecutor implements RestExecutor {
         channel.sendResponse(bytesRestResponse);
     }
 
+    /**
+     * Scrolls through the hits and writes the csv lines of every chunk into the response output,
+     * so only the current chunk of documents is kept in memory, besides the csv bytes themselves.
+     * The headers are the selected fields, only a select without explicit fields is scrolled twice,
+     * the first pass then collects the headers of all hits.
+     * The rest layer sends the response as a whole, so the export fails once it is larger than
+     * the "maxBytes" parameter (256mb by default, at most 2gb) instead of running out of memory.
+     */
+    private void stream(Client client, Map<String, String> params, QueryAction queryAction, RestChannel channel) throws Exception {
+        boolean flat = params.containsKey("flat") && Boolean.parseBoolean(params.get("flat"));
+        String separator = params.containsKey("separator") ? params.get("separator") : ",";
+        String newLine = params.containsKey("newLine") ? params.get("newLine") : "\n";
+        long maxBytes = params.containsKey("maxBytes") ? Long.parseLong(params.get("maxBytes")) : DEFAULT_MAX_STREAM_BYTES;
+        if(maxBytes <= 0 || maxBytes > MAX_STREAM_BYTES){
+            throw new CsvExtractorException("maxBytes has to be between 1 and " + MAX_STREAM_BYTES);
+        }
+
+        BytesStreamOutput output = channel.bytesOutput();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new SizeLimitedOutputStream(output, maxBytes), StandardCharsets.UTF_8));
+        CSVStreamWriter csv = new CSVStreamWriter(writer, separator, newLine, flat);
+        try {
+            writeCsv(client, queryAction, csv);
+            csv.flush();
+        } catch (SizeLimitedOutputStream.LimitExceededException e) {
+            throw new CsvExtractorException("csv export is larger than " + e.getMaxBytes() + " bytes, "
+                    + "raise maxBytes or export the result in parts with limit and offset");
+        }
+        channel.sendResponse(new BytesRestResponse(RestStatus.OK, "text/plain; charset=UTF-8", output.bytes()));
+    }
+
+    private void writeCsv(Client client, QueryAction queryAction, CSVStreamWriter csv) throws Exception {
+        if(queryAction instanceof PreparedQueryAction){
+            // requests from the plan cache can't be scrolled in chunks, exports are long enough to parse the sql again
+            queryAction = ESActionFactory.createUncached(client, ((PreparedQueryAction) queryAction).getSql());
+        }
+        if(queryAction instanceof DefaultQueryAction){
+            streamHits(client, (DefaultQueryAction) queryAction, csv);
+        }
+        else if(queryAction instanceof AggregationQueryAction){
+            csv.writeAggregations(QueryActionElasticExecutor.executeAggregationAction((AggregationQueryAction) queryAction));
+        }
+        else {
+            Object queryResult = QueryActionElasticExecutor.executeAnyAction(client, queryAction);
+            if(queryResult instanceof SearchResponse){
+                queryResult = ((SearchResponse) queryResult).getHits();
+            }
+            if(!(queryResult instanceof SearchHits)){
+                throw new CsvExtractorException("csv export is not supported for " + queryAction.getClass().getSimpleName());
+            }
+            SearchHit[] hits = ((SearchHits) queryResult).getHits();
+            csv.addHeaders(hits);
+            csv.writeHeaders();
+            csv.writeHits(hits);
+        }
+    }
+
+    private void streamHits(Client client, DefaultQueryAction queryAction, final CSVStreamWriter csv) throws Exception {
+        List<String> selectedFields = selectedFieldNames(queryAction.getSelect());
+        if(selectedFields != null){
+            csv.writeHeaders(selectedFields);
+        }
+        else {
+            scroll(client, queryAction, new HitsHandler() {
+                @Override
+                public void handle(SearchHit[] hits) {
+                    csv.addHeaders(hits);
+                }
+            });
+            csv.writeHeaders();
+        }
+        scroll(client, queryAction, new HitsHandler() {
+            @Override
+            public void handle(SearchHit[] hits) throws Exception {
+                csv.writeHits(hits);
+                csv.flush();
+            }
+        });
+    }
+
+    /**
+     * @return the names of the selected fields, or null if the select doesn't list them, like select * or name*
+     */
+    private List<String> selectedFieldNames(Select select) {
+        if(select.getFields().isEmpty()){
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for(Field field : select.getFields()){
+            if(field instanceof MethodField || field.getName().contains("*")){
+                return null;
+            }
+            names.add(field.getName());
+        }
+        return new ArrayList<>(names);
+    }
+
+    private void scroll(Client client, DefaultQueryAction queryAction, HitsHandler handler) throws Exception {
+        // every pass needs a request of its own
+        queryAction.explain();
+        Select select = queryAction.getSelect();
+        int toSkip = select.getOffset();
+        long remaining = select.getRowCount() > -1 ? select.getRowCount() : Long.MAX_VALUE;
+
+        SearchRequestBuilder request = queryAction.getRequestBuilder()
+                .setFrom(0)
+                .setSize(STREAM_CHUNK_SIZE)
+                .setScroll(SCROLL_KEEP_ALIVE);
+        if(select.getOrderBys().isEmpty()){
+            request.addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC);
+        }
+        SearchResponse response = request.get();
+        try {
+            while (remaining > 0 && response.getHits().getHits().length > 0) {
+                SearchHit[] hits = response.getHits().getHits();
+                int from = Math.min(toSkip, hits.length);
+                toSkip -= from;
+                int to = (int) Math.min(hits.length, from + remaining);
+                if(to > from){
+                    SearchHit[] chunk = from == 0 && to == hits.length ? hits : Arrays.copyOfRange(hits, from, to);
+                    handler.handle(chunk);
+                    remaining -= chunk.length;
+                }
+                if(remaining <= 0) break;
+                response = client.prepareSearchScroll(response.getScrollId()).setScroll(SCROLL_KEEP_ALIVE).get();
+            }
+        } finally {
+            if(response.getScrollId() != null){
+                client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+            }
+        }
+    }
+
     private String buildString(String separator, CSVResult result, String newLine) {
         StringBuilder csv = new StringBuilder();
         csv.append(Joiner.on(separator).join(result.getHeaders()));
@@ -44,4 +208,8 @@ public class CSVResultRestExecutor implements RestExecutor {
         return csv.toString();
     }
 
+    private interface HitsHandler {
+        void handle(SearchHit[] hits) throws Exception;
+    }
+
 }
@@ -124,7 +124,7 @@ public class CSVResultsExtractor {
         return line;
     }
 
-    private  void handleNumericMetricAggregation(List<String> header, List<String> line, Aggregation aggregation) {
+    void handleNumericMetricAggregation(List<String> header, List<String> line, Aggregation aggregation) {
         String name = aggregation.getName();
         if(!header.contains(name)){
             header.add(aggregation.getName());
@@ -138,7 +138,7 @@ public class CSVResultsExtractor {
         }
     }
 
-    private  boolean allNumericAggregations(Aggregations aggregations) {
+    boolean allNumericAggregations(Aggregations aggregations) {
         List<Aggregation> aggregationList = aggregations.asList();
         for(Aggregation aggregation : aggregationList){
             if(!(aggregation instanceof NumericMetricsAggregation)){
@@ -176,12 +176,14 @@ public class CSVResultsExtractor {
         for(SearchHit hit : hits){
             Map<String, Object> doc = hit.sourceAsMap();
             mergeHeaders(csvHeaders,doc,flat);
-            docsAsMap.add(doc);
+            if(docsAsMap != null){
+                docsAsMap.add(doc);
+            }
         }
         return new ArrayList<>(csvHeaders);
     }
 
-    private String findFieldValue(String header, Map<String, Object> doc, boolean flat, String separator) {
+    String findFieldValue(String header, Map<String, Object> doc, boolean flat, String separator) {
         if(flat && header.contains(".")){
             String[] split = header.split("\\.");
             Object innerDoc = doc;
@@ -205,6 +207,10 @@ public class CSVResultsExtractor {
         return separator;
     }
 
+    List<String> createHeaders(boolean flat, SearchHit[] hits) {
+        return createHeadersAndFillDocsMap(flat, hits, null);
+    }
+
     private void mergeHeaders(Set<String> headers, Map<String, Object> doc, boolean flat) {
         if (!flat) {
             headers.addAll(doc.keySet());
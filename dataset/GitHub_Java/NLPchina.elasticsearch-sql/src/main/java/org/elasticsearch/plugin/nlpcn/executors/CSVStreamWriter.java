@@ -0,0 +1,171 @@
+package org.elasticsearch.plugin.nlpcn.executors;
+
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregation;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes csv lines as soon as they are created, instead of collecting them in a {@link CSVResult} first.
+ * Used by the streaming mode of {@link CSVResultRestExecutor}, only the current chunk of hits
+ * or the current bucket path is kept in memory.
+ */
+public class CSVStreamWriter {
+    private final Writer writer;
+    private final String separator;
+    private final String newLine;
+    private final boolean flat;
+    private final CSVResultsExtractor extractor;
+    private final Set<String> headerNames = new HashSet<>();
+    private List<String> headers;
+    private boolean fieldPathHeaders;
+    private long lines;
+
+    public CSVStreamWriter(Writer writer, String separator, String newLine, boolean flat) {
+        this.writer = writer;
+        this.separator = separator;
+        this.newLine = newLine;
+        this.flat = flat;
+        this.extractor = new CSVResultsExtractor();
+    }
+
+    /**
+     * Adds the fields of the hits to the headers. All hits have to be added before the headers are written,
+     * otherwise fields which only appear in later hits would be missing.
+     */
+    public void addHeaders(SearchHit[] hits) {
+        headerNames.addAll(extractor.createHeaders(flat, hits));
+    }
+
+    public void writeHeaders() throws IOException {
+        this.headers = new ArrayList<>(headerNames);
+        writeLine(headers);
+    }
+
+    /**
+     * Writes the selected fields as headers, so the hits don't have to be read before.
+     * Dotted field names are looked up as paths into the source, even if the export isn't flat.
+     */
+    public void writeHeaders(List<String> fieldNames) throws IOException {
+        this.headers = new ArrayList<>(fieldNames);
+        this.fieldPathHeaders = true;
+        writeLine(headers);
+    }
+
+    public void writeHits(SearchHit[] hits) throws IOException {
+        if (headers == null) {
+            throw new IllegalStateException("the headers have to be written before the hits");
+        }
+        for (SearchHit hit : hits) {
+            Map<String, Object> doc = hit.sourceAsMap();
+            StringBuilder line = new StringBuilder();
+            for (String header : headers) {
+                line.append(extractor.findFieldValue(header, doc, flat || fieldPathHeaders, separator));
+            }
+            line.setLength(Math.max(0, line.length() - separator.length()));
+            startLine();
+            writer.write(line.toString());
+        }
+    }
+
+    public void writeAggregations(Aggregations aggregations) throws IOException {
+        this.headers = new ArrayList<>();
+        collectAggregationHeaders(aggregations, headers);
+        writeLine(headers);
+        writeAggregationLines(aggregations, new ArrayList<String>());
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Follows the first bucket of every level, the buckets of one aggregation all have the same sub aggregations.
+     */
+    private void collectAggregationHeaders(Aggregations aggregations, List<String> headers) {
+        if (extractor.allNumericAggregations(aggregations)) {
+            for (Aggregation aggregation : aggregations.asList()) {
+                addHeader(headers, aggregation.getName());
+            }
+            return;
+        }
+        Aggregation aggregation = aggregations.asList().get(0);
+        if (aggregation instanceof SingleBucketAggregation) {
+            collectAggregationHeaders(((SingleBucketAggregation) aggregation).getAggregations(), headers);
+        } else if (aggregation instanceof NumericMetricsAggregation) {
+            addHeader(headers, aggregation.getName());
+        } else if (aggregation instanceof MultiBucketsAggregation) {
+            addHeader(headers, aggregation.getName());
+            for (MultiBucketsAggregation.Bucket bucket : ((MultiBucketsAggregation) aggregation).getBuckets()) {
+                collectAggregationHeaders(bucket.getAggregations(), headers);
+                break;
+            }
+        }
+    }
+
+    private void addHeader(List<String> headers, String name) {
+        if (!headers.contains(name)) {
+            headers.add(name);
+        }
+    }
+
+    /**
+     * Same walk as {@link CSVResultsExtractor#extractResults}, but every line is written once its last bucket is reached.
+     */
+    private void writeAggregationLines(Aggregations aggregations, List<String> currentLine) throws IOException {
+        if (extractor.allNumericAggregations(aggregations)) {
+            List<String> line = new ArrayList<>(currentLine);
+            for (Aggregation aggregation : aggregations.asList()) {
+                extractor.handleNumericMetricAggregation(new ArrayList<String>(), line, aggregation);
+            }
+            writeLine(line);
+            return;
+        }
+        Aggregation aggregation = aggregations.asList().get(0);
+        if (aggregation instanceof SingleBucketAggregation) {
+            writeAggregationLines(((SingleBucketAggregation) aggregation).getAggregations(), currentLine);
+        } else if (aggregation instanceof NumericMetricsAggregation) {
+            List<String> line = new ArrayList<>(currentLine);
+            extractor.handleNumericMetricAggregation(new ArrayList<String>(), line, aggregation);
+            writeLine(line);
+        } else if (aggregation instanceof MultiBucketsAggregation) {
+            for (MultiBucketsAggregation.Bucket bucket : ((MultiBucketsAggregation) aggregation).getBuckets()) {
+                currentLine.add(bucket.getKeyAsText().string());
+                writeAggregationLines(bucket.getAggregations(), currentLine);
+                currentLine.remove(currentLine.size() - 1);
+            }
+        }
+    }
+
+    private void writeLine(List<String> values) throws IOException {
+        startLine();
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(separator);
+            }
+            writer.write(values.get(i));
+        }
+    }
+
+    private void startLine() throws IOException {
+        // the header is the first line, lines are separated but not terminated by newLine as in CSVResultRestExecutor#buildString
+        if (lines > 0) {
+            writer.write(newLine);
+        }
+        lines++;
+    }
+}
@@ -11,11 +11,13 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.plugin.nlpcn.DeleteByQueryRestListener;
 import org.elasticsearch.plugin.nlpcn.ElasticJoinExecutor;
 import org.elasticsearch.plugin.nlpcn.GetIndexRequestRestListener;
+import org.elasticsearch.plugin.nlpcn.SortedMergeSetExecutor;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.action.support.RestStatusToXContentListener;
 import org.nlpcn.es4sql.query.QueryAction;
 import org.nlpcn.es4sql.query.SqlElasticRequestBuilder;
 import org.nlpcn.es4sql.query.join.JoinRequestBuilder;
+import org.nlpcn.es4sql.query.multi.MultiQueryRequestBuilder;
 
 import java.util.Map;
 
@@ -37,8 +39,9 @@ public class ElasticDefaultRestExecutor implements RestExecutor {
         //todo: maby change to instanceof multi?
         if (requestBuilder instanceof JoinRequestBuilder) {
             ElasticJoinExecutor executor = ElasticJoinExecutor.createJoinExecutor(client, requestBuilder);
-            executor.run();
-            executor.sendResponse(channel);
+            executor.runAndSendResponse(channel);
+        } else if (requestBuilder instanceof MultiQueryRequestBuilder && SortedMergeSetExecutor.isRequested((MultiQueryRequestBuilder) requestBuilder)) {
+            new SortedMergeSetExecutor(client, (MultiQueryRequestBuilder) requestBuilder).runAndSendResponse(channel);
         } else if (request instanceof SearchRequest) {
             client.search((SearchRequest) request, new RestStatusToXContentListener<SearchResponse>(channel));
         } else if (request instanceof DeleteByQueryRequest) {
@@ -0,0 +1,52 @@
+package org.elasticsearch.plugin.nlpcn.executors;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Fails as soon as more than {@code maxBytes} have been written, so a response which is built in memory
+ * can't grow without bounds.
+ */
+public class SizeLimitedOutputStream extends FilterOutputStream {
+    private final long maxBytes;
+    private long written;
+
+    public SizeLimitedOutputStream(OutputStream out, long maxBytes) {
+        super(out);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureCapacity(1);
+        out.write(b);
+        written++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureCapacity(len);
+        out.write(b, off, len);
+        written += len;
+    }
+
+    private void ensureCapacity(int len) throws LimitExceededException {
+        if (written + len > maxBytes) {
+            throw new LimitExceededException(maxBytes);
+        }
+    }
+
+    public static class LimitExceededException extends IOException {
+        private final long maxBytes;
+
+        public LimitExceededException(long maxBytes) {
+            super("more than " + maxBytes + " bytes have been written");
+            this.maxBytes = maxBytes;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+    }
+}
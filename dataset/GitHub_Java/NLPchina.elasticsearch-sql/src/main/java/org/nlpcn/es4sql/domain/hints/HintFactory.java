@@ -26,6 +26,14 @@ public class HintFactory {
 
             return new Hint(HintType.JOIN_LIMIT,params.toArray());
         }
+        if(hintAsString.startsWith("! SORTED_MERGE")){
+            //optional param: scroll page size of each side
+            String[] params = getParamsFromHint(hintAsString, "! SORTED_MERGE");
+            if(params.length == 1 && !params[0].isEmpty()){
+                return new Hint(HintType.SORTED_MERGE,new Object[]{Integer.parseInt(params[0])});
+            }
+            return new Hint(HintType.SORTED_MERGE,null);
+        }
         return null;
     }
 
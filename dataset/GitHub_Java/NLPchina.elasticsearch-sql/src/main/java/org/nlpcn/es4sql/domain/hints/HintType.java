@@ -13,5 +13,6 @@ public enum HintType
     USE_NESTED_LOOPS,
     NL_MULTISEARCH_SIZE,
     USE_SCROLL,
-    IGNORE_UNAVAILABLE;
+    IGNORE_UNAVAILABLE,
+    SORTED_MERGE;
 }
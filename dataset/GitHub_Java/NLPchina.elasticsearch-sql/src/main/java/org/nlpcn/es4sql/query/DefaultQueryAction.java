@@ -127,4 +127,8 @@ public class DefaultQueryAction extends QueryAction {
     public SearchRequestBuilder getRequestBuilder() {
         return request;
     }
+
+    public Select getSelect() {
+        return select;
+    }
 }
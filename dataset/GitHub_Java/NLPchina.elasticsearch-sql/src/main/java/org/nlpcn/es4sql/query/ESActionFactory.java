@@ -17,9 +17,13 @@ import org.nlpcn.es4sql.parse.ElasticSqlExprParser;
 import org.nlpcn.es4sql.parse.SqlParser;
 
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.Collections;
+import java.util.List;
 
 public class ESActionFactory {
 
+	private static final QueryPlanCache PLAN_CACHE = new QueryPlanCache(QueryPlanCache.DEFAULT_MAX_SIZE);
+
 	/**
 	 * Create the compatible Query object
 	 * based on the SQL query.
@@ -28,6 +32,46 @@ public class ESActionFactory {
 	 * @return Query object.
 	 */
 	public static QueryAction create(Client client, String sql) throws SqlParseException, SQLFeatureNotSupportedException {
+		return create(client, sql, Collections.emptyList());
+	}
+
+	/**
+	 * Create the compatible Query object based on the SQL query with JDBC style '?' placeholders.
+	 * Selects which only differ in their literals from a previous select reuse its compiled request,
+	 * see {@link QueryPlanCache}.
+	 *
+	 * @param sql The SQL query.
+	 * @param parameters values of the placeholders.
+	 * @return Query object.
+	 */
+	public static QueryAction create(Client client, String sql, List<?> parameters) throws SqlParseException, SQLFeatureNotSupportedException {
+		String firstWord = sql.substring(0, sql.indexOf(' '));
+		if (!"SELECT".equals(firstWord.toUpperCase())) {
+			// only the placeholders of prepared statements have to be replaced, other statements aren't cached
+			return createUncached(client, parameters.isEmpty() ? sql : QueryPlanCache.parameterize(sql, parameters).getSql());
+		}
+		QueryPlanCache.ParameterizedSql parameterized = QueryPlanCache.parameterize(sql, parameters);
+		QueryAction prepared = PLAN_CACHE.bind(client, parameterized);
+		if (prepared != null) {
+			return prepared;
+		}
+		QueryAction queryAction = createUncached(client, parameterized.getSql());
+		if (!PLAN_CACHE.contains(parameterized)) {
+			QueryAction template = null;
+			try {
+				template = createUncached(client, parameterized.getTemplateSql());
+			} catch (SqlParseException | RuntimeException e) {
+				// the request can't be compiled with sentinel values, compile() remembers the sql as not cacheable
+			}
+			PLAN_CACHE.compile(parameterized, template);
+		}
+		return queryAction;
+	}
+
+	/**
+	 * Create the compatible Query object without looking at the plan cache.
+	 */
+	public static QueryAction createUncached(Client client, String sql) throws SqlParseException, SQLFeatureNotSupportedException {
 		String firstWord = sql.substring(0, sql.indexOf(' '));
         switch (firstWord.toUpperCase()) {
 			case "SELECT":
@@ -0,0 +1,36 @@
+package org.nlpcn.es4sql.query;
+
+import org.elasticsearch.client.Client;
+
+/**
+ * Query action for a request taken from the {@link QueryPlanCache}, the search source is already complete.
+ */
+public class PreparedQueryAction extends QueryAction {
+
+	private final String sql;
+	private final QueryPlanCache.Plan plan;
+	private final String source;
+
+	PreparedQueryAction(Client client, String sql, QueryPlanCache.Plan plan, String source) {
+		super(client, null);
+		this.sql = sql;
+		this.plan = plan;
+		this.source = source;
+	}
+
+	@Override
+	public SqlElasticSearchRequestBuilder explain() {
+		return new SqlElasticSearchRequestBuilder(plan.prepareSearch(client, source));
+	}
+
+	/**
+	 * @return true if the request was compiled from an {@link AggregationQueryAction}
+	 */
+	public boolean isAggregation() {
+		return plan.isAggregation();
+	}
+
+	public String getSql() {
+		return sql;
+	}
+}
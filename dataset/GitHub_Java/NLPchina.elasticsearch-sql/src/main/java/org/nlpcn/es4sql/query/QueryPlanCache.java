@@ -0,0 +1,517 @@
+package org.nlpcn.es4sql.query;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Client;
+import org.nlpcn.es4sql.exception.SqlParseException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of compiled search requests, keyed by the sql with its literal values replaced by placeholders.
+ * <p>
+ * On a miss the sql is compiled a second time with unique sentinel values instead of its literals. The sentinels
+ * are located in the generated request source, which gives a template with one slot per literal. Later queries
+ * which only differ in their literals are bound into that template without lexing, parsing or building the
+ * request again. Only literals of the WHERE and LIMIT clauses are parameterized, if any sentinel got lost or
+ * changed while the request was built the sql is remembered as not cacheable.
+ */
+public class QueryPlanCache {
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    static final int MAX_PARAMETERS = 1000;
+
+    private static final String STRING_SENTINEL = "es4sqlp";
+    // fits into an int, LIMIT values are parsed as int
+    private static final long NUMBER_SENTINEL = 2071723417L;
+    private static final long NUMBER_SENTINEL_STEP = 7919L;
+    private static final Set<String> NOT_FUNCTIONS = new HashSet<>(Arrays.asList(
+            "IN", "AND", "OR", "NOT", "WHERE", "ON", "BETWEEN", "SELECT", "FROM", "HAVING", "EXISTS"));
+    private static final Plan NOT_CACHEABLE = new Plan(null, null, null, false);
+
+    private final Map<String, Plan> plans;
+
+    public QueryPlanCache(final int maxSize) {
+        this.plans = Collections.synchronizedMap(new LinkedHashMap<String, Plan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    public boolean contains(ParameterizedSql sql) {
+        return plans.containsKey(sql.getKey());
+    }
+
+    /**
+     * @return a query action with the literals of the sql bound into the cached request,
+     * or null if there is no cached request for the sql
+     */
+    public QueryAction bind(Client client, ParameterizedSql sql) {
+        Plan plan = plans.get(sql.getKey());
+        if (plan == null || plan == NOT_CACHEABLE) {
+            return null;
+        }
+        return new PreparedQueryAction(client, sql.getSql(), plan, plan.bindSource(sql));
+    }
+
+    /**
+     * @param template the query action created from {@link ParameterizedSql#getTemplateSql()}, null if it couldn't be created
+     */
+    public void compile(ParameterizedSql sql, QueryAction template) {
+        Plan plan = null;
+        if (sql.getLiterals().size() <= MAX_PARAMETERS && (template instanceof DefaultQueryAction || template instanceof AggregationQueryAction)) {
+            try {
+                SearchRequestBuilder builder = (SearchRequestBuilder) template.explain().getBuilder();
+                plan = Plan.fromSource(sql, builder.toString(), builder.request(), template instanceof AggregationQueryAction);
+            } catch (SqlParseException | RuntimeException e) {
+                plan = null;
+            }
+        }
+        plans.put(sql.getKey(), plan == null ? NOT_CACHEABLE : plan);
+    }
+
+    public void clear() {
+        plans.clear();
+    }
+
+    public int size() {
+        return plans.size();
+    }
+
+    public static ParameterizedSql parameterize(String sql) {
+        return parameterize(sql, Collections.emptyList());
+    }
+
+    /**
+     * Replaces the literals of the sql with placeholders.
+     *
+     * @param parameters values of the JDBC style '?' placeholders in the sql. Without parameters a '?' is
+     *                   kept as it is, only prepared statements have placeholders.
+     */
+    public static ParameterizedSql parameterize(String sql, List<?> parameters) {
+        ParameterizedSql result = new ParameterizedSql(sql.length());
+        // true for the parentheses of function arguments, their literals are often names or scripts
+        Deque<Boolean> parentheses = new ArrayDeque<>();
+        int functionDepth = 0;
+        int parameterIndex = 0;
+        boolean inWhere = false;
+        boolean inLimit = false;
+        boolean afterWord = false;
+        String lastWord = "";
+
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            boolean parameterizable = (inWhere || inLimit) && functionDepth == 0 && !"LIKE".equals(lastWord);
+
+            if (Character.isWhitespace(c)) {
+                int start = i;
+                while (i < n && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                result.appendWhitespace(sql.substring(start, i));
+                continue;
+            }
+            if (c == '\'') {
+                int end = endOfString(sql, i);
+                String raw = sql.substring(i, end);
+                String value = raw.length() >= 2 && raw.endsWith("'") ? raw.substring(1, raw.length() - 1).replace("''", "'") : null;
+                if (parameterizable && value != null && raw.indexOf('\\') < 0 && value.indexOf('*') < 0 && value.indexOf('?') < 0) {
+                    result.appendLiteral(new Literal(value, true), raw);
+                } else {
+                    result.append(raw);
+                }
+                i = end;
+                afterWord = false;
+                continue;
+            }
+            if (c == '"' || c == '`') {
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? n : end + 1;
+                result.append(sql.substring(i, end));
+                i = end;
+                afterWord = true;
+                continue;
+            }
+            if (Character.isDigit(c)) {
+                int end = endOfNumber(sql, i);
+                String text = sql.substring(i, end);
+                if (end < n && isWordPart(sql.charAt(end))) {
+                    // something like 10d, not a number
+                    end = endOfWord(sql, end);
+                    result.append(sql.substring(i, end));
+                } else if (parameterizable) {
+                    result.appendLiteral(new Literal(text, false), text);
+                } else {
+                    result.append(text);
+                }
+                i = end;
+                afterWord = false;
+                continue;
+            }
+            if (c == '?' && !parameters.isEmpty()) {
+                if (parameterIndex >= parameters.size()) {
+                    throw new IllegalArgumentException("No value specified for parameter " + (parameterIndex + 1));
+                }
+                Object value = parameters.get(parameterIndex++);
+                if (value == null || value instanceof Boolean) {
+                    result.append(String.valueOf(value).toUpperCase());
+                } else if (value instanceof Number) {
+                    Literal literal = new Literal(value.toString(), false);
+                    result.appendLiteral(parameterizable ? literal : null, literal.value);
+                } else {
+                    Literal literal = new Literal(value.toString(), true);
+                    result.appendLiteral(parameterizable ? literal : null, "'" + literal.value.replace("'", "''") + "'");
+                }
+                i++;
+                afterWord = false;
+                continue;
+            }
+            if (isWordPart(c)) {
+                int end = endOfWord(sql, i);
+                String word = sql.substring(i, end);
+                String upperCase = word.toUpperCase();
+                if (functionDepth == 0) {
+                    if ("WHERE".equals(upperCase)) {
+                        inWhere = true;
+                        inLimit = false;
+                    } else if ("GROUP".equals(upperCase) || "ORDER".equals(upperCase) || "HAVING".equals(upperCase)) {
+                        inWhere = false;
+                        inLimit = false;
+                    } else if ("LIMIT".equals(upperCase)) {
+                        inWhere = false;
+                        inLimit = true;
+                    }
+                }
+                result.append(word);
+                lastWord = upperCase;
+                i = end;
+                afterWord = true;
+                continue;
+            }
+            if (c == '(') {
+                boolean function = functionDepth > 0 || (afterWord && !NOT_FUNCTIONS.contains(lastWord));
+                parentheses.push(function);
+                if (function) {
+                    functionDepth++;
+                }
+            } else if (c == ')' && !parentheses.isEmpty() && parentheses.pop()) {
+                functionDepth--;
+            }
+            result.append(String.valueOf(c));
+            lastWord = "";
+            afterWord = false;
+            i++;
+        }
+        return result;
+    }
+
+    private static int endOfString(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static int endOfNumber(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && Character.isDigit(sql.charAt(i))) {
+            i++;
+        }
+        if (i + 1 < sql.length() && sql.charAt(i) == '.' && Character.isDigit(sql.charAt(i + 1))) {
+            i++;
+            while (i < sql.length() && Character.isDigit(sql.charAt(i))) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static int endOfWord(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && (isWordPart(sql.charAt(i)) || Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '@' || c == '$';
+    }
+
+    static String stringSentinel(int index) {
+        return STRING_SENTINEL + index + "x";
+    }
+
+    static String numberSentinel(int index) {
+        return Long.toString(NUMBER_SENTINEL - index * NUMBER_SENTINEL_STEP);
+    }
+
+    static String escapeJson(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Sql split into its cache key, its literal values and the sql to compile the request template from.
+     */
+    public static class ParameterizedSql {
+        private final StringBuilder key;
+        private final StringBuilder sql;
+        private final StringBuilder templateSql;
+        private final List<Literal> literals = new ArrayList<>();
+
+        private ParameterizedSql(int length) {
+            this.key = new StringBuilder(length);
+            this.sql = new StringBuilder(length);
+            this.templateSql = new StringBuilder(length);
+        }
+
+        private void append(String text) {
+            key.append(text);
+            sql.append(text);
+            templateSql.append(text);
+        }
+
+        private void appendWhitespace(String whitespace) {
+            if (key.length() > 0) {
+                key.append(' ');
+            }
+            sql.append(whitespace);
+            templateSql.append(whitespace);
+        }
+
+        /**
+         * @param literal the literal to replace, null to keep the value in the key
+         */
+        private void appendLiteral(Literal literal, String sqlText) {
+            if (literal == null) {
+                append(sqlText);
+                return;
+            }
+            int index = literals.size();
+            key.append(literal.string ? "?s" : "?n");
+            sql.append(sqlText);
+            templateSql.append(literal.string ? "'" + stringSentinel(index) + "'" : numberSentinel(index));
+            literals.add(literal);
+        }
+
+        public String getKey() {
+            return key.toString().trim();
+        }
+
+        /**
+         * @return the sql with the values of all '?' placeholders inlined
+         */
+        public String getSql() {
+            return sql.toString();
+        }
+
+        public String getTemplateSql() {
+            return templateSql.toString();
+        }
+
+        public List<Literal> getLiterals() {
+            return literals;
+        }
+    }
+
+    public static class Literal {
+        private final String value;
+        private final boolean string;
+
+        Literal(String value, boolean string) {
+            this.value = value;
+            this.string = string;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isString() {
+            return string;
+        }
+    }
+
+    static class Plan {
+        private final String[] indices;
+        private final String[] types;
+        private final SearchType searchType;
+        private final IndicesOptions indicesOptions;
+        private final String routing;
+        private final String preference;
+        private final String[] segments;
+        private final int[] slots;
+        private final boolean aggregation;
+
+        /**
+         * @param request the request built from the template sql, everything but its source is used as it is
+         */
+        private Plan(SearchRequest request, String[] segments, int[] slots, boolean aggregation) {
+            this.indices = request == null ? null : request.indices();
+            this.types = request == null ? null : request.types();
+            this.searchType = request == null ? null : request.searchType();
+            this.indicesOptions = request == null ? null : request.indicesOptions();
+            this.routing = request == null ? null : request.routing();
+            this.preference = request == null ? null : request.preference();
+            this.segments = segments;
+            this.slots = slots;
+            this.aggregation = aggregation;
+        }
+
+        /**
+         * Creates a request with the same options as the one built from the template sql.
+         */
+        SearchRequestBuilder prepareSearch(Client client, String source) {
+            SearchRequestBuilder request = client.prepareSearch(indices);
+            if (types != null && types.length > 0) {
+                request.setTypes(types);
+            }
+            if (searchType != null) {
+                request.setSearchType(searchType);
+            }
+            if (indicesOptions != null) {
+                request.setIndicesOptions(indicesOptions);
+            }
+            if (routing != null) {
+                request.setRouting(routing);
+            }
+            if (preference != null) {
+                request.setPreference(preference);
+            }
+            request.setSource(source);
+            return request;
+        }
+
+        boolean isAggregation() {
+            return aggregation;
+        }
+
+        /**
+         * Splits the source built from the template sql at the sentinels.
+         *
+         * @return null if a sentinel is missing from the source
+         */
+        static Plan fromSource(ParameterizedSql sql, String source, SearchRequest request, boolean aggregation) {
+            int literalCount = sql.getLiterals().size();
+            String[] sentinels = new String[literalCount];
+            boolean[] found = new boolean[literalCount];
+            for (int i = 0; i < literalCount; i++) {
+                sentinels[i] = sql.getLiterals().get(i).isString() ? stringSentinel(i) : numberSentinel(i);
+            }
+
+            List<String> segments = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            int position = 0;
+            while (true) {
+                int next = -1;
+                int slot = -1;
+                for (int i = 0; i < literalCount; i++) {
+                    int index = indexOfSentinel(source, sentinels[i], position, !sql.getLiterals().get(i).isString());
+                    if (index >= 0 && (next < 0 || index < next)) {
+                        next = index;
+                        slot = i;
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                segments.add(source.substring(position, next));
+                slots.add(slot);
+                found[slot] = true;
+                position = next + sentinels[slot].length();
+            }
+            segments.add(source.substring(position));
+
+            for (boolean f : found) {
+                if (!f) {
+                    return null;
+                }
+            }
+            for (String segment : segments) {
+                if (segment.contains(STRING_SENTINEL)) {
+                    return null;
+                }
+            }
+            int[] slotArray = new int[slots.size()];
+            for (int i = 0; i < slotArray.length; i++) {
+                slotArray[i] = slots.get(i);
+            }
+            return new Plan(request, segments.toArray(new String[segments.size()]), slotArray, aggregation);
+        }
+
+        private static int indexOfSentinel(String source, String sentinel, int from, boolean number) {
+            int index = source.indexOf(sentinel, from);
+            while (number && index >= 0) {
+                int end = index + sentinel.length();
+                boolean digitBefore = index > 0 && (Character.isDigit(source.charAt(index - 1)) || source.charAt(index - 1) == '.');
+                boolean digitAfter = end < source.length() && (Character.isDigit(source.charAt(end)) || source.charAt(end) == '.');
+                if (!digitBefore && !digitAfter) {
+                    break;
+                }
+                index = source.indexOf(sentinel, index + 1);
+            }
+            return index;
+        }
+
+        String bindSource(ParameterizedSql sql) {
+            StringBuilder source = new StringBuilder();
+            for (int i = 0; i < segments.length; i++) {
+                source.append(segments[i]);
+                if (i < slots.length) {
+                    Literal literal = sql.getLiterals().get(slots[i]);
+                    source.append(literal.isString() ? escapeJson(literal.getValue()) : literal.getValue());
+                }
+            }
+            return source.toString();
+        }
+    }
+}
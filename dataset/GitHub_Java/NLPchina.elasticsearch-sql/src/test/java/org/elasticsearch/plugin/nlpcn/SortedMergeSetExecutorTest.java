@@ -0,0 +1,146 @@
+package org.elasticsearch.plugin.nlpcn;
+
+import org.durid.sql.ast.statement.SQLUnionOperator;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Key ordering and merging of the {@link SortedMergeSetExecutor}, the ordering has to agree with the order
+ * elasticsearch sorted the hits in.
+ */
+public class SortedMergeSetExecutorTest {
+
+    @Test
+    public void missingValuesComeFirst() {
+        Assert.assertTrue(SortedMergeSetExecutor.compareKeys(new Object[]{null, "a"}, new Object[]{"a", null}) < 0);
+        Assert.assertEquals(0, SortedMergeSetExecutor.compareKeys(new Object[]{null, "a"}, new Object[]{null, "a"}));
+    }
+
+    @Test
+    public void numbersCompareByValueAcrossTypes() {
+        Assert.assertTrue(SortedMergeSetExecutor.compareValues(2L, 10L) < 0);
+        Assert.assertEquals(0, SortedMergeSetExecutor.compareValues(3, 3L));
+        Assert.assertTrue(SortedMergeSetExecutor.compareValues(3L, 3.5d) < 0);
+    }
+
+    @Test
+    public void stringsCompareLikeUtf8Bytes() {
+        // U+FFFD sorts after the surrogate pair of U+1F600 in utf-16, but before it in utf-8
+        Assert.assertTrue("\uFFFD".compareTo("\uD83D\uDE00") > 0);
+        Assert.assertTrue(SortedMergeSetExecutor.compareValues("\uFFFD", "\uD83D\uDE00") < 0);
+        Assert.assertTrue(SortedMergeSetExecutor.compareValues("ab", "abc") < 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void differentTypesAreRejected() {
+        SortedMergeSetExecutor.compareValues("1", 1L);
+    }
+
+    @Test
+    public void minusKeepsTheKeysMissingFromTheSecondTable() throws IOException {
+        List<Map<String, Object>> rows = merge(SQLUnionOperator.MINUS,
+                cursor(hit(1, "letter", "a"), hit(2, "letter", "b"), hit(3, "letter", "b"), hit(4, "letter", "c")),
+                cursor(hit(5, "letter", "b"), hit(6, "letter", "d")));
+        Assert.assertEquals(Arrays.asList(row("a"), row("c")), rows);
+    }
+
+    @Test
+    public void intersectKeepsEveryCommonKeyOnce() throws IOException {
+        List<Map<String, Object>> rows = merge(SQLUnionOperator.INTERSECT,
+                cursor(hit(1, "letter", "a"), hit(2, "letter", "b"), hit(3, "letter", "b"), hit(4, "letter", "c")),
+                cursor(hit(5, "letter", "b"), hit(6, "letter", "b"), hit(7, "letter", "d")));
+        Assert.assertEquals(Arrays.asList(row("b")), rows);
+    }
+
+    @Test
+    public void hitsWithoutAnyComparedFieldAreSkipped() throws IOException {
+        List<Map<String, Object>> rows = merge(SQLUnionOperator.MINUS,
+                pages(new SearchHit[]{hit(1, "letter", null)}, new SearchHit[]{hit(2, "letter", "a")}),
+                cursor());
+        Assert.assertEquals(Arrays.asList(row("a")), rows);
+    }
+
+    @Test
+    public void missingNumbersAreEqualOnLongAndDoubleFields() throws IOException {
+        // elasticsearch sorts a missing long as Long.MIN_VALUE and a missing double as -Infinity
+        SearchHit longHit = hit(1, new String[]{"letter", "score"}, new Object[]{"a", null}, new Object[]{"a", Long.MIN_VALUE});
+        SearchHit doubleHit = hit(2, new String[]{"letter", "score"}, new Object[]{"a", null}, new Object[]{"a", Double.NEGATIVE_INFINITY});
+
+        Assert.assertEquals(1, merge(SQLUnionOperator.INTERSECT, cursor(longHit), cursor(doubleHit), "letter", "score").size());
+        Assert.assertEquals(0, merge(SQLUnionOperator.MINUS, cursor(longHit), cursor(doubleHit), "letter", "score").size());
+        Assert.assertEquals(0, merge(SQLUnionOperator.MINUS, cursor(doubleHit), cursor(longHit), "letter", "score").size());
+    }
+
+    private static List<Map<String, Object>> merge(SQLUnionOperator relation, SearchHit[][] first, SearchHit[][] second, String... fields) throws IOException {
+        if (fields.length == 0) fields = new String[]{"letter"};
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        SortedMergeSetExecutor.merge(relation, new PagedCursor(fields, first), new PagedCursor(fields, second), fields,
+                new ElasticJoinExecutor.JoinedHitsCollector() {
+                    @Override
+                    public void collect(String id, String type, Map<String, Object> source) {
+                        rows.add(source);
+                    }
+                });
+        return rows;
+    }
+
+    private static SearchHit[][] cursor(SearchHit... hits) {
+        return new SearchHit[][]{hits};
+    }
+
+    private static SearchHit[][] pages(SearchHit[]... pages) {
+        return pages;
+    }
+
+    private static Map<String, Object> row(String letter) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("letter", letter);
+        return row;
+    }
+
+    private static SearchHit hit(int docId, String field, Object value) throws IOException {
+        return hit(docId, new String[]{field}, new Object[]{value}, new Object[]{value});
+    }
+
+    private static SearchHit hit(int docId, String[] fields, Object[] values, Object[] sortValues) throws IOException {
+        Map<String, Object> source = new LinkedHashMap<>();
+        DocValueFormat[] formats = new DocValueFormat[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            if (values[i] != null) source.put(fields[i], values[i]);
+            formats[i] = DocValueFormat.RAW;
+        }
+        SearchHit hit = new SearchHit(docId, String.valueOf(docId), new Text("systems"), new HashMap<String, DocumentField>(), null);
+        hit.sourceRef(BytesReference.bytes(XContentFactory.jsonBuilder().map(source)));
+        hit.sortValues(sortValues, formats);
+        return hit;
+    }
+
+    private static class PagedCursor extends SortedMergeSetExecutor.SortedHitsCursor {
+        private final SearchHit[][] pages;
+        private int page;
+
+        PagedCursor(String[] sortFields, SearchHit[][] pages) {
+            super(sortFields);
+            this.pages = pages;
+        }
+
+        @Override
+        protected SearchHit[] nextPage() {
+            return this.page < this.pages.length ? this.pages[this.page++] : new SearchHit[0];
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.nlpcn.es4sql;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.StringText;
+import org.elasticsearch.plugin.nlpcn.executors.CSVStreamWriter;
+import org.elasticsearch.plugin.nlpcn.executors.SizeLimitedOutputStream;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CSVStreamWriterTests {
+
+    @Test
+    public void headersContainFieldsOfLaterChunks() throws IOException {
+        SearchHit[] firstChunk = {hit("{\"name\":\"rex\",\"age\":2}")};
+        SearchHit[] secondChunk = {hit("{\"name\":\"snoopy\",\"holdersName\":\"Hattie\"}")};
+
+        StringWriter output = new StringWriter();
+        CSVStreamWriter csv = new CSVStreamWriter(output, ",", "\n", false);
+        csv.addHeaders(firstChunk);
+        csv.addHeaders(secondChunk);
+        csv.writeHeaders();
+        csv.writeHits(firstChunk);
+        csv.writeHits(secondChunk);
+        csv.flush();
+
+        List<String> lines = Arrays.asList(output.toString().split("\n"));
+        Assert.assertEquals(3, lines.size());
+        List<String> headers = Arrays.asList(lines.get(0).split(","));
+        Assert.assertEquals(3, headers.size());
+        Assert.assertTrue("holdersName should be on headers", headers.contains("holdersName"));
+        Assert.assertTrue("age should be on headers", headers.contains("age"));
+
+        String[] secondLine = lines.get(2).split(",", -1);
+        Assert.assertEquals(3, secondLine.length);
+        Assert.assertEquals("Hattie", secondLine[headers.indexOf("holdersName")]);
+        Assert.assertEquals("", secondLine[headers.indexOf("age")]);
+    }
+
+    @Test
+    public void flatHeadersContainNestedFieldsOfLaterChunks() throws IOException {
+        SearchHit[] firstChunk = {hit("{\"name\":{\"firstname\":\"Daenerys\"}}")};
+        SearchHit[] secondChunk = {hit("{\"name\":{\"firstname\":\"Eddard\",\"lastname\":\"Stark\"}}")};
+
+        StringWriter output = new StringWriter();
+        CSVStreamWriter csv = new CSVStreamWriter(output, ",", "\n", true);
+        csv.addHeaders(firstChunk);
+        csv.addHeaders(secondChunk);
+        csv.writeHeaders();
+        csv.writeHits(firstChunk);
+        csv.writeHits(secondChunk);
+        csv.flush();
+
+        List<String> lines = Arrays.asList(output.toString().split("\n"));
+        List<String> headers = Arrays.asList(lines.get(0).split(","));
+        Assert.assertEquals(2, headers.size());
+        Assert.assertTrue("name.lastname should be on headers", headers.contains("name.lastname"));
+        Assert.assertEquals("Stark", lines.get(2).split(",", -1)[headers.indexOf("name.lastname")]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void hitsCantBeWrittenBeforeHeaders() throws IOException {
+        new CSVStreamWriter(new StringWriter(), ",", "\n", false).writeHits(new SearchHit[]{hit("{\"name\":\"rex\"}")});
+    }
+
+    @Test
+    public void outputCantExceedTheLimit() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CSVStreamWriter csv = new CSVStreamWriter(new OutputStreamWriter(new SizeLimitedOutputStream(output, 20), StandardCharsets.UTF_8), ",", "\n", false);
+        SearchHit[] hits = {hit("{\"name\":\"rex\"}"), hit("{\"name\":\"snoopy\"}"), hit("{\"name\":\"scooby\"}")};
+        csv.addHeaders(hits);
+        csv.writeHeaders();
+        try {
+            csv.writeHits(hits);
+            csv.flush();
+            Assert.fail("the limit should have been exceeded");
+        } catch (SizeLimitedOutputStream.LimitExceededException e) {
+            Assert.assertEquals(20, e.getMaxBytes());
+        }
+        Assert.assertTrue(output.size() <= 20);
+    }
+
+    private static SearchHit hit(String source) {
+        InternalSearchHit hit = new InternalSearchHit(0, "1", new StringText("dog"), Collections.<String, SearchHitField>emptyMap());
+        hit.sourceRef(new BytesArray(source));
+        return hit;
+    }
+
+}
@@ -1,13 +1,25 @@
 package org.nlpcn.es4sql;
 
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.plugin.nlpcn.GraceHashJoinElasticExecutor;
+import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.junit.Assert;
 import org.junit.Test;
 import org.nlpcn.es4sql.exception.SqlParseException;
 import org.nlpcn.es4sql.query.SqlElasticRequestBuilder;
 import org.nlpcn.es4sql.query.SqlElasticSearchRequestBuilder;
+import org.nlpcn.es4sql.query.join.HashJoinElasticRequestBuilder;
 
+import java.io.IOException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.nlpcn.es4sql.TestsConstants.TEST_INDEX;
 
 /**
  * Created by Eliran on 22/8/2015.
@@ -27,4 +39,98 @@ public class JoinTests {
         SqlElasticRequestBuilder explain = searchDao.explain(query);
     }
 
+    @Test
+    public void hashJoinWithOrDoesNotDuplicateRows() throws SqlParseException, SQLFeatureNotSupportedException, IOException {
+        String query = String.format("SELECT a.firstname, d.name FROM %s/account a " +
+                "JOIN %s/dog d on d.holdersName = a.firstname LIMIT 2000", TEST_INDEX, TEST_INDEX);
+        // both comparisons match the same pairs, the limit is above the number of accounts
+        String orQuery = String.format("SELECT a.firstname, d.name FROM %s/account a " +
+                "JOIN %s/dog d on d.holdersName = a.firstname OR d.holdersName = a.firstname LIMIT 2000", TEST_INDEX, TEST_INDEX);
+
+        List<String> ids = hashJoinAndGetIds(query, GraceHashJoinElasticExecutor.DEFAULT_MEMORY_BUDGET);
+        Assert.assertFalse(ids.isEmpty());
+        Assert.assertEquals(ids, hashJoinAndGetIds(orQuery, GraceHashJoinElasticExecutor.DEFAULT_MEMORY_BUDGET));
+        Assert.assertEquals(ids, hashJoinAndGetIds(orQuery, 1));
+    }
+
+    @Test
+    public void hashLeftJoinWithOrAddsOneRowPerUnmatchedHit() throws SqlParseException, SQLFeatureNotSupportedException, IOException {
+        String query = String.format("SELECT a.firstname, d.name FROM %s/account a " +
+                "LEFT JOIN %s/dog d on d.holdersName = a.firstname LIMIT 2000", TEST_INDEX, TEST_INDEX);
+        String orQuery = String.format("SELECT a.firstname, d.name FROM %s/account a " +
+                "LEFT JOIN %s/dog d on d.holdersName = a.firstname OR d.name = a.lastname LIMIT 2000", TEST_INDEX, TEST_INDEX);
+
+        List<String> ids = hashJoinAndGetIds(orQuery, GraceHashJoinElasticExecutor.DEFAULT_MEMORY_BUDGET);
+        Set<String> firstTableIds = new HashSet<>();
+        for (String id : ids) {
+            firstTableIds.add(id.substring(0, id.indexOf('|')));
+        }
+        // every account shows up, the unmatched ones exactly once
+        Assert.assertEquals(firstTableIds.size(), ids.size() - matchedRows(ids) + matchedFirstTableIds(ids).size());
+        Assert.assertEquals(new HashSet<>(ids).size(), ids.size());
+        Assert.assertEquals(ids, hashJoinAndGetIds(orQuery, 1));
+
+        // the OR can only add matches
+        List<String> singleComparisonIds = hashJoinAndGetIds(query, GraceHashJoinElasticExecutor.DEFAULT_MEMORY_BUDGET);
+        Assert.assertEquals(firstTableIds.size(), singleComparisonIds.size() - matchedRows(singleComparisonIds) + matchedFirstTableIds(singleComparisonIds).size());
+        Assert.assertTrue(matchedRows(ids) >= matchedRows(singleComparisonIds));
+    }
+
+    @Test
+    public void hashJoinWithTermsFilterHasSameResults() throws SqlParseException, SQLFeatureNotSupportedException, IOException {
+        String query = String.format("SELECT a.firstname, d.name FROM %s/account a " +
+                "JOIN %s/dog d on d.holdersName = a.firstname OR d.name = a.lastname LIMIT 2000", TEST_INDEX, TEST_INDEX);
+        String hintedQuery = String.format("SELECT /*! HASH_WITH_TERMS_FILTER*/ a.firstname, d.name FROM %s/account a " +
+                "JOIN %s/dog d on d.holdersName = a.firstname OR d.name = a.lastname LIMIT 2000", TEST_INDEX, TEST_INDEX);
+
+        Assert.assertEquals(hashJoinAndGetIds(query, GraceHashJoinElasticExecutor.DEFAULT_MEMORY_BUDGET),
+                hashJoinAndGetIds(hintedQuery, GraceHashJoinElasticExecutor.DEFAULT_MEMORY_BUDGET));
+    }
+
+    @Test
+    public void hashJoinReadsNoMoreThanTheTablesLimit() throws SqlParseException, SQLFeatureNotSupportedException, IOException {
+        String query = String.format("SELECT /*! JOIN_TABLES_LIMIT(3,null)*/ a.firstname, d.name FROM %s/account a " +
+                "LEFT JOIN %s/dog d on d.holdersName = a.firstname LIMIT 2000", TEST_INDEX, TEST_INDEX);
+
+        Set<String> firstTableIds = new HashSet<>();
+        for (String id : hashJoinAndGetIds(query, GraceHashJoinElasticExecutor.DEFAULT_MEMORY_BUDGET)) {
+            firstTableIds.add(id.substring(0, id.indexOf('|')));
+        }
+        Assert.assertEquals(3, firstTableIds.size());
+    }
+
+    private List<String> hashJoinAndGetIds(String query, long memoryBudget) throws SqlParseException, SQLFeatureNotSupportedException, IOException {
+        SearchDao searchDao = MainTestSuite.getSearchDao();
+        SqlElasticRequestBuilder explain = searchDao.explain(query);
+        GraceHashJoinElasticExecutor executor = new GraceHashJoinElasticExecutor(MainTestSuite.getClient(), (HashJoinElasticRequestBuilder) explain, memoryBudget);
+        executor.run();
+        List<String> ids = new ArrayList<>();
+        for (SearchHit hit : executor.getHits().getHits()) {
+            ids.add(hit.getId());
+        }
+        // partitioned joins produce the rows in a different order
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static int matchedRows(List<String> ids) {
+        int matched = 0;
+        for (String id : ids) {
+            if (!id.endsWith("|0")) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static Set<String> matchedFirstTableIds(List<String> ids) {
+        Set<String> firstTableIds = new HashSet<>();
+        for (String id : ids) {
+            if (!id.endsWith("|0")) {
+                firstTableIds.add(id.substring(0, id.indexOf('|')));
+            }
+        }
+        return firstTableIds;
+    }
+
 }
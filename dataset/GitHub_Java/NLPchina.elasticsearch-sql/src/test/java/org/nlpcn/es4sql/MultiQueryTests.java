@@ -26,6 +26,7 @@ public class MultiQueryTests {
 
     private static String MINUS_SCROLL_DEFAULT_HINT = " /*! MINUS_SCROLL_FETCH_AND_RESULT_LIMITS(1000,50,100) */ ";
     private static String MINUS_TERMS_OPTIMIZATION_HINT = " /*! MINUS_USE_TERMS_OPTIMIZATION(true)*/ ";
+    private static String SORTED_MERGE_HINT = " /*! SORTED_MERGE(2)*/ ";
     @Test
     public void unionAllSameRequestOnlyOneRecordTwice() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
         String query = String.format("SELECT firstname FROM %s/account WHERE firstname = 'Amber' limit 1 union all SELECT firstname FROM %s/account WHERE firstname = 'Amber'",TEST_INDEX_ACCOUNT,TEST_INDEX_ACCOUNT);
@@ -80,6 +81,11 @@ public class MultiQueryTests {
         innerMinusAMinusANoAlias(MINUS_SCROLL_DEFAULT_HINT);
     }
 
+    @Test
+    public void minusAMinusANoAliasWithSortedMerge() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
+        innerMinusAMinusANoAlias(SORTED_MERGE_HINT);
+    }
+
     @Test
     public void minusAMinusANoAliasWithScrollingAndTerms() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
         innerMinusAMinusANoAlias(MINUS_SCROLL_DEFAULT_HINT + MINUS_TERMS_OPTIMIZATION_HINT);
@@ -109,6 +115,10 @@ public class MultiQueryTests {
         innerMinus_AMinusBNoAlias(MINUS_SCROLL_DEFAULT_HINT + MINUS_TERMS_OPTIMIZATION_HINT);
     }
 
+    @Test
+    public void minusAMinusBNoAliasWithSortedMerge() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
+        innerMinus_AMinusBNoAlias(SORTED_MERGE_HINT);
+    }
 
     private void innerMinus_AMinusBNoAlias(String hint) throws SqlParseException, SQLFeatureNotSupportedException, IOException {
         String query = String.format("SELECT "+hint+" pk FROM %s/systems WHERE system_name = 'A' " +
@@ -134,6 +144,10 @@ public class MultiQueryTests {
         innerMinus_CMinusDTwoFieldsNoAlias(MINUS_SCROLL_DEFAULT_HINT);
     }
 
+    @Test
+    public void minusCMinusDTwoFieldsNoAliasWithSortedMerge() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
+        innerMinus_CMinusDTwoFieldsNoAlias(SORTED_MERGE_HINT);
+    }
 
     private void innerMinus_CMinusDTwoFieldsNoAlias(String hint) throws SqlParseException, SQLFeatureNotSupportedException, IOException {
         String query = String.format("SELECT " + hint + " pk , letter  FROM %s/systems WHERE system_name = 'C' " +
@@ -223,6 +237,10 @@ public class MultiQueryTests {
         innerMinus_CMinusTNoExistsOneField(MINUS_SCROLL_DEFAULT_HINT + MINUS_TERMS_OPTIMIZATION_HINT);
     }
 
+    @Test
+    public void minusCMinusTNoExistsOneFieldWithSortedMerge() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
+        innerMinus_CMinusTNoExistsOneField(SORTED_MERGE_HINT);
+    }
 
     private void innerMinus_CMinusTNoExistsOneField(String hint) throws SqlParseException, SQLFeatureNotSupportedException, IOException {
         String query = String.format("SELECT "+hint+" letter FROM %s/systems WHERE system_name = 'C' " +
@@ -247,6 +265,10 @@ public class MultiQueryTests {
         innerMinus_TMinusCNoExistsFirstQuery(MINUS_SCROLL_DEFAULT_HINT + MINUS_TERMS_OPTIMIZATION_HINT);
     }
 
+    @Test
+    public void minusTMinusCNoExistsFirstQueryWithSortedMerge() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
+        innerMinus_TMinusCNoExistsFirstQuery(SORTED_MERGE_HINT);
+    }
 
     private void innerMinus_TMinusCNoExistsFirstQuery(String hint) throws SqlParseException, SQLFeatureNotSupportedException, IOException {
         String query = String.format("SELECT "+hint+" letter FROM %s/systems WHERE system_name = 'T' " +
@@ -266,6 +288,36 @@ public class MultiQueryTests {
         Assert.assertTrue(searchHits[0].getSourceAsMap().get("firstname").toString().contains("Jaime"));
     }
 
+    @Test
+    public void intersectWithSortedMergeReturnsTheSameRows() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
+        String query = "SELECT %s pk FROM %s/systems WHERE system_name = 'A' " +
+                "intersect " +
+                "SELECT pk FROM %s/systems WHERE system_name = 'B' ";
+        Set<Object> pks = pksOf(executeAndGetHits(String.format(query, "", TEST_INDEX_SYSTEM, TEST_INDEX_SYSTEM)));
+        SearchHit[] sortedMergeHits = executeAndGetHits(String.format(query, SORTED_MERGE_HINT, TEST_INDEX_SYSTEM, TEST_INDEX_SYSTEM));
+        Assert.assertEquals("every row should be returned once", pks.size(), sortedMergeHits.length);
+        Assert.assertEquals(pks, pksOf(sortedMergeHits));
+        Assert.assertFalse("pk 3 is only on the first table", pks.contains(3));
+    }
+
+    @Test
+    public void unionWithSortedMergeKeepsDuplicates() throws SQLFeatureNotSupportedException, IOException, SqlParseException {
+        String query = String.format("SELECT " + SORTED_MERGE_HINT + " firstname FROM %s/account WHERE firstname = 'Amber' limit 1 union SELECT firstname FROM %s/account WHERE firstname = 'Amber'", TEST_INDEX_ACCOUNT, TEST_INDEX_ACCOUNT);
+        SearchHit[] searchHits = executeAndGetHits(query);
+        Assert.assertEquals(2, searchHits.length);
+        for (SearchHit hit : searchHits) {
+            Assert.assertEquals("Amber", hit.getSourceAsMap().get("firstname"));
+        }
+    }
+
+    private Set<Object> pksOf(SearchHit[] searchHits) {
+        Set<Object> pks = new HashSet<>();
+        for (SearchHit hit : searchHits) {
+            pks.add(hit.getSourceAsMap().get("pk"));
+        }
+        return pks;
+    }
+
     private SearchHit[] executeAndGetHits(String query) throws SqlParseException, SQLFeatureNotSupportedException, IOException {
         SearchDao searchDao = MainTestSuite.getSearchDao();
         SqlElasticRequestBuilder explain = searchDao.explain(query).explain();
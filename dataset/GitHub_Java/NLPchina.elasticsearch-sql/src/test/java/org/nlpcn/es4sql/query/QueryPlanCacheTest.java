@@ -0,0 +1,67 @@
+package org.nlpcn.es4sql.query;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Parameterization and template binding of the {@link QueryPlanCache}, no cluster needed.
+ */
+public class QueryPlanCacheTest {
+
+    @Test
+    public void queriesWhichOnlyDifferInLiteralsHaveTheSameKey() {
+        QueryPlanCache.ParameterizedSql first = QueryPlanCache.parameterize("SELECT name FROM idx/dog WHERE name = 'rex' AND age > 2 LIMIT 10");
+        QueryPlanCache.ParameterizedSql second = QueryPlanCache.parameterize("SELECT name  FROM idx/dog WHERE name = 'snoopy' AND age > 4.5 LIMIT 20");
+
+        Assert.assertEquals("SELECT name FROM idx/dog WHERE name = ?s AND age > ?n LIMIT ?n", first.getKey());
+        Assert.assertEquals(first.getKey(), second.getKey());
+        Assert.assertEquals(3, second.getLiterals().size());
+        Assert.assertEquals("snoopy", second.getLiterals().get(0).getValue());
+        Assert.assertEquals("4.5", second.getLiterals().get(1).getValue());
+    }
+
+    @Test
+    public void functionArgumentsAndLikePatternsStayInTheKey() {
+        QueryPlanCache.ParameterizedSql sql = QueryPlanCache.parameterize("SELECT * FROM idx WHERE nested(comments, 'x') AND name LIKE 'sn%' AND a IN (1, 2)");
+
+        Assert.assertEquals("SELECT * FROM idx WHERE nested(comments, 'x') AND name LIKE 'sn%' AND a IN (?n, ?n)", sql.getKey());
+    }
+
+    @Test
+    public void jdbcParametersAreInlinedAndParameterized() {
+        QueryPlanCache.ParameterizedSql sql = QueryPlanCache.parameterize("SELECT * FROM idx WHERE name = ? AND age = ?", Arrays.<Object>asList("it's", 3));
+
+        Assert.assertEquals("SELECT * FROM idx WHERE name = ?s AND age = ?n", sql.getKey());
+        Assert.assertEquals("SELECT * FROM idx WHERE name = 'it''s' AND age = 3", sql.getSql());
+    }
+
+    @Test
+    public void questionMarksWithoutParametersAreKept() {
+        QueryPlanCache.ParameterizedSql sql = QueryPlanCache.parameterize("SELECT * FROM idx WHERE q = query(why?) AND age = 3");
+
+        Assert.assertEquals("SELECT * FROM idx WHERE q = query(why?) AND age = ?n", sql.getKey());
+        Assert.assertEquals("SELECT * FROM idx WHERE q = query(why?) AND age = 3", sql.getSql());
+    }
+
+    @Test
+    public void literalsAreBoundIntoTheTemplateSource() {
+        QueryPlanCache.ParameterizedSql template = QueryPlanCache.parameterize("SELECT * FROM idx WHERE name = 'rex' AND age > 2");
+        String source = "{\"query\":{\"bool\":{\"must\":[{\"term\":{\"name\":\"" + QueryPlanCache.stringSentinel(0) + "\"}},"
+                + "{\"range\":{\"age\":{\"gt\":" + QueryPlanCache.numberSentinel(1) + "}}}]}}}";
+        QueryPlanCache.Plan plan = QueryPlanCache.Plan.fromSource(template, source, new SearchRequest("idx"), false);
+
+        QueryPlanCache.ParameterizedSql sql = QueryPlanCache.parameterize("SELECT * FROM idx WHERE name = 'say \"hi\"' AND age > 7");
+        Assert.assertEquals("{\"query\":{\"bool\":{\"must\":[{\"term\":{\"name\":\"say \\\"hi\\\"\"}},{\"range\":{\"age\":{\"gt\":7}}}]}}}",
+                plan.bindSource(sql));
+    }
+
+    @Test
+    public void lostSentinelMakesTheSqlNotCacheable() {
+        QueryPlanCache.ParameterizedSql template = QueryPlanCache.parameterize("SELECT * FROM idx WHERE age > 2");
+
+        Assert.assertNull(QueryPlanCache.Plan.fromSource(template, "{\"range\":{\"age\":{\"gt\":2.071723417E9}}}", null, false));
+    }
+}
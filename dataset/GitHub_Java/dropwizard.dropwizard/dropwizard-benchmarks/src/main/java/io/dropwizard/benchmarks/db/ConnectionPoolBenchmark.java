@@ -0,0 +1,78 @@
+package io.dropwizard.benchmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.db.ConcurrentBagDataSourceFactory;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Tomcat pool with the concurrent bag pool under contention: more threads than connections borrow
+ * a connection, run a prepared query against an in-memory H2 database and return the connection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(16)
+public class ConnectionPoolBenchmark {
+
+    @Param({"tomcat", "concurrent-bag"})
+    public String pool;
+
+    private ManagedDataSource dataSource;
+
+    @Setup
+    public void setUp() throws Exception {
+        final DataSourceFactory factory = "tomcat".equals(pool)
+                ? new DataSourceFactory() : new ConcurrentBagDataSourceFactory();
+        factory.setDriverClass("org.h2.Driver");
+        factory.setUrl("jdbc:h2:mem:ConnectionPoolBenchmark;DB_CLOSE_DELAY=-1");
+        factory.setUser("sa");
+        factory.setInitialSize(8);
+        factory.setMinSize(8);
+        factory.setMaxSize(8);
+        dataSource = factory.build(new MetricRegistry(), pool);
+        dataSource.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dataSource.stop();
+    }
+
+    @Benchmark
+    public int borrowAndQuery() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1");
+             ResultSet set = statement.executeQuery()) {
+            set.next();
+            return set.getInt(1);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ConnectionPoolBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,178 @@
+package io.dropwizard.benchmarks.http;
+
+import com.google.common.io.BaseEncoding;
+import io.dropwizard.Configuration;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots {@link HttpBenchmarkApplication} in-process and drives it over HTTP from the benchmark threads, so a
+ * request passes the whole stack: Jetty, gzip, request logging, the auth filter, Jersey, bean validation and
+ * Jackson.
+ * <p>
+ * Every benchmark is measured in two modes: throughput, and sampled time, which reports latency percentiles.
+ * The clients use keep-alive connections and don't decompress responses, so the measured time is mostly spent
+ * in the server.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(HttpBenchmark.THREADS)
+public class HttpBenchmark {
+    static final int THREADS = 8;
+
+    private static final byte[] VALID_ITEM = "{\"name\":\"cheese\",\"quantity\":3}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INVALID_ITEM = "{\"name\":\"\",\"quantity\":-1}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private Path directory;
+    private DropwizardTestSupport<Configuration> app;
+    private String baseUrl;
+    private String authorization;
+
+    @Setup
+    public void setUp() throws IOException {
+        // keep a connection per benchmark thread alive
+        System.setProperty("http.maxConnections", Integer.toString(THREADS));
+
+        directory = Files.createTempDirectory("http-benchmark");
+        final Path config = directory.resolve("config.yml");
+        Files.write(config, ("server:\n"
+                + "  applicationConnectors:\n"
+                + "    - type: http\n"
+                + "      port: 0\n"
+                + "  adminConnectors:\n"
+                + "    - type: http\n"
+                + "      port: 0\n"
+                + "  gzip:\n"
+                + "    enabled: " + gzip + "\n"
+                + "  requestLog:\n"
+                + "    appenders:\n"
+                + "      - type: file\n"
+                + "        currentLogFilename: " + directory.resolve("requests.log") + "\n"
+                + "        archive: false\n"
+                + "logging:\n"
+                + "  level: WARN\n").getBytes(StandardCharsets.UTF_8));
+
+        app = new DropwizardTestSupport<>(HttpBenchmarkApplication.class, config.toString());
+        app.before();
+
+        baseUrl = "http://localhost:" + app.getLocalPort() + "/benchmark";
+        authorization = "Basic " + BaseEncoding.base64().encode((HttpBenchmarkApplication.USERNAME + ":"
+                + HttpBenchmarkApplication.PASSWORD).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        app.after();
+        Files.deleteIfExists(directory.resolve("requests.log"));
+        Files.deleteIfExists(directory.resolve("config.yml"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long getJson() throws IOException {
+        return request(open("/json"), 200);
+    }
+
+    @Benchmark
+    public long postValidated() throws IOException {
+        return request(post(open("/validated"), VALID_ITEM), 200);
+    }
+
+    @Benchmark
+    public long postInvalid() throws IOException {
+        return request(post(open("/validated"), INVALID_ITEM), 422);
+    }
+
+    @Benchmark
+    public long getSecured() throws IOException {
+        final HttpURLConnection connection = open("/secured");
+        connection.setRequestProperty("Authorization", authorization);
+        return request(connection, 200);
+    }
+
+    @Benchmark
+    public long getSecuredUnauthorized() throws IOException {
+        return request(open("/secured"), 401);
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+        if (gzip) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        return connection;
+    }
+
+    private static HttpURLConnection post(HttpURLConnection connection, byte[] body) throws IOException {
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(body);
+        }
+        return connection;
+    }
+
+    /**
+     * Reads the whole response, so the connection can be reused.
+     *
+     * @return the size of the response body
+     */
+    private static long request(HttpURLConnection connection, int expectedStatus) throws IOException {
+        final int status = connection.getResponseCode();
+        try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            final long size = input == null ? 0 : exhaust(input);
+            if (status != expectedStatus) {
+                throw new IllegalStateException("Expected status " + expectedStatus + " but was " + status);
+            }
+            return size;
+        }
+    }
+
+    private static long exhaust(InputStream input) throws IOException {
+        final byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(HttpBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .build())
+                .run();
+    }
+}
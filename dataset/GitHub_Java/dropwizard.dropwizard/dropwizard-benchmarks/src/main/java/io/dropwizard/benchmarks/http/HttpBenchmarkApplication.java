@@ -0,0 +1,166 @@
+package io.dropwizard.benchmarks.http;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import io.dropwizard.Application;
+import io.dropwizard.Configuration;
+import io.dropwizard.auth.AuthDynamicFeature;
+import io.dropwizard.auth.AuthFilter;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import io.dropwizard.auth.basic.BasicCredentialAuthFilter;
+import io.dropwizard.auth.basic.BasicCredentials;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.annotation.security.RolesAllowed;
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.SecurityContext;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The application {@link HttpBenchmark} runs in-process. It has a resource per part of the stack under test:
+ * JSON serialization, bean validation and basic authentication. Gzip and request logging are configured by the
+ * benchmark and apply to all of them.
+ */
+public class HttpBenchmarkApplication extends Application<Configuration> {
+    static final String USERNAME = "benchmark";
+    static final String PASSWORD = "secret";
+
+    @Override
+    public void initialize(Bootstrap<Configuration> bootstrap) {
+    }
+
+    @Override
+    public void run(Configuration configuration, Environment environment) {
+        environment.jersey().register(new BenchmarkResource());
+        environment.jersey().register(new AuthDynamicFeature(
+                new BasicCredentialAuthFilter.Builder<PrincipalImpl, BenchmarkAuthenticator>()
+                        .setAuthenticator(new BenchmarkAuthenticator())
+                        .setSecurityContextFunction(new BenchmarkSecurityContextFunction())
+                        .setRealm("benchmark")
+                        .buildAuthFilter()));
+        environment.jersey().register(RolesAllowedDynamicFeature.class);
+    }
+
+    @Path("/benchmark")
+    @Produces(MediaType.APPLICATION_JSON)
+    public static class BenchmarkResource {
+        /**
+         * Large enough to pass the minimum entity size of the gzip handler.
+         */
+        private static final int ITEMS = 32;
+
+        @GET
+        @Path("/json")
+        public List<Item> items() {
+            final List<Item> items = new ArrayList<>(ITEMS);
+            for (int i = 0; i < ITEMS; i++) {
+                items.add(new Item("item-" + i, i));
+            }
+            return items;
+        }
+
+        @POST
+        @Path("/validated")
+        @Consumes(MediaType.APPLICATION_JSON)
+        public Item validated(@NotNull @Valid Item item) {
+            return item;
+        }
+
+        @GET
+        @Path("/secured")
+        @RolesAllowed("user")
+        public Item secured(@Context SecurityContext context) {
+            return new Item(context.getUserPrincipal().getName(), 1);
+        }
+    }
+
+    public static class Item {
+        @NotEmpty
+        private String name;
+
+        @Min(0)
+        private int quantity;
+
+        public Item() {
+        }
+
+        public Item(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+
+        @JsonProperty
+        public String getName() {
+            return name;
+        }
+
+        @JsonProperty
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @JsonProperty
+        public int getQuantity() {
+            return quantity;
+        }
+
+        @JsonProperty
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    private static class BenchmarkAuthenticator implements Authenticator<BasicCredentials, PrincipalImpl> {
+        @Override
+        public Optional<PrincipalImpl> authenticate(BasicCredentials credentials) {
+            if (USERNAME.equals(credentials.getUsername()) && PASSWORD.equals(credentials.getPassword())) {
+                return Optional.of(new PrincipalImpl(credentials.getUsername()));
+            }
+            return Optional.absent();
+        }
+    }
+
+    private static class BenchmarkSecurityContextFunction implements Function<AuthFilter.Tuple, SecurityContext> {
+        @Override
+        public SecurityContext apply(final AuthFilter.Tuple tuple) {
+            final boolean secure = tuple.getContainerRequestContext().getSecurityContext().isSecure();
+            return new SecurityContext() {
+                @Override
+                public Principal getUserPrincipal() {
+                    return tuple.getPrincipal();
+                }
+
+                @Override
+                public boolean isUserInRole(String role) {
+                    return "user".equals(role);
+                }
+
+                @Override
+                public boolean isSecure() {
+                    return secure;
+                }
+
+                @Override
+                public String getAuthenticationScheme() {
+                    return SecurityContext.BASIC_AUTH;
+                }
+            };
+        }
+    }
+}
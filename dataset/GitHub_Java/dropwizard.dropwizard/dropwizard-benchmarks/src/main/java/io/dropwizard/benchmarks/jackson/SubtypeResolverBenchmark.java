@@ -0,0 +1,117 @@
+package io.dropwizard.benchmarks.jackson;
+
+import io.dropwizard.jackson.Discoverable;
+import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Measures the cold start of subtype discovery, i.e. what an application pays for it before it can parse its
+ * configuration. Every measurement runs in a fresh JVM, so the service files are read for the first time.
+ * <p>
+ * The Dropwizard modules on the benchmark's classpath aren't indexed, so the resolver runs against a fixture
+ * classpath of {@link #ENTRIES} jars instead, each declaring an interface in its service files and recording them
+ * in an index like the {@link io.dropwizard.jackson.processor.SubtypeIndexProcessor} does. All jars list the same
+ * subtype, so the measurement is dominated by reading the resources rather than by class loading.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SubtypeResolverBenchmark {
+
+    static final int ENTRIES = 200;
+
+    @Param({"false", "true"})
+    public boolean useIndex;
+
+    private Path directory;
+    private URL[] classpath;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("subtype-resolver-benchmark");
+        classpath = new URL[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            final Path jar = directory.resolve("fixture-" + i + ".jar");
+            try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+                write(output, "META-INF/services/" + Discoverable.class.getName(), FixtureFactory.class.getName());
+                write(output, "META-INF/services/" + FixtureFactory.class.getName(), FixtureImpl.class.getName());
+                write(output, "META-INF/dropwizard/subtypes.idx",
+                    "@root " + Discoverable.class.getName() + "\n"
+                        + "@service " + Discoverable.class.getName() + " " + FixtureFactory.class.getName() + "\n"
+                        + "@service " + FixtureFactory.class.getName() + " " + FixtureImpl.class.getName());
+            }
+            classpath[i] = jar.toUri().toURL();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (int i = 0; i < ENTRIES; i++) {
+            Files.deleteIfExists(directory.resolve("fixture-" + i + ".jar"));
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public DiscoverableSubtypeResolver discoverSubtypes() throws IOException {
+        try (FixtureClassLoader classLoader = new FixtureClassLoader(classpath)) {
+            return new DiscoverableSubtypeResolver(Discoverable.class, useIndex, classLoader);
+        }
+    }
+
+    private static void write(JarOutputStream output, String name, String content) throws IOException {
+        output.putNextEntry(new JarEntry(name));
+        output.write((content + "\n").getBytes(StandardCharsets.UTF_8));
+        output.closeEntry();
+    }
+
+    /**
+     * Looks up resources in the fixture jars only, but loads the classes of the benchmark.
+     */
+    private static class FixtureClassLoader extends URLClassLoader {
+        FixtureClassLoader(URL[] urls) {
+            super(urls, null);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            return SubtypeResolverBenchmark.class.getClassLoader().loadClass(name);
+        }
+    }
+
+    public interface FixtureFactory extends Discoverable {
+    }
+
+    public static class FixtureImpl implements FixtureFactory {
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SubtypeResolverBenchmark.class.getSimpleName())
+                .forks(20)
+                .warmupIterations(0)
+                .measurementIterations(1)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,77 @@
+package io.dropwizard.benchmarks.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.LayoutBase;
+import io.dropwizard.logging.json.EventJsonLayoutBaseFactory;
+import io.dropwizard.util.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the map based JSON layout with the streaming one. Run with the GC profiler to see the
+ * allocation rate per event next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class JsonLayoutBenchmark {
+
+    @Param({"false", "true"})
+    public boolean streaming;
+
+    private LayoutBase<ILoggingEvent> layout;
+    private LoggingEvent event;
+
+    @Setup
+    public void setUp() {
+        final LoggerContext context = new LoggerContext();
+        final Logger logger = context.getLogger("com.example.user.service");
+
+        final EventJsonLayoutBaseFactory factory = new EventJsonLayoutBaseFactory();
+        factory.setStreaming(streaming);
+        layout = factory.build(context, TimeZone.getTimeZone("UTC"));
+        layout.start();
+
+        event = new LoggingEvent(Logger.class.getName(), logger, Level.INFO,
+            "User[{}] has been registered", null, new Object[]{18});
+        event.setMDCPropertyMap(Maps.of("userId", "18", "serviceId", "19", "orderId", "24"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        layout.stop();
+    }
+
+    @Benchmark
+    public String doLayout() {
+        return layout.doLayout(event);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(JsonLayoutBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .build())
+                .run();
+    }
+}
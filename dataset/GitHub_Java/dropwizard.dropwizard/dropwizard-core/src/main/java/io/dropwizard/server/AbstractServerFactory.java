@@ -19,6 +19,8 @@ import io.dropwizard.jetty.GzipFilterFactory;
 import io.dropwizard.jetty.MutableServletContextHandler;
 import io.dropwizard.jetty.NonblockingServletHolder;
 import io.dropwizard.jetty.RequestLogFactory;
+import io.dropwizard.jetty.VirtualThreadDispatchFilter;
+import io.dropwizard.jetty.VirtualThreads;
 import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
 import io.dropwizard.servlets.ThreadNameFilter;
 import io.dropwizard.util.Duration;
@@ -90,6 +92,24 @@ import java.util.regex.Pattern;
  *         <td>The amount of time a worker thread can be idle before being stopped.</td>
  *     </tr>
  *     <tr>
+ *         <td>{@code enableVirtualThreads}</td>
+ *         <td>false</td>
+ *         <td>
+ *             Whether Jersey resource methods run on virtual threads instead of the request thread pool.
+ *             The thread pool then only serves Jetty's own I/O work. <b>Requires Java 21 or later.</b>
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code tracePinnedVirtualThreads}</td>
+ *         <td>false</td>
+ *         <td>
+ *             Whether to print a stack trace whenever a virtual thread blocks while pinned to its carrier
+ *             thread, e.g. in a {@code synchronized} block. Only applies if virtual threads are enabled.
+ *             Pinning isn't reported as a metric; in production, record the {@code jdk.VirtualThreadPinned}
+ *             JFR event instead.
+ *         </td>
+ *     </tr>
+ *     <tr>
  *         <td>{@code nofileSoftLimit}</td>
  *         <td>(none)</td>
  *         <td>
@@ -181,6 +201,10 @@ public abstract class AbstractServerFactory implements ServerFactory {
     @MinDuration(1)
     private Duration idleThreadTimeout = Duration.minutes(1);
 
+    private boolean enableVirtualThreads = false;
+
+    private boolean tracePinnedVirtualThreads = false;
+
     @Min(1)
     private Integer nofileSoftLimit;
 
@@ -205,6 +229,12 @@ public abstract class AbstractServerFactory implements ServerFactory {
         return minThreads <= maxThreads;
     }
 
+    @JsonIgnore
+    @ValidationMethod(message = "must run on Java 21 or later to enable virtual threads")
+    public boolean isVirtualThreadsSupported() {
+        return !enableVirtualThreads || VirtualThreads.areSupported();
+    }
+
     @JsonProperty("requestLog")
     public RequestLogFactory getRequestLogFactory() {
         return requestLog;
@@ -265,6 +295,26 @@ public abstract class AbstractServerFactory implements ServerFactory {
         this.idleThreadTimeout = idleThreadTimeout;
     }
 
+    @JsonProperty
+    public boolean isEnableVirtualThreads() {
+        return enableVirtualThreads;
+    }
+
+    @JsonProperty
+    public void setEnableVirtualThreads(boolean enableVirtualThreads) {
+        this.enableVirtualThreads = enableVirtualThreads;
+    }
+
+    @JsonProperty
+    public boolean isTracePinnedVirtualThreads() {
+        return tracePinnedVirtualThreads;
+    }
+
+    @JsonProperty
+    public void setTracePinnedVirtualThreads(boolean tracePinnedVirtualThreads) {
+        this.tracePinnedVirtualThreads = tracePinnedVirtualThreads;
+    }
+
     @JsonProperty
     public Integer getNofileSoftLimit() {
         return nofileSoftLimit;
@@ -373,6 +423,15 @@ public abstract class AbstractServerFactory implements ServerFactory {
                                        @Nullable ServletContainer jerseyContainer,
                                        MetricRegistry metricRegistry) {
         configureSessionsAndSecurity(handler, server);
+        if (enableVirtualThreads && jerseyContainer != null) {
+            // must come first, so the following filters run on the virtual thread as well
+            if (tracePinnedVirtualThreads) {
+                VirtualThreads.tracePinnedThreads();
+            }
+            final FilterHolder holder = new FilterHolder(new VirtualThreadDispatchFilter(metricRegistry, "dw"));
+            holder.setAsyncSupported(true);
+            handler.addFilter(holder, jersey.getUrlPattern(), EnumSet.of(DispatcherType.REQUEST));
+        }
         handler.addFilter(ThreadNameFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
         if (gzip.isEnabled()) {
             final FilterHolder holder = new FilterHolder(gzip.build());
@@ -380,7 +439,9 @@ public abstract class AbstractServerFactory implements ServerFactory {
         }
         if (jerseyContainer != null) {
             jersey.register(new JacksonMessageBodyProvider(objectMapper, validator));
-            handler.addServlet(new NonblockingServletHolder(jerseyContainer), jersey.getUrlPattern());
+            final NonblockingServletHolder jerseyHolder = new NonblockingServletHolder(jerseyContainer);
+            jerseyHolder.setAsyncSupported(enableVirtualThreads);
+            handler.addServlet(jerseyHolder, jersey.getUrlPattern());
         }
         final InstrumentedHandler instrumented = new InstrumentedHandler(metricRegistry);
         instrumented.setHandler(handler);
@@ -0,0 +1,114 @@
+package io.dropwizard.server;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.jersey.DropwizardResourceConfig;
+import io.dropwizard.jersey.setup.JerseyServletContainer;
+import io.dropwizard.jetty.NonblockingServletHolder;
+import io.dropwizard.jetty.VirtualThreadDispatchFilter;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.DispatcherType;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import java.util.EnumSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs Jersey behind a {@link VirtualThreadDispatchFilter}. A thread pool stands in for the virtual threads,
+ * so the test doesn't need Java 21.
+ */
+public class VirtualThreadDispatchTest {
+    private static final String DISPATCH_THREAD = "dispatch-";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final ScheduledExecutorService resumer = Executors.newSingleThreadScheduledExecutor();
+    private final Server server = new Server();
+    private final LocalConnector connector = new LocalConnector(server);
+
+    @Path("/")
+    @Produces(MediaType.TEXT_PLAIN)
+    public static class ThreadNameResource {
+        private final ScheduledExecutorService resumer;
+
+        public ThreadNameResource(ScheduledExecutorService resumer) {
+            this.resumer = resumer;
+        }
+
+        @GET
+        @Path("/sync")
+        public String sync() {
+            return Thread.currentThread().getName();
+        }
+
+        @GET
+        @Path("/suspended")
+        public void suspended(@Suspended AsyncResponse response) {
+            final String thread = Thread.currentThread().getName();
+            resumer.schedule(() -> response.resume(thread), 100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        final ServletContextHandler handler = new ServletContextHandler();
+        final FilterHolder filter = new FilterHolder(new VirtualThreadDispatchFilter(
+            Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat(DISPATCH_THREAD + "%d").build()),
+            metricRegistry, "test"));
+        filter.setAsyncSupported(true);
+        handler.addFilter(filter, "/*", EnumSet.of(DispatcherType.REQUEST));
+
+        final DropwizardResourceConfig config = DropwizardResourceConfig.forTesting(metricRegistry);
+        config.register(new ThreadNameResource(resumer));
+        final NonblockingServletHolder jersey = new NonblockingServletHolder(new JerseyServletContainer(config));
+        jersey.setAsyncSupported(true);
+        handler.addServlet(jersey, "/*");
+
+        server.addConnector(connector);
+        server.setHandler(handler);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        resumer.shutdownNow();
+    }
+
+    @Test
+    public void runsResourceMethodsOnTheDispatchThread() throws Exception {
+        final HttpTester.Response response = get("/sync");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContent()).startsWith(DISPATCH_THREAD);
+    }
+
+    @Test
+    public void supportsSuspendedResourceMethods() throws Exception {
+        final HttpTester.Response response = get("/suspended");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContent()).startsWith(DISPATCH_THREAD);
+        assertThat(metricRegistry.counter("io.dropwizard.jetty.VirtualThreadDispatchFilter.test.active").getCount())
+            .isZero();
+    }
+
+    private HttpTester.Response get(String path) throws Exception {
+        return HttpTester.parseResponse(connector.getResponse("GET " + path + " HTTP/1.0\r\n\r\n"));
+    }
+}
@@ -0,0 +1,217 @@
+package io.dropwizard.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free collection of pooled entries, in the style of the concurrent bag of HikariCP.
+ * <p>
+ * Every entry has an atomic state and is borrowed by compare-and-set, so borrowing and returning never takes a
+ * lock. A thread first looks at the entries it has returned itself, which are likely still unused and hot in its
+ * CPU cache, then scans all entries, and only then waits for another thread to hand an entry over.
+ */
+final class ConcurrentBag<T extends ConcurrentBag.Entry> {
+    static final int NOT_IN_USE = 0;
+    static final int IN_USE = 1;
+    static final int REMOVED = -1;
+    static final int RESERVED = -2;
+
+    private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+
+    /**
+     * An entry of the bag. The state is only changed by the bag.
+     */
+    abstract static class Entry {
+        private static final AtomicIntegerFieldUpdater<Entry> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        private volatile int state;
+
+        Entry(int state) {
+            this.state = state;
+        }
+
+        int getState() {
+            return state;
+        }
+
+        boolean compareAndSetState(int expect, int update) {
+            return STATE.compareAndSet(this, expect, update);
+        }
+
+        void setState(int state) {
+            this.state = state;
+        }
+    }
+
+    private final CopyOnWriteArrayList<T> sharedList = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<List<T>> threadList =
+            ThreadLocal.withInitial(() -> new ArrayList<>(MAX_THREAD_LOCAL_ENTRIES));
+    private final SynchronousQueue<T> handoffQueue = new SynchronousQueue<>(true);
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final boolean threadAffinity;
+    private volatile boolean closed;
+
+    ConcurrentBag(boolean threadAffinity) {
+        this.threadAffinity = threadAffinity;
+    }
+
+    /**
+     * Borrows an unused entry, waiting up to the timeout for one to be returned.
+     *
+     * @return the entry, or {@code null} if the timeout passed
+     */
+    T borrow(long timeout, TimeUnit unit) throws InterruptedException {
+        if (threadAffinity) {
+            // the entries this thread returned last, most recent first
+            final List<T> entries = threadList.get();
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                final T entry = entries.remove(i);
+                if (entry.compareAndSetState(NOT_IN_USE, IN_USE)) {
+                    return entry;
+                }
+            }
+        }
+
+        waiters.incrementAndGet();
+        try {
+            for (T entry : sharedList) {
+                if (entry.compareAndSetState(NOT_IN_USE, IN_USE)) {
+                    return entry;
+                }
+            }
+
+            long remaining = unit.toNanos(timeout);
+            while (remaining > 0 && !closed) {
+                final long start = System.nanoTime();
+                final T entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (entry == null || entry.compareAndSetState(NOT_IN_USE, IN_USE)) {
+                    return entry;
+                }
+                remaining -= System.nanoTime() - start;
+            }
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a borrowed entry, handing it to a waiting thread if there is one.
+     */
+    void requite(T entry) {
+        entry.setState(NOT_IN_USE);
+
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (entry.getState() != NOT_IN_USE || handoffQueue.offer(entry)) {
+                return;
+            } else if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            } else {
+                Thread.yield();
+            }
+        }
+
+        if (threadAffinity) {
+            final List<T> entries = threadList.get();
+            if (entries.size() < MAX_THREAD_LOCAL_ENTRIES) {
+                entries.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Adds an entry. An unused entry is handed to a waiting thread if there is one.
+     */
+    void add(T entry) {
+        if (closed) {
+            throw new IllegalStateException("The bag has been closed");
+        }
+        sharedList.add(entry);
+
+        while (waiters.get() > 0 && entry.getState() == NOT_IN_USE && !handoffQueue.offer(entry)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Removes a borrowed or reserved entry.
+     *
+     * @return whether the entry has been removed
+     */
+    boolean remove(T entry) {
+        if (!entry.compareAndSetState(IN_USE, REMOVED) && !entry.compareAndSetState(RESERVED, REMOVED)) {
+            return false;
+        }
+        return sharedList.remove(entry);
+    }
+
+    /**
+     * Reserves an unused entry for maintenance, e.g. eviction, so it can't be borrowed meanwhile.
+     */
+    boolean reserve(T entry) {
+        return entry.compareAndSetState(NOT_IN_USE, RESERVED);
+    }
+
+    /**
+     * Makes a reserved entry available again.
+     */
+    void unreserve(T entry) {
+        if (entry.compareAndSetState(RESERVED, NOT_IN_USE)) {
+            while (waiters.get() > 0 && entry.getState() == NOT_IN_USE && !handoffQueue.offer(entry)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the entries in the given state
+     */
+    List<T> values(int state) {
+        final List<T> values = new ArrayList<>();
+        for (T entry : sharedList) {
+            if (entry.getState() == state) {
+                values.add(entry);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return a snapshot of all entries
+     */
+    List<T> values() {
+        return new ArrayList<>(sharedList);
+    }
+
+    int getCount(int state) {
+        int count = 0;
+        for (T entry : sharedList) {
+            if (entry.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return sharedList.size();
+    }
+
+    int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+    /**
+     * Stops handing out entries. Threads which are waiting for an entry give up at their timeout.
+     */
+    void close() {
+        closed = true;
+    }
+}
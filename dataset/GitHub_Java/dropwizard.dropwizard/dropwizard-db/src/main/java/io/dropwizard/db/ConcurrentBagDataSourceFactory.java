@@ -0,0 +1,111 @@
+package io.dropwizard.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+import java.sql.Driver;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A factory for {@link ManagedDataSource}s which pool their connections in a lock-free {@link ConcurrentBag}
+ * instead of the Tomcat pool. Borrowing and returning a connection never takes a lock, a thread preferably gets
+ * back the connection it returned last, and every connection caches its prepared statements.
+ * <p/>
+ * Supports the configuration parameters of {@link DataSourceFactory}, except {@code abandonWhenPercentageFull},
+ * {@code alternateUsernamesAllowed}, {@code logAbandonedConnections} and {@code useFairQueue}, which are
+ * specific to the Tomcat pool and are ignored.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr>
+ *         <td>Name</td>
+ *         <td>Default</td>
+ *         <td>Description</td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code statementCacheSize}</td>
+ *         <td>64</td>
+ *         <td>
+ *             The maximum number of prepared statements cached per connection. A statement is
+ *             cached by its SQL and the arguments it has been prepared with, and is reused once
+ *             it has been closed. Set to 0 to disable the cache.
+ *         </td>
+ *     </tr>
+ *     <tr>
+ *         <td>{@code threadAffinity}</td>
+ *         <td>{@code true}</td>
+ *         <td>
+ *             Whether a thread first tries to borrow the connections it returned itself, before
+ *             looking at the connections of the other threads.
+ *         </td>
+ *     </tr>
+ * </table>
+ */
+public class ConcurrentBagDataSourceFactory extends DataSourceFactory {
+    @Min(0)
+    private int statementCacheSize = 64;
+
+    private boolean threadAffinity = true;
+
+    @JsonProperty
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    @JsonProperty
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    @JsonProperty
+    public boolean isThreadAffinity() {
+        return threadAffinity;
+    }
+
+    @JsonProperty
+    public void setThreadAffinity(boolean threadAffinity) {
+        this.threadAffinity = threadAffinity;
+    }
+
+    @Override
+    public ManagedDataSource build(MetricRegistry metricRegistry,
+                                   String name) throws ClassNotFoundException {
+        return buildDataSource(metricRegistry, name);
+    }
+
+    /**
+     * Builds the data source like {@link #build(MetricRegistry, String)} and registers a
+     * {@link ConnectionPoolHealthCheck} for it as {@code <name>-pool}, which has to get a connection within
+     * {@code maxWaitForConnection}.
+     *
+     * @param metricRegistry      the registry of the pool metrics
+     * @param healthCheckRegistry the registry of the pool health check, e.g. {@code environment.healthChecks()}
+     * @param healthCheckExecutor the executor running the health check, e.g.
+     *                            {@code environment.getHealthCheckExecutorService()}
+     * @param name                the name of the pool
+     */
+    public ManagedDataSource build(MetricRegistry metricRegistry,
+                                   HealthCheckRegistry healthCheckRegistry,
+                                   ExecutorService healthCheckExecutor,
+                                   String name) throws ClassNotFoundException {
+        final ManagedConcurrentBagDataSource dataSource = buildDataSource(metricRegistry, name);
+        healthCheckRegistry.register(name + "-pool", new ConnectionPoolHealthCheck(healthCheckExecutor,
+                getMaxWaitForConnection(), dataSource, getValidationQuery()));
+        return dataSource;
+    }
+
+    private ManagedConcurrentBagDataSource buildDataSource(MetricRegistry metricRegistry,
+                                                           String name) throws ClassNotFoundException {
+        final Class<?> driverClass = Class.forName(getDriverClass());
+        final Driver driver;
+        try {
+            driver = (Driver) driverClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unable to instantiate the JDBC driver " + getDriverClass(), e);
+        }
+        return new ManagedConcurrentBagDataSource(this, driver, metricRegistry, name);
+    }
+
+}
@@ -0,0 +1,48 @@
+package io.dropwizard.db;
+
+import com.codahale.metrics.health.HealthCheck;
+import io.dropwizard.util.Duration;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that a {@link ManagedConcurrentBagDataSource} hands out working connections within the given duration,
+ * and reports the utilization of the pool, the number of waiting threads and the mean time it takes to get a
+ * connection.
+ */
+public class ConnectionPoolHealthCheck extends HealthCheck {
+    private final ManagedConcurrentBagDataSource dataSource;
+    private final String validationQuery;
+    private final TimeBoundHealthCheck timeBoundHealthCheck;
+
+    public ConnectionPoolHealthCheck(ExecutorService executorService,
+                                     Duration duration,
+                                     ManagedConcurrentBagDataSource dataSource,
+                                     String validationQuery) {
+        this.dataSource = dataSource;
+        this.validationQuery = validationQuery;
+        this.timeBoundHealthCheck = new TimeBoundHealthCheck(executorService, duration);
+    }
+
+    @Override
+    protected Result check() throws Exception {
+        return timeBoundHealthCheck.check(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                try (Connection connection = dataSource.getConnection();
+                     Statement statement = connection.createStatement()) {
+                    statement.execute(validationQuery);
+                }
+                final double meanWaitMillis = dataSource.getWaitTimer().getSnapshot().getMean()
+                        / TimeUnit.MILLISECONDS.toNanos(1);
+                return Result.healthy("%d of %d connections in use, %d threads waiting, %.2fms mean wait",
+                        dataSource.getActiveConnections(), dataSource.getMaxSize(),
+                        dataSource.getWaitingThreadCount(), meanWaitMillis);
+            }
+        });
+    }
+}
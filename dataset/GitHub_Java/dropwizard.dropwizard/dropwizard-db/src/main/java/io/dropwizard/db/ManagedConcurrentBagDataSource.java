@@ -0,0 +1,425 @@
+package io.dropwizard.db;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A {@link ManagedDataSource} which pools its connections in a lock-free {@link ConcurrentBag}.
+ * <p>
+ * Registers the gauges {@code active}, {@code idle}, {@code waiting}, {@code size} and {@code utilization}, the
+ * timer {@code wait}, which measures how long it takes to get a connection, and the meter {@code timeouts}.
+ */
+public class ManagedConcurrentBagDataSource implements ManagedDataSource {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ManagedConcurrentBagDataSource.class);
+
+    private final ConcurrentBagDataSourceFactory config;
+    private final MetricRegistry metricRegistry;
+    private final String name;
+    private final Driver driver;
+    private final Properties connectionProperties;
+    private final ConcurrentBag<PoolEntry> bag;
+
+    /**
+     * The number of connections, including the ones which are being opened.
+     */
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    private final long maxWaitNanos;
+    private final long validationIntervalNanos;
+    private final long minIdleNanos;
+    private final long maxAgeNanos;
+
+    private final Timer wait;
+    private final Meter timeouts;
+
+    @Nullable
+    private ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private int loginTimeout;
+    @Nullable
+    private PrintWriter logWriter;
+
+    public ManagedConcurrentBagDataSource(ConcurrentBagDataSourceFactory config, Driver driver,
+                                          MetricRegistry metricRegistry, String name) {
+        this.config = config;
+        this.metricRegistry = metricRegistry;
+        this.name = name;
+        this.driver = driver;
+        this.bag = new ConcurrentBag<>(config.isThreadAffinity());
+
+        this.connectionProperties = new Properties();
+        connectionProperties.putAll(config.getProperties());
+        connectionProperties.setProperty("user", config.getUser());
+        if (config.getPassword() != null) {
+            connectionProperties.setProperty("password", config.getPassword());
+        }
+
+        this.maxWaitNanos = config.getMaxWaitForConnection().toNanoseconds();
+        this.validationIntervalNanos = config.getValidationInterval().toNanoseconds();
+        this.minIdleNanos = config.getMinIdleTime().toNanoseconds();
+        this.maxAgeNanos = config.getMaxConnectionAge().isPresent()
+                ? config.getMaxConnectionAge().get().toNanoseconds() : Long.MAX_VALUE;
+
+        this.wait = metricRegistry.timer(name(getClass(), name, "wait"));
+        this.timeouts = metricRegistry.meter(name(getClass(), name, "timeouts"));
+    }
+
+    @Override
+    public void start() throws Exception {
+        for (int i = 0; i < config.getInitialSize(); i++) {
+            totalConnections.incrementAndGet();
+            bag.add(newEntry(ConcurrentBag.NOT_IN_USE));
+        }
+
+        metricRegistry.register(name(getClass(), name, "active"),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return getActiveConnections();
+                    }
+                });
+
+        metricRegistry.register(name(getClass(), name, "idle"),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return bag.getCount(ConcurrentBag.NOT_IN_USE);
+                    }
+                });
+
+        metricRegistry.register(name(getClass(), name, "waiting"),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return getWaitingThreadCount();
+                    }
+                });
+
+        metricRegistry.register(name(getClass(), name, "size"),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return bag.size();
+                    }
+                });
+
+        metricRegistry.register(name(getClass(), name, "utilization"),
+                new RatioGauge() {
+                    @Override
+                    protected Ratio getRatio() {
+                        return Ratio.of(getActiveConnections(), config.getMaxSize());
+                    }
+                });
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, name + "-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long interval = config.getEvictionInterval().toMilliseconds();
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        closed = true;
+        bag.close();
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+        }
+        for (PoolEntry entry : bag.values()) {
+            if (bag.reserve(entry) || entry.getState() == ConcurrentBag.IN_USE) {
+                closeEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * @return the number of borrowed connections
+     */
+    public int getActiveConnections() {
+        return bag.getCount(ConcurrentBag.IN_USE);
+    }
+
+    /**
+     * @return the number of threads which are waiting for a connection
+     */
+    public int getWaitingThreadCount() {
+        return bag.getWaitingThreadCount();
+    }
+
+    /**
+     * @return the maximum number of connections
+     */
+    public int getMaxSize() {
+        return config.getMaxSize();
+    }
+
+    /**
+     * @return the time it takes to get a connection
+     */
+    public Timer getWaitTimer() {
+        return wait;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("The pool " + name + " has been closed");
+        }
+        final long start = System.nanoTime();
+        try {
+            while (true) {
+                PoolEntry entry = bag.borrow(0, TimeUnit.NANOSECONDS);
+                if (entry == null) {
+                    entry = newEntryIfBelowMaxSize();
+                }
+                if (entry == null) {
+                    final long remaining = maxWaitNanos - (System.nanoTime() - start);
+                    entry = bag.borrow(remaining, TimeUnit.NANOSECONDS);
+                }
+                if (entry == null) {
+                    timeouts.mark();
+                    throw new SQLTimeoutException("Unable to get a connection from the pool " + name + " within "
+                            + config.getMaxWaitForConnection());
+                }
+
+                final long now = System.nanoTime();
+                if (config.getCheckConnectionOnBorrow() && now - entry.lastValidatedNanos > validationIntervalNanos
+                        && !isValid(entry)) {
+                    closeEntry(entry);
+                    continue;
+                }
+                entry.lastAccessedNanos = now;
+                wait.update(now - start, TimeUnit.NANOSECONDS);
+                return PooledConnectionHandler.newProxy(this, entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection from the pool " + name, e);
+        }
+    }
+
+    /**
+     * Returns a connection to the pool.
+     */
+    void release(PoolEntry entry) {
+        try {
+            final Connection connection = entry.connection;
+            if (!connection.getAutoCommit()) {
+                if (config.getCommitOnReturn()) {
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+            }
+            if (entry.dirty) {
+                resetDefaults(connection);
+                entry.dirty = false;
+            }
+            if (entry.statementCache != null) {
+                entry.statementCache.release();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Unable to reset a connection of the pool {}, closing it", name, e);
+            closeEntry(entry);
+            return;
+        }
+
+        final long now = System.nanoTime();
+        entry.lastAccessedNanos = now;
+        if (closed || now - entry.createdNanos > maxAgeNanos
+                || (config.getCheckConnectionOnReturn() && !isValid(entry))) {
+            closeEntry(entry);
+            return;
+        }
+        bag.requite(entry);
+    }
+
+    @Nullable
+    private PoolEntry newEntryIfBelowMaxSize() throws SQLException {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= config.getMaxSize()) {
+                return null;
+            }
+        } while (!totalConnections.compareAndSet(total, total + 1));
+
+        final PoolEntry entry = newEntry(ConcurrentBag.IN_USE);
+        bag.add(entry);
+        return entry;
+    }
+
+    /**
+     * Opens a new connection. The caller has to account for it in {@link #totalConnections}.
+     */
+    private PoolEntry newEntry(int state) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = driver.connect(config.getUrl(), connectionProperties);
+            if (connection == null) {
+                throw new SQLException("The driver " + config.getDriverClass() + " doesn't accept " + config.getUrl());
+            }
+            resetDefaults(connection);
+            if (config.getInitializationQuery() != null) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(config.getInitializationQuery());
+                }
+            }
+            final PoolEntry entry = new PoolEntry(connection, state, config.getStatementCacheSize());
+            if (config.getCheckConnectionOnConnect() && !isValid(entry)) {
+                throw new SQLException("A new connection of the pool " + name + " failed validation");
+            }
+            return entry;
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {
+                    // we're reporting the original exception
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void resetDefaults(Connection connection) throws SQLException {
+        if (config.getAutoCommitByDefault() != null) {
+            connection.setAutoCommit(config.getAutoCommitByDefault());
+        }
+        if (config.getReadOnlyByDefault() != null) {
+            connection.setReadOnly(config.getReadOnlyByDefault());
+        }
+        if (config.getDefaultTransactionIsolation() != DataSourceFactory.TransactionIsolation.DEFAULT) {
+            connection.setTransactionIsolation(config.getDefaultTransactionIsolation().get());
+        }
+        if (config.getDefaultCatalog() != null) {
+            connection.setCatalog(config.getDefaultCatalog());
+        }
+    }
+
+    private boolean isValid(PoolEntry entry) {
+        try (Statement statement = entry.connection.createStatement()) {
+            statement.execute(config.getValidationQuery());
+            entry.lastValidatedNanos = System.nanoTime();
+            return true;
+        } catch (SQLException e) {
+            if (config.getLogValidationErrors()) {
+                LOGGER.warn("A connection of the pool {} failed validation", name, e);
+            }
+            return false;
+        }
+    }
+
+    private void closeEntry(PoolEntry entry) {
+        if (bag.remove(entry)) {
+            totalConnections.decrementAndGet();
+            entry.close();
+        }
+    }
+
+    /**
+     * Evicts idle and expired connections and keeps the pool at its minimum size.
+     */
+    private void houseKeep() {
+        try {
+            final long now = System.nanoTime();
+            final List<PoolEntry> idle = bag.values(ConcurrentBag.NOT_IN_USE);
+            int idleCount = idle.size();
+            for (PoolEntry entry : idle) {
+                if (!bag.reserve(entry)) {
+                    // borrowed meanwhile
+                    continue;
+                }
+                final boolean evictable = idleCount > config.getMinSize()
+                        && now - entry.lastAccessedNanos > minIdleNanos;
+                if (evictable || now - entry.createdNanos > maxAgeNanos) {
+                    idleCount--;
+                    closeEntry(entry);
+                } else if (config.getCheckConnectionWhileIdle()
+                        && now - entry.lastValidatedNanos > validationIntervalNanos && !isValid(entry)) {
+                    idleCount--;
+                    closeEntry(entry);
+                } else {
+                    bag.unreserve(entry);
+                }
+            }
+
+            while (!closed && totalConnections.get() < config.getMinSize()) {
+                totalConnections.incrementAndGet();
+                bag.add(newEntry(ConcurrentBag.NOT_IN_USE));
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.warn("Unable to maintain the pool {}", name, e);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool only has connections of the configured user");
+    }
+
+    @Override
+    @Nullable
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(@Nullable PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("Doesn't use java.util.logging");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        throw new SQLException("Not a wrapper for " + iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,45 @@
+package io.dropwizard.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical connection of a {@link ManagedConcurrentBagDataSource} and its bookkeeping.
+ */
+final class PoolEntry extends ConcurrentBag.Entry {
+    final Connection connection;
+    final long createdNanos;
+    volatile long lastAccessedNanos;
+    volatile long lastValidatedNanos;
+
+    /**
+     * Only used by the thread which borrowed the connection, or by the housekeeper while the entry is reserved.
+     */
+    final StatementCache statementCache;
+
+    /**
+     * Whether the borrower changed a connection property which has to be reset when the connection is returned.
+     * Only used by the thread which borrowed the connection.
+     */
+    boolean dirty;
+
+    PoolEntry(Connection connection, int state, int statementCacheSize) {
+        super(state);
+        this.connection = connection;
+        this.createdNanos = System.nanoTime();
+        this.lastAccessedNanos = createdNanos;
+        this.lastValidatedNanos = createdNanos;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+    }
+
+    void close() {
+        if (statementCache != null) {
+            statementCache.close();
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // the connection is broken anyway
+        }
+    }
+}
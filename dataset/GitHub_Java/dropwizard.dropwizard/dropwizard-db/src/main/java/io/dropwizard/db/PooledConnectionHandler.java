@@ -0,0 +1,203 @@
+package io.dropwizard.db;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The handler of the {@link Connection} proxy a {@link ManagedConcurrentBagDataSource} hands out. Closing the
+ * proxy returns the connection to the pool, and prepared statements are served from the statement cache of the
+ * connection.
+ * <p>
+ * Statements are handed out as proxies as well, whose {@link Statement#getConnection()} returns the connection
+ * proxy. Statements which haven't been closed when the connection is returned are closed, or put back into the
+ * statement cache, and can't be used anymore.
+ */
+final class PooledConnectionHandler implements InvocationHandler {
+    private static final Set<String> DIRTYING_METHODS = new HashSet<>(Arrays.asList(
+            "setAutoCommit", "setReadOnly", "setTransactionIsolation", "setCatalog", "setSchema"));
+
+    private final ManagedConcurrentBagDataSource dataSource;
+    private final PoolEntry entry;
+    private final Set<StatementHandler> openStatements = new HashSet<>();
+    private Connection proxy;
+    private boolean closed;
+
+    private PooledConnectionHandler(ManagedConcurrentBagDataSource dataSource, PoolEntry entry) {
+        this.dataSource = dataSource;
+        this.entry = entry;
+    }
+
+    static Connection newProxy(ManagedConcurrentBagDataSource dataSource, PoolEntry entry) {
+        final PooledConnectionHandler handler = new PooledConnectionHandler(dataSource, entry);
+        handler.proxy = (Connection) Proxy.newProxyInstance(PooledConnectionHandler.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+        return handler.proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        final String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Pooled" + entry.connection;
+            case "close":
+                if (!closed) {
+                    closed = true;
+                    closeOpenStatements();
+                    dataSource.release(entry);
+                }
+                return null;
+            case "isClosed":
+                return closed;
+            default:
+                break;
+        }
+
+        if (closed) {
+            throw new SQLException("Connection is closed");
+        }
+        if ("prepareStatement".equals(name) && entry.statementCache != null) {
+            return prepareStatement(method, args);
+        }
+        if (DIRTYING_METHODS.contains(name)) {
+            entry.dirty = true;
+        }
+        final Object result = invokeDelegate(entry.connection, method, args);
+        if (result instanceof Statement) {
+            return newStatementProxy(method.getReturnType(), (Statement) result, null);
+        }
+        return result;
+    }
+
+    private Object prepareStatement(Method method, Object[] args) throws Throwable {
+        final StatementCache.Key key = new StatementCache.Key(method, args);
+        StatementCache.CachedStatement cached = entry.statementCache.take(key);
+        if (cached == null) {
+            final PreparedStatement statement = (PreparedStatement) invokeDelegate(entry.connection, method, args);
+            cached = entry.statementCache.put(key, statement);
+            if (cached == null) {
+                // not cacheable right now, hand out an ordinary statement
+                return newStatementProxy(PreparedStatement.class, statement, null);
+            }
+        }
+        return newStatementProxy(PreparedStatement.class, cached.statement, cached);
+    }
+
+    private Object newStatementProxy(Class<?> type, Statement statement,
+                                     @Nullable StatementCache.CachedStatement cached) {
+        final StatementHandler handler = new StatementHandler(statement, cached);
+        if (cached == null) {
+            openStatements.add(handler);
+        }
+        return Proxy.newProxyInstance(StatementHandler.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * Closes the uncached statements the borrower didn't close, the cached ones are released by the pool.
+     */
+    private void closeOpenStatements() {
+        for (StatementHandler handler : new ArrayList<>(openStatements)) {
+            try {
+                handler.close();
+            } catch (SQLException ignored) {
+                // the statement is gone either way
+            }
+        }
+    }
+
+    static Object invokeDelegate(Object delegate, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The handler of a statement proxy. Closing the proxy of a cached statement puts the statement back into the
+     * cache.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        @Nullable
+        private final StatementCache.CachedStatement cached;
+        @Nullable
+        private final Object lease;
+        private boolean closed;
+
+        private StatementHandler(Statement statement, @Nullable StatementCache.CachedStatement cached) {
+            this.statement = statement;
+            this.cached = cached;
+            this.lease = cached == null ? null : cached.lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return (cached == null ? "Pooled" : "Cached") + statement;
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return isClosed();
+                default:
+                    break;
+            }
+            if (isClosed()) {
+                throw new SQLException("Statement is closed");
+            }
+            if ("getConnection".equals(method.getName())) {
+                return PooledConnectionHandler.this.proxy;
+            }
+            if (cached != null) {
+                cached.beforeInvoke(method.getName());
+            }
+            final Object result = invokeDelegate(statement, method, args);
+            if (cached != null && result instanceof ResultSet) {
+                cached.opened((ResultSet) result);
+            }
+            return result;
+        }
+
+        /**
+         * @return whether the proxy has been closed, or the pool took the cached statement back
+         */
+        private boolean isClosed() {
+            return closed || (cached != null && cached.lease != lease);
+        }
+
+        private void close() throws SQLException {
+            if (isClosed()) {
+                return;
+            }
+            closed = true;
+            if (cached == null) {
+                openStatements.remove(this);
+                statement.close();
+            } else {
+                entry.statementCache.release(cached);
+            }
+        }
+    }
+}
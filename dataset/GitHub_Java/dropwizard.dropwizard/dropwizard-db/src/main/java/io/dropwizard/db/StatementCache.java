@@ -0,0 +1,254 @@
+package io.dropwizard.db;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A least recently used cache of the prepared statements of a single pooled connection.
+ * <p>
+ * A pooled connection is only used by one thread at a time, so the cache isn't thread-safe.
+ */
+final class StatementCache {
+    private final int maxSize;
+    private final LinkedHashMap<Key, CachedStatement> statements;
+
+    StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Takes an unused statement for the given key out of the cache.
+     *
+     * @return the statement, or {@code null} if there is no unused statement for the key
+     */
+    CachedStatement take(Key key) {
+        final CachedStatement cached = statements.get(key);
+        if (cached == null || cached.inUse) {
+            return null;
+        }
+        cached.inUse = true;
+        cached.lease = new Object();
+        return cached;
+    }
+
+    /**
+     * Puts a new statement into the cache, evicting the least recently used unused statement if the cache is
+     * full.
+     *
+     * @return the cached statement, or {@code null} if the cache is full of statements which are in use or
+     * already has a statement for the key
+     */
+    CachedStatement put(Key key, PreparedStatement statement) {
+        if (statements.containsKey(key)) {
+            return null;
+        }
+        if (statements.size() >= maxSize && !evictUnused()) {
+            return null;
+        }
+        final CachedStatement cached = new CachedStatement(key, statement);
+        cached.inUse = true;
+        cached.lease = new Object();
+        statements.put(key, cached);
+        return cached;
+    }
+
+    private boolean evictUnused() {
+        final Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            final CachedStatement cached = iterator.next();
+            if (!cached.inUse) {
+                iterator.remove();
+                closeQuietly(cached.statement);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Puts a statement which has been closed by the borrower back into the cache, or closes it if it can't be
+     * reset.
+     */
+    void release(CachedStatement cached) {
+        if (!cached.release()) {
+            statements.remove(cached.key, cached);
+            closeQuietly(cached.statement);
+        }
+    }
+
+    /**
+     * Puts the statements which haven't been closed by the borrower of the connection back into the cache, the
+     * proxies handed out for them can't be used anymore. Statements which can't be reset are closed.
+     */
+    void release() {
+        final Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            final CachedStatement cached = iterator.next();
+            if (cached.inUse && !cached.release()) {
+                iterator.remove();
+                closeQuietly(cached.statement);
+            }
+        }
+    }
+
+    /**
+     * Closes all cached statements.
+     */
+    void close() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // the connection is likely broken, it will be evicted
+        }
+    }
+
+    static final class CachedStatement {
+        /**
+         * The setters whose values are restored when the statement is released.
+         */
+        private static final Set<String> RESETTABLE_SETTERS = new HashSet<>(Arrays.asList(
+                "setMaxRows", "setLargeMaxRows", "setMaxFieldSize", "setQueryTimeout", "setFetchSize",
+                "setFetchDirection", "setPoolable"));
+
+        /**
+         * The setters whose values can't be read back, the statement isn't reused once one of them has been called.
+         */
+        private static final Set<String> UNRESETTABLE_SETTERS = new HashSet<>(Arrays.asList(
+                "setEscapeProcessing", "setCursorName", "closeOnCompletion"));
+
+        private final Key key;
+        final PreparedStatement statement;
+        boolean inUse;
+
+        /**
+         * Identifies the proxy which may currently use the statement, a new lease is taken every time the statement
+         * is handed out.
+         */
+        Object lease;
+
+        private final List<ResultSet> resultSets = new ArrayList<>();
+        private boolean reusable = true;
+        private boolean settingsChanged;
+        private int maxRows;
+        private int maxFieldSize;
+        private int queryTimeout;
+        private int fetchSize;
+        private int fetchDirection;
+        private boolean poolable;
+
+        private CachedStatement(Key key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        /**
+         * Called before the borrower invokes a method of the statement.
+         */
+        void beforeInvoke(String methodName) throws SQLException {
+            if (RESETTABLE_SETTERS.contains(methodName)) {
+                if (!settingsChanged) {
+                    maxRows = statement.getMaxRows();
+                    maxFieldSize = statement.getMaxFieldSize();
+                    queryTimeout = statement.getQueryTimeout();
+                    fetchSize = statement.getFetchSize();
+                    fetchDirection = statement.getFetchDirection();
+                    poolable = statement.isPoolable();
+                    settingsChanged = true;
+                }
+            } else if (UNRESETTABLE_SETTERS.contains(methodName)) {
+                reusable = false;
+            }
+        }
+
+        /**
+         * Called with the result sets the borrower got from the statement, so they can be closed on release.
+         */
+        void opened(ResultSet resultSet) {
+            resultSets.add(resultSet);
+        }
+
+        /**
+         * Resets the statement for its next use and revokes the lease of its current proxy.
+         *
+         * @return whether the statement can be handed out again, otherwise it has to be closed
+         */
+        private boolean release() {
+            lease = null;
+            try {
+                for (ResultSet resultSet : resultSets) {
+                    resultSet.close();
+                }
+                resultSets.clear();
+                if (!reusable) {
+                    return false;
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                if (settingsChanged) {
+                    statement.setMaxRows(maxRows);
+                    statement.setMaxFieldSize(maxFieldSize);
+                    statement.setQueryTimeout(queryTimeout);
+                    statement.setFetchSize(fetchSize);
+                    statement.setFetchDirection(fetchDirection);
+                    statement.setPoolable(poolable);
+                    settingsChanged = false;
+                }
+                inUse = false;
+                return true;
+            } catch (SQLException ignored) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The SQL and the arguments a statement has been prepared with.
+     */
+    static final class Key {
+        private final Method method;
+        private final Object[] arguments;
+        private final int hashCode;
+
+        Key(Method method, Object[] arguments) {
+            this.method = method;
+            this.arguments = arguments;
+            this.hashCode = 31 * method.hashCode() + Arrays.deepHashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key that = (Key) o;
+            return hashCode == that.hashCode && method.equals(that.method)
+                    && Arrays.deepEquals(arguments, that.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
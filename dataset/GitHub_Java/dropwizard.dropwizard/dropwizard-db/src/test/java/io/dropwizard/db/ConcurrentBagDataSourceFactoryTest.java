@@ -0,0 +1,256 @@
+package io.dropwizard.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import io.dropwizard.util.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConcurrentBagDataSourceFactoryTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private ConcurrentBagDataSourceFactory factory;
+    private ManagedDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        factory = new ConcurrentBagDataSourceFactory();
+        factory.setUrl("jdbc:h2:mem:ConcurrentBagTest-" + System.currentTimeMillis());
+        factory.setUser("sa");
+        factory.setDriverClass("org.h2.Driver");
+        factory.setValidationQuery("SELECT 1");
+        factory.setInitialSize(1);
+        factory.setMinSize(1);
+        factory.setMaxSize(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (null != dataSource) {
+            dataSource.stop();
+        }
+    }
+
+    private ManagedDataSource dataSource() throws Exception {
+        dataSource = factory.build(metricRegistry, "test");
+        dataSource.start();
+        return dataSource;
+    }
+
+    @Test
+    public void buildsAConnectionPoolToTheDatabase() throws Exception {
+        try (Connection connection = dataSource().getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("select 1")) {
+                try (ResultSet set = statement.executeQuery()) {
+                    while (set.next()) {
+                        assertThat(set.getInt(1)).isEqualTo(1);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reusesTheConnectionAfterItHasBeenClosed() throws Exception {
+        final Connection first = dataSource().getConnection();
+        final String physical = first.toString();
+        first.close();
+
+        try (Connection second = dataSource.getConnection()) {
+            assertThat(second.toString()).isEqualTo(physical);
+            assertThat(second.isClosed()).isFalse();
+        }
+        assertThat(first.isClosed()).isTrue();
+    }
+
+    @Test(expected = SQLException.class)
+    public void aClosedConnectionCannotBeUsed() throws Exception {
+        final Connection connection = dataSource().getConnection();
+        connection.close();
+        connection.createStatement();
+    }
+
+    @Test
+    public void cachesPreparedStatements() throws Exception {
+        try (Connection connection = dataSource().getConnection()) {
+            final String first;
+            try (PreparedStatement statement = connection.prepareStatement("select ?")) {
+                statement.setInt(1, 1);
+                first = statement.toString();
+            }
+            try (PreparedStatement statement = connection.prepareStatement("select ?")) {
+                assertThat(statement.toString()).isEqualTo(first);
+                statement.setInt(1, 2);
+                try (ResultSet set = statement.executeQuery()) {
+                    assertThat(set.next()).isTrue();
+                    assertThat(set.getInt(1)).isEqualTo(2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void doesNotShareAStatementWhichIsInUse() throws Exception {
+        try (Connection connection = dataSource().getConnection();
+             PreparedStatement first = connection.prepareStatement("select 1");
+             PreparedStatement second = connection.prepareStatement("select 1")) {
+            assertThat(second.toString()).isNotEqualTo(first.toString());
+        }
+    }
+
+    @Test
+    public void resetsTheStatementSettingsOnReuse() throws Exception {
+        try (Connection connection = dataSource().getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("select 1")) {
+                statement.setMaxRows(5);
+                statement.setQueryTimeout(10);
+                statement.setFetchSize(3);
+            }
+            try (PreparedStatement statement = connection.prepareStatement("select 1")) {
+                assertThat(statement.getMaxRows()).isZero();
+                assertThat(statement.getQueryTimeout()).isZero();
+                assertThat(statement.getFetchSize()).isNotEqualTo(3);
+            }
+        }
+    }
+
+    @Test
+    public void closesTheResultSetsOfAReleasedStatement() throws Exception {
+        try (Connection connection = dataSource().getConnection()) {
+            final ResultSet set;
+            try (PreparedStatement statement = connection.prepareStatement("select 1")) {
+                set = statement.executeQuery();
+            }
+            assertThat(set.isClosed()).isTrue();
+        }
+    }
+
+    @Test
+    public void aReleasedStatementCannotBeUsed() throws Exception {
+        try (Connection connection = dataSource().getConnection()) {
+            final PreparedStatement released = connection.prepareStatement("select 1");
+            released.close();
+
+            try (PreparedStatement reused = connection.prepareStatement("select 1")) {
+                assertThat(reused.toString()).isEqualTo(released.toString());
+                assertThat(released.isClosed()).isTrue();
+                try {
+                    released.executeQuery();
+                    fail("expected the released statement to be closed");
+                } catch (SQLException e) {
+                    assertThat(reused.isClosed()).isFalse();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void statementsReturnThePooledConnection() throws Exception {
+        try (Connection connection = dataSource().getConnection();
+             Statement statement = connection.createStatement();
+             PreparedStatement cached = connection.prepareStatement("select 1");
+             PreparedStatement uncached = connection.prepareStatement("select 1")) {
+            assertThat(statement.getConnection()).isSameAs(connection);
+            assertThat(cached.getConnection()).isSameAs(connection);
+            assertThat(uncached.getConnection()).isSameAs(connection);
+        }
+    }
+
+    @Test
+    public void closesTheStatementsOfAReturnedConnection() throws Exception {
+        final Statement statement;
+        final PreparedStatement prepared;
+        try (Connection connection = dataSource().getConnection()) {
+            statement = connection.createStatement();
+            prepared = connection.prepareStatement("select 1");
+        }
+        assertThat(statement.isClosed()).isTrue();
+        assertThat(prepared.isClosed()).isTrue();
+    }
+
+    @Test
+    public void resetsTheConnectionPropertiesOnReturn() throws Exception {
+        factory.setAutoCommitByDefault(true);
+        factory.setMaxSize(1);
+
+        try (Connection connection = dataSource().getConnection()) {
+            connection.setAutoCommit(false);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(connection.getAutoCommit()).isTrue();
+        }
+    }
+
+    @Test
+    public void timesOutIfThePoolIsExhausted() throws Exception {
+        factory.setMaxWaitForConnection(Duration.seconds(1));
+
+        try (Connection first = dataSource().getConnection();
+             Connection second = dataSource.getConnection()) {
+            try {
+                dataSource.getConnection();
+                fail("expected a timeout");
+            } catch (SQLTimeoutException e) {
+                assertThat(e.getMessage()).contains("test");
+            }
+        }
+        assertThat(metricRegistry.getMeters()
+                .get("io.dropwizard.db.ManagedConcurrentBagDataSource.test.timeouts").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void registersPoolMetrics() throws Exception {
+        try (Connection connection = dataSource().getConnection()) {
+            assertThat(metricRegistry.getGauges()
+                    .get("io.dropwizard.db.ManagedConcurrentBagDataSource.test.active").getValue()).isEqualTo(1);
+            assertThat(metricRegistry.getGauges()
+                    .get("io.dropwizard.db.ManagedConcurrentBagDataSource.test.utilization").getValue())
+                    .isEqualTo(0.5);
+        }
+        assertThat(metricRegistry.getTimers()
+                .get("io.dropwizard.db.ManagedConcurrentBagDataSource.test.wait").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void healthCheckBorrowsAConnection() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final HealthCheck.Result result = new ConnectionPoolHealthCheck(executor, Duration.seconds(5),
+                    (ManagedConcurrentBagDataSource) dataSource(), "SELECT 1").execute();
+
+            assertThat(result.isHealthy()).isTrue();
+            assertThat(result.getMessage()).startsWith("0 of 2 connections in use");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void registersAPoolHealthCheck() throws Exception {
+        final HealthCheckRegistry healthCheckRegistry = new HealthCheckRegistry();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            dataSource = factory.build(metricRegistry, healthCheckRegistry, executor, "test");
+            dataSource.start();
+
+            assertThat(healthCheckRegistry.getNames()).contains("test-pool");
+            assertThat(healthCheckRegistry.runHealthCheck("test-pool").isHealthy()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.dropwizard.db;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentBagTest {
+    private static class TestEntry extends ConcurrentBag.Entry {
+        TestEntry(int state) {
+            super(state);
+        }
+    }
+
+    private final ConcurrentBag<TestEntry> bag = new ConcurrentBag<>(true);
+
+    @Test
+    public void borrowsAnUnusedEntry() throws Exception {
+        final TestEntry entry = new TestEntry(ConcurrentBag.NOT_IN_USE);
+        bag.add(entry);
+
+        assertThat(bag.borrow(0, TimeUnit.MILLISECONDS)).isSameAs(entry);
+        assertThat(entry.getState()).isEqualTo(ConcurrentBag.IN_USE);
+        assertThat(bag.borrow(0, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void prefersTheEntryTheThreadReturnedLast() throws Exception {
+        final TestEntry first = new TestEntry(ConcurrentBag.NOT_IN_USE);
+        final TestEntry second = new TestEntry(ConcurrentBag.NOT_IN_USE);
+        bag.add(first);
+        bag.add(second);
+
+        assertThat(bag.borrow(0, TimeUnit.MILLISECONDS)).isSameAs(first);
+        assertThat(bag.borrow(0, TimeUnit.MILLISECONDS)).isSameAs(second);
+        bag.requite(first);
+        bag.requite(second);
+
+        // a scan of all entries would find the first one
+        assertThat(bag.borrow(0, TimeUnit.MILLISECONDS)).isSameAs(second);
+    }
+
+    @Test
+    public void handsAReturnedEntryToAWaitingThread() throws Exception {
+        final TestEntry entry = new TestEntry(ConcurrentBag.NOT_IN_USE);
+        bag.add(entry);
+        assertThat(bag.borrow(0, TimeUnit.MILLISECONDS)).isSameAs(entry);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch started = new CountDownLatch(1);
+            final Future<TestEntry> waiter = executor.submit(() -> {
+                started.countDown();
+                return bag.borrow(10, TimeUnit.SECONDS);
+            });
+            started.await();
+            while (bag.getWaitingThreadCount() == 0) {
+                Thread.yield();
+            }
+            bag.requite(entry);
+
+            assertThat(waiter.get(10, TimeUnit.SECONDS)).isSameAs(entry);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void timesOutIfNoEntryIsReturned() throws Exception {
+        bag.add(new TestEntry(ConcurrentBag.IN_USE));
+
+        assertThat(bag.borrow(10, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(bag.getWaitingThreadCount()).isZero();
+    }
+
+    @Test
+    public void reservedEntriesCannotBeBorrowed() throws Exception {
+        final TestEntry entry = new TestEntry(ConcurrentBag.NOT_IN_USE);
+        bag.add(entry);
+
+        assertThat(bag.reserve(entry)).isTrue();
+        assertThat(bag.borrow(0, TimeUnit.MILLISECONDS)).isNull();
+
+        bag.unreserve(entry);
+        assertThat(bag.borrow(0, TimeUnit.MILLISECONDS)).isSameAs(entry);
+    }
+
+    @Test
+    public void removesBorrowedAndReservedEntriesOnly() throws Exception {
+        final TestEntry borrowed = new TestEntry(ConcurrentBag.IN_USE);
+        final TestEntry unused = new TestEntry(ConcurrentBag.NOT_IN_USE);
+        bag.add(borrowed);
+        bag.add(unused);
+
+        assertThat(bag.remove(unused)).isFalse();
+        assertThat(bag.remove(borrowed)).isTrue();
+        assertThat(borrowed.getState()).isEqualTo(ConcurrentBag.REMOVED);
+        assertThat(bag.values()).containsExactly(unused);
+    }
+
+    @Test
+    public void countsEntriesByState() {
+        bag.add(new TestEntry(ConcurrentBag.IN_USE));
+        bag.add(new TestEntry(ConcurrentBag.NOT_IN_USE));
+        bag.add(new TestEntry(ConcurrentBag.NOT_IN_USE));
+
+        assertThat(bag.size()).isEqualTo(3);
+        assertThat(bag.getCount(ConcurrentBag.IN_USE)).isEqualTo(1);
+        assertThat(bag.values(ConcurrentBag.NOT_IN_USE)).hasSize(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotAddToAClosedBag() {
+        bag.close();
+        bag.add(new TestEntry(ConcurrentBag.NOT_IN_USE));
+    }
+}
@@ -1,5 +1,6 @@
 package io.dropwizard.health;
 
+import com.codahale.metrics.InstrumentedExecutorService;
 import com.codahale.metrics.InstrumentedScheduledExecutorService;
 import com.codahale.metrics.InstrumentedThreadFactory;
 import com.codahale.metrics.MetricRegistry;
@@ -17,7 +18,9 @@ import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
 import io.dropwizard.util.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServlet;
@@ -158,8 +161,9 @@ public class DefaultHealthFactory implements HealthFactory {
         final ScheduledExecutorService scheduledHealthCheckExecutor = createScheduledExecutorForHealthChecks(
                 healthCheckConfigs.size(), metrics, lifecycle, fullName);
         final HealthCheckScheduler scheduler = new HealthCheckScheduler(scheduledHealthCheckExecutor);
+        final ExecutorService healthCheckExecutor = createExecutorForHealthChecks(metrics, lifecycle, fullName);
         final HealthCheckManager healthCheckManager = new HealthCheckManager(healthCheckConfigs, scheduler, metrics,
-                shutdownWaitPeriod, initialOverallState);
+                shutdownWaitPeriod, initialOverallState, healthCheckExecutor);
         healthCheckManager.initializeAppHealth();
 
         // setup servlet to respond to health check requests
@@ -203,4 +207,25 @@ public class DefaultHealthFactory implements HealthFactory {
 
         return new InstrumentedScheduledExecutorService(scheduledExecutorService, metrics);
     }
+
+    private ExecutorService createExecutorForHealthChecks(final MetricRegistry metrics,
+                                                          final LifecycleEnvironment lifecycle,
+                                                          final String fullName) {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(fullName + "-worker-%d")
+                .setDaemon(true)
+                .setUncaughtExceptionHandler((t, e) -> LOGGER.error("Thread={} died due to uncaught exception", t, e))
+                .build();
+
+        // a check which ignores the interrupt after its timeout keeps its thread, but it isn't submitted again until
+        // that execution returns, so there are never more threads than checks
+        final ExecutorService executorService =
+                lifecycle.executorService(fullName + "-executor", new InstrumentedThreadFactory(threadFactory, metrics))
+                        .minThreads(0)
+                        .maxThreads(Integer.MAX_VALUE)
+                        .workQueue(new SynchronousQueue<>())
+                        .build();
+
+        return new InstrumentedExecutorService(executorService, metrics, fullName + "-executor");
+    }
 }
@@ -3,6 +3,7 @@ package io.dropwizard.health;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.health.HealthCheck;
 import com.codahale.metrics.health.HealthCheckRegistryListener;
 import io.dropwizard.health.conf.HealthCheckConfiguration;
@@ -14,6 +15,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
@@ -34,6 +36,8 @@ public class HealthCheckManager implements HealthCheckRegistryListener, StateCha
     private final Map<String, ScheduledHealthCheck> checks;
     private final Map<String, HealthCheckConfiguration> configs;
     private final MetricRegistry metrics;
+    @Nullable
+    private final ExecutorService checkExecutor;
     private final Duration shutdownWaitPeriod;
     private final boolean initialOverallState;
     private final String aggregateHealthyName;
@@ -45,7 +49,21 @@ public class HealthCheckManager implements HealthCheckRegistryListener, StateCha
                               final MetricRegistry metrics,
                               final Duration shutdownWaitPeriod,
                               final boolean initialOverallState) {
-        this(configs, scheduler, metrics, shutdownWaitPeriod, initialOverallState, new HashMap<>());
+        this(configs, scheduler, metrics, shutdownWaitPeriod, initialOverallState, null, new HashMap<>());
+    }
+
+    /**
+     * @param checkExecutor executes the checks which have a timeout, so the scheduler can give up on them once the
+     *                      timeout has passed
+     */
+    public HealthCheckManager(final List<HealthCheckConfiguration> configs,
+                              final HealthCheckScheduler scheduler,
+                              final MetricRegistry metrics,
+                              final Duration shutdownWaitPeriod,
+                              final boolean initialOverallState,
+                              final ExecutorService checkExecutor) {
+        this(configs, scheduler, metrics, shutdownWaitPeriod, initialOverallState,
+                Objects.requireNonNull(checkExecutor), new HashMap<>());
     }
 
     // Visible for testing
@@ -55,10 +73,21 @@ public class HealthCheckManager implements HealthCheckRegistryListener, StateCha
                        final Duration shutdownWaitPeriod,
                        final boolean initialOverallState,
                        final Map<String, ScheduledHealthCheck> checks) {
+        this(configs, scheduler, metrics, shutdownWaitPeriod, initialOverallState, null, checks);
+    }
+
+    private HealthCheckManager(final List<HealthCheckConfiguration> configs,
+                               final HealthCheckScheduler scheduler,
+                               final MetricRegistry metrics,
+                               final Duration shutdownWaitPeriod,
+                               final boolean initialOverallState,
+                               @Nullable final ExecutorService checkExecutor,
+                               final Map<String, ScheduledHealthCheck> checks) {
         this.configs = configs.stream()
                 .collect(Collectors.toMap(HealthCheckConfiguration::getName, Function.identity()));
         this.scheduler = Objects.requireNonNull(scheduler);
         this.metrics = Objects.requireNonNull(metrics);
+        this.checkExecutor = checkExecutor;
         this.shutdownWaitPeriod = shutdownWaitPeriod;
         this.initialOverallState = initialOverallState;
         this.checks = Objects.requireNonNull(checks);
@@ -87,9 +116,10 @@ public class HealthCheckManager implements HealthCheckRegistryListener, StateCha
         final State state = new State(name, schedule.getFailureAttempts(), schedule.getSuccessAttempts(), initialState, this);
         final Counter healthyCheckCounter = metrics.counter(MetricRegistry.name("health", name, "healthy"));
         final Counter unhealthyCheckCounter = metrics.counter(MetricRegistry.name("health",  name, "unhealthy"));
+        final Timer latency = metrics.timer(MetricRegistry.name("health", name, "latency"));
 
         final ScheduledHealthCheck check = new ScheduledHealthCheck(name, type, critical, healthCheck, schedule, state,
-                healthyCheckCounter, unhealthyCheckCounter);
+                healthyCheckCounter, unhealthyCheckCounter, latency, checkExecutor);
         checks.put(name, check);
 
         // handle initial state of 'false' to ensure counts line up
@@ -147,11 +177,13 @@ public class HealthCheckManager implements HealthCheckRegistryListener, StateCha
             log.info("A critical dependency is now healthy: name={}, type={}", name, type);
             switch (type) {
                 case ALIVE:
-                    updateCriticalStatus(isAppAlive, unhealthyCriticalAliveChecks.decrementAndGet());
+                    unhealthyCriticalAliveChecks.decrementAndGet();
+                    updateCriticalStatus(isAppAlive, unhealthyCriticalAliveChecks);
                     return;
                 case READY:
                     if (!shuttingDown) {
-                        updateCriticalStatus(isAppHealthy, unhealthyCriticalHealthChecks.decrementAndGet());
+                        unhealthyCriticalHealthChecks.decrementAndGet();
+                        updateCriticalStatus(isAppHealthy, unhealthyCriticalHealthChecks);
                     } else {
                         log.info("Status change is ignored during shutdown: name={}, type={}", name, type);
                     }
@@ -161,18 +193,26 @@ public class HealthCheckManager implements HealthCheckRegistryListener, StateCha
             log.error("A critical dependency is now unhealthy: name={}, type={}", name, type);
             switch (type) {
                 case ALIVE:
-                    updateCriticalStatus(isAppAlive, unhealthyCriticalAliveChecks.incrementAndGet());
+                    unhealthyCriticalAliveChecks.incrementAndGet();
+                    updateCriticalStatus(isAppAlive, unhealthyCriticalAliveChecks);
                     return;
                 case READY:
-                    updateCriticalStatus(isAppHealthy, unhealthyCriticalHealthChecks.incrementAndGet());
+                    unhealthyCriticalHealthChecks.incrementAndGet();
+                    updateCriticalStatus(isAppHealthy, unhealthyCriticalHealthChecks);
                     return;
             }
         }
         log.warn("Unexpected health check type: type={}", type);
     }
 
-    private void updateCriticalStatus(final AtomicBoolean status, final int count) {
-        status.set(count == 0);
+    private void updateCriticalStatus(final AtomicBoolean status, final AtomicInteger unhealthyCriticalChecks) {
+        // checks run concurrently, so another check may change the count while we publish the status. Publish
+        // again until the count is stable, the last writer then always publishes the latest count.
+        int count;
+        do {
+            count = unhealthyCriticalChecks.get();
+            status.set(count == 0);
+        } while (count != unhealthyCriticalChecks.get());
         log.debug("current status: unhealthy-critical={}", count);
     }
 
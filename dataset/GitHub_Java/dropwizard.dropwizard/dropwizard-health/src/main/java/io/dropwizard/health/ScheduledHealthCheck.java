@@ -1,10 +1,20 @@
 package io.dropwizard.health;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.health.HealthCheck;
 import io.dropwizard.health.conf.HealthCheckType;
 import io.dropwizard.health.conf.Schedule;
+import io.dropwizard.util.Duration;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,6 +28,12 @@ class ScheduledHealthCheck implements Runnable {
     private final State state;
     private final Counter healthyCheckCounter;
     private final Counter unhealthyCheckCounter;
+    private final Timer latency;
+    @Nullable
+    private final ExecutorService executor;
+    // the latest execution submitted to the executor, successive runs may be on different scheduler threads
+    @Nullable
+    private volatile Execution running;
 
     ScheduledHealthCheck(final String name,
                          final HealthCheckType type,
@@ -27,6 +43,26 @@ class ScheduledHealthCheck implements Runnable {
                          final State state,
                          final Counter healthyCheckCounter,
                          final Counter unhealthyCheckCounter) {
+        this(name, type, critical, healthCheck, schedule, state, healthyCheckCounter, unhealthyCheckCounter,
+                new Timer(), null);
+    }
+
+    /**
+     * @param latency     records how long each execution of the check takes
+     * @param executor    runs the check, so it can be interrupted once the schedule's timeout has passed; without
+     *                    an executor the check runs on the calling thread and the timeout is not enforced. A check
+     *                    is never submitted again while its previous execution is still running.
+     */
+    ScheduledHealthCheck(final String name,
+                         final HealthCheckType type,
+                         final boolean critical,
+                         final HealthCheck healthCheck,
+                         final Schedule schedule,
+                         final State state,
+                         final Counter healthyCheckCounter,
+                         final Counter unhealthyCheckCounter,
+                         final Timer latency,
+                         @Nullable final ExecutorService executor) {
         this.name = Objects.requireNonNull(name);
         this.type = type;
         this.critical = critical;
@@ -35,6 +71,8 @@ class ScheduledHealthCheck implements Runnable {
         this.state = Objects.requireNonNull(state);
         this.healthyCheckCounter = Objects.requireNonNull(healthyCheckCounter);
         this.unhealthyCheckCounter = Objects.requireNonNull(unhealthyCheckCounter);
+        this.latency = Objects.requireNonNull(latency);
+        this.executor = executor;
     }
 
     public String getName() {
@@ -62,11 +100,19 @@ class ScheduledHealthCheck implements Runnable {
         log.trace("executing health check: name={}", name);
 
         HealthCheck.Result result;
+        final Timer.Context context = latency.time();
         try {
-           result = healthCheck.execute();
+            result = execute();
+        } catch (final InterruptedException e) {
+            // the check has been unscheduled while it was running
+            log.debug("Check for name={} was interrupted", name);
+            Thread.currentThread().interrupt();
+            return;
         } catch (final Exception e) {
             log.warn("Check for name={} failed exceptionally", name, e);
             result = HealthCheck.Result.unhealthy(e);
+        } finally {
+            context.stop();
         }
 
         if (result.isHealthy()) {
@@ -80,6 +126,65 @@ class ScheduledHealthCheck implements Runnable {
         }
     }
 
+    private HealthCheck.Result execute() throws InterruptedException {
+        if (executor == null) {
+            return healthCheck.execute();
+        }
+
+        final Duration timeout = schedule.getTimeout();
+        final Execution previous = running;
+        if (previous != null && previous.isRunning()) {
+            // the previous execution ignored the interrupt after its timeout, don't occupy another thread
+            log.warn("Check for name={} is still running after timeout={}", name, timeout);
+            return HealthCheck.Result.unhealthy("Previous execution still running after " + timeout);
+        }
+        final Execution execution = new Execution();
+        final Future<HealthCheck.Result> future;
+        try {
+            future = executor.submit(execution);
+        } catch (final RejectedExecutionException e) {
+            // shutting down
+            return HealthCheck.Result.unhealthy(e);
+        }
+        running = execution;
+        try {
+            return timeout == null ? future.get() : future.get(timeout.toNanoseconds(), TimeUnit.NANOSECONDS);
+        } catch (final TimeoutException e) {
+            future.cancel(true);
+            log.warn("Check for name={} did not complete within timeout={}", name, timeout);
+            return HealthCheck.Result.unhealthy("Timed out after " + timeout);
+        } catch (final ExecutionException e) {
+            log.warn("Check for name={} failed exceptionally", name, e.getCause());
+            return HealthCheck.Result.unhealthy(e.getCause());
+        } catch (final InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * An execution of the check on the executor. Unlike its {@link Future}, which is done as soon as it has been
+     * cancelled, it tells whether the check is actually still running.
+     */
+    private final class Execution implements Callable<HealthCheck.Result> {
+        private volatile boolean started;
+        private volatile boolean finished;
+
+        @Override
+        public HealthCheck.Result call() {
+            started = true;
+            try {
+                return healthCheck.execute();
+            } finally {
+                finished = true;
+            }
+        }
+
+        boolean isRunning() {
+            return started && !finished;
+        }
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) return true;
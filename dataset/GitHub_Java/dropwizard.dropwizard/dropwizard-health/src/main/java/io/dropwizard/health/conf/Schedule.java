@@ -21,6 +21,10 @@ public class Schedule {
     @JsonProperty
     private Duration downtimeInterval = Duration.seconds(30);
 
+    @Nullable
+    @JsonProperty
+    private Duration timeout = null;
+
     @Min(0)
     @JsonProperty
     private int failureAttempts = 3;
@@ -54,6 +58,19 @@ public class Schedule {
         this.downtimeInterval = downtimeInterval;
     }
 
+    /**
+     * @return how long a single execution of the check may take before it is cancelled and counted as a failure,
+     * or {@code null} to let the check run as long as it takes
+     */
+    @Nullable
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(@Nullable final Duration timeout) {
+        this.timeout = timeout;
+    }
+
     public int getFailureAttempts() {
         return failureAttempts;
     }
@@ -79,11 +96,13 @@ public class Schedule {
                 successAttempts == schedule.successAttempts &&
                 Objects.equals(initialDelay, schedule.initialDelay) &&
                 Objects.equals(checkInterval, schedule.checkInterval) &&
-                Objects.equals(downtimeInterval, schedule.downtimeInterval);
+                Objects.equals(downtimeInterval, schedule.downtimeInterval) &&
+                Objects.equals(timeout, schedule.timeout);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(initialDelay, checkInterval, downtimeInterval, failureAttempts, successAttempts);
+        return Objects.hash(initialDelay, checkInterval, downtimeInterval, timeout, failureAttempts,
+                successAttempts);
     }
 }
@@ -2,9 +2,18 @@ package io.dropwizard.health;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.health.HealthCheck;
 import io.dropwizard.health.conf.HealthCheckType;
 import io.dropwizard.health.conf.Schedule;
+import io.dropwizard.util.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -65,4 +74,129 @@ public class ScheduledHealthCheckTest {
         assertThat(healthyCounter.getCount()).isEqualTo(0L);
         assertThat(unhealthyCounter.getCount()).isEqualTo(1L);
     }
+
+    @Test
+    public void checkExceedingTheTimeoutShouldResultInFail() throws Exception {
+        when(schedule.getSuccessAttempts()).thenReturn(1);
+        when(schedule.getFailureAttempts()).thenReturn(1);
+        when(schedule.getTimeout()).thenReturn(Duration.milliseconds(50));
+
+        final String name = "test";
+        final Counter healthyCounter = metrics.counter("test.healthy");
+        final Counter unhealthyCounter = metrics.counter("test.unhealthy");
+        final Timer latency = metrics.timer("test.latency");
+        final State state = new State(name, schedule.getFailureAttempts(), schedule.getSuccessAttempts(), true,
+                (checkName, newState) -> {});
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ScheduledHealthCheck scheduledHealthCheck = new ScheduledHealthCheck(name, HealthCheckType.READY,
+                    true, healthCheck, schedule, state, healthyCounter, unhealthyCounter, latency, executor);
+            when(healthCheck.execute()).thenAnswer(invocation -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return HealthCheck.Result.healthy();
+            });
+
+            scheduledHealthCheck.run();
+
+            assertThat(scheduledHealthCheck.isHealthy()).isFalse();
+            assertThat(healthyCounter.getCount()).isEqualTo(0L);
+            assertThat(unhealthyCounter.getCount()).isEqualTo(1L);
+            assertThat(latency.getCount()).isEqualTo(1L);
+            assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void checkWithoutTimeoutShouldRunOnTheExecutor() throws Exception {
+        when(schedule.getSuccessAttempts()).thenReturn(1);
+        when(schedule.getFailureAttempts()).thenReturn(1);
+
+        final String name = "test";
+        final Counter healthyCounter = metrics.counter("test.healthy");
+        final Counter unhealthyCounter = metrics.counter("test.unhealthy");
+        final State state = new State(name, schedule.getFailureAttempts(), schedule.getSuccessAttempts(), false,
+                (checkName, newState) -> {});
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ScheduledHealthCheck scheduledHealthCheck = new ScheduledHealthCheck(name, HealthCheckType.READY,
+                    true, healthCheck, schedule, state, healthyCounter, unhealthyCounter, new Timer(), executor);
+            final AtomicReference<Thread> thread = new AtomicReference<>();
+            when(healthCheck.execute()).thenAnswer(invocation -> {
+                thread.set(Thread.currentThread());
+                return HealthCheck.Result.healthy();
+            });
+
+            scheduledHealthCheck.run();
+
+            assertThat(scheduledHealthCheck.isHealthy()).isTrue();
+            assertThat(healthyCounter.getCount()).isEqualTo(1L);
+            assertThat(thread.get()).isNotNull().isNotSameAs(Thread.currentThread());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void checkStillRunningAfterItsTimeoutShouldNotBeSubmittedAgain() throws Exception {
+        when(schedule.getSuccessAttempts()).thenReturn(1);
+        when(schedule.getFailureAttempts()).thenReturn(1);
+        when(schedule.getTimeout()).thenReturn(Duration.milliseconds(50));
+
+        final String name = "test";
+        final Counter healthyCounter = metrics.counter("test.healthy");
+        final Counter unhealthyCounter = metrics.counter("test.unhealthy");
+        final State state = new State(name, schedule.getFailureAttempts(), schedule.getSuccessAttempts(), true,
+                (checkName, newState) -> {});
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger executions = new AtomicInteger();
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final ScheduledHealthCheck scheduledHealthCheck = new ScheduledHealthCheck(name, HealthCheckType.READY,
+                    true, healthCheck, schedule, state, healthyCounter, unhealthyCounter, new Timer(), executor);
+            when(healthCheck.execute()).thenAnswer(invocation -> {
+                // ignores the interrupt
+                if (executions.incrementAndGet() == 1) {
+                    while (true) {
+                        try {
+                            release.await();
+                            break;
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                }
+                return HealthCheck.Result.healthy();
+            });
+
+            scheduledHealthCheck.run();
+            scheduledHealthCheck.run();
+
+            assertThat(executions.get()).isEqualTo(1);
+            assertThat(scheduledHealthCheck.isHealthy()).isFalse();
+            assertThat(unhealthyCounter.getCount()).isEqualTo(2L);
+
+            release.countDown();
+            await(() -> {
+                scheduledHealthCheck.run();
+                return executions.get() == 2;
+            });
+            assertThat(scheduledHealthCheck.isHealthy()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
 }
@@ -7,21 +7,36 @@ import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A subtype resolver which discovers subtypes via
  * {@code META-INF/services/io.dropwizard.jackson.Discoverable}.
+ * <p>
+ * Classpath entries which have been compiled with the {@link io.dropwizard.jackson.processor.SubtypeIndexProcessor}
+ * contain an index which records their service files. If every classpath entry of the class loader is indexed, the
+ * subtypes are taken from the indexes and no service file is looked up. As soon as a single entry isn't indexed,
+ * e.g. a plugin which only ships the service file of an interface declared elsewhere, all service files are read.
  */
 public class DiscoverableSubtypeResolver extends StdSubtypeResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(DiscoverableSubtypeResolver.class);
 
+    private final ClassLoader classLoader;
     private final ImmutableList<Class<?>> discoveredSubtypes;
 
     public DiscoverableSubtypeResolver() {
@@ -29,14 +44,43 @@ public class DiscoverableSubtypeResolver extends StdSubtypeResolver {
     }
 
     public DiscoverableSubtypeResolver(Class<?> rootKlass) {
-        final ImmutableList.Builder<Class<?>> subtypes = ImmutableList.builder();
-        for (Class<?> klass : discoverServices(rootKlass)) {
-            for (Class<?> subtype : discoverServices(klass)) {
-                subtypes.add(subtype);
-                registerSubtypes(subtype);
+        this(rootKlass, true);
+    }
+
+    /**
+     * @param rootKlass the type whose service file lists the interfaces to discover the subtypes of
+     * @param useIndex  whether to use the subtype indexes on the classpath, or to read all service files
+     */
+    public DiscoverableSubtypeResolver(Class<?> rootKlass, boolean useIndex) {
+        // use classloader that loaded this class to find the service descriptors on the classpath
+        // better than ClassLoader.getSystemResources() which may not be the same classloader if ths app
+        // is running in a container (e.g. via maven exec:java)
+        this(rootKlass, useIndex, null);
+    }
+
+    /**
+     * @param rootKlass   the type whose service file lists the interfaces to discover the subtypes of
+     * @param useIndex    whether to use the subtype indexes on the classpath, or to read all service files
+     * @param classLoader the class loader to discover and load the subtypes with, or {@code null} for the one which
+     *                    loaded this class
+     */
+    public DiscoverableSubtypeResolver(Class<?> rootKlass, boolean useIndex, @Nullable ClassLoader classLoader) {
+        this.classLoader = classLoader == null ? getClass().getClassLoader() : classLoader;
+
+        // an interface or subtype may be listed by several classpath entries, register it only once
+        final Set<Class<?>> subtypes = new LinkedHashSet<>();
+        final SubtypeIndex index = useIndex ? SubtypeIndex.load(this.classLoader) : null;
+        if (index != null && index.isComplete(classpathEntries(this.classLoader), rootKlass)) {
+            subtypes.addAll(loadClasses(index.getSubtypes(rootKlass)));
+        } else {
+            for (Class<?> klass : new LinkedHashSet<>(discoverServices(rootKlass))) {
+                subtypes.addAll(discoverServices(klass));
             }
         }
-        this.discoveredSubtypes = subtypes.build();
+        for (Class<?> subtype : subtypes) {
+            registerSubtypes(subtype);
+        }
+        this.discoveredSubtypes = ImmutableList.copyOf(subtypes);
     }
 
     public ImmutableList<Class<?>> getDiscoveredSubtypes() {
@@ -46,23 +90,18 @@ public class DiscoverableSubtypeResolver extends StdSubtypeResolver {
     protected List<Class<?>> discoverServices(Class<?> klass) {
         final List<Class<?>> serviceClasses = Lists.newArrayList();
         try {
-            // use classloader that loaded this class to find the service descriptors on the classpath
-            // better than ClassLoader.getSystemResources() which may not be the same classloader if ths app
-            // is running in a container (e.g. via maven exec:java)
-            final Enumeration<URL> resources = this.getClass().getClassLoader().getResources("META-INF/services/" + klass.getName());
+            final Enumeration<URL> resources = classLoader.getResources("META-INF/services/" + klass.getName());
             while (resources.hasMoreElements()) {
                 final URL url = resources.nextElement();
                 try (InputStream input = url.openStream();
                      InputStreamReader streamReader = new InputStreamReader(input, Charsets.UTF_8);
                      BufferedReader reader = new BufferedReader(streamReader)) {
                     String line;
+                    final List<String> names = Lists.newArrayList();
                     while ((line = reader.readLine()) != null) {
-                        try {
-                            serviceClasses.add(Class.forName(line.trim()));
-                        } catch (ClassNotFoundException e) {
-                            LOGGER.info("Unable to load {}", line);
-                        }
+                        names.add(line.trim());
                     }
+                    serviceClasses.addAll(loadClasses(names));
                 }
             }
         } catch (IOException e) {
@@ -70,4 +109,48 @@ public class DiscoverableSubtypeResolver extends StdSubtypeResolver {
         }
         return serviceClasses;
     }
+
+    /**
+     * @return the classpath entries the class loader and its parents look up resources in, or {@code null} if they
+     * can't be determined. The JDK's own loaders are skipped, they don't contain any service files of ours.
+     */
+    @Nullable
+    private static List<URL> classpathEntries(ClassLoader classLoader) {
+        final ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+        final List<URL> entries = new ArrayList<>();
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader == systemClassLoader.getParent()) {
+                continue;
+            }
+            if (loader instanceof URLClassLoader) {
+                entries.addAll(Arrays.asList(((URLClassLoader) loader).getURLs()));
+            } else if (loader == systemClassLoader && System.getProperty("jdk.module.path") == null) {
+                for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                    if (path.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        entries.add(Paths.get(path).toUri().toURL());
+                    } catch (MalformedURLException | RuntimeException e) {
+                        return null;
+                    }
+                }
+            } else {
+                return null;
+            }
+        }
+        return entries;
+    }
+
+    private List<Class<?>> loadClasses(List<String> names) {
+        final List<Class<?>> classes = Lists.newArrayListWithCapacity(names.size());
+        for (String name : names) {
+            try {
+                classes.add(Class.forName(name, true, classLoader));
+            } catch (ClassNotFoundException e) {
+                LOGGER.info("Unable to load {}", name);
+            }
+        }
+        return classes;
+    }
 }
@@ -0,0 +1,177 @@
+package io.dropwizard.jackson;
+
+import com.google.common.base.Charsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * The subtype indexes written by {@link io.dropwizard.jackson.processor.SubtypeIndexProcessor} which are
+ * available on the classpath.
+ * <p>
+ * An index file declares the root types it has been generated for in {@code @root <root>} lines. The service files
+ * of the root types and of their subtypes in the classpath entry of the index are recorded in
+ * {@code @service <type> <subtype>...} lines, listing the subtypes of the file. Empty lines and lines starting with
+ * {@code #} are ignored.
+ */
+final class SubtypeIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubtypeIndex.class);
+
+    static final String LOCATION = "META-INF/dropwizard/subtypes.idx";
+
+    private static final String ROOT_PREFIX = "@root ";
+    private static final String SERVICE_PREFIX = "@service ";
+
+    /**
+     * The root types of each classpath entry with an index, keyed by the URL prefix of the entry.
+     */
+    private final Map<String, Set<String>> roots;
+
+    /**
+     * The subtypes listed in the recorded service files of all entries, keyed by the name of the service type.
+     */
+    private final Map<String, Set<String>> services;
+
+    private SubtypeIndex(Map<String, Set<String>> roots, Map<String, Set<String>> services) {
+        this.roots = roots;
+        this.services = services;
+    }
+
+    static SubtypeIndex load(ClassLoader classLoader) {
+        final Map<String, Set<String>> roots = new HashMap<>();
+        final Map<String, Set<String>> services = new HashMap<>();
+        try {
+            final Enumeration<URL> resources = classLoader.getResources(LOCATION);
+            while (resources.hasMoreElements()) {
+                final URL url = resources.nextElement();
+                final String external = url.toExternalForm();
+                final Set<String> indexedRoots = new HashSet<>();
+                final Map<String, List<String>> indexedServices = new HashMap<>();
+                try {
+                    read(url, indexedRoots, indexedServices);
+                } catch (IOException e) {
+                    // leaves the entry unindexed, so the service files are read
+                    LOGGER.warn("Unable to read {}", url, e);
+                    continue;
+                }
+                roots.put(external.substring(0, external.length() - LOCATION.length()), indexedRoots);
+                for (Map.Entry<String, List<String>> service : indexedServices.entrySet()) {
+                    services.computeIfAbsent(service.getKey(), t -> new LinkedHashSet<>()).addAll(service.getValue());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to load {}", LOCATION, e);
+        }
+        return new SubtypeIndex(roots, services);
+    }
+
+    private static void read(URL url, Set<String> roots, Map<String, List<String>> services) throws IOException {
+        try (InputStream input = url.openStream();
+             InputStreamReader streamReader = new InputStreamReader(input, Charsets.UTF_8);
+             BufferedReader reader = new BufferedReader(streamReader)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith(ROOT_PREFIX)) {
+                    roots.add(line.substring(ROOT_PREFIX.length()).trim());
+                } else if (line.startsWith(SERVICE_PREFIX)) {
+                    final String[] names = line.substring(SERVICE_PREFIX.length()).trim().split("\\s+");
+                    services.put(names[0], Arrays.asList(names).subList(1, names.length));
+                } else if (!line.isEmpty() && !line.startsWith("#")) {
+                    LOGGER.warn("Ignoring malformed line in {}: {}", url, line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether the recorded service files are all there is, i.e. whether every classpath entry, including the
+     * ones added by the {@code Class-Path} of a jar's manifest, has an index for the root.
+     *
+     * @param entries the classpath entries of the class loader, or {@code null} if they are unknown
+     * @param root    the root type
+     * @return whether no service file outside of the indexes can list a subtype of the root
+     */
+    boolean isComplete(@Nullable List<URL> entries, Class<?> root) {
+        if (entries == null) {
+            return false;
+        }
+        final Deque<URL> pending = new ArrayDeque<>(entries);
+        final Set<String> visited = new HashSet<>();
+        while (!pending.isEmpty()) {
+            final URL entry = pending.poll();
+            final String external = entry.toExternalForm();
+            if (!visited.add(external)) {
+                continue;
+            }
+            // resources of a directory entry are resolved below it, the ones of a jar via a jar: URL
+            final boolean directory = external.endsWith("/");
+            final Set<String> indexedRoots = roots.get(directory ? external : "jar:" + external + "!/");
+            if (indexedRoots == null || !indexedRoots.contains(root.getName())) {
+                return false;
+            }
+            if (!directory) {
+                try {
+                    pending.addAll(manifestClassPath(entry));
+                } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+                    LOGGER.debug("Unable to read the manifest of {}", entry, e);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static List<URL> manifestClassPath(URL jar) throws IOException, URISyntaxException {
+        try (JarFile file = new JarFile(new File(jar.toURI()))) {
+            final Manifest manifest = file.getManifest();
+            final String classPath = manifest == null ? null
+                    : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (classPath == null) {
+                return Collections.emptyList();
+            }
+            final List<URL> entries = new ArrayList<>();
+            for (String path : classPath.trim().split("\\s+")) {
+                if (!path.isEmpty()) {
+                    entries.add(new URL(jar, path));
+                }
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * @return the names of the subtypes listed in the recorded service files of the interfaces which the recorded
+     * service files of the root list
+     */
+    List<String> getSubtypes(Class<?> root) {
+        final Set<String> subtypes = new LinkedHashSet<>();
+        for (String type : services.getOrDefault(root.getName(), Collections.emptySet())) {
+            subtypes.addAll(services.getOrDefault(type, Collections.emptySet()));
+        }
+        return new ArrayList<>(subtypes);
+    }
+}
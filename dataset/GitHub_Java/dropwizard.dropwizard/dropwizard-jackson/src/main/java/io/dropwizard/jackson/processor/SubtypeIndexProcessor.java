@@ -0,0 +1,175 @@
+package io.dropwizard.jackson.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An annotation processor which records the service files of a module in {@code META-INF/dropwizard/subtypes.idx},
+ * so {@link io.dropwizard.jackson.DiscoverableSubtypeResolver} doesn't have to look up and read the
+ * {@code META-INF/services} files at startup.
+ * <p>
+ * Every service file in the class output whose type is one of the root types or a subtype of one is recorded. The
+ * root types default to {@link io.dropwizard.jackson.Discoverable} and can be changed with the comma separated
+ * {@code dropwizard.subtypeIndex.roots} option. The service files have to be copied to the class output before
+ * compilation, as Maven's {@code process-resources} phase does. If the class output isn't a directory, no index is
+ * written and the resolver reads the service files.
+ * <p>
+ * The processor isn't registered as a service, add it to the annotation processors of the compiler, e.g. with the
+ * {@code annotationProcessorPaths} of the {@code maven-compiler-plugin}.
+ */
+// runs even if no compiled type is annotated, the index only depends on the service files
+@SupportedAnnotationTypes("*")
+@SupportedOptions(SubtypeIndexProcessor.ROOTS_OPTION)
+public class SubtypeIndexProcessor extends AbstractProcessor {
+    static final String ROOTS_OPTION = "dropwizard.subtypeIndex.roots";
+
+    // must match io.dropwizard.jackson.SubtypeIndex
+    static final String LOCATION = "META-INF/dropwizard/subtypes.idx";
+    private static final String ROOT_PREFIX = "@root ";
+    private static final String SERVICE_PREFIX = "@service ";
+    private static final String DEFAULT_ROOT = "io.dropwizard.jackson.Discoverable";
+
+    private final Map<String, TypeMirror> roots = new LinkedHashMap<>();
+
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+
+        final String option = processingEnv.getOptions().get(ROOTS_OPTION);
+        for (String name : (option == null ? DEFAULT_ROOT : option).split(",")) {
+            final TypeElement root = elements.getTypeElement(name.trim());
+            if (root == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Unable to find the subtype index root " + name.trim());
+            } else {
+                roots.put(elements.getBinaryName(root).toString(), types.erasure(root.asType()));
+            }
+        }
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        // the types compiled in all rounds are known by then
+        if (roundEnv.processingOver() && !roots.isEmpty()) {
+            writeIndex(processingEnv.getFiler());
+        }
+        // leave all annotations to other processors
+        return false;
+    }
+
+    private void writeIndex(Filer filer) {
+        final Map<String, List<String>> services;
+        try {
+            services = readServiceFiles(filer);
+        } catch (IOException | IllegalArgumentException | FileSystemNotFoundException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Unable to read the service files of the class output, not writing " + LOCATION + ": " + e);
+            return;
+        }
+        try {
+            final FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# Generated by " + SubtypeIndexProcessor.class.getName() + "\n");
+                for (String root : roots.keySet()) {
+                    writer.write(ROOT_PREFIX + root + "\n");
+                }
+                for (Map.Entry<String, List<String>> service : services.entrySet()) {
+                    writer.write(SERVICE_PREFIX + service.getKey());
+                    for (String subtype : service.getValue()) {
+                        writer.write(" " + subtype);
+                    }
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + LOCATION + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the subtypes listed in the service files of the roots and their subtypes, keyed by the service type
+     * @throws IOException if the service files can't be listed
+     */
+    private Map<String, List<String>> readServiceFiles(Filer filer) throws IOException {
+        // the index is written to META-INF/dropwizard, next to META-INF/services
+        final FileObject index = filer.getResource(StandardLocation.CLASS_OUTPUT, "", LOCATION);
+        final Path directory = Paths.get(index.toUri()).getParent().resolveSibling("services");
+        final Map<String, List<String>> services = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return services;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                final String type = file.getFileName().toString();
+                if (Files.isRegularFile(file) && isRootOrSubtype(type)) {
+                    services.put(type, readServiceFile(file));
+                }
+            }
+        }
+        return services;
+    }
+
+    private boolean isRootOrSubtype(String binaryName) {
+        final TypeElement type = elements.getTypeElement(binaryName.replace('$', '.'));
+        if (type == null) {
+            return false;
+        }
+        final TypeMirror erasure = types.erasure(type.asType());
+        for (TypeMirror root : roots.values()) {
+            if (types.isAssignable(erasure, root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> readServiceFile(Path file) throws IOException {
+        final List<String> names = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            final int comment = line.indexOf('#');
+            final String name = (comment < 0 ? line : line.substring(0, comment)).trim();
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+}
@@ -3,6 +3,18 @@ package io.dropwizard.jackson;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -10,6 +22,12 @@ public class DiscoverableSubtypeResolverTest {
     private final ObjectMapper mapper = new ObjectMapper();
     private final DiscoverableSubtypeResolver resolver = new DiscoverableSubtypeResolver(ExampleTag.class);
 
+    @TempDir
+    Path indexed;
+
+    @TempDir
+    Path unindexed;
+
     @BeforeEach
     void setUp() throws Exception {
         mapper.setSubtypeResolver(resolver);
@@ -23,4 +41,89 @@ public class DiscoverableSubtypeResolverTest {
         assertThat(mapper.readValue("{\"type\":\"b\"}", ExampleSPI.class))
                 .isInstanceOf(ImplB.class);
     }
+
+    @Test
+    void takesTheSubtypesFromTheIndexWhenEveryEntryIsIndexed() throws Exception {
+        // the service file on disk differs from the recorded one, to tell which one has been used
+        writeIndexedEntry();
+
+        final RecordingClassLoader classLoader = new RecordingClassLoader(indexed);
+        assertThat(new DiscoverableSubtypeResolver(Discoverable.class, true, classLoader).getDiscoveredSubtypes())
+                .containsExactly(IndexedImpl.class);
+        assertThat(classLoader.lookups).containsExactly(SubtypeIndex.LOCATION);
+    }
+
+    @Test
+    void readsTheServiceFilesIfAnEntryIsNotIndexed() throws Exception {
+        // the unindexed entry only lists an implementation of the interface declared by the indexed entry
+        writeIndexedEntry();
+        write(unindexed.resolve("META-INF/services/" + MixedFactory.class.getName()), UnindexedImpl.class.getName());
+
+        final RecordingClassLoader classLoader = new RecordingClassLoader(indexed, unindexed);
+        assertThat(new DiscoverableSubtypeResolver(Discoverable.class, true, classLoader).getDiscoveredSubtypes())
+                .containsExactly(NotIndexedImpl.class, UnindexedImpl.class);
+        assertThat(classLoader.lookups).containsExactly(
+                SubtypeIndex.LOCATION,
+                "META-INF/services/" + Discoverable.class.getName(),
+                "META-INF/services/" + MixedFactory.class.getName());
+
+        assertThat(new DiscoverableSubtypeResolver(Discoverable.class, false, classLoader).getDiscoveredSubtypes())
+                .containsExactly(NotIndexedImpl.class, UnindexedImpl.class);
+    }
+
+    private void writeIndexedEntry() throws IOException {
+        write(indexed.resolve(SubtypeIndex.LOCATION),
+                "@root " + Discoverable.class.getName(),
+                "@service " + Discoverable.class.getName() + " " + MixedFactory.class.getName(),
+                "@service " + MixedFactory.class.getName() + " " + IndexedImpl.class.getName());
+        write(indexed.resolve("META-INF/services/" + Discoverable.class.getName()), MixedFactory.class.getName());
+        write(indexed.resolve("META-INF/services/" + MixedFactory.class.getName()), NotIndexedImpl.class.getName());
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Looks up resources in the given entries only, but loads the classes of the test.
+     */
+    private static class RecordingClassLoader extends URLClassLoader {
+        private final List<String> lookups = new ArrayList<>();
+
+        RecordingClassLoader(Path... entries) throws IOException {
+            super(toUrls(entries), null);
+        }
+
+        private static URL[] toUrls(Path... entries) throws IOException {
+            final URL[] urls = new URL[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                urls[i] = entries[i].toUri().toURL();
+            }
+            return urls;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            return DiscoverableSubtypeResolverTest.class.getClassLoader().loadClass(name);
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            lookups.add(name);
+            return super.getResources(name);
+        }
+    }
+
+    public interface MixedFactory extends Discoverable {
+    }
+
+    public static class IndexedImpl implements MixedFactory {
+    }
+
+    public static class NotIndexedImpl implements MixedFactory {
+    }
+
+    public static class UnindexedImpl implements MixedFactory {
+    }
 }
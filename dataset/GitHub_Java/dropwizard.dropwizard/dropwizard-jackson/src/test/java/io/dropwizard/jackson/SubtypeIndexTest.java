@@ -0,0 +1,88 @@
+package io.dropwizard.jackson;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SubtypeIndexTest {
+    @TempDir
+    Path indexed;
+
+    @TempDir
+    Path unindexed;
+
+    private SubtypeIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        write(indexed.resolve(SubtypeIndex.LOCATION),
+                "# Generated",
+                "@root io.dropwizard.jackson.Discoverable",
+                "",
+                "@service io.dropwizard.jackson.Discoverable com.example.ExampleFactory  com.example.OtherFactory",
+                "@service com.example.ExampleFactory com.example.FirstFactory com.example.SecondFactory$Nested",
+                "@service com.example.UnlistedFactory com.example.UnlistedImpl");
+        write(unindexed.resolve("META-INF/services/io.dropwizard.jackson.Discoverable"), "com.example.Factory");
+
+        index = SubtypeIndex.load(new URLClassLoader(new URL[]{indexed.toUri().toURL()}, null));
+    }
+
+    @Test
+    void readsTheSubtypesOfTheInterfacesListedForTheRoot() {
+        assertThat(index.getSubtypes(Discoverable.class))
+                .containsExactly("com.example.FirstFactory", "com.example.SecondFactory$Nested");
+        assertThat(index.getSubtypes(ExampleRoot.class)).isEmpty();
+    }
+
+    @Test
+    void isCompleteIfEveryEntryIsIndexedForTheRoot() throws Exception {
+        assertThat(index.isComplete(Collections.singletonList(indexed.toUri().toURL()), Discoverable.class)).isTrue();
+        assertThat(index.isComplete(Collections.emptyList(), Discoverable.class)).isTrue();
+        assertThat(index.isComplete(Collections.singletonList(indexed.toUri().toURL()), ExampleRoot.class)).isFalse();
+        assertThat(index.isComplete(Arrays.asList(indexed.toUri().toURL(), unindexed.toUri().toURL()),
+                Discoverable.class)).isFalse();
+        assertThat(index.isComplete(null, Discoverable.class)).isFalse();
+    }
+
+    @Test
+    void followsTheClassPathOfJarManifests() throws Exception {
+        final Path jar = unindexed.resolve("indexed.jar");
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, unindexed.toUri().toString());
+        try (OutputStream output = Files.newOutputStream(jar);
+             JarOutputStream jarOutput = new JarOutputStream(output, manifest)) {
+            jarOutput.putNextEntry(new JarEntry(SubtypeIndex.LOCATION));
+            jarOutput.write(Files.readAllBytes(indexed.resolve(SubtypeIndex.LOCATION)));
+            jarOutput.closeEntry();
+        }
+
+        final SubtypeIndex jarIndex = SubtypeIndex.load(new URLClassLoader(new URL[]{jar.toUri().toURL()}, null));
+        assertThat(jarIndex.getSubtypes(Discoverable.class)).hasSize(2);
+        assertThat(jarIndex.isComplete(Collections.singletonList(jar.toUri().toURL()), Discoverable.class)).isFalse();
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private interface ExampleRoot {
+    }
+}
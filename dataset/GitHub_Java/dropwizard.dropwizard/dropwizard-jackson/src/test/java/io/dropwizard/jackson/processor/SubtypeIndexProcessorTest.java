@@ -0,0 +1,139 @@
+package io.dropwizard.jackson.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SubtypeIndexProcessorTest {
+    private static final String DISCOVERABLE = "io.dropwizard.jackson.Discoverable";
+
+    @TempDir
+    Path output;
+
+    @Test
+    void recordsTheServiceFilesOfTheRootAndItsSubtypes() throws Exception {
+        // copied to the class output before compilation, like the resources of a Maven build
+        write(output.resolve("META-INF/services/" + DISCOVERABLE), "com.example.ExampleFactory # comment", "");
+        write(output.resolve("META-INF/services/com.example.ExampleFactory"),
+                "# generated", "com.example.FirstFactory", "com.example.FirstFactory$Nested");
+        // an interface whose service file isn't listed by the root's one, and an unrelated service
+        write(output.resolve("META-INF/services/com.example.OtherFactory"), "com.example.OtherImpl");
+        write(output.resolve("META-INF/services/java.lang.Runnable"), "com.example.Task");
+
+        compile(output,
+                source("com.example.ExampleFactory",
+                        "public interface ExampleFactory extends io.dropwizard.jackson.Discoverable {}"),
+                source("com.example.OtherFactory",
+                        "public interface OtherFactory extends io.dropwizard.jackson.Discoverable {}"),
+                source("com.example.FirstFactory",
+                        "public class FirstFactory implements ExampleFactory {",
+                        "    public static class Nested implements ExampleFactory {}",
+                        "}"));
+
+        assertThat(readIndex(output)).containsExactly(
+                "@root " + DISCOVERABLE,
+                "@service com.example.ExampleFactory com.example.FirstFactory com.example.FirstFactory$Nested",
+                "@service com.example.OtherFactory com.example.OtherImpl",
+                "@service " + DISCOVERABLE + " com.example.ExampleFactory");
+    }
+
+    @Test
+    void recordsTheServiceFilesOfConfiguredRoots() throws Exception {
+        write(output.resolve("META-INF/services/" + DISCOVERABLE), "com.example.Impl");
+        write(output.resolve("META-INF/services/com.example.Root"), "com.example.Impl");
+
+        compile(output,
+                Arrays.asList("-A" + SubtypeIndexProcessor.ROOTS_OPTION + "=com.example.Root"),
+                source("com.example.Root", "public interface Root {}"),
+                source("com.example.Impl", "public class Impl implements Root, io.dropwizard.jackson.Discoverable {}"));
+
+        assertThat(readIndex(output)).containsExactly(
+                "@root com.example.Root",
+                "@service com.example.Root com.example.Impl");
+    }
+
+    @Test
+    void indexesModulesWithoutServiceFiles() throws Exception {
+        compile(output,
+                source("com.example.Impl", "public class Impl implements io.dropwizard.jackson.Discoverable {}"));
+
+        assertThat(readIndex(output)).containsExactly("@root " + DISCOVERABLE);
+    }
+
+    @Test
+    void dropsTheServiceFilesWhichAreRemovedFromTheClassOutput() throws Exception {
+        final Path services = output.resolve("META-INF/services/" + DISCOVERABLE);
+        write(services, "com.example.ExampleFactory");
+        compile(output,
+                source("com.example.ExampleFactory",
+                        "public interface ExampleFactory extends io.dropwizard.jackson.Discoverable {}"));
+
+        Files.delete(services);
+        compile(output,
+                source("com.example.Impl", "public class Impl implements com.example.ExampleFactory {}"));
+
+        assertThat(readIndex(output)).containsExactly("@root " + DISCOVERABLE);
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private static void compile(Path output, JavaFileObject... sources) {
+        compile(output, new ArrayList<>(), sources);
+    }
+
+    private static void compile(Path output, List<String> options, JavaFileObject... sources) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final List<String> allOptions = new ArrayList<>(options);
+        allOptions.addAll(Arrays.asList(
+                "-d", output.toString(),
+                "-classpath", System.getProperty("java.class.path") + File.pathSeparator + output,
+                "-processor", SubtypeIndexProcessor.class.getName()));
+
+        final boolean success = compiler.getTask(null, null, diagnostics, allOptions, null, Arrays.asList(sources))
+                .call();
+
+        assertThat(success).as("compilation errors: %s", diagnostics.getDiagnostics()).isTrue();
+    }
+
+    private static List<String> readIndex(Path output) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(output.resolve(SubtypeIndexProcessor.LOCATION), StandardCharsets.UTF_8)) {
+            if (!line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static JavaFileObject source(String className, String... lines) {
+        final int separator = className.lastIndexOf('.');
+        final String code = "package " + className.substring(0, separator) + ";\n" + String.join("\n", lines);
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
@@ -34,7 +34,7 @@ public class NonblockingServletHolder extends ServletHolder {
     }
 
     @Override
-    public synchronized Servlet getServlet() throws ServletException {
+    public Servlet getServlet() throws ServletException {
         return servlet;
     }
 
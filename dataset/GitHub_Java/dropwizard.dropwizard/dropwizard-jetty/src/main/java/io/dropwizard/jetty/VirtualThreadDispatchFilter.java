@@ -0,0 +1,166 @@
+package io.dropwizard.jetty;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A servlet filter which runs the rest of the filter chain on a virtual thread. The request is put into
+ * asynchronous mode, so the Jetty thread returns to its pool right away and requests blocking on
+ * JDBC or HTTP calls no longer hold on to a platform thread.
+ * <p>
+ * The filter has to be registered with async support and before all filters which should run on the
+ * virtual thread. Requests which don't support async processing are handled on the calling thread.
+ * <p>
+ * The rest of the chain sees a request which isn't in asynchronous mode yet. If it calls
+ * {@link ServletRequest#startAsync()}, e.g. because a Jersey resource method suspends with
+ * {@code @Suspended AsyncResponse}, it gets the filter's {@link AsyncContext} and becomes responsible for
+ * completing it. Otherwise the filter completes the request once the chain returns.
+ * <p>
+ * Blocking while pinned to a carrier thread, e.g. inside a {@code synchronized} block, isn't reflected in
+ * these metrics. Use {@link VirtualThreads#tracePinnedThreads()} during development or record the
+ * {@code jdk.VirtualThreadPinned} JFR event in production to find pinning sites.
+ * <p>
+ * Registers the metrics {@code active} (requests running on virtual threads), {@code dispatches}
+ * and {@code duration} under the name of this class and the given name.
+ */
+public class VirtualThreadDispatchFilter implements Filter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadDispatchFilter.class);
+
+    private final ExecutorService executor;
+    private final Counter active;
+    private final Meter dispatches;
+    private final Timer duration;
+
+    public VirtualThreadDispatchFilter(MetricRegistry metricRegistry, String name) {
+        this(VirtualThreads.newVirtualThreadPerTaskExecutor(name + "-virtual-"), metricRegistry, name);
+    }
+
+    /**
+     * Creates a filter which runs the rest of the chain on threads of the given executor, which is shut down
+     * together with the filter.
+     */
+    public VirtualThreadDispatchFilter(ExecutorService executor, MetricRegistry metricRegistry, String name) {
+        this.executor = executor;
+        this.active = metricRegistry.counter(name(VirtualThreadDispatchFilter.class, name, "active"));
+        this.dispatches = metricRegistry.meter(name(VirtualThreadDispatchFilter.class, name, "dispatches"));
+        this.duration = metricRegistry.timer(name(VirtualThreadDispatchFilter.class, name, "duration"));
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException { /* unused */ }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request,
+                         ServletResponse response,
+                         FilterChain chain) throws IOException, ServletException {
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(request instanceof HttpServletRequest)
+            || !request.isAsyncSupported() || request.isAsyncStarted()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        final AsyncContext asyncContext = request.startAsync();
+        // the resource decides how long it blocks, not the async timeout
+        asyncContext.setTimeout(0);
+        final DispatchedRequest dispatched = new DispatchedRequest((HttpServletRequest) request, asyncContext);
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            executor.execute(() -> run(asyncContext, classLoader, dispatched, response, chain));
+            dispatches.mark();
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            ((HttpServletResponse) response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            asyncContext.complete();
+        }
+    }
+
+    private void run(AsyncContext asyncContext, ClassLoader classLoader,
+                     DispatchedRequest request, ServletResponse response, FilterChain chain) {
+        Thread.currentThread().setContextClassLoader(classLoader);
+        active.inc();
+        final Timer.Context context = duration.time();
+        try {
+            chain.doFilter(request, response);
+        } catch (Exception e) {
+            LOGGER.error("Error handling request on a virtual thread", e);
+            if (!request.isAsyncStarted() && !response.isCommitted()) {
+                try {
+                    ((HttpServletResponse) response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                } catch (IOException ignored) {
+                    // the client is gone
+                }
+            }
+        } finally {
+            context.stop();
+            active.dec();
+            if (!request.isAsyncStarted()) {
+                asyncContext.complete();
+            }
+        }
+    }
+
+    /**
+     * Hides the filter's {@link AsyncContext} from the rest of the chain until it starts async processing
+     * itself, so the filter knows whether it may complete the request.
+     */
+    private static class DispatchedRequest extends HttpServletRequestWrapper {
+        private final AsyncContext asyncContext;
+        private volatile boolean asyncStarted;
+
+        private DispatchedRequest(HttpServletRequest request, AsyncContext asyncContext) {
+            super(request);
+            this.asyncContext = asyncContext;
+        }
+
+        @Override
+        public AsyncContext startAsync() {
+            asyncStarted = true;
+            return asyncContext;
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+            asyncStarted = true;
+            return asyncContext;
+        }
+
+        @Override
+        public boolean isAsyncStarted() {
+            return asyncStarted;
+        }
+
+        @Override
+        public AsyncContext getAsyncContext() {
+            if (!asyncStarted) {
+                throw new IllegalStateException("Async processing hasn't been started");
+            }
+            return asyncContext;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.dropwizard.jetty;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (Java 21+) while compiling against older Java versions.
+ */
+public final class VirtualThreads {
+    private static final String TRACE_PINNED_THREADS = "jdk.tracePinnedThreads";
+
+    private VirtualThreads() { /* singleton */ }
+
+    /**
+     * @return whether the running JVM supports virtual threads
+     */
+    public static boolean areSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread named {@code namePrefix} followed by a counter
+     * for every task.
+     *
+     * @throws UnsupportedOperationException if the JVM doesn't support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            final Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later", e);
+        }
+    }
+
+    /**
+     * Makes the JVM print a stack trace whenever a virtual thread blocks while pinned to its carrier thread,
+     * e.g. inside a {@code synchronized} block. Has to be called before the first virtual thread is created
+     * and has no effect if {@code -Djdk.tracePinnedThreads} has already been set.
+     */
+    public static void tracePinnedThreads() {
+        if (System.getProperty(TRACE_PINNED_THREADS) == null) {
+            System.setProperty(TRACE_PINNED_THREADS, "short");
+        }
+    }
+}
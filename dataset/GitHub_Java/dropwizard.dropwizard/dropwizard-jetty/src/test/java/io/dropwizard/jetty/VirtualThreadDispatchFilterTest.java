@@ -0,0 +1,133 @@
+package io.dropwizard.jetty;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VirtualThreadDispatchFilterTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final ExecutorService executor = MoreExecutors.newDirectExecutorService();
+    private final VirtualThreadDispatchFilter filter = new VirtualThreadDispatchFilter(executor, metricRegistry, "test");
+    private final HttpServletRequest request = mock(HttpServletRequest.class);
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+    private final AsyncContext asyncContext = mock(AsyncContext.class);
+    private final FilterChain chain = mock(FilterChain.class);
+
+    @Test
+    public void dispatchesRequestsToTheExecutor() throws Exception {
+        when(request.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync()).thenReturn(asyncContext);
+
+        filter.doFilter(request, response, chain);
+
+        final ArgumentCaptor<ServletRequest> dispatched = ArgumentCaptor.forClass(ServletRequest.class);
+        final InOrder inOrder = inOrder(request, chain, asyncContext);
+        inOrder.verify(request).startAsync();
+        inOrder.verify(chain).doFilter(dispatched.capture(), any(ServletResponse.class));
+        inOrder.verify(asyncContext).complete();
+
+        // the chain doesn't see the filter's async context
+        assertThat(((HttpServletRequestWrapper) dispatched.getValue()).getRequest()).isSameAs(request);
+        assertThat(dispatched.getValue().isAsyncStarted()).isFalse();
+
+        assertThat(metricRegistry.meter("io.dropwizard.jetty.VirtualThreadDispatchFilter.test.dispatches").getCount())
+            .isEqualTo(1);
+        assertThat(metricRegistry.timer("io.dropwizard.jetty.VirtualThreadDispatchFilter.test.duration").getCount())
+            .isEqualTo(1);
+        assertThat(metricRegistry.counter("io.dropwizard.jetty.VirtualThreadDispatchFilter.test.active").getCount())
+            .isZero();
+    }
+
+    @Test
+    public void handlesRequestsWithoutAsyncSupportOnTheCallingThread() throws Exception {
+        when(request.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        when(request.isAsyncSupported()).thenReturn(false);
+
+        filter.doFilter(request, response, chain);
+
+        verify(request, never()).startAsync();
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    public void handlesErrorDispatchesOnTheCallingThread() throws Exception {
+        when(request.getDispatcherType()).thenReturn(DispatcherType.ERROR);
+        when(request.isAsyncSupported()).thenReturn(true);
+
+        filter.doFilter(request, response, chain);
+
+        verify(request, never()).startAsync();
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    public void sendsAnErrorIfTheChainFails() throws Exception {
+        when(request.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync()).thenReturn(asyncContext);
+        doThrow(new ServletException("boom")).when(chain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+
+        filter.doFilter(request, response, chain);
+
+        verify(response).sendError(500);
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    public void leavesCompletionToTheChainIfItStartsAsyncProcessing() throws Exception {
+        when(request.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync()).thenReturn(asyncContext);
+        doAnswer(invocation -> {
+            // like a resource method suspending with @Suspended AsyncResponse
+            final ServletRequest dispatched = invocation.getArgument(0);
+            assertThat(dispatched.startAsync()).isSameAs(asyncContext);
+            assertThat(dispatched.isAsyncStarted()).isTrue();
+            assertThat(dispatched.getAsyncContext()).isSameAs(asyncContext);
+            return null;
+        }).when(chain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+
+        filter.doFilter(request, response, chain);
+
+        verify(request).startAsync();
+        verify(asyncContext, never()).complete();
+    }
+
+    @Test
+    public void rejectsRequestsAfterShutdown() throws Exception {
+        when(request.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync()).thenReturn(asyncContext);
+        filter.destroy();
+
+        filter.doFilter(request, response, chain);
+
+        verify(chain, never()).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+        verify(response).sendError(503);
+        verify(asyncContext).complete();
+    }
+}
@@ -4,6 +4,7 @@ import ch.qos.logback.access.spi.IAccessEvent;
 import io.dropwizard.logging.json.AccessAttribute;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -31,6 +32,10 @@ public class AccessJsonLayout extends AbstractJsonLayout<IAccessEvent> {
     private final Map<String, Object> additionalFields;
     private final Map<String, String> customFieldNames;
 
+    @Nullable
+    private StreamingJsonWriter streamingJsonWriter;
+    private final StreamingJsonWriter.FieldsWriter<IAccessEvent> fieldsWriter = this::writeFields;
+
     public AccessJsonLayout(JsonFormatter jsonFormatter, TimestampFormatter timestampFormatter,
                             Set<AccessAttribute> includes, Map<String, String> customFieldNames,
                             Map<String, Object> additionalFields) {
@@ -41,6 +46,14 @@ public class AccessJsonLayout extends AbstractJsonLayout<IAccessEvent> {
         this.includes = EnumSet.copyOf(includes);
     }
 
+    @Override
+    public String doLayout(IAccessEvent event) {
+        if (streamingJsonWriter == null) {
+            return super.doLayout(event);
+        }
+        return streamingJsonWriter.write(event, fieldsWriter);
+    }
+
     @Override
     protected Map<String, Object> toJsonMap(IAccessEvent event) {
         return new MapBuilder(timestampFormatter, customFieldNames, additionalFields, includes.size())
@@ -69,6 +82,67 @@ public class AccessJsonLayout extends AbstractJsonLayout<IAccessEvent> {
             .build();
     }
 
+    private void writeFields(StreamingJsonWriter.JsonFieldWriter writer, IAccessEvent event) throws IOException {
+        if (isIncluded(AccessAttribute.LOCAL_PORT)) {
+            writer.addNumber("port", event.getLocalPort());
+        }
+        if (isIncluded(AccessAttribute.CONTENT_LENGTH)) {
+            writer.addNumber("contentLength", event.getContentLength());
+        }
+        if (isIncluded(AccessAttribute.TIMESTAMP)) {
+            writer.addTimestamp("timestamp", event.getTimeStamp());
+        }
+        if (isIncluded(AccessAttribute.METHOD)) {
+            writer.add("method", event.getMethod());
+        }
+        if (isIncluded(AccessAttribute.PROTOCOL)) {
+            writer.add("protocol", event.getProtocol());
+        }
+        if (isIncluded(AccessAttribute.REQUEST_CONTENT)) {
+            writer.add("requestContent", event.getRequestContent());
+        }
+        if (isIncluded(AccessAttribute.REMOTE_ADDRESS)) {
+            writer.add("remoteAddress", event.getRemoteAddr());
+        }
+        if (isIncluded(AccessAttribute.REMOTE_USER)) {
+            writer.add("remoteUser", event.getRemoteUser());
+        }
+        if (!requestHeaders.isEmpty()) {
+            writer.addMap("headers", event.getRequestHeaderMap(), requestHeaders);
+        }
+        if (isIncluded(AccessAttribute.REQUEST_PARAMETERS)) {
+            writer.addMap("params", event.getRequestParameterMap(), null);
+        }
+        if (isIncluded(AccessAttribute.REQUEST_TIME)) {
+            writer.addNumber("requestTime", event.getElapsedTime());
+        }
+        if (isIncluded(AccessAttribute.REQUEST_URI)) {
+            writer.add("uri", event.getRequestURI());
+        }
+        if (isIncluded(AccessAttribute.REQUEST_URL)) {
+            writer.add("url", event.getRequestURL());
+        }
+        if (isIncluded(AccessAttribute.REMOTE_HOST)) {
+            writer.add("remoteHost", event.getRemoteHost());
+        }
+        if (isIncluded(AccessAttribute.RESPONSE_CONTENT)) {
+            writer.add("responseContent", event.getResponseContent());
+        }
+        if (!responseHeaders.isEmpty()) {
+            writer.addMap("responseHeaders", event.getResponseHeaderMap(), responseHeaders);
+        }
+        if (isIncluded(AccessAttribute.SERVER_NAME)) {
+            writer.add("serverName", event.getServerName());
+        }
+        if (isIncluded(AccessAttribute.STATUS_CODE)) {
+            writer.addNumber("status", event.getStatusCode());
+        }
+        if (isIncluded(AccessAttribute.USER_AGENT)) {
+            writer.add("userAgent", event.getRequestHeader(USER_AGENT));
+        }
+        writer.add("version", jsonProtocolVersion);
+    }
+
     private boolean isIncluded(AccessAttribute attribute) {
         return includes.contains(attribute);
     }
@@ -99,6 +173,18 @@ public class AccessJsonLayout extends AbstractJsonLayout<IAccessEvent> {
         this.jsonProtocolVersion = jsonProtocolVersion;
     }
 
+    @Nullable
+    public StreamingJsonWriter getStreamingJsonWriter() {
+        return streamingJsonWriter;
+    }
+
+    /**
+     * Writes events through the provided writer instead of building a map per event.
+     */
+    public void setStreamingJsonWriter(@Nullable StreamingJsonWriter streamingJsonWriter) {
+        this.streamingJsonWriter = streamingJsonWriter;
+    }
+
     public Set<String> getRequestHeaders() {
         return requestHeaders;
     }
@@ -5,6 +5,8 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import io.dropwizard.logging.json.EventAttribute;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,6 +19,18 @@ import java.util.stream.Collectors;
  */
 public class EventJsonLayout extends AbstractJsonLayout<ILoggingEvent> {
 
+    private static final Map<EventAttribute, String> FIELD_NAMES = new EnumMap<>(EventAttribute.class);
+
+    static {
+        FIELD_NAMES.put(EventAttribute.TIMESTAMP, "timestamp");
+        FIELD_NAMES.put(EventAttribute.LEVEL, "level");
+        FIELD_NAMES.put(EventAttribute.THREAD_NAME, "thread");
+        FIELD_NAMES.put(EventAttribute.LOGGER_NAME, "logger");
+        FIELD_NAMES.put(EventAttribute.MESSAGE, "message");
+        FIELD_NAMES.put(EventAttribute.CONTEXT_NAME, "context");
+        FIELD_NAMES.put(EventAttribute.EXCEPTION, "exception");
+    }
+
     private Set<EventAttribute> includes;
 
     @Nullable
@@ -30,6 +44,10 @@ public class EventJsonLayout extends AbstractJsonLayout<ILoggingEvent> {
     private Set<String> includesMdcKeys;
     private final boolean flattenMdc;
 
+    @Nullable
+    private StreamingJsonWriter streamingJsonWriter;
+    private final StreamingJsonWriter.FieldsWriter<ILoggingEvent> fieldsWriter = this::writeFields;
+
     public EventJsonLayout(JsonFormatter jsonFormatter, TimestampFormatter timestampFormatter,
                            ThrowableHandlingConverter throwableProxyConverter, Set<EventAttribute> includes,
                            Map<String, String> customFieldNames, Map<String, Object> additionalFields,
@@ -56,6 +74,14 @@ public class EventJsonLayout extends AbstractJsonLayout<ILoggingEvent> {
         throwableProxyConverter.stop();
     }
 
+    @Override
+    public String doLayout(ILoggingEvent event) {
+        if (streamingJsonWriter == null) {
+            return super.doLayout(event);
+        }
+        return streamingJsonWriter.write(event, fieldsWriter);
+    }
+
     @Override
     protected Map<String, Object> toJsonMap(ILoggingEvent event) {
         final MapBuilder mapBuilder = new MapBuilder(timestampFormatter, customFieldNames, additionalFields, includes.size())
@@ -77,6 +103,39 @@ public class EventJsonLayout extends AbstractJsonLayout<ILoggingEvent> {
         return mapBuilder.build();
     }
 
+    private void writeFields(StreamingJsonWriter.JsonFieldWriter writer, ILoggingEvent event) throws IOException {
+        if (isIncluded(EventAttribute.TIMESTAMP)) {
+            writer.addTimestamp("timestamp", event.getTimeStamp());
+        }
+        if (isIncluded(EventAttribute.LEVEL)) {
+            writer.add("level", String.valueOf(event.getLevel()));
+        }
+        if (isIncluded(EventAttribute.THREAD_NAME)) {
+            writer.add("thread", event.getThreadName());
+        }
+        if (isIncluded(EventAttribute.LOGGER_NAME)) {
+            writer.add("logger", event.getLoggerName());
+        }
+        if (isIncluded(EventAttribute.MESSAGE)) {
+            writer.add("message", event.getFormattedMessage());
+        }
+        if (isIncluded(EventAttribute.CONTEXT_NAME)) {
+            writer.add("context", event.getLoggerContextVO().getName());
+        }
+        writer.add("version", jsonProtocolVersion);
+        if (isIncluded(EventAttribute.EXCEPTION) && event.getThrowableProxy() != null) {
+            writer.add("exception", throwableProxyConverter.convert(event));
+        }
+        if (isIncluded(EventAttribute.MDC)) {
+            final Set<String> mdcKeys = includesMdcKeys.isEmpty() ? null : includesMdcKeys;
+            if (flattenMdc) {
+                writer.addEntries(event.getMDCPropertyMap(), mdcKeys);
+            } else {
+                writer.addMap("mdc", event.getMDCPropertyMap(), mdcKeys);
+            }
+        }
+    }
+
     private Map<String, String> filterMdc(Map<String, String> mdcPropertyMap) {
         if (includesMdcKeys.isEmpty()) {
             return mdcPropertyMap;
@@ -87,6 +146,22 @@ public class EventJsonLayout extends AbstractJsonLayout<ILoggingEvent> {
             .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
     }
 
+    /**
+     * Returns the names of the built-in top-level fields written for the provided attributes, before applying
+     * custom field names. Flattened MDC entries with these names are never written by a {@link StreamingJsonWriter}.
+     */
+    public static Set<String> builtInFieldNames(Set<EventAttribute> includes) {
+        final Set<String> names = new HashSet<>();
+        for (EventAttribute attribute : includes) {
+            final String name = FIELD_NAMES.get(attribute);
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        names.add("version");
+        return names;
+    }
+
     private boolean isIncluded(EventAttribute exception) {
         return includes.contains(exception);
     }
@@ -108,6 +183,18 @@ public class EventJsonLayout extends AbstractJsonLayout<ILoggingEvent> {
         this.jsonProtocolVersion = jsonProtocolVersion;
     }
 
+    @Nullable
+    public StreamingJsonWriter getStreamingJsonWriter() {
+        return streamingJsonWriter;
+    }
+
+    /**
+     * Writes events through the provided writer instead of building a map per event.
+     */
+    public void setStreamingJsonWriter(@Nullable StreamingJsonWriter streamingJsonWriter) {
+        this.streamingJsonWriter = streamingJsonWriter;
+    }
+
     public Set<String> getIncludesMdcKeys() {
         return includesMdcKeys;
     }
@@ -0,0 +1,359 @@
+package io.dropwizard.logging.json.layout;
+
+import ch.qos.logback.core.CoreConstants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes log events straight into a JSON generator instead of building an intermediate map first.
+ * <p>
+ * Every thread keeps its own character buffer, generator and last formatted timestamp, so apart from
+ * the resulting {@link String} and the values the event itself hands out, formatting an event does
+ * not allocate. Field names are resolved against the custom field names once and then reused as
+ * pre-encoded tokens.
+ * <p>
+ * The output matches the one produced via {@link MapBuilder} with two exceptions: fields are written
+ * in a stable order (additional fields last) and a flattened MDC entry never replaces a built-in field
+ * with the same name, it is dropped instead. The built-in field names are fixed when the writer is
+ * created, so whether an entry is dropped doesn't depend on the fields earlier events happened to write.
+ */
+public class StreamingJsonWriter {
+
+    /**
+     * Buffers which grew beyond this size while writing a huge event are dropped afterwards, so a single
+     * stack trace doesn't pin its memory to the thread forever.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /**
+     * Marks a field which is shadowed by an additional field with the same name.
+     */
+    private static final SerializedString SHADOWED = new SerializedString("");
+
+    private final JsonFactory jsonFactory;
+    private final boolean prettyPrint;
+    private final boolean appendLineSeparator;
+    private final TimestampFormatter timestampFormatter;
+    private final Map<String, String> customFieldNames;
+    private final Map<String, Object> additionalFields;
+
+    private final Set<String> builtInFieldNames;
+
+    private final Map<String, SerializedString> fieldNames = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<JsonFieldWriter> writers = ThreadLocal.withInitial(this::newFieldWriter);
+
+    /**
+     * Creates a writer for a layout which doesn't write flattened entries.
+     */
+    public StreamingJsonWriter(ObjectMapper objectMapper, boolean prettyPrint, boolean appendLineSeparator,
+                               TimestampFormatter timestampFormatter, Map<String, String> customFieldNames,
+                               Map<String, Object> additionalFields) {
+        this(objectMapper, prettyPrint, appendLineSeparator, timestampFormatter, customFieldNames, additionalFields,
+            Collections.emptySet());
+    }
+
+    /**
+     * @param builtInFieldNames the names of the built-in fields the layout is configured to write, before
+     *                          applying the custom field names. Flattened entries with these names are dropped.
+     */
+    public StreamingJsonWriter(ObjectMapper objectMapper, boolean prettyPrint, boolean appendLineSeparator,
+                               TimestampFormatter timestampFormatter, Map<String, String> customFieldNames,
+                               Map<String, Object> additionalFields, Set<String> builtInFieldNames) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.prettyPrint = prettyPrint;
+        this.appendLineSeparator = appendLineSeparator;
+        this.timestampFormatter = requireNonNull(timestampFormatter);
+        this.customFieldNames = new HashMap<>(customFieldNames);
+        this.additionalFields = new HashMap<>(additionalFields);
+        final Set<String> resolved = new HashSet<>();
+        for (String name : builtInFieldNames) {
+            resolved.add(this.customFieldNames.getOrDefault(name, name));
+        }
+        this.builtInFieldNames = Collections.unmodifiableSet(resolved);
+    }
+
+    /**
+     * Writes the fields of the event as a single JSON object.
+     */
+    <E> String write(E event, FieldsWriter<E> fieldsWriter) {
+        final JsonFieldWriter writer = writers.get();
+        try {
+            return writer.write(event, fieldsWriter);
+        } catch (IOException e) {
+            // The generator is in an unknown state, start over with a fresh one
+            writers.remove();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            writers.remove();
+            throw e;
+        }
+    }
+
+    private JsonFieldWriter newFieldWriter() {
+        final CharBufferWriter buffer = new CharBufferWriter(INITIAL_BUFFER_SIZE);
+        try {
+            final JsonGenerator generator = jsonFactory.createGenerator(buffer);
+            // Every event is a root value of its own, no separator between them
+            generator.setRootValueSeparator(null);
+            if (prettyPrint) {
+                generator.setPrettyPrinter(new DefaultPrettyPrinter(""));
+            }
+            return new JsonFieldWriter(buffer, generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Resolves the name under which the field is written, or {@link #SHADOWED} if an additional field
+     * with the same name replaces it.
+     */
+    private SerializedString fieldName(String fieldName) {
+        final SerializedString cached = fieldNames.get(fieldName);
+        if (cached != null) {
+            return cached;
+        }
+        return fieldNames.computeIfAbsent(fieldName, name -> {
+            final String resolved = customFieldNames.getOrDefault(name, name);
+            if (additionalFields.containsKey(resolved)) {
+                return SHADOWED;
+            }
+            return new SerializedString(resolved);
+        });
+    }
+
+    /**
+     * Writes the fields of a single event to the provided writer.
+     */
+    @FunctionalInterface
+    interface FieldsWriter<E> {
+        void writeFields(JsonFieldWriter writer, E event) throws IOException;
+    }
+
+    /**
+     * The per-thread state used for writing events. Unlike {@link MapBuilder} it takes plain values,
+     * callers check whether a field is included before computing its value.
+     */
+    final class JsonFieldWriter {
+        private final CharBufferWriter buffer;
+        private final JsonGenerator generator;
+
+        private long lastTimestamp = Long.MIN_VALUE;
+        @Nullable
+        private String lastFormattedTimestamp;
+
+        private JsonFieldWriter(CharBufferWriter buffer, JsonGenerator generator) {
+            this.buffer = buffer;
+            this.generator = generator;
+        }
+
+        private <E> String write(E event, FieldsWriter<E> fieldsWriter) throws IOException {
+            buffer.reset();
+            generator.writeStartObject();
+            fieldsWriter.writeFields(this, event);
+            for (Map.Entry<String, Object> field : additionalFields.entrySet()) {
+                generator.writeObjectField(field.getKey(), field.getValue());
+            }
+            generator.writeEndObject();
+            generator.flush();
+            if (appendLineSeparator) {
+                buffer.write(CoreConstants.LINE_SEPARATOR);
+            }
+            final String json = buffer.toString();
+            buffer.trim(MAX_RETAINED_BUFFER_SIZE, INITIAL_BUFFER_SIZE);
+            return json;
+        }
+
+        /**
+         * Writes the string value under the provided field name, unless it's {@code null}.
+         */
+        void add(String fieldName, @Nullable String value) throws IOException {
+            if (value != null) {
+                final SerializedString name = fieldName(fieldName);
+                if (name != SHADOWED) {
+                    generator.writeFieldName(name);
+                    generator.writeString(value);
+                }
+            }
+        }
+
+        /**
+         * Writes the number under the provided field name.
+         */
+        void addNumber(String fieldName, long number) throws IOException {
+            final SerializedString name = fieldName(fieldName);
+            if (name != SHADOWED) {
+                generator.writeFieldName(name);
+                generator.writeNumber(number);
+            }
+        }
+
+        /**
+         * Writes the map under the provided field name, unless it's empty.
+         * Only the keys contained in {@code filter} are written, unless the filter is {@code null}.
+         */
+        void addMap(String fieldName, @Nullable Map<String, ?> map, @Nullable Set<String> filter) throws IOException {
+            if (map == null || map.isEmpty()) {
+                return;
+            }
+            final SerializedString name = fieldName(fieldName);
+            if (name == SHADOWED) {
+                return;
+            }
+            boolean started = false;
+            for (Map.Entry<String, ?> entry : map.entrySet()) {
+                if (filter != null && !filter.contains(entry.getKey())) {
+                    continue;
+                }
+                if (!started) {
+                    generator.writeFieldName(name);
+                    generator.writeStartObject();
+                    started = true;
+                }
+                generator.writeFieldName(entry.getKey());
+                writeValue(entry.getValue());
+            }
+            if (started) {
+                generator.writeEndObject();
+            }
+        }
+
+        /**
+         * Writes the entries of the map as top-level fields.
+         * Only the keys contained in {@code filter} are written, unless the filter is {@code null}.
+         * Entries named like a built-in or an additional field are skipped.
+         */
+        void addEntries(@Nullable Map<String, String> map, @Nullable Set<String> filter) throws IOException {
+            if (map == null) {
+                return;
+            }
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                final String key = entry.getKey();
+                if (filter != null && !filter.contains(key)
+                    || builtInFieldNames.contains(key) || additionalFields.containsKey(key)) {
+                    continue;
+                }
+                generator.writeFieldName(key);
+                writeValue(entry.getValue());
+            }
+        }
+
+        /**
+         * Writes and optionally formats the timestamp under the provided field name, if it's set.
+         * The formatted value of the last timestamp is reused, as consecutive events mostly share it.
+         */
+        void addTimestamp(String fieldName, long timestamp) throws IOException {
+            if (timestamp <= 0) {
+                return;
+            }
+            final SerializedString name = fieldName(fieldName);
+            if (name == SHADOWED) {
+                return;
+            }
+            generator.writeFieldName(name);
+            if (timestampFormatter.isFormatted()) {
+                if (timestamp != lastTimestamp || lastFormattedTimestamp == null) {
+                    lastFormattedTimestamp = String.valueOf(timestampFormatter.format(timestamp));
+                    lastTimestamp = timestamp;
+                }
+                generator.writeString(lastFormattedTimestamp);
+            } else {
+                generator.writeNumber(timestamp);
+            }
+        }
+
+        private void writeValue(@Nullable Object value) throws IOException {
+            if (value instanceof String) {
+                generator.writeString((String) value);
+            } else {
+                generator.writeObject(value);
+            }
+        }
+    }
+
+    /**
+     * An unsynchronized {@link Writer} over a growable character array which can be reset and reused.
+     */
+    static final class CharBufferWriter extends Writer {
+        private char[] chars;
+        private int size;
+
+        CharBufferWriter(int initialCapacity) {
+            this.chars = new char[initialCapacity];
+        }
+
+        @Override
+        public void write(int c) {
+            ensureCapacity(size + 1);
+            chars[size++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            ensureCapacity(size + len);
+            System.arraycopy(cbuf, off, chars, size, len);
+            size += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            ensureCapacity(size + len);
+            str.getChars(off, off + len, chars, size);
+            size += len;
+        }
+
+        @Override
+        public void write(String str) {
+            write(str, 0, str.length());
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+            }
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        void trim(int maxCapacity, int initialCapacity) {
+            if (chars.length > maxCapacity) {
+                chars = new char[initialCapacity];
+                size = 0;
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, size);
+        }
+    }
+}
@@ -45,6 +45,13 @@ public class TimestampFormatter {
         }
     }
 
+    /**
+     * Whether timestamps are formatted as strings rather than written as epoch milliseconds.
+     */
+    public boolean isFormatted() {
+        return dateTimeFormatter != null;
+    }
+
     public Object format(long timestamp) {
         return dateTimeFormatter == null ? timestamp : dateTimeFormatter.format(Instant.ofEpochMilli(timestamp));
     }
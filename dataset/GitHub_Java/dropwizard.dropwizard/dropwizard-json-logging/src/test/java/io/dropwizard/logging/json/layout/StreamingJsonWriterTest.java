@@ -0,0 +1,140 @@
+package io.dropwizard.logging.json.layout;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.pattern.ThrowableProxyConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.core.CoreConstants;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.logging.json.EventAttribute;
+import io.dropwizard.util.Maps;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class StreamingJsonWriterTest {
+    private static final Map<String, String> mdc = Maps.of(
+            "userId", "18",
+            "serviceId", "19",
+            "level", "TRACE");
+
+    private static final Set<EventAttribute> EVENT_ATTRIBUTES = Collections.unmodifiableSet(EnumSet.of(
+            EventAttribute.LEVEL,
+            EventAttribute.THREAD_NAME,
+            EventAttribute.MDC,
+            EventAttribute.LOGGER_NAME,
+            EventAttribute.MESSAGE,
+            EventAttribute.EXCEPTION,
+            EventAttribute.CONTEXT_NAME,
+            EventAttribute.TIMESTAMP));
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private final TimestampFormatter timestampFormatter = new TimestampFormatter("yyyy-MM-dd'T'HH:mm:ss.SSSZ", ZoneId.of("UTC"));
+    private final JsonFormatter jsonFormatter = new JsonFormatter(objectMapper, false, true);
+    private final ThrowableProxyConverter throwableProxyConverter = Mockito.mock(ThrowableProxyConverter.class);
+    private final ILoggingEvent event = Mockito.mock(ILoggingEvent.class);
+
+    @BeforeEach
+    public void setUp() {
+        when(event.getTimeStamp()).thenReturn(1514906361000L);
+        when(event.getLevel()).thenReturn(Level.INFO);
+        when(event.getThreadName()).thenReturn("main");
+        when(event.getMDCPropertyMap()).thenReturn(mdc);
+        when(event.getLoggerName()).thenReturn("com.example.user.service");
+        when(event.getFormattedMessage()).thenReturn("User[18] has \"been\" registered");
+        when(event.getLoggerContextVO()).thenReturn(new LoggerContextVO("test", Collections.emptyMap(), 0));
+    }
+
+    @Test
+    public void producesTheSameFieldsAsTheMapLayout() throws Exception {
+        final Map<String, String> customFieldNames = Maps.of("thread", "thread_name");
+        final Map<String, Object> additionalFields = Maps.of("service", "users", "shard", 3);
+        final EventJsonLayout layout = layout(customFieldNames, additionalFields, false);
+
+        assertThat(parse(layout.doLayout(event))).isEqualTo(parse(objectMapper.writeValueAsString(layout.toJsonMap(event))));
+    }
+
+    @Test
+    public void additionalFieldsReplaceBuiltInFields() throws Exception {
+        final EventJsonLayout layout = layout(Maps.of("logger", "source"), Maps.of("source", "users"), false);
+
+        final Map<String, Object> fields = parse(layout.doLayout(event));
+        assertThat(fields).containsEntry("source", "users");
+        assertThat(fields).doesNotContainKey("logger");
+    }
+
+    @Test
+    public void flattenedMdcDoesNotDuplicateBuiltInFields() throws Exception {
+        final EventJsonLayout layout = layout(Collections.emptyMap(), Collections.emptyMap(), true);
+
+        final String json = layout.doLayout(event);
+        assertThat(json).containsOnlyOnce("\"level\"");
+        assertThat(parse(json))
+            .containsEntry("level", "INFO")
+            .containsEntry("userId", "18")
+            .containsEntry("serviceId", "19");
+    }
+
+    @Test
+    public void flattenedMdcSkipsConfiguredFieldsEventsDidNotWrite() throws Exception {
+        // The event has no exception, but the layout is configured to write one
+        when(event.getMDCPropertyMap()).thenReturn(Maps.of("exception", "none", "logger", "mdc", "userId", "18"));
+        final EventJsonLayout layout = layout(Maps.of("logger", "source"), Collections.emptyMap(), true);
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(parse(layout.doLayout(event)))
+                .doesNotContainKey("exception")
+                .containsEntry("source", "com.example.user.service")
+                .containsEntry("logger", "mdc")
+                .containsEntry("userId", "18");
+        }
+    }
+
+    @Test
+    public void reusesTheBufferBetweenEvents() throws Exception {
+        final EventJsonLayout layout = layout(Collections.emptyMap(), Collections.emptyMap(), false);
+
+        final String first = layout.doLayout(event);
+        when(event.getTimeStamp()).thenReturn(1514906362000L);
+        final String second = layout.doLayout(event);
+
+        assertThat(first).endsWith(CoreConstants.LINE_SEPARATOR).startsWith("{");
+        assertThat(second).endsWith(CoreConstants.LINE_SEPARATOR).startsWith("{");
+        assertThat(parse(first)).containsEntry("timestamp", "2018-01-02T15:19:21.000+0000");
+        assertThat(parse(second)).containsEntry("timestamp", "2018-01-02T15:19:22.000+0000");
+    }
+
+    @Test
+    public void writesUnformattedTimestampsAsNumbers() throws Exception {
+        final EventJsonLayout layout = layout(Collections.emptyMap(), Collections.emptyMap(), false);
+        layout.setStreamingJsonWriter(new StreamingJsonWriter(objectMapper, false, false,
+            new TimestampFormatter(null, ZoneId.of("UTC")), Collections.emptyMap(), Collections.emptyMap()));
+
+        assertThat(parse(layout.doLayout(event))).containsEntry("timestamp", 1514906361000L);
+    }
+
+    private EventJsonLayout layout(Map<String, String> customFieldNames, Map<String, Object> additionalFields,
+                                   boolean flattenMdc) {
+        final EventJsonLayout layout = new EventJsonLayout(jsonFormatter, timestampFormatter, throwableProxyConverter,
+            EVENT_ATTRIBUTES, customFieldNames, additionalFields, Collections.emptySet(), flattenMdc);
+        layout.setStreamingJsonWriter(new StreamingJsonWriter(objectMapper, false, true, timestampFormatter,
+            customFieldNames, additionalFields, EventJsonLayout.builtInFieldNames(EVENT_ATTRIBUTES)));
+        return layout;
+    }
+
+    private Map<String, Object> parse(String json) throws Exception {
+        return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package io.dropwizard.logging.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, preallocated multi-producer single-consumer ring buffer.
+ * <p>
+ * Producers claim a sequence with a CAS on the tail and then publish the element into its slot, the
+ * single consumer takes published elements in sequence order and clears their slots. An empty slot at
+ * the head means the producer which claimed it hasn't published yet, so the consumer stops there.
+ */
+final class RingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final int capacity;
+
+    /**
+     * The next sequence to be claimed by a producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next sequence to be consumed. Only written by the consumer.
+     */
+    private volatile long head;
+
+    RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the element, unless the buffer is full.
+     *
+     * @return whether the element has been added
+     */
+    boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.set((int) sequence & mask, element);
+        return true;
+    }
+
+    /**
+     * Moves up to {@code batch.length} published elements into the batch. Must only be called by the
+     * consumer thread.
+     *
+     * @return the number of elements moved
+     */
+    int drainTo(Object[] batch) {
+        long sequence = head;
+        int count = 0;
+        while (count < batch.length) {
+            final int index = (int) sequence & mask;
+            final E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            batch[count++] = element;
+            sequence++;
+        }
+        if (count > 0) {
+            head = sequence;
+        }
+        return count;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int remainingCapacity() {
+        return capacity - size();
+    }
+
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
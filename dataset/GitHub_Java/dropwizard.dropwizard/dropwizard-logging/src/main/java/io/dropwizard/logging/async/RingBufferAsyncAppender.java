@@ -0,0 +1,297 @@
+package io.dropwizard.logging.async;
+
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * An asynchronous appender backed by a preallocated, lock-free {@link RingBuffer} instead of the
+ * {@link java.util.concurrent.BlockingQueue} of {@link AsyncAppenderBase}.
+ * <p>
+ * A single worker drains the buffer in batches of up to {@code batchSize} events and hands them to the
+ * attached appender. Attached {@link OutputStreamAppender}s are switched to non-immediate flushing, so
+ * the encoded events of a batch end up in the appender's buffered stream and are written and flushed
+ * once per batch instead of once per event. How the worker waits for new events is controlled by the
+ * {@link WaitStrategy}.
+ * <p>
+ * The queue size, discarding threshold, never-block and max flush time settings of
+ * {@link AsyncAppenderBase} keep their meaning. Every time a producer finds the buffer full is counted
+ * in the {@code queue-full} meter and every discarded event in the {@code dropped} meter, which are
+ * registered in the {@link MetricRegistry} if one has been set.
+ */
+public class RingBufferAsyncAppender<E> extends AsyncAppenderBase<E> {
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final int UNDEFINED = -1;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final WaitStrategy waitStrategy;
+    private final int batchSize;
+
+    @Nullable
+    private MetricRegistry metricRegistry;
+    private Meter queueFull = new Meter();
+    private Meter dropped = new Meter();
+
+    @Nullable
+    private RingBuffer<E> ringBuffer;
+    @Nullable
+    private Worker worker;
+    private int discardingThreshold;
+
+    private volatile boolean running;
+    private volatile boolean workerParked;
+
+    public RingBufferAsyncAppender(WaitStrategy waitStrategy, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.waitStrategy = waitStrategy;
+        this.batchSize = batchSize;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setMetricRegistry(@Nullable MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * @return how often a producer found the ring buffer full
+     */
+    public long getQueueFullCount() {
+        return queueFull.getCount();
+    }
+
+    /**
+     * @return how many events have been discarded
+     */
+    public long getDroppedCount() {
+        return dropped.getCount();
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        // The queue and the worker of AsyncAppenderBase are never created, so its start() is bypassed.
+        // Every start takes a fresh snapshot of the attached appenders, the worker of a previous start detached them.
+        final List<Appender<E>> appenders = new ArrayList<>();
+        final List<OutputStreamAppender<E>> flushedAppenders = new ArrayList<>();
+        final Iterator<Appender<E>> iterator = iteratorForAppenders();
+        while (iterator.hasNext()) {
+            appenders.add(iterator.next());
+        }
+        if (appenders.isEmpty()) {
+            addError("No attached appenders found.");
+            return;
+        }
+        if (getQueueSize() < 1) {
+            addError("Invalid queue size [" + getQueueSize() + "]");
+            return;
+        }
+        for (Appender<E> appender : appenders) {
+            if (appender instanceof OutputStreamAppender) {
+                final OutputStreamAppender<E> outputStreamAppender = (OutputStreamAppender<E>) appender;
+                outputStreamAppender.setImmediateFlush(false);
+                flushedAppenders.add(outputStreamAppender);
+            }
+        }
+        discardingThreshold = getDiscardingThreshold() == UNDEFINED ? getQueueSize() / 5 : getDiscardingThreshold();
+        if (metricRegistry != null) {
+            queueFull = metricRegistry.meter(name(RingBufferAsyncAppender.class, getName(), "queue-full"));
+            dropped = metricRegistry.meter(name(RingBufferAsyncAppender.class, getName(), "dropped"));
+        }
+
+        ringBuffer = new RingBuffer<>(getQueueSize());
+        worker = new Worker(ringBuffer, appenders, flushedAppenders);
+        worker.setDaemon(true);
+        worker.setName("RingBufferAsyncAppender-Worker-" + getName() + "-" + THREAD_COUNTER.incrementAndGet());
+        running = true;
+        started = true;
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted() || worker == null) {
+            return;
+        }
+        started = false;
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(getMaxFlushTime());
+            if (worker.isAlive()) {
+                addWarn("Max queue flush timeout (" + getMaxFlushTime() + " ms) exceeded. Approximately "
+                    + getNumberOfElementsInQueue() + " queued events were possibly discarded.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addError("Failed to join worker thread. " + getNumberOfElementsInQueue()
+                + " queued events may be discarded.", e);
+        }
+    }
+
+    @Override
+    protected void append(E event) {
+        final RingBuffer<E> buffer = ringBuffer;
+        if (buffer == null) {
+            return;
+        }
+        if (buffer.remainingCapacity() < discardingThreshold && isDiscardable(event)) {
+            dropped.mark();
+            return;
+        }
+        preprocess(event);
+        if (!buffer.offer(event)) {
+            queueFull.mark();
+            if (isNeverBlock() || !waitForCapacity(buffer, event)) {
+                dropped.mark();
+                return;
+            }
+        }
+        if (workerParked) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private boolean waitForCapacity(RingBuffer<E> buffer, E event) {
+        int tries = 0;
+        while (!buffer.offer(event)) {
+            if (!isStarted()) {
+                return false;
+            }
+            if (workerParked) {
+                LockSupport.unpark(worker);
+            }
+            if (tries++ < YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(SLEEP_NANOS);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getNumberOfElementsInQueue() {
+        return ringBuffer == null ? 0 : ringBuffer.size();
+    }
+
+    @Override
+    public int getRemainingCapacity() {
+        return ringBuffer == null ? getQueueSize() : ringBuffer.remainingCapacity();
+    }
+
+    private class Worker extends Thread {
+        private final RingBuffer<E> buffer;
+        private final List<Appender<E>> appenders;
+        private final List<OutputStreamAppender<E>> flushedAppenders;
+        private final Object[] batch;
+
+        private Worker(RingBuffer<E> buffer, List<Appender<E>> appenders, List<OutputStreamAppender<E>> flushedAppenders) {
+            this.buffer = buffer;
+            this.appenders = appenders;
+            this.flushedAppenders = flushedAppenders;
+            this.batch = new Object[batchSize];
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            while (running) {
+                final int count = buffer.drainTo(batch);
+                if (count == 0) {
+                    waitForEvents(idleCount++);
+                } else {
+                    idleCount = 0;
+                    write(count);
+                }
+            }
+
+            // write the remaining events and stop the attached appenders
+            int count;
+            while ((count = buffer.drainTo(batch)) > 0) {
+                write(count);
+            }
+            detachAndStopAllAppenders();
+        }
+
+        private void waitForEvents(int idleCount) {
+            switch (waitStrategy) {
+                case BLOCKING:
+                    workerParked = true;
+                    // re-check after announcing that we park, a producer either sees the flag or we see its event
+                    if (buffer.isEmpty() && running) {
+                        LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                    }
+                    workerParked = false;
+                    break;
+                case SLEEPING:
+                    if (idleCount >= SPIN_TRIES + YIELD_TRIES) {
+                        LockSupport.parkNanos(SLEEP_NANOS);
+                    } else if (idleCount >= SPIN_TRIES) {
+                        Thread.yield();
+                    }
+                    break;
+                case YIELDING:
+                    if (idleCount >= SPIN_TRIES) {
+                        Thread.yield();
+                    }
+                    break;
+                case BUSY_SPIN:
+                default:
+                    break;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void write(int count) {
+            for (int i = 0; i < count; i++) {
+                final E event = (E) batch[i];
+                batch[i] = null;
+                for (Appender<E> appender : appenders) {
+                    appender.doAppend(event);
+                }
+            }
+            for (OutputStreamAppender<E> appender : flushedAppenders) {
+                flush(appender);
+            }
+        }
+
+        private void flush(OutputStreamAppender<E> appender) {
+            if (!appender.isStarted() || appender.getOutputStream() == null) {
+                return;
+            }
+            try {
+                appender.getOutputStream().flush();
+            } catch (IOException e) {
+                addError("Failed to flush appender " + appender.getName(), e);
+            }
+        }
+    }
+}
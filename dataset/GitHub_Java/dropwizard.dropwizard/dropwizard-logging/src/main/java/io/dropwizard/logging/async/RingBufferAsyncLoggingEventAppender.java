@@ -0,0 +1,38 @@
+package io.dropwizard.logging.async;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * A {@link RingBufferAsyncAppender} for {@link ILoggingEvent}, which mirrors the behaviour of
+ * {@link ch.qos.logback.classic.AsyncAppender}: events of level INFO and below are discardable and caller
+ * data is only extracted if requested.
+ */
+public class RingBufferAsyncLoggingEventAppender extends RingBufferAsyncAppender<ILoggingEvent> {
+    private boolean includeCallerData = false;
+
+    public RingBufferAsyncLoggingEventAppender(WaitStrategy waitStrategy, int batchSize) {
+        super(waitStrategy, batchSize);
+    }
+
+    @Override
+    protected boolean isDiscardable(ILoggingEvent event) {
+        return event.getLevel().toInt() <= Level.INFO_INT;
+    }
+
+    @Override
+    protected void preprocess(ILoggingEvent event) {
+        event.prepareForDeferredProcessing();
+        if (includeCallerData) {
+            event.getCallerData();
+        }
+    }
+
+    public boolean isIncludeCallerData() {
+        return includeCallerData;
+    }
+
+    public void setIncludeCallerData(boolean includeCallerData) {
+        this.includeCallerData = includeCallerData;
+    }
+}
@@ -0,0 +1,65 @@
+package io.dropwizard.logging.async;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AsyncAppenderBase;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An implementation of {@link AsyncAppenderFactory} for {@link ILoggingEvent}, which builds appenders
+ * backed by a lock-free ring buffer.
+ *
+ * @see RingBufferAsyncAppender
+ */
+public class RingBufferAsyncLoggingEventAppenderFactory implements AsyncAppenderFactory<ILoggingEvent> {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * The name of the {@link SharedMetricRegistries shared registry} the meters are registered in, if no
+     * registry is given.
+     */
+    public static final String DEFAULT_METRIC_REGISTRY_NAME = "default";
+
+    private final WaitStrategy waitStrategy;
+    private final int batchSize;
+    private final MetricRegistry metricRegistry;
+
+    public RingBufferAsyncLoggingEventAppenderFactory() {
+        this(WaitStrategy.SLEEPING, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Registers the meters in the shared registry named {@value #DEFAULT_METRIC_REGISTRY_NAME}.
+     *
+     * @param waitStrategy how the worker waits for new events
+     * @param batchSize    the maximum number of events written before flushing
+     */
+    public RingBufferAsyncLoggingEventAppenderFactory(WaitStrategy waitStrategy, int batchSize) {
+        this(waitStrategy, batchSize, SharedMetricRegistries.getOrCreate(DEFAULT_METRIC_REGISTRY_NAME));
+    }
+
+    /**
+     * @param waitStrategy   how the worker waits for new events
+     * @param batchSize      the maximum number of events written before flushing
+     * @param metricRegistry the registry for the queue-full and dropped meters
+     */
+    public RingBufferAsyncLoggingEventAppenderFactory(WaitStrategy waitStrategy, int batchSize,
+                                                      MetricRegistry metricRegistry) {
+        this.waitStrategy = waitStrategy;
+        this.batchSize = batchSize;
+        this.metricRegistry = requireNonNull(metricRegistry);
+    }
+
+    /**
+     * Creates a {@link RingBufferAsyncAppender} of type {@link ILoggingEvent}
+     * @return the {@link AsyncAppenderBase}
+     */
+    @Override
+    public AsyncAppenderBase<ILoggingEvent> build() {
+        final RingBufferAsyncLoggingEventAppender appender = new RingBufferAsyncLoggingEventAppender(waitStrategy, batchSize);
+        appender.setMetricRegistry(metricRegistry);
+        return appender;
+    }
+}
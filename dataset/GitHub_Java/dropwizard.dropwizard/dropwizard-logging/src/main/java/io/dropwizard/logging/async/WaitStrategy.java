@@ -0,0 +1,28 @@
+package io.dropwizard.logging.async;
+
+/**
+ * How the worker of a {@link RingBufferAsyncAppender} waits for new events once the ring buffer is drained.
+ * The strategies trade CPU usage against the latency between logging an event and writing it.
+ */
+public enum WaitStrategy {
+    /**
+     * Parks the worker until a producer publishes an event. Uses no CPU while idle, but every event
+     * logged while the worker is parked pays for waking it up.
+     */
+    BLOCKING,
+
+    /**
+     * Spins, then yields and finally sleeps for short periods. A good balance for most applications.
+     */
+    SLEEPING,
+
+    /**
+     * Spins, then yields the CPU to other threads. Low latency, but keeps one core busy.
+     */
+    YIELDING,
+
+    /**
+     * Spins without ever giving up the CPU. Lowest latency, only sensible with a dedicated core.
+     */
+    BUSY_SPIN
+}
@@ -0,0 +1,156 @@
+package io.dropwizard.logging.async;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.Context;
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.EchoEncoder;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RingBufferAsyncAppenderTest {
+    private final Context context = new ContextBase();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private RingBufferAsyncLoggingEventAppender appender;
+
+    @After
+    public void tearDown() {
+        if (appender != null) {
+            appender.stop();
+        }
+    }
+
+    @Test
+    public void delegatesEventsInOrder() {
+        @SuppressWarnings("unchecked")
+        final Appender<ILoggingEvent> delegate = mock(Appender.class);
+        appender = start(delegate, WaitStrategy.BLOCKING, 16, false);
+
+        final ILoggingEvent first = event(Level.WARN);
+        final ILoggingEvent second = event(Level.WARN);
+        appender.doAppend(first);
+        appender.doAppend(second);
+
+        final InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate, timeout(1000)).doAppend(first);
+        inOrder.verify(delegate, timeout(1000)).doAppend(second);
+    }
+
+    @Test
+    public void writesBatchesToOutputStreamAppenders() {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final OutputStreamAppender<ILoggingEvent> delegate = new OutputStreamAppender<>();
+        delegate.setContext(context);
+        delegate.setEncoder(new EchoEncoder<>());
+        delegate.setOutputStream(output);
+        delegate.start();
+        appender = start(delegate, WaitStrategy.SLEEPING, 8, false);
+
+        for (int i = 0; i < 100; i++) {
+            appender.doAppend(event(Level.ERROR));
+        }
+        appender.stop();
+
+        assertThat(delegate.isImmediateFlush()).isFalse();
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8).split(CoreConstants.LINE_SEPARATOR)).hasSize(100);
+    }
+
+    @Test
+    public void countsDroppedEventsWhenFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        @SuppressWarnings("unchecked")
+        final Appender<ILoggingEvent> delegate = mock(Appender.class);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(delegate).doAppend(any());
+        appender = start(delegate, WaitStrategy.YIELDING, 1, true);
+
+        for (int i = 0; i < 100; i++) {
+            appender.doAppend(event(Level.ERROR));
+        }
+        release.countDown();
+
+        assertThat(appender.getQueueFullCount()).isPositive();
+        assertThat(appender.getDroppedCount()).isPositive();
+        assertThat(metricRegistry.meter(MetricRegistry.name(RingBufferAsyncAppender.class, "async-test", "dropped"))
+            .getCount()).isEqualTo(appender.getDroppedCount());
+    }
+
+    @Test
+    public void discardsInfoEventsAboveTheThreshold() {
+        @SuppressWarnings("unchecked")
+        final Appender<ILoggingEvent> delegate = mock(Appender.class);
+        appender = new RingBufferAsyncLoggingEventAppender(WaitStrategy.BLOCKING, 16);
+        appender.setQueueSize(4);
+        appender.setDiscardingThreshold(5);
+        configure(delegate, false);
+
+        appender.doAppend(event(Level.INFO));
+
+        assertThat(appender.getDroppedCount()).isEqualTo(1);
+        assertThat(appender.getQueueFullCount()).isZero();
+    }
+
+    @Test
+    public void restartsWithTheNewlyAttachedAppenders() {
+        @SuppressWarnings("unchecked")
+        final Appender<ILoggingEvent> first = mock(Appender.class);
+        @SuppressWarnings("unchecked")
+        final Appender<ILoggingEvent> second = mock(Appender.class);
+        appender = start(first, WaitStrategy.BLOCKING, 16, false);
+        appender.stop();
+
+        appender.addAppender(second);
+        appender.start();
+        final ILoggingEvent event = event(Level.WARN);
+        appender.doAppend(event);
+        appender.stop();
+
+        verify(second, times(1)).doAppend(event);
+        verify(first, never()).doAppend(event);
+    }
+
+    private RingBufferAsyncLoggingEventAppender start(Appender<ILoggingEvent> delegate, WaitStrategy waitStrategy,
+                                                      int queueSize, boolean neverBlock) {
+        appender = new RingBufferAsyncLoggingEventAppender(waitStrategy, 4);
+        appender.setQueueSize(queueSize);
+        appender.setDiscardingThreshold(0);
+        configure(delegate, neverBlock);
+        return appender;
+    }
+
+    private void configure(Appender<ILoggingEvent> delegate, boolean neverBlock) {
+        appender.setContext(context);
+        appender.setName("async-test");
+        appender.setNeverBlock(neverBlock);
+        appender.setMetricRegistry(metricRegistry);
+        appender.addAppender(delegate);
+        appender.start();
+    }
+
+    private static ILoggingEvent event(Level level) {
+        final ILoggingEvent event = mock(ILoggingEvent.class);
+        when(event.getLevel()).thenReturn(level);
+        when(event.toString()).thenReturn("event");
+        return event;
+    }
+}
@@ -0,0 +1,55 @@
+package io.dropwizard.logging.async;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+import ch.qos.logback.core.ContextBase;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class RingBufferAsyncLoggingEventAppenderFactoryTest {
+    private static final String QUEUE_FULL = MetricRegistry.name(RingBufferAsyncAppender.class, "async-test", "queue-full");
+    private static final String DROPPED = MetricRegistry.name(RingBufferAsyncAppender.class, "async-test", "dropped");
+
+    private AsyncAppenderBase<ILoggingEvent> appender;
+
+    @After
+    public void tearDown() {
+        if (appender != null) {
+            appender.stop();
+        }
+        SharedMetricRegistries.remove(RingBufferAsyncLoggingEventAppenderFactory.DEFAULT_METRIC_REGISTRY_NAME);
+    }
+
+    @Test
+    public void registersTheMetersInTheSharedRegistryByDefault() {
+        appender = start(new RingBufferAsyncLoggingEventAppenderFactory());
+
+        assertThat(SharedMetricRegistries.getOrCreate(RingBufferAsyncLoggingEventAppenderFactory.DEFAULT_METRIC_REGISTRY_NAME)
+            .getMeters()).containsKeys(QUEUE_FULL, DROPPED);
+    }
+
+    @Test
+    public void registersTheMetersInTheGivenRegistry() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        appender = start(new RingBufferAsyncLoggingEventAppenderFactory(WaitStrategy.BLOCKING, 16, metricRegistry));
+
+        assertThat(metricRegistry.getMeters()).containsKeys(QUEUE_FULL, DROPPED);
+    }
+
+    private static AsyncAppenderBase<ILoggingEvent> start(RingBufferAsyncLoggingEventAppenderFactory factory) {
+        @SuppressWarnings("unchecked")
+        final Appender<ILoggingEvent> delegate = mock(Appender.class);
+        final AsyncAppenderBase<ILoggingEvent> appender = factory.build();
+        appender.setContext(new ContextBase());
+        appender.setName("async-test");
+        appender.addAppender(delegate);
+        appender.start();
+        return appender;
+    }
+}
@@ -0,0 +1,69 @@
+package io.dropwizard.logging.async;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RingBufferTest {
+    private final RingBuffer<String> ringBuffer = new RingBuffer<>(3);
+
+    @Test
+    public void rejectsElementsWhenFull() {
+        assertThat(ringBuffer.offer("a")).isTrue();
+        assertThat(ringBuffer.offer("b")).isTrue();
+        assertThat(ringBuffer.offer("c")).isTrue();
+        assertThat(ringBuffer.offer("d")).isFalse();
+        assertThat(ringBuffer.size()).isEqualTo(3);
+        assertThat(ringBuffer.remainingCapacity()).isZero();
+    }
+
+    @Test
+    public void drainsInOrderAndWrapsAround() {
+        final Object[] batch = new Object[2];
+        for (int i = 0; i < 10; i++) {
+            assertThat(ringBuffer.offer("first-" + i)).isTrue();
+            assertThat(ringBuffer.offer("second-" + i)).isTrue();
+            assertThat(ringBuffer.drainTo(batch)).isEqualTo(2);
+            assertThat(batch).containsExactly("first-" + i, "second-" + i);
+        }
+        assertThat(ringBuffer.isEmpty()).isTrue();
+        assertThat(ringBuffer.drainTo(batch)).isZero();
+    }
+
+    @Test
+    public void keepsTheOrderOfEachProducer() throws Exception {
+        final RingBuffer<long[]> buffer = new RingBuffer<>(64);
+        final int producers = 4;
+        final long perProducer = 50_000;
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            threads[p] = new Thread(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    final long[] element = {id, i};
+                    while (!buffer.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        final long[] last = {-1, -1, -1, -1};
+        final Object[] batch = new Object[16];
+        long total = 0;
+        while (total < producers * perProducer) {
+            final int count = buffer.drainTo(batch);
+            for (int i = 0; i < count; i++) {
+                final long[] element = (long[]) batch[i];
+                assertThat(element[1]).isEqualTo(last[(int) element[0]] + 1);
+                last[(int) element[0]] = element[1];
+            }
+            total += count;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+}
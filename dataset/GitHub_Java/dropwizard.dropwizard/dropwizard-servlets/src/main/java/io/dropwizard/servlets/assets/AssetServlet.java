@@ -3,40 +3,74 @@ package io.dropwizard.servlets.assets;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.google.common.io.Resources;
 import com.google.common.net.HttpHeaders;
 import com.google.common.net.MediaType;
+import javax.annotation.Nullable;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 import static com.google.common.base.Preconditions.checkArgument;
 
 public class AssetServlet extends HttpServlet {
     private static final long serialVersionUID = 6393345594784987908L;
     private static final CharMatcher SLASHES = CharMatcher.is('/');
 
+    /**
+     * An asset with its precomputed strong ETag and compressed variants. Small assets are kept on the
+     * heap, large assets from the file system are memory-mapped.
+     */
     private static class CachedAsset {
-        private final byte[] resource;
+        private final ByteBuffer resource;
         private final String eTag;
         private final long lastModifiedTime;
-
-        private CachedAsset(byte[] resource, long lastModifiedTime) {
+        @Nullable
+        private final File file;
+        @Nullable
+        private final Variant gzip;
+        @Nullable
+        private final Variant brotli;
+
+        private CachedAsset(ByteBuffer resource, long lastModifiedTime, @Nullable File file,
+                            @Nullable byte[] gzip, @Nullable byte[] brotli) {
             this.resource = resource;
-            this.eTag = '"' + Hashing.murmur3_128().hashBytes(resource).toString() + '"';
             this.lastModifiedTime = lastModifiedTime;
+            this.file = file;
+
+            final Hasher hasher = Hashing.murmur3_128().newHasher();
+            hasher.putBytes(resource.duplicate());
+            final String hash = hasher.hash().toString();
+            this.eTag = '"' + hash + '"';
+            this.gzip = gzip == null ? null : new Variant(GZIP, gzip, '"' + hash + "-gzip\"");
+            this.brotli = brotli == null ? null : new Variant(BROTLI, brotli, '"' + hash + "-br\"");
+        }
+
+        public ByteBuffer getResource() {
+            return resource.duplicate();
         }
 
-        public byte[] getResource() {
-            return resource;
+        public int getLength() {
+            return resource.remaining();
         }
 
         public String getETag() {
@@ -46,14 +80,72 @@ public class AssetServlet extends HttpServlet {
         public long getLastModifiedTime() {
             return lastModifiedTime;
         }
+
+        /**
+         * @return whether the file this asset has been read from changed since
+         */
+        public boolean isStale() {
+            return file != null && (file.lastModified() / 1000) * 1000 != lastModifiedTime;
+        }
+
+        /**
+         * @return whether the uncompressed representation is memory-mapped instead of held on the heap
+         */
+        public boolean isMapped() {
+            return !resource.hasArray();
+        }
+
+        /**
+         * @return the number of bytes held by this asset, heap and memory-mapped alike
+         */
+        public int getWeight() {
+            return resource.remaining() + (gzip == null ? 0 : gzip.content.length)
+                + (brotli == null ? 0 : brotli.content.length);
+        }
     }
 
+    /**
+     * A compressed representation of an asset.
+     */
+    private static class Variant {
+        private final String encoding;
+        private final byte[] content;
+        private final String eTag;
+
+        private Variant(String encoding, byte[] content, String eTag) {
+            this.encoding = encoding;
+            this.content = content;
+            this.eTag = eTag;
+        }
+    }
+
+    private static final String GZIP = "gzip";
+    private static final String BROTLI = "br";
+
+    /**
+     * Assets from the file system of at least this size are memory-mapped instead of read onto the heap.
+     */
+    private static final int MAPPED_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Assets smaller than this aren't worth compressing.
+     */
+    private static final int COMPRESSION_THRESHOLD = 256;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    public static final long DEFAULT_MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+    public static final long DEFAULT_MAX_MAPPED_BYTES = 1024L * 1024 * 1024;
+
     private static final MediaType DEFAULT_MEDIA_TYPE = MediaType.HTML_UTF_8;
 
     private final String resourcePath;
     private final String uriPath;
     private final String indexFile;
     private final Charset defaultCharset;
+    private final transient Cache<String, CachedAsset> cache;
+    private final transient Cache<String, CachedAsset> mappedCache;
 
     /**
      * Creates a new {@code AssetServlet} that serves static assets loaded from {@code resourceURL}
@@ -75,12 +167,67 @@ public class AssetServlet extends HttpServlet {
                         String uriPath,
                         String indexFile,
                         Charset defaultCharset) {
+        this(resourcePath, uriPath, indexFile, defaultCharset, DEFAULT_MAX_CACHE_BYTES);
+    }
+
+    /**
+     * Creates a new {@code AssetServlet} like {@link #AssetServlet(String, String, String, Charset)},
+     * which keeps loaded assets together with their compressed variants in a cache holding at most
+     * {@code maxCacheBytes} bytes of heap.
+     * <p>
+     * Text-like assets are gzipped once when they're loaded, unless a precompressed {@code .gz} file
+     * exists next to them. A precompressed {@code .br} file is served to clients accepting brotli.
+     * Assets of at least 1 MiB which live on the file system are memory-mapped and kept in a
+     * separate cache of at most {@link #DEFAULT_MAX_MAPPED_BYTES} bytes.
+     *
+     * @param resourcePath   the base URL from which assets are loaded
+     * @param uriPath        the URI path fragment in which all requests are rooted
+     * @param indexFile      the filename to use when directories are requested, or null to serve no
+     *                       indexes
+     * @param defaultCharset the default character set
+     * @param maxCacheBytes  the maximum number of heap bytes held by cached assets
+     */
+    public AssetServlet(String resourcePath,
+                        String uriPath,
+                        String indexFile,
+                        Charset defaultCharset,
+                        long maxCacheBytes) {
+        this(resourcePath, uriPath, indexFile, defaultCharset, maxCacheBytes, DEFAULT_MAX_MAPPED_BYTES);
+    }
+
+    /**
+     * Creates a new {@code AssetServlet} like {@link #AssetServlet(String, String, String, Charset, long)},
+     * which keeps memory-mapped assets in a cache of at most {@code maxMappedBytes} bytes. The
+     * compressed variants of a memory-mapped asset count towards that limit as well.
+     *
+     * @param resourcePath   the base URL from which assets are loaded
+     * @param uriPath        the URI path fragment in which all requests are rooted
+     * @param indexFile      the filename to use when directories are requested, or null to serve no
+     *                       indexes
+     * @param defaultCharset the default character set
+     * @param maxCacheBytes  the maximum number of heap bytes held by cached assets
+     * @param maxMappedBytes the maximum number of bytes held by memory-mapped assets
+     */
+    public AssetServlet(String resourcePath,
+                        String uriPath,
+                        String indexFile,
+                        Charset defaultCharset,
+                        long maxCacheBytes,
+                        long maxMappedBytes) {
         final String trimmedPath = SLASHES.trimFrom(resourcePath);
         this.resourcePath = trimmedPath.isEmpty() ? trimmedPath : trimmedPath + '/';
         final String trimmedUri = SLASHES.trimTrailingFrom(uriPath);
         this.uriPath = trimmedUri.isEmpty() ? "/" : trimmedUri;
         this.indexFile = indexFile;
         this.defaultCharset = defaultCharset;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCacheBytes)
+                .<String, CachedAsset>weigher((key, asset) -> asset.getWeight())
+                .build();
+        this.mappedCache = CacheBuilder.newBuilder()
+                .maximumWeight(maxMappedBytes)
+                .<String, CachedAsset>weigher((key, asset) -> asset.getWeight())
+                .build();
     }
 
     public URL getResourceURL() {
@@ -103,20 +250,24 @@ public class AssetServlet extends HttpServlet {
             if (req.getPathInfo() != null) {
                 builder.append(req.getPathInfo());
             }
-            final CachedAsset cachedAsset = loadAsset(builder.toString());
+            final CachedAsset cachedAsset = getAsset(builder.toString());
             if (cachedAsset == null) {
                 resp.sendError(HttpServletResponse.SC_NOT_FOUND);
                 return;
             }
 
-            if (isCachedClientSide(req, cachedAsset)) {
+            final String rangeHeader = req.getHeader(HttpHeaders.RANGE);
+
+            // Ranges always refer to the uncompressed representation
+            final Variant variant = rangeHeader == null ? selectVariant(req, cachedAsset) : null;
+            final String eTag = variant == null ? cachedAsset.getETag() : variant.eTag;
+
+            if (isCachedClientSide(req, eTag, cachedAsset)) {
                 resp.sendError(HttpServletResponse.SC_NOT_MODIFIED);
                 return;
             }
 
-            final String rangeHeader = req.getHeader(HttpHeaders.RANGE);
-
-            final int resourceLength = cachedAsset.getResource().length;
+            final int resourceLength = cachedAsset.getLength();
             ImmutableList<ByteRange> ranges = ImmutableList.of();
 
             boolean usingRanges = false;
@@ -149,7 +300,10 @@ public class AssetServlet extends HttpServlet {
             }
 
             resp.setDateHeader(HttpHeaders.LAST_MODIFIED, cachedAsset.getLastModifiedTime());
-            resp.setHeader(HttpHeaders.ETAG, cachedAsset.getETag());
+            resp.setHeader(HttpHeaders.ETAG, eTag);
+            if (cachedAsset.gzip != null || cachedAsset.brotli != null) {
+                resp.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
 
             final String mimeTypeOfExtension = req.getServletContext()
                                                   .getMimeType(req.getRequestURI());
@@ -175,15 +329,32 @@ public class AssetServlet extends HttpServlet {
                 resp.setCharacterEncoding(mediaType.charset().get().toString());
             }
 
+            if (variant != null) {
+                resp.setHeader(HttpHeaders.CONTENT_ENCODING, variant.encoding);
+                resp.setContentLength(variant.content.length);
+                try (ServletOutputStream output = resp.getOutputStream()) {
+                    output.write(variant.content);
+                }
+                return;
+            }
+
+            final ByteBuffer resource = cachedAsset.getResource();
+            if (!usingRanges && cachedAsset.isMapped() && req.isAsyncSupported() && "GET".equals(req.getMethod())) {
+                // large memory-mapped asset, write it without blocking a thread on slow clients
+                resp.setContentLength(resourceLength);
+                writeAsync(req, resp, resource);
+                return;
+            }
+
             try (ServletOutputStream output = resp.getOutputStream()) {
                  if (usingRanges) {
                     for (final ByteRange range : ranges) {
-                        output.write(cachedAsset.getResource(), range.getStart(),
-                                range.getEnd() - range.getStart() + 1);
+                        write(output, resource, range.getStart(), range.getEnd() - range.getStart() + 1);
                     }
                 }
                 else {
-                    output.write(cachedAsset.getResource());
+                    resp.setContentLength(resourceLength);
+                    write(output, resource, 0, resourceLength);
                 }
             }
         } catch (RuntimeException | URISyntaxException ignored) {
@@ -191,15 +362,116 @@ public class AssetServlet extends HttpServlet {
         }
     }
 
+    private static void write(ServletOutputStream output, ByteBuffer resource, int offset, int length) throws IOException {
+        if (resource.hasArray()) {
+            output.write(resource.array(), resource.arrayOffset() + resource.position() + offset, length);
+            return;
+        }
+        final ByteBuffer slice = resource.duplicate();
+        slice.position(resource.position() + offset);
+        slice.limit(resource.position() + offset + length);
+        final byte[] chunk = new byte[Math.min(CHUNK_SIZE, length)];
+        while (slice.hasRemaining()) {
+            final int count = Math.min(chunk.length, slice.remaining());
+            slice.get(chunk, 0, count);
+            output.write(chunk, 0, count);
+        }
+    }
+
+    private static void writeAsync(HttpServletRequest req, HttpServletResponse resp, ByteBuffer resource) throws IOException {
+        final AsyncContext asyncContext = req.startAsync();
+        final ServletOutputStream output = resp.getOutputStream();
+        final byte[] chunk = new byte[CHUNK_SIZE];
+        output.setWriteListener(new WriteListener() {
+            @Override
+            public void onWritePossible() throws IOException {
+                // the chunk may only be refilled once the container is done with the previous write
+                while (output.isReady()) {
+                    if (!resource.hasRemaining()) {
+                        asyncContext.complete();
+                        return;
+                    }
+                    final int count = Math.min(chunk.length, resource.remaining());
+                    resource.get(chunk, 0, count);
+                    output.write(chunk, 0, count);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                asyncContext.complete();
+            }
+        });
+    }
+
+    @Nullable
+    private static Variant selectVariant(HttpServletRequest req, CachedAsset cachedAsset) {
+        final String acceptEncoding = req.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return null;
+        }
+        if (cachedAsset.brotli != null && acceptsEncoding(acceptEncoding, BROTLI)) {
+            return cachedAsset.brotli;
+        }
+        if (cachedAsset.gzip != null && acceptsEncoding(acceptEncoding, GZIP)) {
+            return cachedAsset.gzip;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the {@code Accept-Encoding} header lists the encoding with a non-zero quality.
+     */
+    static boolean acceptsEncoding(String acceptEncoding, String encoding) {
+        for (String coding : Splitter.on(',').trimResults().omitEmptyStrings().split(acceptEncoding)) {
+            final List<String> parts = Splitter.on(';').trimResults().splitToList(coding);
+            if (!parts.get(0).equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            for (String parameter : parts.subList(1, parts.size())) {
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Nullable
+    private CachedAsset getAsset(String key) throws URISyntaxException, IOException {
+        CachedAsset cached = cache.getIfPresent(key);
+        if (cached == null) {
+            cached = mappedCache.getIfPresent(key);
+        }
+        if (cached != null && !cached.isStale()) {
+            return cached;
+        }
+        final CachedAsset loaded = loadAsset(key);
+        // a changed file may have crossed the mapping threshold
+        cache.invalidate(key);
+        mappedCache.invalidate(key);
+        if (loaded != null) {
+            (loaded.isMapped() ? mappedCache : cache).put(key, loaded);
+        }
+        return loaded;
+    }
+
+    @Nullable
     private CachedAsset loadAsset(String key) throws URISyntaxException, IOException {
         checkArgument(key.startsWith(uriPath));
         final String requestedResourcePath = SLASHES.trimFrom(key.substring(uriPath.length()));
-        final String absoluteRequestedResourcePath = SLASHES.trimFrom(this.resourcePath + requestedResourcePath);
+        String absoluteRequestedResourcePath = SLASHES.trimFrom(this.resourcePath + requestedResourcePath);
 
         URL requestedResourceURL = Resources.getResource(absoluteRequestedResourcePath);
         if (ResourceURL.isDirectory(requestedResourceURL)) {
             if (indexFile != null) {
-                requestedResourceURL = Resources.getResource(absoluteRequestedResourcePath + '/' + indexFile);
+                absoluteRequestedResourcePath = absoluteRequestedResourcePath + '/' + indexFile;
+                requestedResourceURL = Resources.getResource(absoluteRequestedResourcePath);
             } else {
                 // directory requested but no index file defined
                 return null;
@@ -214,11 +486,75 @@ public class AssetServlet extends HttpServlet {
 
         // zero out the millis since the date we get back from If-Modified-Since will not have them
         lastModified = (lastModified / 1000) * 1000;
-        return new CachedAsset(Resources.toByteArray(requestedResourceURL), lastModified);
+
+        final File file = "file".equals(requestedResourceURL.getProtocol())
+                ? new File(requestedResourceURL.toURI()) : null;
+        final ByteBuffer resource;
+        if (file != null && file.length() >= MAPPED_THRESHOLD) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                resource = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } else {
+            resource = ByteBuffer.wrap(Resources.toByteArray(requestedResourceURL));
+        }
+
+        byte[] gzip = loadPrecompressed(absoluteRequestedResourcePath + ".gz");
+        if (gzip == null && isCompressible(absoluteRequestedResourcePath, resource.remaining())) {
+            gzip = compress(resource.duplicate());
+        }
+        final byte[] brotli = loadPrecompressed(absoluteRequestedResourcePath + ".br");
+        return new CachedAsset(resource, lastModified, file, gzip, brotli);
+    }
+
+    @Nullable
+    private static byte[] loadPrecompressed(String path) throws IOException {
+        final URL url = findResource(path);
+        return url == null ? null : Resources.toByteArray(url);
+    }
+
+    @Nullable
+    private static URL findResource(String path) {
+        try {
+            return Resources.getResource(path);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean isCompressible(String path, int length) {
+        if (length < COMPRESSION_THRESHOLD) {
+            return false;
+        }
+        final String mimeType = getServletContext().getMimeType(path);
+        if (mimeType == null) {
+            return false;
+        }
+        return mimeType.startsWith("text/") || mimeType.contains("javascript") || mimeType.contains("json")
+                || mimeType.contains("xml") || mimeType.contains("svg");
+    }
+
+    @Nullable
+    private static byte[] compress(ByteBuffer resource) throws IOException {
+        final int length = resource.remaining();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            if (resource.hasArray()) {
+                gzip.write(resource.array(), resource.arrayOffset() + resource.position(), length);
+            } else {
+                final byte[] chunk = new byte[Math.min(CHUNK_SIZE, length)];
+                while (resource.hasRemaining()) {
+                    final int count = Math.min(chunk.length, resource.remaining());
+                    resource.get(chunk, 0, count);
+                    gzip.write(chunk, 0, count);
+                }
+            }
+        }
+        // not worth it if it doesn't save anything
+        return compressed.size() < length ? compressed.toByteArray() : null;
     }
 
-    private boolean isCachedClientSide(HttpServletRequest req, CachedAsset cachedAsset) {
-        return cachedAsset.getETag().equals(req.getHeader(HttpHeaders.IF_NONE_MATCH)) ||
+    private boolean isCachedClientSide(HttpServletRequest req, String eTag, CachedAsset cachedAsset) {
+        return eTag.equals(req.getHeader(HttpHeaders.IF_NONE_MATCH)) ||
                 (req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE) >= cachedAsset.getLastModifiedTime());
     }
 
@@ -1,5 +1,7 @@
 package io.dropwizard.servlets.assets;
 
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
 import com.google.common.net.HttpHeaders;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpTester;
@@ -7,10 +9,19 @@ import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.servlet.ServletTester;
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -18,6 +29,7 @@ public class AssetServletTest {
     private static final String DUMMY_SERVLET = "/dummy_servlet/";
     private static final String NOINDEX_SERVLET = "/noindex_servlet/";
     private static final String NOCHARSET_SERVLET = "/nocharset_servlet/";
+    private static final String ASYNC_SERVLET = "/async_servlet/";
     private static final String ROOT_SERVLET = "/";
     private static final String RESOURCE_PATH = "/assets";
 
@@ -55,6 +67,33 @@ public class AssetServletTest {
         }
     }
 
+    public static class AsyncAssetServlet extends AssetServlet {
+        private static final long serialVersionUID = 1L;
+
+        public AsyncAssetServlet() {
+            super(RESOURCE_PATH, ASYNC_SERVLET, null, StandardCharsets.UTF_8);
+        }
+    }
+
+    // large enough to be memory-mapped
+    private static final byte[] LARGE_ASSET = new byte[2 * 1024 * 1024];
+    private static File largeAssetFile;
+
+    @BeforeClass
+    public static void createLargeAsset() throws Exception {
+        final byte[] line = "0123456789abcdefghijklmnopqrstuvwxyz\n".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < LARGE_ASSET.length; i++) {
+            LARGE_ASSET[i] = line[i % line.length];
+        }
+        largeAssetFile = new File(new File(Resources.getResource("assets").toURI()), "large.txt");
+        Files.write(largeAssetFile.toPath(), LARGE_ASSET);
+    }
+
+    @AfterClass
+    public static void deleteLargeAsset() throws Exception {
+        Files.deleteIfExists(largeAssetFile.toPath());
+    }
+
     private final ServletTester servletTester = new ServletTester();
     private final HttpTester.Request request = HttpTester.newRequest();
     private HttpTester.Response response;
@@ -65,6 +104,7 @@ public class AssetServletTest {
         servletTester.addServlet(NoIndexAssetServlet.class, NOINDEX_SERVLET + '*');
         servletTester.addServlet(NoCharsetAssetServlet.class, NOCHARSET_SERVLET + '*');
         servletTester.addServlet(RootAssetServlet.class, ROOT_SERVLET + '*');
+        servletTester.addServlet(AsyncAssetServlet.class, ASYNC_SERVLET + '*').setAsyncSupported(true);
         servletTester.start();
 
         servletTester.getContext().getMimeTypes().addMimeMapping("mp4", "video/mp4");
@@ -447,4 +487,136 @@ public class AssetServletTest {
         assertThat(response.getStatus())
                 .isEqualTo(200);
     }
+
+    @Test
+    public void doesNotCompressSmallAssets() throws Exception {
+        request.setURI(ROOT_SERVLET + "assets/example.txt");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, br");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContent()).isEqualTo("HELLO THERE");
+    }
+
+    @Test
+    public void parsesAcceptEncoding() {
+        assertThat(AssetServlet.acceptsEncoding("gzip, deflate, br", "br")).isTrue();
+        assertThat(AssetServlet.acceptsEncoding("GZIP;q=0.5", "gzip")).isTrue();
+        assertThat(AssetServlet.acceptsEncoding("gzip;q=0, br", "gzip")).isFalse();
+        assertThat(AssetServlet.acceptsEncoding("identity", "gzip")).isFalse();
+        assertThat(AssetServlet.acceptsEncoding("gzip;q=x", "gzip")).isFalse();
+    }
+
+    @Test
+    public void servesGzippedAssets() throws Exception {
+        request.setURI(DUMMY_SERVLET + "compressible.txt");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.get(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.get(HttpHeaders.ETAG)).endsWith("-gzip\"");
+        assertThat(gunzip(response.getContentBytes())).isEqualTo(resource("assets/compressible.txt"));
+    }
+
+    @Test
+    public void servesIdentityToClientsNotAcceptingCompression() throws Exception {
+        request.setURI(DUMMY_SERVLET + "compressible.txt");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        final String identityEtag = response.get(HttpHeaders.ETAG);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.get(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.getContentBytes()).isEqualTo(resource("assets/compressible.txt"));
+
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.get(HttpHeaders.ETAG)).isEqualTo(identityEtag);
+    }
+
+    @Test
+    public void servesPrecompressedGzip() throws Exception {
+        request.setURI(DUMMY_SERVLET + "precompressed.js");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getContentBytes()).isEqualTo(resource("assets/precompressed.js.gz"));
+        assertThat(gunzip(response.getContentBytes())).isEqualTo(resource("assets/precompressed.js"));
+    }
+
+    @Test
+    public void prefersPrecompressedBrotli() throws Exception {
+        request.setURI(DUMMY_SERVLET + "precompressed.js");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isEqualTo("br");
+        assertThat(response.get(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.get(HttpHeaders.ETAG)).endsWith("-br\"");
+        assertThat(response.getContentBytes()).isEqualTo(resource("assets/precompressed.js.br"));
+    }
+
+    @Test
+    public void supportsIfNoneMatchRequestsForCompressedVariants() throws Exception {
+        request.setURI(DUMMY_SERVLET + "compressible.txt");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        final String gzipEtag = response.get(HttpHeaders.ETAG);
+
+        request.setHeader(HttpHeaders.IF_NONE_MATCH, gzipEtag);
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(304);
+
+        // the ETag of the gzipped representation doesn't match the identity representation
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.get(HttpHeaders.ETAG)).isNotEqualTo(gzipEtag);
+    }
+
+    @Test
+    public void servesRangesOfTheIdentityRepresentation() throws Exception {
+        request.setURI(DUMMY_SERVLET + "compressible.txt");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        request.setHeader(HttpHeaders.RANGE, "bytes=0-4");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContent()).isEqualTo("Lorem");
+    }
+
+    @Test
+    public void servesMappedAssetsWithAWriteListener() throws Exception {
+        request.setURI(ASYNC_SERVLET + "large.txt");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.get(HttpHeaders.CONTENT_LENGTH)).isEqualTo(String.valueOf(LARGE_ASSET.length));
+        assertThat(Arrays.equals(response.getContentBytes(), LARGE_ASSET)).isTrue();
+    }
+
+    @Test
+    public void servesMappedAssetsWithoutAsyncSupport() throws Exception {
+        request.setURI(DUMMY_SERVLET + "large.txt");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(Arrays.equals(response.getContentBytes(), LARGE_ASSET)).isTrue();
+
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(Arrays.equals(gunzip(response.getContentBytes()), LARGE_ASSET)).isTrue();
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        return Resources.toByteArray(Resources.getResource(name));
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return ByteStreams.toByteArray(input);
+        }
+    }
 }
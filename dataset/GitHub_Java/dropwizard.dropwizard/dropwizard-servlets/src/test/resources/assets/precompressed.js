@@ -0,0 +1,5 @@
+// too small to be compressed by the servlet, served from precompressed.js.gz and .br
+window.precompressed0 = true;
+window.precompressed1 = true;
+window.precompressed2 = true;
+window.precompressed3 = true;
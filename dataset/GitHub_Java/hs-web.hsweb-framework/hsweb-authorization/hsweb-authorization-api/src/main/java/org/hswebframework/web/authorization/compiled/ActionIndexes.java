@@ -0,0 +1,59 @@
+package org.hswebframework.web.authorization.compiled;
+
+import org.hswebframework.web.authorization.Permission;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为操作事件(action)分配全局唯一的位下标,用于将action集合编译为{@link BitSet}.
+ * <p>
+ * action的数量通常很少,内置的action固定占用前几位,因此大部分集合只使用一个long.
+ *
+ * @see CompiledPermission
+ */
+public final class ActionIndexes {
+
+    private static final Map<String, Integer> INDEXES = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    static {
+        for (String action : new String[]{
+                Permission.ACTION_QUERY, Permission.ACTION_GET, Permission.ACTION_ADD,
+                Permission.ACTION_UPDATE, Permission.ACTION_DELETE, Permission.ACTION_IMPORT,
+                Permission.ACTION_EXPORT, Permission.ACTION_DISABLE, Permission.ACTION_ENABLE}) {
+            indexOf(action);
+        }
+    }
+
+    private ActionIndexes() {
+    }
+
+    /**
+     * @param action 操作事件
+     * @return action对应的位下标, 首次出现的action会分配一个新的下标
+     */
+    public static int indexOf(String action) {
+        return INDEXES.computeIfAbsent(action, key -> NEXT.getAndIncrement());
+    }
+
+    /**
+     * @param actions 操作事件集合
+     * @return 编译后的位集合, 调用方不应修改
+     */
+    public static BitSet toBitSet(Collection<String> actions) {
+        BitSet bitSet = new BitSet();
+        if (actions != null) {
+            for (String action : actions) {
+                if (action != null) {
+                    bitSet.set(indexOf(action));
+                }
+            }
+        }
+        return bitSet;
+    }
+}
@@ -0,0 +1,77 @@
+package org.hswebframework.web.authorization.compiled;
+
+import org.hswebframework.web.authorization.Authentication;
+import org.hswebframework.web.authorization.Permission;
+import org.hswebframework.web.authorization.Role;
+import org.hswebframework.web.authorization.access.DataAccessConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的用户权限信息,由{@link CompiledAuthorizationManager}在登录时编译并关联到对应的{@link Authentication}对象上.
+ * <p>
+ * 权限按id索引,角色为集合,每次权限判断不再遍历{@link Authentication#getPermissions()}和数据权限配置.
+ *
+ * @see CompiledAuthorizationManager
+ */
+public class CompiledAuthorization {
+
+    private final String userId;
+
+    private final Map<String, CompiledPermission> permissions;
+
+    private final Set<String> roles;
+
+    private CompiledAuthorization(String userId,
+                                  Map<String, CompiledPermission> permissions,
+                                  Set<String> roles) {
+        this.userId = userId;
+        this.permissions = permissions;
+        this.roles = roles;
+    }
+
+    public static CompiledAuthorization compile(Authentication authentication) {
+        Map<String, CompiledPermission> permissions = new HashMap<>();
+        for (Permission permission : authentication.getPermissions()) {
+            Set<DataAccessConfig> dataAccesses = permission.getDataAccesses();
+            permissions.computeIfAbsent(permission.getId(), CompiledPermission::new)
+                    .merge(ActionIndexes.toBitSet(permission.getActions()),
+                            dataAccesses == null ? Collections.emptySet() : dataAccesses);
+        }
+        Set<String> roles = new HashSet<>();
+        for (Role role : authentication.getRoles()) {
+            roles.add(role.getId());
+        }
+        return new CompiledAuthorization(authentication.getUser().getId(), permissions, roles);
+    }
+
+    /**
+     * @return 用户id
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * @param id 权限id
+     * @return 编译后的权限, 未持有此权限时返回null
+     */
+    public CompiledPermission getPermission(String id) {
+        return permissions.get(id);
+    }
+
+    public boolean hasRole(String id) {
+        return roles.contains(id);
+    }
+
+    /**
+     * @return 用户持有的角色id集合
+     */
+    public Set<String> getRoles() {
+        return Collections.unmodifiableSet(roles);
+    }
+}
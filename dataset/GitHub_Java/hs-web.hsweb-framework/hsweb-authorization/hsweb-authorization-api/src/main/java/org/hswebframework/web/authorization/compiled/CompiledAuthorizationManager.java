@@ -0,0 +1,176 @@
+package org.hswebframework.web.authorization.compiled;
+
+import org.hswebframework.web.authorization.Authentication;
+import org.hswebframework.web.authorization.AuthenticationHolder;
+import org.hswebframework.web.authorization.events.AuthorizationSuccessEvent;
+import org.hswebframework.web.authorization.token.UserToken;
+import org.hswebframework.web.authorization.token.event.UserTokenChangedEvent;
+import org.springframework.context.event.EventListener;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 管理用户编译后的权限信息.
+ * <p>
+ * 编译结果关联到{@link Authentication}对象上(按对象本身,而不是按用户id或权限内容),权限判断时直接取出,不再计算摘要或比较权限内容.
+ * 因此通过authentication.copy限定了scope的权限信息与原权限信息各自编译,互不影响.
+ * 编译结果不引用Authentication对象,Authentication对象被回收后,关联的编译结果也会被移除.
+ * <p>
+ * 用户登录和令牌变更时重新编译,权限设置变更(ClearUserAuthorizationCacheEvent)时通过{@link #evict(String)}和{@link #evictAll()}清除.
+ * 每次请求都重新创建Authentication对象时(如从redis中反序列化),每个对象在第一次权限判断时编译一次.
+ * 关联的对象数量超过{@link #DEFAULT_MAXIMUM_SIZE}(或者构造时指定的数量)时,会移除任意对象的编译结果.
+ *
+ * @see CompiledAuthorization
+ */
+public class CompiledAuthorizationManager {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private final ConcurrentMap<AuthenticationKey, CompiledAuthorization> compiled = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<Authentication> collected = new ReferenceQueue<>();
+
+    private final int maximumSize;
+
+    public CompiledAuthorizationManager() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public CompiledAuthorizationManager(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be greater than 0");
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * 获取关联到此权限信息的编译结果,还没有编译时进行编译
+     *
+     * @param authentication 用户权限信息
+     * @return 编译后的权限信息
+     */
+    public CompiledAuthorization get(Authentication authentication) {
+        CompiledAuthorization authorization = compiled.get(new AuthenticationKey(authentication));
+        if (authorization != null) {
+            return authorization;
+        }
+        return compile(authentication);
+    }
+
+    /**
+     * 编译权限信息并关联到此权限信息上,替换已有的编译结果
+     *
+     * @param authentication 用户权限信息
+     * @return 编译后的权限信息
+     */
+    public CompiledAuthorization compile(Authentication authentication) {
+        expungeCollected();
+        CompiledAuthorization authorization = CompiledAuthorization.compile(authentication);
+        AuthenticationKey key = new AuthenticationKey(authentication, collected);
+        if (compiled.size() >= maximumSize && !compiled.containsKey(key)) {
+            removeAny();
+        }
+        compiled.put(key, authorization);
+        return authorization;
+    }
+
+    public void evict(String userId) {
+        if (userId != null) {
+            compiled.values().removeIf(authorization -> userId.equals(authorization.getUserId()));
+        }
+    }
+
+    public void evictAll() {
+        compiled.clear();
+    }
+
+    /**
+     * @return 关联了编译结果的权限信息数量
+     */
+    public int size() {
+        expungeCollected();
+        return compiled.size();
+    }
+
+    private void removeAny() {
+        Iterator<AuthenticationKey> iterator = compiled.keySet().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void expungeCollected() {
+        Reference<? extends Authentication> reference;
+        while ((reference = collected.poll()) != null) {
+            compiled.remove(reference);
+        }
+    }
+
+    @EventListener
+    public void handleAuthorizationSuccess(AuthorizationSuccessEvent event) {
+        //登录时丢弃旧的编译结果并提前编译
+        Authentication authentication = event.getAuthentication();
+        evict(authentication.getUser().getId());
+        compile(authentication);
+    }
+
+    @EventListener
+    public void handleUserTokenChanged(UserTokenChangedEvent event) {
+        UserToken before = event.getBefore();
+        if (before != null) {
+            evict(before.getUserId());
+        }
+        UserToken after = event.getAfter();
+        if (after != null) {
+            evict(after.getUserId());
+            //令牌仍然有效时提前编译
+            if (after.isEffective()) {
+                Authentication authentication = AuthenticationHolder.get(after.getUserId());
+                if (authentication != null) {
+                    compile(authentication);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按对象本身比较的弱引用,不调用{@link Authentication}的hashCode和equals
+     */
+    private static final class AuthenticationKey extends WeakReference<Authentication> {
+
+        private final int hashCode;
+
+        AuthenticationKey(Authentication authentication) {
+            super(authentication);
+            this.hashCode = System.identityHashCode(authentication);
+        }
+
+        AuthenticationKey(Authentication authentication, ReferenceQueue<Authentication> queue) {
+            super(authentication, queue);
+            this.hashCode = System.identityHashCode(authentication);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof AuthenticationKey)) {
+                return false;
+            }
+            Authentication authentication = get();
+            return authentication != null && authentication == ((AuthenticationKey) obj).get();
+        }
+    }
+}
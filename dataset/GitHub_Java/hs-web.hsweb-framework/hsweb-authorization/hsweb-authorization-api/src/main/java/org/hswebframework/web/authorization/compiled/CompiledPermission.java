@@ -0,0 +1,68 @@
+package org.hswebframework.web.authorization.compiled;
+
+import org.hswebframework.web.authorization.access.DataAccessConfig;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的权限信息: 持有的action为位集合,数据权限配置已按action分组.
+ * <p>
+ * 编译完成后不再修改,可被多个线程同时读取.
+ *
+ * @see CompiledAuthorization
+ */
+public class CompiledPermission {
+
+    private final String id;
+
+    private final BitSet actions = new BitSet();
+
+    private final Map<String, List<DataAccessConfig>> dataAccesses = new HashMap<>();
+
+    CompiledPermission(String id) {
+        this.id = id;
+    }
+
+    /**
+     * 合并一个权限的action和数据权限配置,同一个权限id可能在用户的权限列表中出现多次
+     */
+    void merge(BitSet actions, Iterable<DataAccessConfig> dataAccesses) {
+        this.actions.or(actions);
+        for (DataAccessConfig access : dataAccesses) {
+            this.dataAccesses.computeIfAbsent(access.getAction(), action -> new ArrayList<>()).add(access);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @param actions {@link ActionIndexes#toBitSet(java.util.Collection)}编译的action集合
+     * @return 是否持有其中任意一个action
+     */
+    public boolean hasAnyAction(BitSet actions) {
+        return this.actions.intersects(actions);
+    }
+
+    /**
+     * @param action 操作事件
+     * @return 是否持有此action
+     */
+    public boolean hasAction(String action) {
+        return actions.get(ActionIndexes.indexOf(action));
+    }
+
+    /**
+     * @param action 操作事件
+     * @return 此action对应的数据权限配置
+     */
+    public List<DataAccessConfig> getDataAccesses(String action) {
+        return dataAccesses.getOrDefault(action, Collections.emptyList());
+    }
+}
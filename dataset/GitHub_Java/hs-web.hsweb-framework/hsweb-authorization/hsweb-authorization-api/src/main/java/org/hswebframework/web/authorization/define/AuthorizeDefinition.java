@@ -4,7 +4,9 @@ import org.hswebframework.web.authorization.Permission;
 import org.hswebframework.web.authorization.Role;
 import org.hswebframework.web.authorization.User;
 import org.hswebframework.web.authorization.annotation.Logical;
+import org.hswebframework.web.authorization.compiled.ActionIndexes;
 
+import java.util.BitSet;
 import java.util.Set;
 
 /**
@@ -40,6 +42,17 @@ public interface AuthorizeDefinition {
      */
     Set<String> getActions();
 
+    /**
+     * 编译后的{@link this#getActions()},用于{@link org.hswebframework.web.authorization.compiled.CompiledPermission#hasAnyAction(BitSet)}.
+     * 实现类应当缓存编译结果,避免每次权限判断时重新编译
+     *
+     * @return 权限事件的位集合, 调用方不应修改
+     * @see ActionIndexes#toBitSet(java.util.Collection)
+     */
+    default BitSet getCompiledActions() {
+        return ActionIndexes.toBitSet(getActions());
+    }
+
     /**
      * 控制角色访问
      *
@@ -0,0 +1,112 @@
+package org.hswebframework.web.authorization.compiled;
+
+import org.hswebframework.web.authorization.Authentication;
+import org.hswebframework.web.authorization.builder.AuthenticationBuilder;
+import org.hswebframework.web.authorization.simple.builder.SimpleAuthenticationBuilder;
+import org.hswebframework.web.authorization.simple.builder.SimpleDataAccessConfigBuilderFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CompiledAuthorizationTests {
+
+    private AuthenticationBuilder builder;
+
+    @Before
+    public void setup() {
+        SimpleDataAccessConfigBuilderFactory builderFactory = new SimpleDataAccessConfigBuilderFactory();
+
+        builderFactory.init();
+
+        builder = new SimpleAuthenticationBuilder(builderFactory);
+    }
+
+    private Authentication createAuthentication() {
+        return builder.user("{\"id\":\"admin\",\"username\":\"admin\",\"name\":\"Administrator\",\"type\":\"default\"}")
+                .role("[{\"id\":\"admin-role\",\"name\":\"admin\"}]")
+                .permission("[{\"id\":\"user-manager\",\"actions\":[\"query\",\"get\",\"update\"]" +
+                        ",\"dataAccesses\":[{\"action\":\"query\",\"field\":\"test\",\"config\":{\"fields\":[\"1\",\"2\",\"3\"]},\"scopeType\":\"CUSTOM_SCOPE\",\"type\":\"DENY_FIELDS\"}]}]")
+                .build();
+    }
+
+    @Test
+    public void testCompile() {
+        CompiledAuthorization compiled = CompiledAuthorization.compile(createAuthentication());
+
+        assertTrue(compiled.hasRole("admin-role"));
+        assertFalse(compiled.hasRole("guest"));
+
+        CompiledPermission permission = compiled.getPermission("user-manager");
+        assertNotNull(permission);
+        assertNull(compiled.getPermission("role-manager"));
+
+        assertTrue(permission.hasAction("get"));
+        assertFalse(permission.hasAction("delete"));
+        assertTrue(permission.hasAnyAction(ActionIndexes.toBitSet(Arrays.asList("delete", "update"))));
+        assertFalse(permission.hasAnyAction(ActionIndexes.toBitSet(Collections.singleton("delete"))));
+        assertFalse(permission.hasAnyAction(ActionIndexes.toBitSet(Collections.singleton("custom-action"))));
+
+        assertEquals(1, permission.getDataAccesses("query").size());
+        assertTrue(permission.getDataAccesses("get").isEmpty());
+    }
+
+    @Test
+    public void testCache() {
+        CompiledAuthorizationManager manager = new CompiledAuthorizationManager();
+        Authentication authentication = createAuthentication();
+
+        CompiledAuthorization compiled = manager.get(authentication);
+        assertSame(compiled, manager.get(authentication));
+        assertEquals("admin", compiled.getUserId());
+
+        //同一用户的其他权限信息(如限定了scope的权限信息)单独编译,不替换已有的编译结果
+        Authentication scoped = builder.user("{\"id\":\"admin\",\"username\":\"admin\",\"name\":\"Administrator\",\"type\":\"default\"}")
+                .role("[]")
+                .permission("[{\"id\":\"user-manager\",\"actions\":[\"get\"]}]")
+                .build();
+        CompiledAuthorization scopedCompiled = manager.get(scoped);
+        assertNotSame(compiled, scopedCompiled);
+        assertFalse(scopedCompiled.hasRole("admin-role"));
+        assertFalse(scopedCompiled.getPermission("user-manager").hasAction("query"));
+        assertSame(compiled, manager.get(authentication));
+        assertSame(scopedCompiled, manager.get(scoped));
+        assertEquals(2, manager.size());
+
+        manager.evict("admin");
+        assertEquals(0, manager.size());
+        assertNotSame(compiled, manager.get(authentication));
+
+        manager.evictAll();
+        assertEquals(0, manager.size());
+    }
+
+    @Test
+    public void testRecompile() {
+        CompiledAuthorizationManager manager = new CompiledAuthorizationManager();
+        Authentication authentication = createAuthentication();
+
+        CompiledAuthorization compiled = manager.get(authentication);
+        //登录或令牌变更时重新编译
+        CompiledAuthorization recompiled = manager.compile(authentication);
+        assertNotSame(compiled, recompiled);
+        assertSame(recompiled, manager.get(authentication));
+        assertEquals(1, manager.size());
+    }
+
+    @Test
+    public void testMaximumSize() {
+        CompiledAuthorizationManager manager = new CompiledAuthorizationManager(1);
+
+        manager.get(createAuthentication());
+        manager.get(builder.user("{\"id\":\"guest\",\"username\":\"guest\",\"name\":\"Guest\",\"type\":\"default\"}")
+                .role("[]")
+                .permission("[]")
+                .build());
+
+        assertEquals(1, manager.size());
+    }
+}
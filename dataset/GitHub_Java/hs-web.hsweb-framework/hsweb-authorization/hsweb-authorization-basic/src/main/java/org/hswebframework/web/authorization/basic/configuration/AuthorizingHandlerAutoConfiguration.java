@@ -8,6 +8,7 @@ import org.hswebframework.web.authorization.access.DataAccessHandler;
 import org.hswebframework.web.authorization.basic.handler.DefaultAuthorizingHandler;
 import org.hswebframework.web.authorization.basic.handler.access.DefaultDataAccessController;
 import org.hswebframework.web.authorization.basic.web.*;
+import org.hswebframework.web.authorization.compiled.CompiledAuthorizationManager;
 import org.hswebframework.web.authorization.token.MemoryUserTokenManager;
 import org.hswebframework.web.authorization.token.UserTokenManager;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,8 +38,17 @@ public class AuthorizingHandlerAutoConfiguration {
     }
 
     @Bean
-    public DefaultAuthorizingHandler authorizingHandler(DataAccessController dataAccessController) {
-        return new DefaultAuthorizingHandler(dataAccessController);
+    @ConditionalOnMissingBean(CompiledAuthorizationManager.class)
+    public CompiledAuthorizationManager compiledAuthorizationManager() {
+        return new CompiledAuthorizationManager();
+    }
+
+    @Bean
+    public DefaultAuthorizingHandler authorizingHandler(DataAccessController dataAccessController,
+                                                        CompiledAuthorizationManager compiledAuthorizationManager) {
+        DefaultAuthorizingHandler handler = new DefaultAuthorizingHandler(dataAccessController);
+        handler.setCompiledAuthorizationManager(compiledAuthorizationManager);
+        return handler;
     }
 
     @Bean
@@ -5,11 +5,13 @@ import org.hswebframework.web.authorization.annotation.Authorize;
 import org.hswebframework.web.authorization.annotation.Logical;
 import org.hswebframework.web.authorization.annotation.RequiresDataAccess;
 import org.hswebframework.web.authorization.annotation.RequiresExpression;
+import org.hswebframework.web.authorization.compiled.ActionIndexes;
 import org.hswebframework.web.authorization.define.AuthorizeDefinition;
 import org.hswebframework.web.authorization.define.DataAccessDefinition;
 import org.hswebframework.web.authorization.define.Script;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -23,6 +25,8 @@ public class DefaultBasicAuthorizeDefinition implements AuthorizeDefinition {
 
     private Set<String> actions = new HashSet<>();
 
+    private volatile BitSet compiledActions;
+
     private Set<String> roles = new HashSet<>();
 
     private Set<String> user = new HashSet<>();
@@ -55,6 +59,15 @@ public class DefaultBasicAuthorizeDefinition implements AuthorizeDefinition {
         return new HashSet<>(actions);
     }
 
+    @Override
+    public BitSet getCompiledActions() {
+        BitSet compiled = compiledActions;
+        if (compiled == null) {
+            compiledActions = compiled = ActionIndexes.toBitSet(actions);
+        }
+        return compiled;
+    }
+
     @Override
     public Set<String> getRoles() {
         return new HashSet<>(roles);
@@ -95,6 +108,7 @@ public class DefaultBasicAuthorizeDefinition implements AuthorizeDefinition {
 
     public void setActions(Set<String> actions) {
         this.actions = actions;
+        compiledActions = null;
     }
 
     public void setDataAccessControl(boolean dataAccessControl) {
@@ -129,6 +143,7 @@ public class DefaultBasicAuthorizeDefinition implements AuthorizeDefinition {
         if (null == authorize || authorize.ignore()) return;
         permissions.addAll(Arrays.asList(authorize.permission()));
         actions.addAll(Arrays.asList(authorize.action()));
+        compiledActions = null;
         roles.addAll(Arrays.asList(authorize.role()));
         user.addAll(Arrays.asList(authorize.user()));
         if (authorize.logical() != Logical.DEFAULT) {
@@ -148,6 +163,7 @@ public class DefaultBasicAuthorizeDefinition implements AuthorizeDefinition {
             permissions.add(dataAccess.permission());
         }
         actions.addAll(Arrays.asList(dataAccess.action()));
+        compiledActions = null;
         DefaultDataAccessDefinition definition = new DefaultDataAccessDefinition();
 
         if (!"".equals(dataAccess.controllerBeanName())) {
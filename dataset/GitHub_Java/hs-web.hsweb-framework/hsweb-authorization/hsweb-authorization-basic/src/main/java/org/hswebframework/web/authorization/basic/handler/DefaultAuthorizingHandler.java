@@ -9,6 +9,9 @@ import org.hswebframework.web.authorization.Role;
 import org.hswebframework.web.authorization.access.DataAccessConfig;
 import org.hswebframework.web.authorization.access.DataAccessController;
 import org.hswebframework.web.authorization.annotation.Logical;
+import org.hswebframework.web.authorization.compiled.CompiledAuthorization;
+import org.hswebframework.web.authorization.compiled.CompiledAuthorizationManager;
+import org.hswebframework.web.authorization.compiled.CompiledPermission;
 import org.hswebframework.web.authorization.define.AuthorizeDefinition;
 import org.hswebframework.web.authorization.define.AuthorizingContext;
 import org.hswebframework.web.authorization.exception.AccessDenyException;
@@ -28,6 +31,8 @@ public class DefaultAuthorizingHandler implements AuthorizingHandler {
 
     private DataAccessController dataAccessController;
 
+    private CompiledAuthorizationManager compiledAuthorizationManager;
+
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
     public DefaultAuthorizingHandler(DataAccessController dataAccessController) {
@@ -41,6 +46,13 @@ public class DefaultAuthorizingHandler implements AuthorizingHandler {
         this.dataAccessController = dataAccessController;
     }
 
+    /**
+     * 设置后使用编译后的权限信息进行判断,不再遍历用户的权限列表
+     */
+    public void setCompiledAuthorizationManager(CompiledAuthorizationManager compiledAuthorizationManager) {
+        this.compiledAuthorizationManager = compiledAuthorizationManager;
+    }
+
     @Override
     public void handle(AuthorizingContext context) {
 
@@ -60,19 +72,22 @@ public class DefaultAuthorizingHandler implements AuthorizingHandler {
             logger.warn("dataAccessController is null,skip data access control!");
             return;
         }
-        List<Permission> permission = context.getAuthentication().getPermissions()
-                .stream()
-                .filter(per -> context.getDefinition().getPermissions().contains(per.getId()))
-                .collect(Collectors.toList());
-
         DataAccessController finalAccessController = dataAccessController;
 
         //取得当前登录用户持有的控制规则
-        Set<DataAccessConfig> accesses = permission
-                .stream().map(Permission::getDataAccesses)
-                .flatMap(Collection::stream)
-                .filter(access -> context.getDefinition().getActions().contains(access.getAction()))
-                .collect(Collectors.toSet());
+        Set<DataAccessConfig> accesses;
+        if (compiledAuthorizationManager != null) {
+            accesses = getCompiledDataAccesses(compiledAuthorizationManager.get(context.getAuthentication()),
+                    context.getDefinition());
+        } else {
+            accesses = context.getAuthentication().getPermissions()
+                    .stream()
+                    .filter(per -> context.getDefinition().getPermissions().contains(per.getId()))
+                    .map(Permission::getDataAccesses)
+                    .flatMap(Collection::stream)
+                    .filter(access -> context.getDefinition().getActions().contains(access.getAction()))
+                    .collect(Collectors.toSet());
+        }
         //无规则,则代表不进行控制
         if (accesses.isEmpty()) return;
         //单个规则验证函数
@@ -85,6 +100,19 @@ public class DefaultAuthorizingHandler implements AuthorizingHandler {
 
     }
 
+    protected Set<DataAccessConfig> getCompiledDataAccesses(CompiledAuthorization compiled, AuthorizeDefinition definition) {
+        Set<DataAccessConfig> accesses = new HashSet<>();
+        for (String permissionId : definition.getPermissions()) {
+            CompiledPermission permission = compiled.getPermission(permissionId);
+            if (permission != null) {
+                for (String action : definition.getActions()) {
+                    accesses.addAll(permission.getDataAccesses(action));
+                }
+            }
+        }
+        return accesses;
+    }
+
     protected void handleExpression(Authentication authentication, AuthorizeDefinition definition, MethodInterceptorParamContext paramContext) {
         if (definition.getScript() != null) {
             String scriptId = DigestUtils.md5Hex(definition.getScript().getScript());
@@ -127,38 +155,50 @@ public class DefaultAuthorizingHandler implements AuthorizingHandler {
             if (logger.isInfoEnabled()) {
                 logger.info("do permission access handle : permissions{},actions{} ", permissionsDef, actionsDef);
             }
-            List<Permission> permissions = authentication.getPermissions().stream()
-                    .filter(permission -> {
-                        // 未持有任何一个权限
-                        if (!permissionsDef.contains(permission.getId())) return false;
-                        //未配置action
-                        if (actionsDef.isEmpty())
-                            return true;
-                        //判断action
-                        List<String> actions = permission.getActions()
-                                .stream()
-                                .filter(actionsDef::contains)
-                                .collect(Collectors.toList());
-
-                        if (actions.isEmpty()) return false;
-
-                        //如果 控制逻辑是or,则只要过滤结果数量不为0.否则过滤结果数量必须和配置的数量相同
-                        return logicalIsOr ? actions.size() > 0 : permission.getActions().containsAll(actions);
-                    }).collect(Collectors.toList());
-            access = logicalIsOr ?
-                    permissions.size() > 0 :
-                    //权限数量和配置的数量相同
-                    permissions.size() == permissionsDef.size();
+            if (compiledAuthorizationManager != null) {
+                BitSet actions = actionsDef.isEmpty() ? null : definition.getCompiledActions();
+                access = handleCompiledPermission(compiledAuthorizationManager.get(authentication), permissionsDef, actions, logicalIsOr);
+            } else {
+                List<Permission> permissions = authentication.getPermissions().stream()
+                        .filter(permission -> {
+                            // 未持有任何一个权限
+                            if (!permissionsDef.contains(permission.getId())) return false;
+                            //未配置action
+                            if (actionsDef.isEmpty())
+                                return true;
+                            //判断action
+                            List<String> actions = permission.getActions()
+                                    .stream()
+                                    .filter(actionsDef::contains)
+                                    .collect(Collectors.toList());
+
+                            if (actions.isEmpty()) return false;
+
+                            //如果 控制逻辑是or,则只要过滤结果数量不为0.否则过滤结果数量必须和配置的数量相同
+                            return logicalIsOr ? actions.size() > 0 : permission.getActions().containsAll(actions);
+                        }).collect(Collectors.toList());
+                access = logicalIsOr ?
+                        permissions.size() > 0 :
+                        //权限数量和配置的数量相同
+                        permissions.size() == permissionsDef.size();
+            }
         }
         //控制角色
         if (!rolesDef.isEmpty()) {
             if (logger.isInfoEnabled()) {
                 logger.info("do role access handle : roles{} ", rolesDef);
             }
-            Function<Predicate<Role>, Boolean> func = logicalIsOr
-                    ? authentication.getRoles().stream()::anyMatch
-                    : authentication.getRoles().stream()::allMatch;
-            access = func.apply(role -> rolesDef.contains(role.getId()));
+            if (compiledAuthorizationManager != null) {
+                Set<String> roles = compiledAuthorizationManager.get(authentication).getRoles();
+                access = logicalIsOr
+                        ? rolesDef.stream().anyMatch(roles::contains)
+                        : rolesDef.containsAll(roles);
+            } else {
+                Function<Predicate<Role>, Boolean> func = logicalIsOr
+                        ? authentication.getRoles().stream()::anyMatch
+                        : authentication.getRoles().stream()::allMatch;
+                access = func.apply(role -> rolesDef.contains(role.getId()));
+            }
         }
         //控制用户
         if (!usersDef.isEmpty()) {
@@ -174,4 +214,25 @@ public class DefaultAuthorizingHandler implements AuthorizingHandler {
             throw new AccessDenyException(definition.getMessage());
         }
     }
+
+    /**
+     * 使用编译后的权限信息进行权限判断,与遍历权限列表的判断逻辑一致:
+     * 持有定义中的权限并且持有任意一个定义中的action(未定义action时只判断权限),
+     * or时满足一个即可,and时需要满足全部.
+     *
+     * @param actions 编译后的action集合({@link AuthorizeDefinition#getCompiledActions()}),未定义action时为null
+     */
+    protected boolean handleCompiledPermission(CompiledAuthorization compiled, Set<String> permissionsDef, BitSet actions, boolean logicalIsOr) {
+        for (String permissionId : permissionsDef) {
+            CompiledPermission permission = compiled.getPermission(permissionId);
+            boolean matched = permission != null && (actions == null || permission.hasAnyAction(actions));
+            if (logicalIsOr && matched) {
+                return true;
+            }
+            if (!logicalIsOr && !matched) {
+                return false;
+            }
+        }
+        return !logicalIsOr;
+    }
 }
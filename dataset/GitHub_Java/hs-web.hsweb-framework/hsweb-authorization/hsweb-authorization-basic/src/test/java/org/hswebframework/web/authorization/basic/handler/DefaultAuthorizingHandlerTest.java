@@ -0,0 +1,139 @@
+package org.hswebframework.web.authorization.basic.handler;
+
+import org.hswebframework.web.authorization.Authentication;
+import org.hswebframework.web.authorization.access.DataAccessConfig;
+import org.hswebframework.web.authorization.annotation.Logical;
+import org.hswebframework.web.authorization.builder.AuthenticationBuilder;
+import org.hswebframework.web.authorization.compiled.CompiledAuthorization;
+import org.hswebframework.web.authorization.compiled.CompiledAuthorizationManager;
+import org.hswebframework.web.authorization.define.AuthorizeDefinition;
+import org.hswebframework.web.authorization.exception.AccessDenyException;
+import org.hswebframework.web.authorization.simple.builder.SimpleAuthenticationBuilder;
+import org.hswebframework.web.authorization.simple.builder.SimpleDataAccessConfigBuilderFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 使用编译后的权限信息进行权限控制
+ */
+public class DefaultAuthorizingHandlerTest {
+
+    private AuthenticationBuilder builder;
+
+    private CompiledAuthorizationManager compiledAuthorizationManager;
+
+    private DefaultAuthorizingHandler handler;
+
+    @Before
+    public void init() {
+        SimpleDataAccessConfigBuilderFactory builderFactory = new SimpleDataAccessConfigBuilderFactory();
+        builderFactory.init();
+        builder = new SimpleAuthenticationBuilder(builderFactory);
+
+        compiledAuthorizationManager = new CompiledAuthorizationManager();
+        handler = new DefaultAuthorizingHandler();
+        handler.setCompiledAuthorizationManager(compiledAuthorizationManager);
+    }
+
+    private Authentication createAuthentication() {
+        return builder.user("{\"id\":\"admin\",\"username\":\"admin\",\"name\":\"Administrator\",\"type\":\"default\"}")
+                .role("[{\"id\":\"admin-role\",\"name\":\"admin\"}]")
+                .permission("[{\"id\":\"user-manager\",\"actions\":[\"query\",\"get\",\"update\"]" +
+                        ",\"dataAccesses\":[{\"action\":\"query\",\"field\":\"test\",\"config\":{\"fields\":[\"1\",\"2\",\"3\"]},\"scopeType\":\"CUSTOM_SCOPE\",\"type\":\"DENY_FIELDS\"}]}" +
+                        ",{\"id\":\"role-manager\",\"actions\":[\"query\"]}]")
+                .build();
+    }
+
+    private AuthorizeDefinition definition(Logical logical, Set<String> permissions, Set<String> actions, Set<String> roles) {
+        AuthorizeDefinition definition = mock(AuthorizeDefinition.class);
+        when(definition.getLogical()).thenReturn(logical);
+        when(definition.getPermissions()).thenReturn(permissions);
+        when(definition.getActions()).thenReturn(actions);
+        when(definition.getRoles()).thenReturn(roles);
+        when(definition.getUser()).thenReturn(Collections.emptySet());
+        return definition;
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private void assertDenied(AuthorizeDefinition definition) {
+        try {
+            handler.handleRdac(createAuthentication(), definition);
+            Assert.fail("expected AccessDenyException");
+        } catch (AccessDenyException ignore) {
+        }
+    }
+
+    @Test
+    public void testPermission() {
+        handler.handleRdac(createAuthentication(), definition(Logical.DEFAULT, set("user-manager"), set("delete", "get"), set()));
+        handler.handleRdac(createAuthentication(), definition(Logical.DEFAULT, set("user-manager"), set(), set()));
+        handler.handleRdac(createAuthentication(), definition(Logical.OR, set("user-manager", "org-manager"), set("query"), set()));
+        handler.handleRdac(createAuthentication(), definition(Logical.AND, set("user-manager", "role-manager"), set("query"), set()));
+
+        assertDenied(definition(Logical.DEFAULT, set("user-manager"), set("delete"), set()));
+        assertDenied(definition(Logical.DEFAULT, set("org-manager"), set(), set()));
+        assertDenied(definition(Logical.AND, set("user-manager", "org-manager"), set("query"), set()));
+        assertDenied(definition(Logical.AND, set("user-manager", "role-manager"), set("update"), set()));
+    }
+
+    @Test
+    public void testRole() {
+        handler.handleRdac(createAuthentication(), definition(Logical.OR, set(), set(), set("admin-role", "guest")));
+        handler.handleRdac(createAuthentication(), definition(Logical.AND, set(), set(), set("admin-role", "guest")));
+
+        assertDenied(definition(Logical.OR, set(), set(), set("guest")));
+    }
+
+    @Test
+    public void testDataAccess() {
+        CompiledAuthorization compiled = compiledAuthorizationManager.get(createAuthentication());
+
+        Set<DataAccessConfig> accesses = handler.getCompiledDataAccesses(compiled,
+                definition(Logical.DEFAULT, set("user-manager", "role-manager"), set("query"), set()));
+        Assert.assertEquals(1, accesses.size());
+        Assert.assertEquals("query", accesses.iterator().next().getAction());
+
+        Assert.assertTrue(handler.getCompiledDataAccesses(compiled,
+                definition(Logical.DEFAULT, set("user-manager"), set("get"), set())).isEmpty());
+    }
+
+    @Test
+    public void testCompileOncePerAuthentication() {
+        //AuthenticationManager缓存了权限信息时,多次请求只编译一次
+        Authentication authentication = createAuthentication();
+        handler.handleRdac(authentication, definition(Logical.DEFAULT, set("user-manager"), set("query"), set()));
+        CompiledAuthorization compiled = compiledAuthorizationManager.get(authentication);
+        handler.handleRdac(authentication, definition(Logical.DEFAULT, set("user-manager"), set("get"), set()));
+        Assert.assertSame(compiled, compiledAuthorizationManager.get(authentication));
+
+        //重新加载的权限信息是新的对象,单独编译
+        Authentication changed = builder.user("{\"id\":\"admin\",\"username\":\"admin\",\"name\":\"Administrator\",\"type\":\"default\"}")
+                .role("[]")
+                .permission("[{\"id\":\"user-manager\",\"actions\":[\"get\"]}]")
+                .build();
+        handler.handleRdac(changed, definition(Logical.DEFAULT, set("user-manager"), set("get"), set()));
+        try {
+            handler.handleRdac(changed, definition(Logical.DEFAULT, set("user-manager"), set("query"), set()));
+            Assert.fail("expected AccessDenyException");
+        } catch (AccessDenyException ignore) {
+        }
+        try {
+            handler.handleRdac(changed, definition(Logical.OR, set(), set(), set("admin-role")));
+            Assert.fail("expected AccessDenyException");
+        } catch (AccessDenyException ignore) {
+        }
+        Assert.assertSame(compiled, compiledAuthorizationManager.get(authentication));
+    }
+}
@@ -58,6 +58,14 @@ public class ThreadLocalUtils {
         return val;
     }
 
+    /**
+     * @return 当前线程中所有值的副本, 可用于在其他线程中恢复上下文
+     * @since 4.0
+     */
+    public static Map<String, Object> getAll() {
+        return new HashMap<>(local.get());
+    }
+
     public static <T> T getAndRemove(String key) {
         try {
             return ((T) local.get().get(key));
@@ -0,0 +1,20 @@
+package org.hswebframework.web.cache.monitor;
+
+/**
+ * 缓存读取及命中次数统计
+ */
+public interface CacheMonitor {
+    long getTotalTimes();
+
+    long getHitTimes();
+
+    long getUpdateTimes();
+
+    /**
+     * @return 命中率, 未发生读取时为0
+     */
+    default double getHitRatio() {
+        long total = getTotalTimes();
+        return total == 0 ? 0D : (double) getHitTimes() / total;
+    }
+}
@@ -9,12 +9,7 @@ import java.util.Set;
  *
  * @author zhouhao
  */
-public interface MonitorSupportCache extends Cache {
-    long getTotalTimes();
-
-    long getHitTimes();
-
-    long getUpdateTimes();
+public interface MonitorSupportCache extends Cache, CacheMonitor {
 
     long size();
 
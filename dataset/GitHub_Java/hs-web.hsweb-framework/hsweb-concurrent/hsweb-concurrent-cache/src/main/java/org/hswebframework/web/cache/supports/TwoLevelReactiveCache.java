@@ -0,0 +1,284 @@
+package org.hswebframework.web.cache.supports;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.hswebframework.web.cache.ReactiveCache;
+import org.hswebframework.web.cache.monitor.CacheMonitor;
+import org.reactivestreams.Publisher;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import reactor.cache.CacheFlux;
+import reactor.cache.CacheMono;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
+
+/**
+ * 二级缓存: 本地caffeine(L1) + redis hash(L2).
+ * <p>
+ * 修改缓存时通过redis发布订阅通知集群中其他节点清空本地缓存,
+ * 同一个key同时只会有一个请求去加载redis或者数据源,避免缓存击穿.
+ * 本地缓存应设置过期时间,以防订阅连接断开期间错过失效通知.
+ * <p>
+ * 失效通知为[节点id,key]列表(清空全部时为[节点id]),使用单独的频道,与{@link RedisReactiveCache}的通知格式不同,
+ * 因此同一个redisKey不能同时使用这两种缓存.本地缓存直接使用key对象,key经过redis序列化后应与原对象相等.
+ *
+ * @see RedisReactiveCache
+ */
+@SuppressWarnings("all")
+public class TwoLevelReactiveCache<E> implements ReactiveCache<E>, CacheMonitor, Disposable {
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ReactiveRedisOperations<Object, Object> operations;
+
+    private final String redisKey;
+
+    private final String topicName;
+
+    private final Cache<Object, Object> localCache;
+
+    private final Disposable subscription;
+
+    //正在从redis加载的key
+    private final ConcurrentMap<Object, Mono<Object>> remoteLoading = new ConcurrentHashMap<>();
+
+    //正在从数据源加载的key
+    private final ConcurrentMap<Object, Mono<Object>> sourceLoading = new ConcurrentHashMap<>();
+
+    //每次失效都会递增,加载期间发生过失效的结果不放入本地缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder totalTimes = new LongAdder();
+
+    private final LongAdder localHitTimes = new LongAdder();
+
+    private final LongAdder remoteHitTimes = new LongAdder();
+
+    private final LongAdder updateTimes = new LongAdder();
+
+    public TwoLevelReactiveCache(String redisKey, ReactiveRedisOperations<Object, Object> operations, Cache<Object, Object> localCache) {
+        this.operations = operations;
+        this.localCache = localCache;
+        this.redisKey = redisKey;
+        //RedisReactiveCache使用_cache_changed:前缀,通知格式不同
+        this.topicName = "_two_level_cache_changed:" + redisKey;
+        this.subscription = operations.listenToChannel(topicName)
+                .map(ReactiveSubscription.Message::getMessage)
+                .subscribe(this::handleInvalidation);
+    }
+
+    private void handleInvalidation(Object message) {
+        if (!(message instanceof List)) {
+            return;
+        }
+        List<?> notification = (List<?>) message;
+        if (notification.isEmpty() || notification.size() > 2 || nodeId.equals(notification.get(0))) {
+            //本节点发出的通知,本地缓存已经处理过
+            return;
+        }
+        if (notification.size() == 1) {
+            invalidateLocalAll();
+        } else {
+            invalidateLocal(notification.get(1));
+        }
+    }
+
+    private void invalidateLocal(Object key) {
+        generation.incrementAndGet();
+        localCache.invalidate(key);
+    }
+
+    private void invalidateLocalAll() {
+        generation.incrementAndGet();
+        localCache.invalidateAll();
+    }
+
+    private Mono<Void> publish(Object key) {
+        return operations.convertAndSend(topicName, Arrays.asList(nodeId, key)).then();
+    }
+
+    private Mono<Void> publishAll() {
+        return operations.convertAndSend(topicName, Collections.singletonList(nodeId)).then();
+    }
+
+    private Mono<Object> getValue(Object key) {
+        return Mono.defer(() -> {
+            totalTimes.increment();
+            Object value = localCache.getIfPresent(key);
+            if (value != null) {
+                localHitTimes.increment();
+                return Mono.just(value);
+            }
+            return singleFlight(remoteLoading, key, () -> {
+                long loadingGeneration = generation.get();
+                return operations.opsForHash()
+                        .get(redisKey, key)
+                        .doOnNext(loaded -> {
+                            if (generation.get() == loadingGeneration) {
+                                localCache.put(key, loaded);
+                            }
+                        });
+            }).doOnNext(loaded -> remoteHitTimes.increment());
+        });
+    }
+
+    private Mono<Object> singleFlight(ConcurrentMap<Object, Mono<Object>> loading, Object key, Supplier<Mono<Object>> loader) {
+        return Mono.defer(() -> loading.computeIfAbsent(key, k -> loader.get()
+                .doFinally(signal -> loading.remove(k))
+                .cache()));
+    }
+
+    @Override
+    public Flux<E> getFlux(Object key) {
+        return getValue(key)
+                .flatMapIterable(r -> {
+                    if (r instanceof Iterable) {
+                        return ((Iterable) r);
+                    }
+                    return Collections.singletonList(r);
+                })
+                .map(r -> (E) r);
+    }
+
+    @Override
+    public Mono<E> getMono(Object key) {
+        return getValue(key).map(r -> (E) r);
+    }
+
+    private Mono<Void> putValue(Object key, Object value) {
+        return operations.opsForHash()
+                .put(redisKey, key, value)
+                .then(Mono.fromRunnable(() -> {
+                    updateTimes.increment();
+                    generation.incrementAndGet();
+                    localCache.put(key, value);
+                }))
+                .then(publish(key));
+    }
+
+    @Override
+    public Mono<Void> put(Object key, Publisher<E> data) {
+        if (data instanceof Mono) {
+            return ((Mono) data)
+                    .flatMap(r -> putValue(key, r))
+                    .then();
+        }
+        if (data instanceof Flux) {
+            return ((Flux) data)
+                    .collectList()
+                    .flatMap(r -> putValue(key, r))
+                    .then();
+        }
+        return Mono.error(new UnsupportedOperationException("unsupport publisher:" + data));
+    }
+
+    @Override
+    public Mono<Void> evict(Object key) {
+        return operations
+                .opsForHash()
+                .remove(redisKey, key)
+                .then(Mono.fromRunnable(() -> invalidateLocal(key)))
+                .then(publish(key));
+    }
+
+    @Override
+    public Mono<Void> evictAll(Iterable<?> key) {
+        Object[] keys = StreamSupport.stream(key.spliterator(), false).toArray();
+        if (keys.length == 0) {
+            //没有key时不能发送空的HDEL命令
+            return Mono.empty();
+        }
+        return operations.opsForHash()
+                .remove(redisKey, keys)
+                .thenMany(Flux.fromIterable(key))
+                .concatMap(k -> Mono.fromRunnable(() -> invalidateLocal(k)).then(publish(k)))
+                .then();
+    }
+
+    @Override
+    public Flux<E> getAll(Object... keys) {
+        if (keys.length == 0) {
+            return operations
+                    .opsForHash()
+                    .values(redisKey)
+                    .map(r -> (E) r);
+        }
+        return operations.opsForHash()
+                .multiGet(redisKey, Arrays.asList(keys))
+                .flatMapIterable(Function.identity())
+                .map(r -> (E) r);
+    }
+
+    @Override
+    public Mono<Void> clear() {
+        return operations
+                .opsForHash()
+                .delete(redisKey)
+                .then(Mono.fromRunnable(this::invalidateLocalAll))
+                .then(publishAll());
+    }
+
+    @Override
+    public CacheFlux.FluxCacheBuilderMapMiss<E> flux(Object key) {
+        return otherSupplier ->
+                Flux.defer(() -> getFlux(key)
+                        .switchIfEmpty(singleFlight(sourceLoading, key, () -> otherSupplier.get()
+                                .collectList()
+                                .flatMap(values -> put(key, Flux.fromIterable(values)).thenReturn(values)))
+                                .flatMapIterable(values -> (List<E>) values)));
+    }
+
+    @Override
+    public CacheMono.MonoCacheBuilderMapMiss<E> mono(Object key) {
+        return otherSupplier ->
+                Mono.defer(() -> getMono(key)
+                        .switchIfEmpty(singleFlight(sourceLoading, key, () -> otherSupplier.get()
+                                .flatMap(value -> put(key, Mono.just(value)).thenReturn(value)))
+                                .map(value -> (E) value)));
+    }
+
+    @Override
+    public long getTotalTimes() {
+        return totalTimes.sum();
+    }
+
+    @Override
+    public long getHitTimes() {
+        return localHitTimes.sum() + remoteHitTimes.sum();
+    }
+
+    public long getLocalHitTimes() {
+        return localHitTimes.sum();
+    }
+
+    public long getRemoteHitTimes() {
+        return remoteHitTimes.sum();
+    }
+
+    @Override
+    public long getUpdateTimes() {
+        return updateTimes.sum();
+    }
+
+    @Override
+    public void dispose() {
+        subscription.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return subscription.isDisposed();
+    }
+}
@@ -0,0 +1,59 @@
+package org.hswebframework.web.cache.supports;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hswebframework.web.cache.ReactiveCache;
+import org.hswebframework.web.cache.ReactiveCacheManager;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 创建{@link TwoLevelReactiveCache},每个缓存名称对应一个redis hash和一个本地缓存
+ */
+@SuppressWarnings("all")
+public class TwoLevelReactiveCacheManager implements ReactiveCacheManager, DisposableBean {
+
+    private final ReactiveRedisOperations<Object, Object> operations;
+
+    private final Map<String, TwoLevelReactiveCache> caches = new ConcurrentHashMap<>();
+
+    private final String redisPrefix;
+
+    private long localMaximumSize = 10_000;
+
+    private Duration localExpireAfterWrite = Duration.ofMinutes(10);
+
+    public TwoLevelReactiveCacheManager(String redisPrefix, ReactiveRedisOperations<Object, Object> operations) {
+        this.redisPrefix = redisPrefix;
+        this.operations = operations;
+    }
+
+    public void setLocalMaximumSize(long localMaximumSize) {
+        this.localMaximumSize = localMaximumSize;
+    }
+
+    public void setLocalExpireAfterWrite(Duration localExpireAfterWrite) {
+        this.localExpireAfterWrite = localExpireAfterWrite;
+    }
+
+    @Override
+    public <E> ReactiveCache<E> getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    protected TwoLevelReactiveCache createCache(String name) {
+        return new TwoLevelReactiveCache(redisPrefix + name, operations, Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(localExpireAfterWrite)
+                .build());
+    }
+
+    @Override
+    public void destroy() {
+        caches.values().forEach(TwoLevelReactiveCache::dispose);
+        caches.clear();
+    }
+}
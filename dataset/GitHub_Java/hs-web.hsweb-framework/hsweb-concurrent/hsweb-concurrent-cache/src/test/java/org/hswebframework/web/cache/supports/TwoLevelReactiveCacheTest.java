@@ -0,0 +1,192 @@
+package org.hswebframework.web.cache.supports;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.TestPublisher;
+import reactor.util.function.Tuple2;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("all")
+public class TwoLevelReactiveCacheTest {
+
+    private ReactiveRedisOperations<Object, Object> operations;
+
+    private ReactiveHashOperations<Object, Object, Object> hashOperations;
+
+    private TwoLevelReactiveCache<String> cache;
+
+    @Before
+    public void init() {
+        operations = mock(ReactiveRedisOperations.class);
+        hashOperations = mock(ReactiveHashOperations.class);
+        doReturn(hashOperations).when(operations).opsForHash();
+        when(operations.listenToChannel(anyString())).thenReturn(Flux.never());
+        when(operations.convertAndSend(anyString(), any())).thenReturn(Mono.just(1L));
+        when(hashOperations.put(any(), any(), any())).thenReturn(Mono.just(true));
+        when(hashOperations.remove(any(), any())).thenReturn(Mono.just(1L));
+
+        cache = new TwoLevelReactiveCache<>("test", operations, Caffeine.newBuilder().build());
+    }
+
+    @Test
+    public void testConcurrentMissReadsRedisOnce() {
+        AtomicInteger reads = new AtomicInteger();
+        when(hashOperations.get("test", "key")).thenReturn(Mono
+                .fromCallable(() -> {
+                    reads.incrementAndGet();
+                    return "value";
+                })
+                .delayElement(Duration.ofMillis(100)));
+
+        Mono.zip(cache.getMono("key"), cache.getMono("key"))
+            .map(Tuple2::getT2)
+            .as(StepVerifier::create)
+            .expectNext("value")
+            .verifyComplete();
+
+        assertEquals(1, reads.get());
+        verify(hashOperations, times(1)).get("test", "key");
+
+        //第二次读取命中本地缓存
+        cache.getMono("key")
+             .as(StepVerifier::create)
+             .expectNext("value")
+             .verifyComplete();
+        verify(hashOperations, times(1)).get("test", "key");
+        assertEquals(1, cache.getLocalHitTimes());
+        assertEquals(2, cache.getRemoteHitTimes());
+    }
+
+    @Test
+    public void testConcurrentMissLoadsSourceOnce() {
+        when(hashOperations.get("test", "key")).thenReturn(Mono.empty());
+        AtomicInteger loads = new AtomicInteger();
+
+        Mono<String> load = cache
+                .mono("key")
+                .onCacheMissResume(() -> Mono
+                        .fromCallable(() -> {
+                            loads.incrementAndGet();
+                            return "value";
+                        })
+                        .delayElement(Duration.ofMillis(100)));
+
+        Mono.zip(load, load)
+            .map(Tuple2::getT1)
+            .as(StepVerifier::create)
+            .expectNext("value")
+            .verifyComplete();
+
+        assertEquals(1, loads.get());
+        verify(hashOperations, times(1)).put("test", "key", "value");
+    }
+
+    @Test
+    public void testLoadRacingWithEvictDoesNotFillLocalCache() {
+        CompletableFuture<Object> staleRead = new CompletableFuture<>();
+        when(hashOperations.get("test", "key"))
+                .thenReturn(Mono.fromFuture(staleRead))
+                .thenReturn(Mono.just("new"));
+
+        StepVerifier.Step<String> firstRead = cache.getMono("key").as(StepVerifier::create);
+        CompletableFuture<Void> firstReadDone = CompletableFuture.runAsync(() -> firstRead.expectNext("old").verifyComplete());
+
+        //加载期间其他请求修改了缓存
+        verify(hashOperations, timeout(1000)).get("test", "key");
+        cache.evict("key").block();
+        staleRead.complete("old");
+        firstReadDone.join();
+
+        //过期的值没有放入本地缓存,需要重新从redis读取
+        cache.getMono("key")
+             .as(StepVerifier::create)
+             .expectNext("new")
+             .verifyComplete();
+        verify(hashOperations, times(2)).get("test", "key");
+    }
+
+    @Test
+    public void testEvictAllWithoutKeys() {
+        cache.evictAll(Collections.emptyList())
+             .as(StepVerifier::create)
+             .verifyComplete();
+
+        verify(hashOperations, never()).remove(any(), any());
+        verify(operations, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    public void testInvalidationFromOtherNodes() {
+        TestPublisher<ReactiveSubscription.Message<Object, Object>> messages = TestPublisher.createCold();
+        doReturn(messages.flux()).when(operations).listenToChannel("_two_level_cache_changed:test");
+        TwoLevelReactiveCache<String> cache = new TwoLevelReactiveCache<>("test", operations, Caffeine.newBuilder().build());
+        when(hashOperations.get("test", 1L))
+                .thenReturn(Mono.just("old"))
+                .thenReturn(Mono.just("new"));
+
+        //本地缓存使用原始的key对象,不转换为字符串
+        cache.getMono(1L).block();
+        cache.getMono(1L).block();
+        verify(hashOperations, times(1)).get("test", 1L);
+
+        //无法识别的通知(如RedisReactiveCache的通知)被忽略,不会中断订阅
+        messages.next(message("1"));
+        cache.getMono(1L).block();
+        verify(hashOperations, times(1)).get("test", 1L);
+
+        messages.next(message(Arrays.asList("other-node", 1L)));
+        cache.getMono(1L)
+             .as(StepVerifier::create)
+             .expectNext("new")
+             .verifyComplete();
+        verify(hashOperations, times(2)).get("test", 1L);
+
+        messages.next(message(Collections.singletonList("other-node")));
+        cache.getMono(1L).block();
+        verify(hashOperations, times(3)).get("test", 1L);
+    }
+
+    @Test
+    public void testIgnoresOwnInvalidation() {
+        TestPublisher<ReactiveSubscription.Message<Object, Object>> messages = TestPublisher.createCold();
+        doReturn(messages.flux()).when(operations).listenToChannel("_two_level_cache_changed:test");
+        TwoLevelReactiveCache<String> cache = new TwoLevelReactiveCache<>("test", operations, Caffeine.newBuilder().build());
+
+        cache.put(1L, Mono.just("value")).block();
+        ArgumentCaptor<Object> published = ArgumentCaptor.forClass(Object.class);
+        verify(operations).convertAndSend(eq("_two_level_cache_changed:test"), published.capture());
+        assertEquals(2, ((List) published.getValue()).size());
+        assertEquals(1L, ((List) published.getValue()).get(1));
+
+        messages.next(message(published.getValue()));
+        cache.getMono(1L)
+             .as(StepVerifier::create)
+             .expectNext("value")
+             .verifyComplete();
+        verify(hashOperations, never()).get(any(), any());
+    }
+
+    private static ReactiveSubscription.Message<Object, Object> message(Object body) {
+        return new ReactiveSubscription.ChannelMessage<>("_two_level_cache_changed:test", body);
+    }
+}
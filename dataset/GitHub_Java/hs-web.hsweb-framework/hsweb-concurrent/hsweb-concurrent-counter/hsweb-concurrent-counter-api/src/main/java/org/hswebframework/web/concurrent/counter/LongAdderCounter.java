@@ -0,0 +1,67 @@
+package org.hswebframework.web.concurrent.counter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于{@link LongAdder}的计数器,高并发累加时竞争远小于{@link SimpleCounter}.
+ * <p>
+ * 适用于只累加、偶尔读取的场景,如接口调用次数统计.
+ * {@link #getAndAdd(long)},{@link #incrementAndGet()},{@link #decrementAndGet()}以及{@link #set(long)}
+ * 不是原子操作,存在并发修改时返回值只是近似值,需要精确返回值时请使用{@link SimpleCounter}.
+ *
+ * @see SimpleCounter
+ */
+public class LongAdderCounter implements Counter {
+    private final LongAdder counter = new LongAdder();
+
+    public LongAdderCounter() {
+    }
+
+    public LongAdderCounter(long initValue) {
+        counter.add(initValue);
+    }
+
+    @Override
+    public long get() {
+        return counter.sum();
+    }
+
+    @Override
+    public void set(long num) {
+        counter.reset();
+        counter.add(num);
+    }
+
+    @Override
+    public long getAndAdd(long num) {
+        counter.add(num);
+        return counter.sum() - num;
+    }
+
+    @Override
+    public void add(long num) {
+        counter.add(num);
+    }
+
+    @Override
+    public void increment() {
+        counter.increment();
+    }
+
+    @Override
+    public void decrement() {
+        counter.decrement();
+    }
+
+    @Override
+    public long incrementAndGet() {
+        counter.increment();
+        return counter.sum();
+    }
+
+    @Override
+    public long decrementAndGet() {
+        counter.decrement();
+        return counter.sum();
+    }
+}
@@ -0,0 +1,11 @@
+package org.hswebframework.web.concurrent.counter;
+
+/**
+ * 使用{@link LongAdderCounter}的计数器管理器
+ */
+public class LongAdderCounterManager extends AbstractCounterManager {
+    @Override
+    protected Counter createCount(String name, long initValue) {
+        return new LongAdderCounter(initValue);
+    }
+}
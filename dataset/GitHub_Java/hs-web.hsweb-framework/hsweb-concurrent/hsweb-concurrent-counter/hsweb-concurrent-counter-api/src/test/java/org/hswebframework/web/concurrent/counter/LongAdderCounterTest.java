@@ -0,0 +1,35 @@
+package org.hswebframework.web.concurrent.counter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+public class LongAdderCounterTest {
+
+    private CounterManager counterManager = new LongAdderCounterManager();
+
+    @Test
+    public void testConcurrentIncrement() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    counterManager.getCounter("test").increment();
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        Assert.assertEquals(100_000, counterManager.getCounter("test").get());
+    }
+
+    @Test
+    public void testInitValueAndSet() {
+        Counter counter = counterManager.getCounter("init", 10);
+        Assert.assertEquals(11, counter.incrementAndGet());
+        Assert.assertEquals(11, counter.getAndAdd(5));
+        counter.set(3);
+        Assert.assertEquals(2, counter.decrementAndGet());
+    }
+}
@@ -0,0 +1,91 @@
+package org.hswebframework.web.concurrent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器缓存,key,permits,timeUnit都相同时获取到的是同一个限流器.
+ * <p>
+ * 限流器一段时间未被访问后自动移除,避免使用表达式作为key时限流器无限增长.
+ * 移除时间不小于2个窗口长度,以保证滑动窗口内的计数不会丢失.
+ *
+ * @since 3.0.4
+ */
+public abstract class AbstractRateLimiterManager implements RateLimiterManager {
+
+    private final Cache<LimiterKey, RateLimiter> limiterStore;
+
+    protected AbstractRateLimiterManager() {
+        this(Duration.ofMinutes(10));
+    }
+
+    protected AbstractRateLimiterManager(Duration idleTimeout) {
+        long idleNanos = idleTimeout.toNanos();
+        this.limiterStore = Caffeine.newBuilder()
+                .expireAfter(new Expiry<LimiterKey, RateLimiter>() {
+                    @Override
+                    public long expireAfterCreate(LimiterKey key, RateLimiter value, long currentTime) {
+                        return Math.max(idleNanos, key.getWindowNanos() * 2);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(LimiterKey key, RateLimiter value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(LimiterKey key, RateLimiter value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public RateLimiter getRateLimiter(String key, double permits, TimeUnit timeUnit) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be greater than 0");
+        }
+        return limiterStore.get(new LimiterKey(key, permits, timeUnit), k -> createRateLimiter(k.key, k.permits, k.timeUnit));
+    }
+
+    /**
+     * 每个窗口内的许可数,许可数为小数时向上取整
+     *
+     * @see #windowNanos(double, TimeUnit)
+     */
+    protected static long permitsPerWindow(double permits) {
+        return (long) Math.ceil(permits);
+    }
+
+    /**
+     * 窗口长度,许可数为小数时按比例延长窗口,如: 每秒0.5次为每2秒1次,每秒1.5次为每1.33秒2次
+     *
+     * @see #permitsPerWindow(double)
+     */
+    protected static long windowNanos(double permits, TimeUnit timeUnit) {
+        return Math.max(1, Math.round(timeUnit.toNanos(1) * (permitsPerWindow(permits) / permits)));
+    }
+
+    protected abstract RateLimiter createRateLimiter(String key, double permits, TimeUnit timeUnit);
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class LimiterKey {
+        private final String key;
+
+        private final double permits;
+
+        private final TimeUnit timeUnit;
+
+        private long getWindowNanos() {
+            return windowNanos(permits, timeUnit);
+        }
+    }
+}
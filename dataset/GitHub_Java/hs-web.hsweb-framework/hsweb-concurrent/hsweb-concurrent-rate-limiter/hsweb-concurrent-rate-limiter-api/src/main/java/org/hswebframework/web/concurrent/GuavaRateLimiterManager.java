@@ -0,0 +1,21 @@
+package org.hswebframework.web.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用guava {@link com.google.common.util.concurrent.RateLimiter}的单机限流,按固定速率发放许可,
+ * 与{@link SlidingWindowRateLimiterManager}不同,不允许在窗口开始时集中获取全部许可.
+ *
+ * @since 3.0.4
+ */
+public class GuavaRateLimiterManager extends AbstractRateLimiterManager {
+
+    @Override
+    protected RateLimiter createRateLimiter(String key, double permits, TimeUnit timeUnit) {
+        //guava的速率为每秒许可数
+        double permitsPerSecond = permits * TimeUnit.SECONDS.toNanos(1) / timeUnit.toNanos(1);
+        com.google.common.util.concurrent.RateLimiter rateLimiter =
+                com.google.common.util.concurrent.RateLimiter.create(permitsPerSecond);
+        return rateLimiter::tryAcquire;
+    }
+}
@@ -0,0 +1,25 @@
+package org.hswebframework.web.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器
+ *
+ * @see RateLimiterManager
+ * @since 3.0.4
+ */
+public interface RateLimiter {
+
+    /**
+     * 尝试获取一个许可
+     *
+     * @param timeout  等待超时时间,为0时不等待
+     * @param timeUnit 超时时间单位
+     * @return 在超时时间内是否获取到许可
+     */
+    boolean tryAcquire(long timeout, TimeUnit timeUnit);
+
+    default boolean tryAcquire() {
+        return tryAcquire(0, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,19 @@
+package org.hswebframework.web.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器管理器,相同key获取到的是同一个限流器
+ *
+ * @since 3.0.4
+ */
+public interface RateLimiterManager {
+
+    /**
+     * @param key      限流器标识
+     * @param permits  每个时间单位内允许的次数
+     * @param timeUnit 时间单位
+     * @return 限流器
+     */
+    RateLimiter getRateLimiter(String key, double permits, TimeUnit timeUnit);
+}
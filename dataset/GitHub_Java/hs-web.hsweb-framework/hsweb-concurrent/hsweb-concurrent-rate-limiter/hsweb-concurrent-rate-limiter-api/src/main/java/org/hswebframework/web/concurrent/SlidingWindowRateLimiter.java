@@ -0,0 +1,111 @@
+package org.hswebframework.web.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 滑动窗口限流器,任意一个窗口长度内的请求数不超过permits.
+ * <p>
+ * 使用当前窗口计数加上上一窗口按剩余比例折算的计数来估算滑动窗口内的请求数,
+ * 只保存两个计数,获取许可时无锁.
+ *
+ * @see SlidingWindowRateLimiterManager
+ * @since 3.0.4
+ */
+public class SlidingWindowRateLimiter implements RateLimiter {
+
+    private final long permits;
+
+    private final long windowNanos;
+
+    private final LongSupplier clock;
+
+    private final AtomicReference<Window> window;
+
+    public SlidingWindowRateLimiter(long permits, long window, TimeUnit timeUnit) {
+        this(permits, window, timeUnit, System::nanoTime);
+    }
+
+    SlidingWindowRateLimiter(long permits, long window, TimeUnit timeUnit, LongSupplier clock) {
+        if (permits <= 0 || window <= 0) {
+            throw new IllegalArgumentException("permits and window must be greater than 0");
+        }
+        this.permits = permits;
+        this.windowNanos = timeUnit.toNanos(window);
+        this.clock = clock;
+        this.window = new AtomicReference<>(new Window(clock.getAsLong(), new AtomicLong()));
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit timeUnit) {
+        long deadline = clock.getAsLong() + timeUnit.toNanos(timeout);
+        while (true) {
+            if (tryAcquireNow()) {
+                return true;
+            }
+            long remaining = deadline - clock.getAsLong();
+            if (remaining <= 0) {
+                return false;
+            }
+            //平均每个许可的间隔后重试
+            LockSupport.parkNanos(Math.min(remaining, Math.max(windowNanos / permits, TimeUnit.MILLISECONDS.toNanos(1))));
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    boolean tryAcquireNow() {
+        long now = clock.getAsLong();
+        Window current = currentWindow(now);
+        double previousWeight = 1D - (double) (now - current.start) / windowNanos;
+        long previous = (long) (current.previousCount.get() * previousWeight);
+        while (true) {
+            long count = current.count.get();
+            if (previous + count >= permits) {
+                return false;
+            }
+            if (current.count.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private Window currentWindow(long now) {
+        while (true) {
+            Window current = window.get();
+            long elapsed = now - current.start;
+            if (elapsed < windowNanos) {
+                return current;
+            }
+            Window next;
+            if (elapsed < windowNanos * 2) {
+                //引用上一窗口的计数器而不是复制计数,切换窗口后仍在旧窗口上获取的许可也会被统计
+                next = new Window(current.start + windowNanos, current.count);
+            } else {
+                //超过两个窗口没有请求,上一窗口计数为0
+                next = new Window(now - elapsed % windowNanos, new AtomicLong());
+            }
+            if (window.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private static final class Window {
+        private final long start;
+
+        private final AtomicLong previousCount;
+
+        private final AtomicLong count = new AtomicLong();
+
+        private Window(long start, AtomicLong previousCount) {
+            this.start = start;
+            this.previousCount = previousCount;
+        }
+    }
+}
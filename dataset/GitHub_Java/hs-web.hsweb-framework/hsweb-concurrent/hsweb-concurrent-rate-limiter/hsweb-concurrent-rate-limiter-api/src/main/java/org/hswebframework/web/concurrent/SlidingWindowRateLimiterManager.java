@@ -0,0 +1,17 @@
+package org.hswebframework.web.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单机滑动窗口限流,窗口长度为1个时间单位,许可数为小数时按比例延长窗口
+ *
+ * @see SlidingWindowRateLimiter
+ * @since 3.0.4
+ */
+public class SlidingWindowRateLimiterManager extends AbstractRateLimiterManager {
+
+    @Override
+    protected RateLimiter createRateLimiter(String key, double permits, TimeUnit timeUnit) {
+        return new SlidingWindowRateLimiter(permitsPerWindow(permits), windowNanos(permits, timeUnit), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,54 @@
+package org.hswebframework.web.concurrent.annotation;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流注解,在方法上注解,则对此方法的调用进行限流,超过限制时抛出异常.<br>
+ * e.g. 每个用户每秒最多调用10次
+ * <pre>
+ *     &#064;RateLimit(key = "api_foo_${#userId}", permits = 10)
+ *     public void foo(String userId){
+ *          //do some thing
+ *     }
+ * </pre>
+ *
+ * @see org.hswebframework.web.concurrent.RateLimiterManager
+ * @since 3.0.4
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface RateLimit {
+    /**
+     * 限流器标识,支持表达式,表达式使用 ${} 进行标识;如果此值为空,则使用类名加方法名作为标识.
+     * 设置多个时需要同时满足所有限流器
+     *
+     * @return 限流器标识, 支持spel表达式
+     * @see org.hswebframework.web.concurrent.RateLimiterManager#getRateLimiter(String, double, TimeUnit)
+     */
+    String[] key() default {};
+
+    /**
+     * @return 每个时间单位内允许调用的次数
+     */
+    double permits();
+
+    /**
+     * @return 时间单位, 默认秒
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * 超过限制时等待的时间,为0时不等待直接抛出异常
+     *
+     * @return 等待时间
+     */
+    long acquireTimeout() default 0;
+
+    /**
+     * @return 等待时间单位, 默认毫秒
+     */
+    TimeUnit acquireTimeUnit() default TimeUnit.MILLISECONDS;
+}
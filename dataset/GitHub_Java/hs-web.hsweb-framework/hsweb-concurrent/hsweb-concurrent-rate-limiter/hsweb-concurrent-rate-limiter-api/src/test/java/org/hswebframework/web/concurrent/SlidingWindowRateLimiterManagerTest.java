@@ -0,0 +1,45 @@
+package org.hswebframework.web.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author zhouhao
+ * @since 3.0.4
+ */
+public class SlidingWindowRateLimiterManagerTest {
+    SlidingWindowRateLimiterManager manager = new SlidingWindowRateLimiterManager();
+
+    @Test
+    public void testSameLimiter() {
+        RateLimiter limiter = manager.getRateLimiter("test", 10, TimeUnit.SECONDS);
+        assertSame(limiter, manager.getRateLimiter("test", 10, TimeUnit.SECONDS));
+
+        //许可数或时间单位不同时为不同的限流器
+        assertNotSame(limiter, manager.getRateLimiter("test", 20, TimeUnit.SECONDS));
+        assertNotSame(limiter, manager.getRateLimiter("test", 10, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void testFractionalPermits() {
+        //每秒1.5次为每1.33秒2次
+        RateLimiter limiter = manager.getRateLimiter("fractional", 1.5, TimeUnit.SECONDS);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        //每秒0.5次为每2秒1次
+        limiter = manager.getRateLimiter("half", 0.5, TimeUnit.SECONDS);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalPermits() {
+        manager.getRateLimiter("test", 0, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,40 @@
+package org.hswebframework.web.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SlidingWindowRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+
+    private final SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(10, 1, TimeUnit.SECONDS, now::get);
+
+    private int acquireAll() {
+        int acquired = 0;
+        while (limiter.tryAcquireNow()) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    @Test
+    public void testLimitInWindow() {
+        Assert.assertEquals(10, acquireAll());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(900));
+        Assert.assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testSlidingPreviousWindow() {
+        Assert.assertEquals(10, acquireAll());
+        //下一个窗口过去一半时,上一个窗口还占用一半
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        Assert.assertEquals(5, acquireAll());
+        //两个窗口之后全部释放
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(10, acquireAll());
+    }
+}
@@ -0,0 +1,24 @@
+package org.hswebframework.web.concurrent.redis;
+
+import org.hswebframework.web.concurrent.RateLimiterManager;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @since 3.0.4
+ */
+@Configuration
+@AutoConfigureBefore(name = "org.hswebframework.web.concurrent.starter.RateLimiterAutoConfiguration")
+public class RedisRateLimiterAutoConfiguration {
+
+    @Bean
+    @ConditionalOnBean(RedissonClient.class)
+    @ConditionalOnMissingBean(RateLimiterManager.class)
+    public RateLimiterManager rateLimiterManager(RedissonClient client) {
+        return new RedissonRateLimiterManager(client);
+    }
+}
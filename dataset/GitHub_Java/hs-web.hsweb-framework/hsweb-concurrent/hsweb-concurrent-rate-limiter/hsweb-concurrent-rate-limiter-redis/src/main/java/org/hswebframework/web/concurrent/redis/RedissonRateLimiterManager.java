@@ -0,0 +1,43 @@
+package org.hswebframework.web.concurrent.redis;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.hswebframework.web.concurrent.AbstractRateLimiterManager;
+import org.hswebframework.web.concurrent.RateLimiter;
+import org.redisson.api.RedissonClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于redis的集群限流,窗口长度为1个时间单位,许可数为小数时按比例延长窗口
+ *
+ * @see RedissonSlidingWindowRateLimiter
+ * @since 3.0.4
+ */
+@Getter
+@Setter
+public class RedissonRateLimiterManager extends AbstractRateLimiterManager {
+
+    private RedissonClient redisson;
+
+    private String prefix = "hsweb:rate-limiter:";
+
+    //每次从redis预占的许可占总许可数的比例
+    private double batchRatio = 0.01;
+
+    public RedissonRateLimiterManager(RedissonClient redisson) {
+        if (null == redisson) {
+            throw new NullPointerException();
+        }
+        this.redisson = redisson;
+    }
+
+    @Override
+    protected RateLimiter createRateLimiter(String key, double permits, TimeUnit timeUnit) {
+        long permitsPerWindow = permitsPerWindow(permits);
+        long windowMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(windowNanos(permits, timeUnit)));
+        long batchSize = Math.max(1, (long) (permitsPerWindow * batchRatio));
+        //窗口序号与窗口长度相关,不同窗口长度的计数不能共用
+        return new RedissonSlidingWindowRateLimiter(redisson, prefix + key + ":" + windowMillis, permitsPerWindow, windowMillis, TimeUnit.MILLISECONDS, batchSize);
+    }
+}
@@ -0,0 +1,150 @@
+package org.hswebframework.web.concurrent.redis;
+
+import org.hswebframework.web.concurrent.RateLimiter;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 集群滑动窗口限流器,每个窗口的计数保存在redis中,key为 name:窗口序号.
+ * <p>
+ * 为减少访问redis的次数,每个节点每次从redis预占batchSize个许可,在本地消耗完后再去redis预占,
+ * 节点未用完的许可在窗口结束后作废,所以batchSize越大,集群整体能通过的请求可能越少.
+ * batchSize为1时每次获取许可都访问redis.
+ *
+ * @see RedissonRateLimiterManager
+ * @since 3.0.4
+ */
+public class RedissonSlidingWindowRateLimiter implements RateLimiter {
+
+    private final RedissonClient redisson;
+
+    private final String name;
+
+    private final long permits;
+
+    private final long windowMillis;
+
+    private final long batchSize;
+
+    private final AtomicReference<LocalWindow> window = new AtomicReference<>(new LocalWindow(-1));
+
+    public RedissonSlidingWindowRateLimiter(RedissonClient redisson, String name, long permits, long window, TimeUnit timeUnit, long batchSize) {
+        if (permits <= 0 || window <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("permits, window and batchSize must be greater than 0");
+        }
+        this.redisson = redisson;
+        this.name = name;
+        this.permits = permits;
+        this.windowMillis = Math.max(1, timeUnit.toMillis(window));
+        this.batchSize = Math.min(batchSize, permits);
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit timeUnit) {
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (true) {
+            if (tryAcquireNow()) {
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(Math.max(windowMillis / permits, 1))));
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private boolean tryAcquireNow() {
+        long now = System.currentTimeMillis();
+        LocalWindow current = currentWindow(now / windowMillis);
+        if (current.tryTake()) {
+            return true;
+        }
+        //本地许可用完,从redis预占,访问redis时不持有锁,多个线程同时预占时由redis的原子计数保证不超过总数
+        long granted = reserve(current, now);
+        if (granted <= 0) {
+            return false;
+        }
+        current.remaining.addAndGet(granted - 1);
+        return true;
+    }
+
+    private LocalWindow currentWindow(long index) {
+        while (true) {
+            LocalWindow current = window.get();
+            if (current.index >= index) {
+                return current;
+            }
+            if (window.compareAndSet(current, new LocalWindow(index))) {
+                return window.get();
+            }
+        }
+    }
+
+    //从redis预占许可,返回实际预占到的数量
+    private long reserve(LocalWindow current, long now) {
+        double previousWeight = 1D - (double) (now - current.index * windowMillis) / windowMillis;
+        long capacity = permits - (long) (current.getPreviousCount() * previousWeight);
+        if (capacity <= 0) {
+            return 0;
+        }
+        RAtomicLong counter = getCounter(current.index);
+        long after = counter.addAndGet(batchSize);
+        if (after == batchSize) {
+            //窗口第一次预占,设置过期时间,下一个窗口还需要读取本窗口的计数
+            counter.expire(windowMillis * 2, TimeUnit.MILLISECONDS);
+        }
+        long granted = Math.max(0, Math.min(batchSize, capacity - (after - batchSize)));
+        if (granted < batchSize) {
+            //归还未能预占的部分
+            counter.addAndGet(granted - batchSize);
+        }
+        return granted;
+    }
+
+    private RAtomicLong getCounter(long index) {
+        return redisson.getAtomicLong(name + ":" + index);
+    }
+
+    private final class LocalWindow {
+        private final long index;
+
+        //上一窗口的计数,第一次预占时从redis读取
+        private volatile long previousCount = -1;
+
+        private final AtomicLong remaining = new AtomicLong();
+
+        private LocalWindow(long index) {
+            this.index = index;
+        }
+
+        private long getPreviousCount() {
+            long count = previousCount;
+            if (count < 0) {
+                previousCount = count = getCounter(index - 1).get();
+            }
+            return count;
+        }
+
+        private boolean tryTake() {
+            while (true) {
+                long value = remaining.get();
+                if (value <= 0) {
+                    return false;
+                }
+                if (remaining.compareAndSet(value, value - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.hswebframework.web.concurrent.starter;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.hswebframework.web.AopUtils;
+import org.hswebframework.web.BusinessException;
+import org.hswebframework.web.boost.aop.context.MethodInterceptorHolder;
+import org.hswebframework.web.concurrent.RateLimiter;
+import org.hswebframework.web.concurrent.RateLimiterManager;
+import org.hswebframework.web.concurrent.annotation.RateLimit;
+import org.hswebframework.web.utils.ExpressionUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+
+/**
+ * 处理{@link RateLimit}注解
+ *
+ * @since 3.0.4
+ */
+public class AopRateLimitAdvisor extends StaticMethodMatcherPointcutAdvisor {
+
+    public AopRateLimitAdvisor(RateLimiterManager rateLimiterManager) {
+        Objects.requireNonNull(rateLimiterManager);
+        setAdvice((MethodInterceptor) methodInvocation -> {
+            MethodInterceptorHolder holder = MethodInterceptorHolder.create(methodInvocation);
+            RateLimit rateLimit = holder.findMethodAnnotation(RateLimit.class);
+            if (null != rateLimit) {
+                for (String key : getKeys(rateLimit, holder)) {
+                    RateLimiter limiter = rateLimiterManager.getRateLimiter(key, rateLimit.permits(), rateLimit.timeUnit());
+                    if (!limiter.tryAcquire(rateLimit.acquireTimeout(), rateLimit.acquireTimeUnit())) {
+                        throw new BusinessException("请求过于频繁,请稍后再试", 429);
+                    }
+                }
+            }
+            return methodInvocation.proceed();
+        });
+    }
+
+    protected String[] getKeys(RateLimit rateLimit, MethodInterceptorHolder holder) {
+        String[] keys = rateLimit.key();
+        if (keys.length == 0) {
+            Method method = holder.getMethod();
+            return new String[]{method.getDeclaringClass().getName() + "." + method.getName()};
+        }
+        String[] result = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = ExpressionUtils.analytical(keys[i], holder.getArgs(), "spel");
+        }
+        return result;
+    }
+
+    @Override
+    public boolean matches(Method method, Class<?> aClass) {
+        return null != AopUtils.findMethodAnnotation(aClass, method, RateLimit.class);
+    }
+}
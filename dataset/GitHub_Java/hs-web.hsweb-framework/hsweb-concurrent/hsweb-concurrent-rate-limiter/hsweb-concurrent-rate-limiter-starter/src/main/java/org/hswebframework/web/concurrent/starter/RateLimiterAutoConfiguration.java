@@ -0,0 +1,25 @@
+package org.hswebframework.web.concurrent.starter;
+
+import org.hswebframework.web.concurrent.RateLimiterManager;
+import org.hswebframework.web.concurrent.SlidingWindowRateLimiterManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @since 3.0.4
+ */
+@Configuration
+public class RateLimiterAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(RateLimiterManager.class)
+    public RateLimiterManager rateLimiterManager() {
+        return new SlidingWindowRateLimiterManager();
+    }
+
+    @Bean
+    public AopRateLimitAdvisor aopRateLimitAdvisor(RateLimiterManager rateLimiterManager) {
+        return new AopRateLimitAdvisor(rateLimiterManager);
+    }
+}
@@ -0,0 +1,86 @@
+package org.hswebframework.web.loggin.aop;
+
+import com.alibaba.fastjson.JSON;
+import org.hswebframework.web.ThreadLocalUtils;
+import org.hswebframework.web.logging.AccessLoggerInfo;
+import org.springframework.core.io.InputStreamSource;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 访问日志序列化工具,{@link #capture(AccessLoggerInfo)}在请求线程中调用,其他方法只在后台写出时调用
+ *
+ * @since 4.0
+ */
+final class AccessLoggerSerializer {
+
+    private AccessLoggerSerializer() {
+    }
+
+    /**
+     * 在请求线程中捕获日志,只复制字段和参数集合,不进行序列化,序列化由后台线程中的写出器完成.
+     * 请求结束后会被容器回收的参数(如request,response,流)替换为类名,同时捕获当前线程的上下文.
+     *
+     * @param info 日志信息
+     * @return 捕获的日志
+     */
+    static AccessLoggerInfo capture(AccessLoggerInfo info) {
+        CapturedAccessLoggerInfo captured = new CapturedAccessLoggerInfo();
+        captured.setId(info.getId());
+        captured.setAction(info.getAction());
+        captured.setDescribe(info.getDescribe());
+        captured.setMethod(info.getMethod());
+        captured.setTarget(info.getTarget());
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        if (info.getParameters() != null) {
+            info.getParameters().forEach((name, value) -> parameters.put(name, isRequestScoped(value) ? value.getClass().getName() : value));
+        }
+        captured.setParameters(parameters);
+        captured.setIp(info.getIp());
+        captured.setUrl(info.getUrl());
+        captured.setHttpHeaders(info.getHttpHeaders());
+        captured.setHttpMethod(info.getHttpMethod());
+        captured.setResponse(isRequestScoped(info.getResponse()) ? info.getResponse().getClass().getName() : info.getResponse());
+        captured.setRequestTime(info.getRequestTime());
+        captured.setResponseTime(info.getResponseTime());
+        captured.setException(info.getException());
+        captured.setThreadContext(ThreadLocalUtils.getAll());
+        return captured;
+    }
+
+    private static boolean isRequestScoped(Object value) {
+        return value instanceof ServletRequest
+                || value instanceof ServletResponse
+                || value instanceof HttpSession
+                || value instanceof InputStreamSource
+                || value instanceof InputStream
+                || value instanceof OutputStream;
+    }
+
+    static Map<String, Object> toMap(AccessLoggerInfo info) {
+        return info.toSimpleMap(AccessLoggerSerializer::toSerializable);
+    }
+
+    static String toJson(Object value) {
+        return JSON.toJSONString(value);
+    }
+
+    private static Serializable toSerializable(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return JSON.toJSONString(value);
+        } catch (Exception e) {
+            //部分参数(如request,response)无法序列化
+            return String.valueOf(value);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.hswebframework.web.logging.AccessLogger;
 import org.hswebframework.web.logging.AccessLoggerInfo;
 import org.hswebframework.web.logging.AccessLoggerListener;
 import org.hswebframework.web.logging.LoggerDefine;
+import org.hswebframework.web.logging.async.AsyncAccessLoggerPipeline;
 import org.hswebframework.web.logging.events.AccessLoggerAfterEvent;
 import org.hswebframework.web.logging.events.AccessLoggerBeforeEvent;
 import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
@@ -24,9 +25,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
 
 /**
@@ -37,19 +40,32 @@ import java.util.stream.Stream;
  */
 public class AopAccessLoggerSupport extends StaticMethodMatcherPointcutAdvisor {
 
-    private final List<AccessLoggerListener> listeners = new ArrayList<>();
+    private final List<AccessLoggerListener> listeners = new CopyOnWriteArrayList<>();
 
     private final List<AccessLoggerParser> loggerParsers = new ArrayList<>();
 
     @Autowired
     private ApplicationEventPublisher eventPublisher;
 
+    /**
+     * 开启异步访问日志时不为空,请求结束后只将日志放入队列,
+     * 由后台线程触发{@link AccessLoggerAfterEvent}和监听器并批量写出
+     */
+    @Autowired(required = false)
+    private AsyncAccessLoggerPipeline asyncPipeline;
 
     public AopAccessLoggerSupport addListener(AccessLoggerListener loggerListener) {
         listeners.add(loggerListener);
         return this;
     }
 
+    /**
+     * @return 监听器, 开启异步访问日志时由{@link EventAccessLoggerBatchWriter}在后台线程中触发
+     */
+    public List<AccessLoggerListener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
     public AopAccessLoggerSupport addParser(AccessLoggerParser parser) {
         loggerParsers.add(parser);
         return this;
@@ -70,9 +86,13 @@ public class AopAccessLoggerSupport extends StaticMethodMatcherPointcutAdvisor {
                 info.setException(e);
                 throw e;
             } finally {
-                //触发监听
-                eventPublisher.publishEvent(new AccessLoggerAfterEvent(info));
-                listeners.forEach(listener -> listener.onLogger(info));
+                if (asyncPipeline != null) {
+                    //采样后在后台线程中触发事件和监听器
+                    asyncPipeline.offer(info);
+                } else {
+                    eventPublisher.publishEvent(new AccessLoggerAfterEvent(info));
+                    listeners.forEach(listener -> listener.onLogger(info));
+                }
             }
             return response;
         });
@@ -2,13 +2,23 @@ package org.hswebframework.web.loggin.aop;
 
 
 import org.hswebframework.web.logging.AccessLoggerListener;
+import org.hswebframework.web.logging.async.AccessLoggerBatchWriter;
+import org.hswebframework.web.logging.async.AsyncAccessLoggerPipeline;
+import org.hswebframework.web.logging.async.AsyncAccessLoggerProperties;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.sql.DataSource;
+import java.util.List;
+
 /**
  * AOP 访问日志记录自动配置
  *
@@ -36,6 +46,43 @@ public class AopAccessLoggerSupportAutoConfiguration {
         return new SwaggerAccessLoggerParser();
     }
 
+    @Configuration
+    @ConditionalOnProperty(prefix = "hsweb.access-logger.async", name = "enabled", havingValue = "true")
+    public static class AsyncAccessLoggerConfiguration {
+
+        @Bean
+        @ConfigurationProperties(prefix = "hsweb.access-logger.async")
+        public AsyncAccessLoggerProperties asyncAccessLoggerProperties() {
+            return new AsyncAccessLoggerProperties();
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "hsweb.access-logger.async", name = "file")
+        public FileAccessLoggerBatchWriter fileAccessLoggerBatchWriter(AsyncAccessLoggerProperties properties) {
+            return new FileAccessLoggerBatchWriter(properties.getFile());
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "hsweb.access-logger.async", name = "table")
+        public JdbcAccessLoggerBatchWriter jdbcAccessLoggerBatchWriter(DataSource dataSource,
+                                                                       AsyncAccessLoggerProperties properties) {
+            return new JdbcAccessLoggerBatchWriter(dataSource, properties.getTable());
+        }
+
+        @Bean
+        public EventAccessLoggerBatchWriter eventAccessLoggerBatchWriter(ApplicationEventPublisher eventPublisher,
+                                                                         AopAccessLoggerSupport aopAccessLoggerSupport) {
+            return new EventAccessLoggerBatchWriter(eventPublisher, aopAccessLoggerSupport.getListeners());
+        }
+
+        @Bean(initMethod = "start", destroyMethod = "shutdown")
+        @ConditionalOnMissingBean(AsyncAccessLoggerPipeline.class)
+        public AsyncAccessLoggerPipeline asyncAccessLoggerPipeline(AsyncAccessLoggerProperties properties,
+                                                                   List<AccessLoggerBatchWriter> writers) {
+            return new AsyncAccessLoggerPipeline(properties, writers, AccessLoggerSerializer::capture);
+        }
+    }
+
     @Bean
     public ListenerProcessor listenerProcessor() {
         return new ListenerProcessor();
@@ -0,0 +1,27 @@
+package org.hswebframework.web.loggin.aop;
+
+import org.hswebframework.web.logging.AccessLoggerInfo;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 在请求线程中捕获的日志,同时保存了请求线程的上下文(如当前登录用户),
+ * 后台线程触发事件和监听器时恢复此上下文
+ *
+ * @see AccessLoggerSerializer#capture(AccessLoggerInfo)
+ * @see EventAccessLoggerBatchWriter
+ * @since 4.0
+ */
+class CapturedAccessLoggerInfo extends AccessLoggerInfo {
+
+    private Map<String, Object> threadContext = Collections.emptyMap();
+
+    Map<String, Object> getThreadContext() {
+        return threadContext;
+    }
+
+    void setThreadContext(Map<String, Object> threadContext) {
+        this.threadContext = threadContext;
+    }
+}
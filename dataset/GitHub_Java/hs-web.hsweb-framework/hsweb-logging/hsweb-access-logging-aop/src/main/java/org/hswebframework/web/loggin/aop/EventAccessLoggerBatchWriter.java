@@ -0,0 +1,67 @@
+package org.hswebframework.web.loggin.aop;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hswebframework.web.ThreadLocalUtils;
+import org.hswebframework.web.logging.AccessLoggerInfo;
+import org.hswebframework.web.logging.AccessLoggerListener;
+import org.hswebframework.web.logging.async.AccessLoggerBatchWriter;
+import org.hswebframework.web.logging.events.AccessLoggerAfterEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+/**
+ * 开启异步访问日志后,在后台线程中发布{@link AccessLoggerAfterEvent}并触发{@link AccessLoggerListener#onLogger(AccessLoggerInfo)}.
+ * <p>
+ * 只有通过采样的日志才会触发.触发前恢复请求线程中捕获的{@link org.hswebframework.web.ThreadLocalUtils}上下文,
+ * 监听器中仍然可以获取当前登录用户等信息.在其他写出器之前执行,持久化日志的监听器不会晚于文件,数据库写出.
+ *
+ * @see CapturedAccessLoggerInfo
+ * @since 4.0
+ */
+@Slf4j
+public class EventAccessLoggerBatchWriter implements AccessLoggerBatchWriter, Ordered {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final List<AccessLoggerListener> listeners;
+
+    /**
+     * @param eventPublisher 事件发布器
+     * @param listeners      监听器, 启动过程中可能还会添加监听器, 需要是线程安全的集合
+     */
+    public EventAccessLoggerBatchWriter(ApplicationEventPublisher eventPublisher, List<AccessLoggerListener> listeners) {
+        this.eventPublisher = eventPublisher;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void write(List<AccessLoggerInfo> batch) {
+        for (AccessLoggerInfo info : batch) {
+            if (info instanceof CapturedAccessLoggerInfo) {
+                ((CapturedAccessLoggerInfo) info).getThreadContext().forEach(ThreadLocalUtils::put);
+            }
+            try {
+                eventPublisher.publishEvent(new AccessLoggerAfterEvent(info));
+                for (AccessLoggerListener listener : listeners) {
+                    //单个监听器出错不影响其他监听器和同批的其他日志
+                    try {
+                        listener.onLogger(info);
+                    } catch (Exception e) {
+                        log.warn("access logger listener {} failed", listener.getClass().getName(), e);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("publish access logger event failed", e);
+            } finally {
+                ThreadLocalUtils.clear();
+            }
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
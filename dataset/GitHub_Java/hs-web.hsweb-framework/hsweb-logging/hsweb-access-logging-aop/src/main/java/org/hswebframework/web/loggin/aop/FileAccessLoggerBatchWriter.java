@@ -0,0 +1,43 @@
+package org.hswebframework.web.loggin.aop;
+
+import org.hswebframework.web.logging.AccessLoggerInfo;
+import org.hswebframework.web.logging.async.AccessLoggerBatchWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 将访问日志以JSON行的格式追加到本地文件,每批日志只打开并写入一次文件
+ *
+ * @since 4.0
+ */
+public class FileAccessLoggerBatchWriter implements AccessLoggerBatchWriter {
+
+    private final Path file;
+
+    public FileAccessLoggerBatchWriter(String file) {
+        this.file = Paths.get(file);
+    }
+
+    @Override
+    public void write(List<AccessLoggerInfo> batch) throws IOException {
+        StringBuilder lines = new StringBuilder(batch.size() * 512);
+        for (AccessLoggerInfo info : batch) {
+            lines.append(AccessLoggerSerializer.toJson(AccessLoggerSerializer.toMap(info))).append('\n');
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(lines.toString());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.hswebframework.web.loggin.aop;
+
+import org.hswebframework.web.logging.AccessLoggerInfo;
+import org.hswebframework.web.logging.async.AccessLoggerBatchWriter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 使用JDBC批量插入将访问日志写入数据库,每批日志只获取一次连接并执行一次批量插入.
+ * <p>
+ * 表结构需包含以下字段: id, action, description, target, method, parameters, ip, url,
+ * http_method, exception, request_time, response_time
+ *
+ * @since 4.0
+ */
+public class JdbcAccessLoggerBatchWriter implements AccessLoggerBatchWriter {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+    private final DataSource dataSource;
+
+    private final String sql;
+
+    public JdbcAccessLoggerBatchWriter(DataSource dataSource, String table) {
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("illegal access logger table name: " + table);
+        }
+        this.dataSource = dataSource;
+        this.sql = "insert into " + table + " (id, action, description, target, method, parameters, ip, url, "
+                + "http_method, exception, request_time, response_time) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    @Override
+    public void write(List<AccessLoggerInfo> batch) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (AccessLoggerInfo info : batch) {
+                Map<String, Object> map = AccessLoggerSerializer.toMap(info);
+                statement.setString(1, info.getId());
+                statement.setString(2, info.getAction());
+                statement.setString(3, info.getDescribe());
+                statement.setString(4, (String) map.get("target"));
+                statement.setString(5, (String) map.get("method"));
+                statement.setString(6, AccessLoggerSerializer.toJson(map.get("parameters")));
+                statement.setString(7, info.getIp());
+                statement.setString(8, info.getUrl());
+                statement.setString(9, info.getHttpMethod());
+                statement.setString(10, (String) map.get("exception"));
+                statement.setLong(11, info.getRequestTime());
+                statement.setLong(12, info.getResponseTime());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+}
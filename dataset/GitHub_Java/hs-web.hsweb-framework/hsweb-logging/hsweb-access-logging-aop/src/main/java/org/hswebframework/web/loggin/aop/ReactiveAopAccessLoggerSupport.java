@@ -8,6 +8,7 @@ import org.hswebframework.web.logging.RequestInfo;
 import org.hswebframework.web.logging.AccessLoggerInfo;
 import org.hswebframework.web.logging.AccessLoggerListener;
 import org.hswebframework.web.logging.LoggerDefine;
+import org.hswebframework.web.logging.async.AsyncAccessLoggerPipeline;
 import org.hswebframework.web.logging.events.AccessLoggerAfterEvent;
 import org.hswebframework.web.logging.events.AccessLoggerBeforeEvent;
 import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
@@ -43,6 +44,12 @@ public class ReactiveAopAccessLoggerSupport extends StaticMethodMatcherPointcutA
     @Autowired
     private ApplicationEventPublisher eventPublisher;
 
+    /**
+     * 开启异步访问日志时不为空,请求结束后只将日志放入队列,由后台线程发布事件并批量写出
+     */
+    @Autowired(required = false)
+    private AsyncAccessLoggerPipeline asyncPipeline;
+
     public ReactiveAopAccessLoggerSupport() {
         setAdvice((MethodInterceptor) methodInvocation -> {
             MethodInterceptorHolder methodInterceptorHolder = MethodInterceptorHolder.create(methodInvocation);
@@ -65,7 +72,7 @@ public class ReactiveAopAccessLoggerSupport extends StaticMethodMatcherPointcutA
                 .doOnError(loggerInfo::setException)
                 .doFinally(f -> {
                     loggerInfo.setResponseTime(System.currentTimeMillis());
-                    eventPublisher.publishEvent(new AccessLoggerAfterEvent(loggerInfo));
+                    publishAfterEvent(loggerInfo);
                 }).subscriberContext(ReactiveLogger.start("accessLogId",loggerInfo.getId()));
     }
 
@@ -79,10 +86,18 @@ public class ReactiveAopAccessLoggerSupport extends StaticMethodMatcherPointcutA
                 .doOnSuccess(loggerInfo::setResponse)
                 .doFinally(f -> {
                     loggerInfo.setResponseTime(System.currentTimeMillis());
-                    eventPublisher.publishEvent(new AccessLoggerAfterEvent(loggerInfo));
+                    publishAfterEvent(loggerInfo);
                 }).subscriberContext(ReactiveLogger.start("accessLogId",loggerInfo.getId()));
     }
 
+    protected void publishAfterEvent(AccessLoggerInfo loggerInfo) {
+        if (asyncPipeline != null) {
+            asyncPipeline.offer(loggerInfo);
+        } else {
+            eventPublisher.publishEvent(new AccessLoggerAfterEvent(loggerInfo));
+        }
+    }
+
     @SuppressWarnings("all")
     protected AccessLoggerInfo createLogger(MethodInterceptorHolder holder) {
         AccessLoggerInfo info = new AccessLoggerInfo();
@@ -0,0 +1,23 @@
+package org.hswebframework.web.logging.async;
+
+import org.hswebframework.web.logging.AccessLoggerInfo;
+
+import java.util.List;
+
+/**
+ * 访问日志批量写出器,由{@link AsyncAccessLoggerPipeline}在后台线程中调用.
+ * 实现此接口并注入到spring容器即可将访问日志批量持久化.
+ *
+ * @see AsyncAccessLoggerPipeline
+ * @since 4.0
+ */
+public interface AccessLoggerBatchWriter {
+
+    /**
+     * 写出一批日志,抛出异常时此批日志将被记为写出失败,不会重试
+     *
+     * @param batch 在请求线程中捕获的日志集合,参数和响应尚未序列化.方法返回后集合将被复用,请勿持有其引用
+     * @throws Exception 写出失败
+     */
+    void write(List<AccessLoggerInfo> batch) throws Exception;
+}
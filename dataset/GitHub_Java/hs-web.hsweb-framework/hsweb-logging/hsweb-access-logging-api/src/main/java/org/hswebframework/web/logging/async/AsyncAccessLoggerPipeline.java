@@ -0,0 +1,285 @@
+package org.hswebframework.web.logging.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hswebframework.web.logging.AccessLoggerInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * 异步访问日志管道.
+ * <p>
+ * 请求线程调用{@link #offer(AccessLoggerInfo)}时先做采样判断,通过后在请求线程中捕获日志并放入有界队列,
+ * 队列已满时直接丢弃,不会阻塞请求.捕获只复制字段和请求线程的上下文,不进行序列化,
+ * 被采样丢弃的日志不会产生任何开销.
+ * 后台线程按批从队列中取出日志,依次交给{@link AccessLoggerBatchWriter}处理,
+ * 访问日志事件和监听器也由写出器在后台线程中触发,因此同样受采样影响.
+ * 调用{@link #shutdown()}后提交的日志不再进入队列,而是在提交线程中直接写出.
+ *
+ * @see AccessLoggerBatchWriter
+ * @see AsyncAccessLoggerProperties
+ * @since 4.0
+ */
+@Slf4j
+public class AsyncAccessLoggerPipeline {
+
+    private final AsyncAccessLoggerProperties properties;
+
+    private final List<AccessLoggerBatchWriter> writers;
+
+    private final UnaryOperator<AccessLoggerInfo> capture;
+
+    private final BlockingQueue<AccessLoggerInfo> queue;
+
+    private final LongAdder submitted = new LongAdder();
+
+    private final LongAdder sampledOut = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean running;
+
+    private volatile boolean stopped;
+
+    //后台线程和关闭后的提交线程可能同时写出,写出器不要求线程安全
+    private final Object writeLock = new Object();
+
+    private Thread worker;
+
+    /**
+     * @param properties 配置
+     * @param writers    写出器
+     * @param capture    在请求线程中捕获日志,应尽量轻量,不能持有请求结束后会被回收的对象
+     */
+    public AsyncAccessLoggerPipeline(AsyncAccessLoggerProperties properties,
+                                     List<AccessLoggerBatchWriter> writers,
+                                     UnaryOperator<AccessLoggerInfo> capture) {
+        this.properties = properties;
+        this.writers = new ArrayList<>(writers);
+        this.capture = capture;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueSize()));
+    }
+
+    /**
+     * 提交一条日志,此方法不会阻塞.采样通过后在当前线程中捕获日志
+     *
+     * @param info 日志信息
+     * @return 是否已放入队列或已写出, 被采样丢弃,捕获失败或者队列已满时返回<code>false</code>
+     */
+    public boolean offer(AccessLoggerInfo info) {
+        submitted.increment();
+        if (!isSampled(info)) {
+            sampledOut.increment();
+            return false;
+        }
+        //队列已满时不再捕获
+        if (!stopped && queue.remainingCapacity() == 0) {
+            dropped.increment();
+            return false;
+        }
+        AccessLoggerInfo copy;
+        try {
+            copy = capture.apply(info);
+        } catch (Throwable e) {
+            failed.increment();
+            log.warn("capture access logger failed", e);
+            return false;
+        }
+        if (stopped) {
+            writeNow(copy);
+            return true;
+        }
+        if (!queue.offer(copy)) {
+            dropped.increment();
+            return false;
+        }
+        //放入队列时正在关闭,后台线程可能已经写完最后一批并退出
+        if (stopped && queue.remove(copy)) {
+            writeNow(copy);
+        }
+        return true;
+    }
+
+    protected boolean isSampled(AccessLoggerInfo info) {
+        if (properties.isAlwaysLogErrors() && info.getException() != null) {
+            return true;
+        }
+        long slowThreshold = properties.getSlowThreshold();
+        if (slowThreshold > 0 && info.getResponseTime() - info.getRequestTime() >= slowThreshold) {
+            return true;
+        }
+        double sampleRate = properties.getSampleRate();
+        if (sampleRate >= 1) {
+            return true;
+        }
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    public synchronized void start() {
+        if (running || stopped) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "hsweb-access-logger");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 通知后台线程停止,后台线程写完正在处理的一批以及队列中剩余的日志后退出.
+     * 不会中断后台线程,以免正在进行的写出(如JDBC,文件)被打断.
+     * 最多等待{@link AsyncAccessLoggerProperties#getShutdownTimeout()}毫秒.
+     * 关闭后提交的日志在提交线程中直接写出,关闭后不能再次启动
+     */
+    public synchronized void shutdown() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        if (!running) {
+            //未启动过,队列中的日志在当前线程中写出
+            List<AccessLoggerInfo> batch = new ArrayList<>(batchSize());
+            while (queue.drainTo(batch, batchSize()) > 0) {
+                write(batch);
+            }
+            return;
+        }
+        running = false;
+        try {
+            worker.join(Math.max(1, properties.getShutdownTimeout()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            log.warn("access logger worker did not stop in {}ms, {} logs are not written",
+                    properties.getShutdownTimeout(), queue.size());
+        }
+    }
+
+    private void run() {
+        List<AccessLoggerInfo> batch = new ArrayList<>(batchSize());
+        while (running) {
+            try {
+                AccessLoggerInfo first = queue.poll(properties.getFlushInterval(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+            } catch (InterruptedException e) {
+                //被外部中断时同样停止,已取出和队列中剩余的日志仍然写出
+                break;
+            }
+            write(batch);
+        }
+        write(batch);
+        while (queue.drainTo(batch, batchSize()) > 0) {
+            write(batch);
+        }
+    }
+
+    //在flushInterval内尽量凑满一批
+    private void fill(List<AccessLoggerInfo> batch) throws InterruptedException {
+        int batchSize = batchSize();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushInterval());
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            AccessLoggerInfo next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeNow(AccessLoggerInfo info) {
+        List<AccessLoggerInfo> batch = new ArrayList<>(1);
+        batch.add(info);
+        write(batch);
+    }
+
+    private void write(List<AccessLoggerInfo> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            for (AccessLoggerBatchWriter writer : writers) {
+                try {
+                    writer.write(batch);
+                    written.add(batch.size());
+                } catch (Throwable e) {
+                    failed.add(batch.size());
+                    log.warn("write {} access logs by {} failed", batch.size(), writer.getClass().getName(), e);
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private int batchSize() {
+        return Math.max(1, properties.getBatchSize());
+    }
+
+    /**
+     * @return 提交的日志总数
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return 被采样丢弃的日志数量
+     */
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * @return 因队列已满被丢弃的日志数量
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return 写出成功的日志数量, 每个写出器分别计数
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return 写出失败的日志数量, 每个写出器分别计数, 捕获失败的日志也计入
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 队列中等待写出的日志数量
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return 队列剩余容量
+     */
+    public int getRemainingCapacity() {
+        return queue.remainingCapacity();
+    }
+}
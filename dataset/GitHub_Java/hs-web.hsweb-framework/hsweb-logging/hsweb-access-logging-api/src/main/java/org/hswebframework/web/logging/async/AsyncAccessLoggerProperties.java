@@ -0,0 +1,69 @@
+package org.hswebframework.web.logging.async;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 异步访问日志配置,前缀: hsweb.access-logger.async
+ *
+ * @since 4.0
+ */
+@Getter
+@Setter
+public class AsyncAccessLoggerProperties {
+
+    /**
+     * 是否开启异步访问日志,开启后日志快照放入队列,由后台线程批量写出.
+     * <p>
+     * 开启后{@link org.hswebframework.web.logging.events.AccessLoggerAfterEvent}和{@link org.hswebframework.web.logging.AccessLoggerListener}
+     * 也变为异步: 在后台线程中发布和执行,不再在请求线程中执行;并且只有通过采样({@link #sampleRate},{@link #alwaysLogErrors},{@link #slowThreshold})
+     * 且成功放入队列的日志才会触发,被采样丢弃,捕获失败或因队列已满丢弃的日志不会触发.停止后提交的日志在提交线程中直接写出并触发.
+     */
+    private boolean enabled = false;
+
+    /**
+     * 队列容量,队列已满时新的日志将被丢弃而不是阻塞请求线程
+     */
+    private int queueSize = 10000;
+
+    /**
+     * 每批写出的最大日志数量
+     */
+    private int batchSize = 200;
+
+    /**
+     * 日志在队列中等待凑满一批的最长时间,单位毫秒
+     */
+    private long flushInterval = 1000;
+
+    /**
+     * 采样率,0到1之间.1表示记录全部日志.未通过采样的日志也不会触发访问日志事件和监听器
+     */
+    private double sampleRate = 1.0D;
+
+    /**
+     * 发生异常的请求是否总是记录,不受采样率影响
+     */
+    private boolean alwaysLogErrors = true;
+
+    /**
+     * 响应时间超过此值(毫秒)的请求总是记录,不受采样率影响.小于等于0时不启用
+     */
+    private long slowThreshold = 0;
+
+    /**
+     * 停止时等待后台线程写出剩余日志的最长时间,单位毫秒
+     */
+    private long shutdownTimeout = 10000;
+
+    /**
+     * 将日志以JSON行的格式追加到此文件,为空时不写文件
+     */
+    private String file;
+
+    /**
+     * 将日志批量写入此数据库表,为空时不写数据库
+     */
+    private String table;
+
+}
@@ -0,0 +1,187 @@
+package org.hswebframework.web.logging.async;
+
+import org.hswebframework.web.logging.AccessLoggerInfo;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.*;
+
+public class AsyncAccessLoggerPipelineTests {
+
+    private AccessLoggerInfo createLogger(long useTime, Throwable error) {
+        AccessLoggerInfo info = new AccessLoggerInfo();
+        info.setRequestTime(1000);
+        info.setResponseTime(1000 + useTime);
+        info.setException(error);
+        return info;
+    }
+
+    @Test
+    public void testSample() {
+        AsyncAccessLoggerProperties properties = new AsyncAccessLoggerProperties();
+        properties.setSampleRate(0);
+        properties.setSlowThreshold(500);
+        AsyncAccessLoggerPipeline pipeline = new AsyncAccessLoggerPipeline(properties,
+                Collections.emptyList(), UnaryOperator.identity());
+
+        assertFalse(pipeline.offer(createLogger(10, null)));
+        assertTrue(pipeline.offer(createLogger(10, new RuntimeException())));
+        assertTrue(pipeline.offer(createLogger(600, null)));
+
+        assertEquals(3, pipeline.getSubmittedCount());
+        assertEquals(1, pipeline.getSampledOutCount());
+        assertEquals(2, pipeline.getQueueSize());
+    }
+
+    @Test
+    public void testDropWhenFull() {
+        AsyncAccessLoggerProperties properties = new AsyncAccessLoggerProperties();
+        properties.setQueueSize(2);
+        AsyncAccessLoggerPipeline pipeline = new AsyncAccessLoggerPipeline(properties,
+                Collections.emptyList(), UnaryOperator.identity());
+
+        assertTrue(pipeline.offer(createLogger(10, null)));
+        assertTrue(pipeline.offer(createLogger(10, null)));
+        assertFalse(pipeline.offer(createLogger(10, null)));
+
+        assertEquals(1, pipeline.getDroppedCount());
+        assertEquals(0, pipeline.getRemainingCapacity());
+    }
+
+    @Test
+    public void testBatchWrite() {
+        List<List<AccessLoggerInfo>> batches = new CopyOnWriteArrayList<>();
+        AsyncAccessLoggerProperties properties = new AsyncAccessLoggerProperties();
+        properties.setBatchSize(2);
+        properties.setFlushInterval(50);
+        AsyncAccessLoggerPipeline pipeline = new AsyncAccessLoggerPipeline(properties,
+                Collections.singletonList(batch -> batches.add(new ArrayList<>(batch))), UnaryOperator.identity());
+        pipeline.start();
+        for (int i = 0; i < 5; i++) {
+            pipeline.offer(createLogger(10, null));
+        }
+        pipeline.shutdown();
+
+        assertEquals(5, pipeline.getWrittenCount());
+        assertEquals(5, batches.stream().mapToInt(List::size).sum());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 2));
+    }
+
+    @Test
+    public void testWriteFailed() {
+        AsyncAccessLoggerProperties properties = new AsyncAccessLoggerProperties();
+        AsyncAccessLoggerPipeline pipeline = new AsyncAccessLoggerPipeline(properties,
+                Collections.singletonList(batch -> {
+                    throw new IllegalStateException();
+                }), UnaryOperator.identity());
+        pipeline.start();
+        pipeline.offer(createLogger(10, null));
+        pipeline.shutdown();
+
+        assertEquals(1, pipeline.getFailedCount());
+        assertEquals(0, pipeline.getWrittenCount());
+    }
+
+    @Test
+    public void testCaptureOnOffer() {
+        List<AccessLoggerInfo> written = new CopyOnWriteArrayList<>();
+        AtomicInteger captures = new AtomicInteger();
+        AsyncAccessLoggerProperties properties = new AsyncAccessLoggerProperties();
+        properties.setSampleRate(0);
+        properties.setSlowThreshold(500);
+        AsyncAccessLoggerPipeline pipeline = new AsyncAccessLoggerPipeline(properties,
+                Collections.singletonList(written::addAll),
+                info -> {
+                    captures.incrementAndGet();
+                    AccessLoggerInfo copy = new AccessLoggerInfo();
+                    copy.setResponse(String.valueOf(info.getResponse()));
+                    return copy;
+                });
+
+        //被采样丢弃的日志不会被捕获
+        pipeline.offer(createLogger(10, null));
+        assertEquals(0, captures.get());
+
+        List<String> response = new ArrayList<>(Collections.singletonList("before"));
+        AccessLoggerInfo info = createLogger(600, null);
+        info.setResponse(response);
+        pipeline.offer(info);
+        assertEquals(1, captures.get());
+
+        //请求结束后修改响应不影响日志
+        response.set(0, "after");
+        pipeline.start();
+        pipeline.shutdown();
+
+        assertEquals(1, written.size());
+        assertEquals("[before]", written.get(0).getResponse());
+    }
+
+    @Test
+    public void testShutdownDrainsWithoutInterrupt() {
+        AtomicInteger written = new AtomicInteger();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AsyncAccessLoggerProperties properties = new AsyncAccessLoggerProperties();
+        properties.setBatchSize(2);
+        properties.setFlushInterval(50);
+        AsyncAccessLoggerPipeline pipeline = new AsyncAccessLoggerPipeline(properties,
+                Collections.singletonList(batch -> {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                    }
+                    written.addAndGet(batch.size());
+                }), UnaryOperator.identity());
+        pipeline.start();
+        for (int i = 0; i < 6; i++) {
+            pipeline.offer(createLogger(10, null));
+        }
+        pipeline.shutdown();
+
+        assertFalse(interrupted.get());
+        assertEquals(6, written.get());
+        assertEquals(0, pipeline.getQueueSize());
+    }
+
+    @Test
+    public void testOfferAfterShutdown() {
+        List<AccessLoggerInfo> written = new CopyOnWriteArrayList<>();
+        AsyncAccessLoggerProperties properties = new AsyncAccessLoggerProperties();
+        AsyncAccessLoggerPipeline pipeline = new AsyncAccessLoggerPipeline(properties,
+                Collections.singletonList(written::addAll), UnaryOperator.identity());
+        pipeline.offer(createLogger(10, null));
+        pipeline.start();
+        pipeline.shutdown();
+        assertEquals(1, written.size());
+
+        //关闭后提交的日志直接写出,不会留在队列中
+        assertTrue(pipeline.offer(createLogger(10, null)));
+        assertEquals(2, written.size());
+        assertEquals(0, pipeline.getQueueSize());
+
+        //关闭后不能再次启动
+        pipeline.start();
+        assertTrue(pipeline.offer(createLogger(10, null)));
+        assertEquals(3, written.size());
+    }
+
+    @Test
+    public void testShutdownWithoutStart() {
+        List<AccessLoggerInfo> written = new CopyOnWriteArrayList<>();
+        AsyncAccessLoggerPipeline pipeline = new AsyncAccessLoggerPipeline(new AsyncAccessLoggerProperties(),
+                Collections.singletonList(written::addAll), UnaryOperator.identity());
+        pipeline.offer(createLogger(10, null));
+        pipeline.shutdown();
+
+        assertEquals(1, written.size());
+        assertEquals(0, pipeline.getQueueSize());
+    }
+}
@@ -2,6 +2,7 @@ package org.hswebframework.web.system.authorization.defaults.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.hswebframework.web.authorization.*;
+import org.hswebframework.web.authorization.compiled.CompiledAuthorizationManager;
 import org.hswebframework.web.authorization.exception.AccessDenyException;
 import org.hswebframework.web.authorization.simple.PlainTextUsernamePasswordAuthenticationRequest;
 import org.hswebframework.web.cache.ReactiveCacheManager;
@@ -26,9 +27,18 @@ public class DefaultReactiveAuthenticationManager implements ReactiveAuthenticat
     @Autowired(required = false)
     private ReactiveCacheManager cacheManager;
 
+    @Autowired(required = false)
+    private CompiledAuthorizationManager compiledAuthorizationManager;
 
     @EventListener
     public void handleClearAuthCache(ClearUserAuthorizationCacheEvent event) {
+        if (compiledAuthorizationManager != null) {
+            if (event.isAll()) {
+                compiledAuthorizationManager.evictAll();
+            } else {
+                event.getUserId().forEach(compiledAuthorizationManager::evict);
+            }
+        }
         if (cacheManager != null) {
             if (event.isAll()) {
                 cacheManager.getCache("user-auth")
@@ -20,6 +20,7 @@ import org.hswebframework.web.authorization.Authentication;
 import org.hswebframework.web.authorization.AuthenticationInitializeService;
 import org.hswebframework.web.authorization.Permission;
 import org.hswebframework.web.authorization.access.DataAccessConfig;
+import org.hswebframework.web.authorization.compiled.CompiledAuthorizationManager;
 import org.hswebframework.web.authorization.simple.SimpleAuthentication;
 import org.hswebframework.web.authorization.simple.SimplePermission;
 import org.hswebframework.web.authorization.simple.SimpleRole;
@@ -83,6 +84,8 @@ public class SimpleAuthorizationSettingService extends GenericEntityService<Auth
 
     private DataAccessFactory dataAccessFactory;
 
+    private CompiledAuthorizationManager compiledAuthorizationManager;
+
     @Override
     protected IDGenerator<String> getIDGenerator() {
         return IDGenerator.MD5;
@@ -275,6 +278,9 @@ public class SimpleAuthorizationSettingService extends GenericEntityService<Auth
     @CacheEvict(cacheNames = USER_MENU_CACHE_NAME, allEntries = true)
     public void clearAllUserCache(ClearUserAuthorizationCacheEvent event) {
         logger.debug("clear all user authorization cache");
+        if (compiledAuthorizationManager != null) {
+            compiledAuthorizationManager.evictAll();
+        }
     }
 
     @TransactionalEventListener(condition = "!#event.all")
@@ -287,6 +293,9 @@ public class SimpleAuthorizationSettingService extends GenericEntityService<Auth
     )
     public void clearUserCache(ClearUserAuthorizationCacheEvent event) {
         logger.debug("clear user:{} authorization cache", event.getUserId());
+        if (compiledAuthorizationManager != null) {
+            compiledAuthorizationManager.evict(event.getUserId());
+        }
     }
 
 
@@ -478,4 +487,9 @@ public class SimpleAuthorizationSettingService extends GenericEntityService<Auth
     public void setPermissionService(PermissionService permissionService) {
         this.permissionService = permissionService;
     }
+
+    @Autowired(required = false)
+    public void setCompiledAuthorizationManager(CompiledAuthorizationManager compiledAuthorizationManager) {
+        this.compiledAuthorizationManager = compiledAuthorizationManager;
+    }
 }